@@ -0,0 +1,76 @@
+package xpertss.ds.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import xpertss.ds.concurrent.Condition;
+import xpertss.ds.concurrent.ConditionFactory;
+import xpertss.ds.concurrent.Count;
+import xpertss.ds.concurrent.Stats;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of the bookkeeping recorded on every borrow and return:
+ * the conditional increment and decrement of a {@link Count} bounding the
+ * pool size and the recording of a latency in {@link Stats}.
+ *
+ * @author cfloersch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CounterBenchmark {
+
+   private final Condition belowMax = ConditionFactory.lessThan(Integer.MAX_VALUE);
+   private final Count count = new Count();
+   private final Stats stats = new Stats();
+
+
+   @Benchmark
+   @Threads(1)
+   public boolean count1()
+   {
+      return cycle();
+   }
+
+   @Benchmark
+   @Threads(8)
+   public boolean count8()
+   {
+      return cycle();
+   }
+
+   @Benchmark
+   @Threads(1)
+   public void stats1()
+   {
+      stats.record(System.nanoTime() & 0xffff);
+   }
+
+   @Benchmark
+   @Threads(8)
+   public void stats8()
+   {
+      stats.record(System.nanoTime() & 0xffff);
+   }
+
+
+   private boolean cycle()
+   {
+      boolean result = count.increment(belowMax);
+      count.decrement();
+      return result;
+   }
+
+}
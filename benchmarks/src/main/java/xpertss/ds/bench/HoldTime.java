@@ -0,0 +1,78 @@
+package xpertss.ds.bench;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The distribution of the time a load generator request holds its borrowed
+ * connection. Specified as one of:
+ * <ul>
+ *    <li>{@code constant:<ms>} - every request holds for the given time</li>
+ *    <li>{@code exponential:<ms>} - exponentially distributed with the given mean</li>
+ *    <li>{@code bimodal:<short ms>,<long ms>,<fraction>} - the short time except
+ *          for the given fraction of requests which hold for the long time</li>
+ * </ul>
+ *
+ * @author cfloersch
+ */
+public abstract class HoldTime {
+
+   /**
+    * @return The next hold time in nanoseconds
+    */
+   public abstract long next();
+
+
+   public static HoldTime parse(String spec)
+   {
+      int idx = spec.indexOf(':');
+      if(idx < 0) throw new IllegalArgumentException("invalid hold time: " + spec);
+      String type = spec.substring(0, idx);
+      String[] args = spec.substring(idx + 1).split(",");
+      if("constant".equals(type) && args.length == 1) {
+         return constant(millis(args[0]));
+      } else if("exponential".equals(type) && args.length == 1) {
+         return exponential(millis(args[0]));
+      } else if("bimodal".equals(type) && args.length == 3) {
+         return bimodal(millis(args[0]), millis(args[1]), Double.parseDouble(args[2]));
+      }
+      throw new IllegalArgumentException("invalid hold time: " + spec);
+   }
+
+   public static HoldTime constant(final long nanos)
+   {
+      return new HoldTime() {
+         public long next() { return nanos; }
+         public String toString() { return "constant:" + format(nanos); }
+      };
+   }
+
+   public static HoldTime exponential(final long mean)
+   {
+      return new HoldTime() {
+         public long next() { return (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) * mean); }
+         public String toString() { return "exponential:" + format(mean); }
+      };
+   }
+
+   public static HoldTime bimodal(final long shortNanos, final long longNanos, final double fraction)
+   {
+      return new HoldTime() {
+         public long next() { return (ThreadLocalRandom.current().nextDouble() < fraction) ? longNanos : shortNanos; }
+         public String toString() { return "bimodal:" + format(shortNanos) + "," + format(longNanos) + "," + fraction; }
+      };
+   }
+
+
+
+   private static long millis(String value)
+   {
+      return (long) (Double.parseDouble(value) * TimeUnit.MILLISECONDS.toNanos(1));
+   }
+
+   private static String format(long nanos)
+   {
+      return Double.toString(nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+   }
+
+}
@@ -0,0 +1,364 @@
+package xpertss.ds.bench;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+import xpertss.ds.JdbcDataSource;
+import xpertss.ds.PoolingDataSource;
+import xpertss.ds.jdbc.SimpleDataSource;
+import xpertss.ds.jdbc.SimulatedDriver;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Drives a JDBC pooling data source at a fixed arrival rate regardless of
+ * how quickly the pool serves requests.
+ * <p>
+ * Closed loop tests issue the next request only once the previous one has
+ * completed so a saturated pool simply slows them down and the time the
+ * missing requests would have spent queued is never measured. Here every
+ * request is given an intended start time on a fixed schedule and its
+ * borrow latency is measured from that time, so requests delayed by a
+ * saturated pool or a backlog of workers are charged for the delay. The
+ * latency measured from when a worker actually called the pool is recorded
+ * separately as the service time. A borrow which fails, for instance with
+ * pool.exhausted once the pool is saturated, is recorded with the time it
+ * took to fail as well as counted as an error, since leaving out the
+ * slowest requests would understate the tail.
+ * <p>
+ * Options are given as {@code --name value} pairs:
+ * <pre>
+ *   --rate      requests per second (1000)
+ *   --duration  measured seconds (60)
+ *   --warmup    unmeasured seconds before the measurement (10)
+ *   --workers   worker threads issuing requests (512)
+ *   --hold      hold time distribution, see {@link HoldTime} (exponential:5)
+ *   --driver    stub, simulated, derby or a driver class name (stub)
+ *   --url       the url, for instance to configure the simulated driver
+ *   --query     a statement executed on each borrowed connection
+ *   --label     identifies this run in the csv output (the pool settings)
+ *   --out       the base name of the output files (load)
+ * </pre>
+ * Any other {@code name=value} argument is set as a data source property
+ * with max-connections defaulting to 16.
+ * <p>
+ * Each second a row with the throughput, error count and corrected borrow
+ * latency percentiles is appended to {@code <out>.csv} and the interval's
+ * corrected and service time histograms are written as HdrHistogram logs to
+ * {@code <out>.hlog} and {@code <out>-service.hlog}. A final row labelled
+ * total covers the whole measurement. Latencies are in microseconds.
+ *
+ * @author cfloersch
+ */
+public class LoadGenerator {
+
+   public static void main(String[] args) throws Exception
+   {
+      LoadGenerator generator = new LoadGenerator();
+      generator.configure(args);
+      generator.run();
+      System.exit(0);
+   }
+
+
+   private final Properties props = new Properties();
+   private final Recorder corrected = new Recorder(3);
+   private final Recorder service = new Recorder(3);
+   private final LongAdder scheduled = new LongAdder();
+   private final LongAdder completed = new LongAdder();
+   private final LongAdder errors = new LongAdder();
+
+   private double rate = 1000;
+   private int duration = 60;
+   private int warmup = 10;
+   private int workers = 512;
+   private HoldTime hold = HoldTime.parse("exponential:5");
+   private String query;
+   private String label;
+   private String out = "load";
+
+   private SimpleDataSource ds;
+
+
+   public void configure(String[] args)
+   {
+      props.setProperty(JdbcDataSource.DRIVER, StubDriver.class.getName());
+      props.setProperty(JdbcDataSource.URL, StubDriver.URL + "load");
+      props.setProperty(PoolingDataSource.MAX_CONNECTIONS, "16");
+      for(int i = 0; i < args.length; i++) {
+         String arg = args[i];
+         if(arg.startsWith("--")) {
+            if(i + 1 == args.length) throw new IllegalArgumentException("missing value for " + arg);
+            option(arg.substring(2), args[++i]);
+         } else if(arg.indexOf('=') > 0) {
+            props.setProperty(arg.substring(0, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+         } else {
+            throw new IllegalArgumentException("invalid argument: " + arg);
+         }
+      }
+      if(label == null) label = props.getProperty(PoolingDataSource.CACHE_TYPE, "Blocking") + "/" +
+                                 props.getProperty(PoolingDataSource.MAX_CONNECTIONS) + "/" + hold;
+   }
+
+   public void run() throws Exception
+   {
+      ds = new SimpleDataSource(props);
+      ThreadPoolExecutor executor = new ThreadPoolExecutor(workers, workers, 0, SECONDS,
+                                          new LinkedBlockingQueue<Runnable>(), new Daemons("load-worker"));
+      executor.prestartAllCoreThreads();
+      ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(new Daemons("load-report"));
+      Report report = new Report();
+      try {
+         long start = System.nanoTime();
+         report.begin(System.currentTimeMillis());
+         ticker.scheduleAtFixedRate(report, 1, 1, SECONDS);
+
+         long end = start + SECONDS.toNanos(warmup + duration);
+         double period = SECONDS.toNanos(1) / rate;
+         for(long i = 0; ; i++) {
+            long intended = start + (long) (i * period);
+            if(intended - end >= 0) break;
+            long delay;
+            while((delay = intended - System.nanoTime()) > 0) LockSupport.parkNanos(delay);
+            scheduled.increment();
+            executor.execute(new Request(intended));
+         }
+
+         executor.shutdown();
+         if(!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+            System.err.println("Requests still outstanding after one minute");
+         }
+      } finally {
+         ticker.shutdown();
+         ticker.awaitTermination(5, SECONDS);
+         report.finish();
+         ds.close();
+      }
+   }
+
+
+
+   private void option(String name, String value)
+   {
+      if("rate".equals(name)) {
+         rate = Double.parseDouble(value);
+      } else if("duration".equals(name)) {
+         duration = Integer.parseInt(value);
+      } else if("warmup".equals(name)) {
+         warmup = Integer.parseInt(value);
+      } else if("workers".equals(name)) {
+         workers = Integer.parseInt(value);
+      } else if("hold".equals(name)) {
+         hold = HoldTime.parse(value);
+      } else if("query".equals(name)) {
+         query = value;
+      } else if("label".equals(name)) {
+         label = value;
+      } else if("out".equals(name)) {
+         out = value;
+      } else if("url".equals(name)) {
+         props.setProperty(JdbcDataSource.URL, value);
+      } else if("driver".equals(name)) {
+         if("stub".equals(value)) {
+            props.setProperty(JdbcDataSource.DRIVER, StubDriver.class.getName());
+            props.setProperty(JdbcDataSource.URL, StubDriver.URL + "load");
+         } else if("simulated".equals(value)) {
+            props.setProperty(JdbcDataSource.DRIVER, SimulatedDriver.class.getName());
+            props.setProperty(JdbcDataSource.URL, SimulatedDriver.PREFIX + "load");
+         } else if("derby".equals(value)) {
+            props.setProperty(JdbcDataSource.DRIVER, "org.apache.derby.jdbc.EmbeddedDriver");
+            props.setProperty(JdbcDataSource.URL, "jdbc:derby:memory:load;create=true");
+            if(query == null) query = "VALUES 1";
+         } else {
+            props.setProperty(JdbcDataSource.DRIVER, value);
+         }
+      } else {
+         throw new IllegalArgumentException("unknown option: --" + name);
+      }
+   }
+
+   private static long micros(long nanos)
+   {
+      return Math.max(NANOSECONDS.toMicros(nanos), 0);
+   }
+
+
+
+
+   private class Request implements Runnable {
+
+      private final long intended;
+
+      private Request(long intended)
+      {
+         this.intended = intended;
+      }
+
+      public void run()
+      {
+         long begin = System.nanoTime();
+         Connection conn;
+         try {
+            conn = ds.getConnection();
+         } catch(SQLException e) {
+            record(begin);
+            errors.increment();
+            return;
+         } catch(RuntimeException e) {
+            record(begin);
+            errors.increment();
+            return;
+         }
+         record(begin);
+         try {
+            try {
+               if(query != null) {
+                  Statement stmt = conn.createStatement();
+                  try {
+                     stmt.execute(query);
+                  } finally {
+                     stmt.close();
+                  }
+               }
+               long nanos = hold.next();
+               long until = System.nanoTime() + nanos;
+               while(nanos > 0) {
+                  LockSupport.parkNanos(nanos);
+                  nanos = until - System.nanoTime();
+               }
+            } finally {
+               conn.close();
+            }
+            completed.increment();
+         } catch(SQLException e) {
+            errors.increment();
+         } catch(RuntimeException e) {
+            errors.increment();
+         }
+      }
+
+      private void record(long begin)
+      {
+         long now = System.nanoTime();
+         corrected.recordValue(micros(now - intended));
+         service.recordValue(micros(now - begin));
+      }
+   }
+
+
+   private class Report implements Runnable {
+
+      private final Histogram total = new Histogram(3);
+      private Histogram interval;
+      private Histogram serviceInterval;
+
+      private PrintStream csv;
+      private HistogramLogWriter log;
+      private HistogramLogWriter serviceLog;
+      private long startMillis;
+      private int second;
+      private long totalScheduled;
+      private long totalCompleted;
+      private long totalErrors;
+
+      private void begin(long startMillis) throws FileNotFoundException
+      {
+         this.startMillis = startMillis;
+         csv = new PrintStream(new File(out + ".csv"));
+         csv.println("label,second,scheduled,completed,errors,p50,p90,p99,p99.9,max,service p99");
+         log = open(new File(out + ".hlog"), "borrow latency corrected for coordinated omission (us)");
+         serviceLog = open(new File(out + "-service.hlog"), "borrow service time (us)");
+         System.out.println("Driving " + label + " at " + rate + "/s for " + duration + "s after " + warmup + "s warmup");
+      }
+
+      public synchronized void run()
+      {
+         interval = corrected.getIntervalHistogram(interval);
+         serviceInterval = service.getIntervalHistogram(serviceInterval);
+         long sched = scheduled.sumThenReset();
+         long done = completed.sumThenReset();
+         long failed = errors.sumThenReset();
+         if(++second <= warmup) return;
+
+         total.add(interval);
+         totalScheduled += sched;
+         totalCompleted += done;
+         totalErrors += failed;
+         log.outputIntervalHistogram(interval);
+         serviceLog.outputIntervalHistogram(serviceInterval);
+         row(Integer.toString(second - warmup), sched, done, failed, interval, serviceInterval);
+      }
+
+      private synchronized void finish()
+      {
+         if(csv == null) return;
+         run();
+         row("total", totalScheduled, totalCompleted, totalErrors, total, null);
+         csv.close();
+         log.close();
+         serviceLog.close();
+         System.out.println("Throughput " + (totalCompleted / Math.max(duration, 1)) + "/s, errors " + totalErrors +
+                              " of " + totalScheduled + " scheduled");
+         System.out.println("Borrow latency corrected for coordinated omission (ms):");
+         total.outputPercentileDistribution(System.out, 1000.0);
+      }
+
+      private void row(String name, long sched, long done, long failed, Histogram h, Histogram s)
+      {
+         csv.println("\"" + label + "\"," + name + "," + sched + "," + done + "," + failed + "," +
+                     h.getValueAtPercentile(50) + "," + h.getValueAtPercentile(90) + "," +
+                     h.getValueAtPercentile(99) + "," + h.getValueAtPercentile(99.9) + "," +
+                     h.getMaxValue() + "," + ((s == null) ? "" : Long.toString(s.getValueAtPercentile(99))));
+         csv.flush();
+      }
+
+      private HistogramLogWriter open(File file, String comment) throws FileNotFoundException
+      {
+         HistogramLogWriter writer = new HistogramLogWriter(file);
+         writer.outputComment("[" + label + "] " + comment);
+         writer.outputLogFormatVersion();
+         writer.outputStartTime(startMillis);
+         writer.setBaseTime(startMillis);
+         writer.outputLegend();
+         return writer;
+      }
+   }
+
+
+   private static class Daemons implements ThreadFactory {
+
+      private final AtomicInteger count = new AtomicInteger();
+      private final String name;
+
+      private Daemons(String name)
+      {
+         this.name = name;
+      }
+
+      public Thread newThread(Runnable r)
+      {
+         Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      }
+   }
+
+}
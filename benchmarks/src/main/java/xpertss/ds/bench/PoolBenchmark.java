@@ -0,0 +1,115 @@
+package xpertss.ds.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import xpertss.ds.JdbcDataSource;
+import xpertss.ds.PoolingDataSource;
+import xpertss.ds.jdbc.SimpleDataSource;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures borrow and return throughput of a JDBC pooling data source over
+ * the stub driver at increasing thread counts. With sixteen connections the
+ * higher thread counts measure the pool's waiting and hand off paths while
+ * with 256 connections they measure contention on the idle cache alone.
+ *
+ * @author cfloersch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PoolBenchmark {
+
+   @Param({ "Blocking", "Concurrent", "Handoff" })
+   public String cacheType;
+
+   @Param({ "16", "256" })
+   public int maxConnections;
+
+   @Param({ "Never", "Borrow" })
+   public String testScheme;
+
+   private SimpleDataSource ds;
+
+   @Setup
+   public void setUp() throws SQLException
+   {
+      Properties props = new Properties();
+      props.setProperty(JdbcDataSource.DRIVER, StubDriver.class.getName());
+      props.setProperty(JdbcDataSource.URL, StubDriver.URL + "pool");
+      props.setProperty(PoolingDataSource.CACHE_TYPE, cacheType);
+      props.setProperty(PoolingDataSource.MAX_CONNECTIONS, Integer.toString(maxConnections));
+      props.setProperty(PoolingDataSource.MAX_IDLE, Integer.toString(maxConnections));
+      props.setProperty(PoolingDataSource.TEST_SCHEME, testScheme);
+      ds = new SimpleDataSource(props);
+      ds.getConnection().close();
+   }
+
+   @TearDown
+   public void tearDown()
+   {
+      ds.close();
+   }
+
+
+   @Benchmark
+   @Threads(1)
+   public void threads001() throws SQLException
+   {
+      cycle();
+   }
+
+   @Benchmark
+   @Threads(4)
+   public void threads004() throws SQLException
+   {
+      cycle();
+   }
+
+   @Benchmark
+   @Threads(16)
+   public void threads016() throws SQLException
+   {
+      cycle();
+   }
+
+   @Benchmark
+   @Threads(64)
+   public void threads064() throws SQLException
+   {
+      cycle();
+   }
+
+   @Benchmark
+   @Threads(256)
+   public void threads256() throws SQLException
+   {
+      cycle();
+   }
+
+
+   private void cycle() throws SQLException
+   {
+      Connection conn = ds.getConnection();
+      conn.close();
+   }
+
+}
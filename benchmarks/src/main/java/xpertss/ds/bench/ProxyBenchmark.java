@@ -0,0 +1,105 @@
+package xpertss.ds.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import xpertss.ds.JdbcDataSource;
+import xpertss.ds.PoolingDataSource;
+import xpertss.ds.jdbc.SimpleDataSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares calls made on a raw stub connection with the same calls made on
+ * the proxied connection a pool issues for it. The difference is the cost
+ * of the proxy layer and, for prepared statements, of the statement cache.
+ *
+ * @author cfloersch
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProxyBenchmark {
+
+   private static final String SQL = "SELECT * FROM dual WHERE id = ?";
+
+   @Param({ "0", "16" })
+   public int statementCacheSize;
+
+   private SimpleDataSource ds;
+   private Connection raw;
+   private Connection proxied;
+
+   @Setup
+   public void setUp() throws SQLException
+   {
+      Properties props = new Properties();
+      props.setProperty(JdbcDataSource.DRIVER, StubDriver.class.getName());
+      props.setProperty(JdbcDataSource.URL, StubDriver.URL + "proxy");
+      props.setProperty(PoolingDataSource.STATEMENT_CACHE_SIZE, Integer.toString(statementCacheSize));
+      ds = new SimpleDataSource(props);
+      raw = new StubConnection();
+      proxied = ds.getConnection();
+   }
+
+   @TearDown
+   public void tearDown() throws SQLException
+   {
+      proxied.close();
+      ds.close();
+   }
+
+
+   @Benchmark
+   public boolean rawAutoCommit() throws SQLException
+   {
+      return raw.getAutoCommit();
+   }
+
+   @Benchmark
+   public boolean proxiedAutoCommit() throws SQLException
+   {
+      return proxied.getAutoCommit();
+   }
+
+   @Benchmark
+   public int rawPrepare() throws SQLException
+   {
+      return prepare(raw);
+   }
+
+   @Benchmark
+   public int proxiedPrepare() throws SQLException
+   {
+      return prepare(proxied);
+   }
+
+
+   private static int prepare(Connection conn) throws SQLException
+   {
+      PreparedStatement ps = conn.prepareStatement(SQL);
+      try {
+         ps.setInt(1, 42);
+         return ps.executeUpdate();
+      } finally {
+         ps.close();
+      }
+   }
+
+}
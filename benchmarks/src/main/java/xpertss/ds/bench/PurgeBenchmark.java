@@ -0,0 +1,65 @@
+package xpertss.ds.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import xpertss.ds.base.BlockingPool;
+import xpertss.ds.base.ConcurrentPool;
+import xpertss.ds.base.ResourcePool;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the purge the pool's reaper runs every duty cycle over a large
+ * idle cache in which nothing has yet expired, which is the steady state
+ * cost of keeping many idle connections around.
+ *
+ * @author cfloersch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PurgeBenchmark {
+
+   @Param({ "Blocking", "Concurrent" })
+   public String cacheType;
+
+   // ConcurrentPool holds at most 512 chunks of 32, so both caches can hold 16k
+   @Param({ "1000", "10000", "16000" })
+   public int idle;
+
+   private ResourcePool<Object> pool;
+
+   @Setup
+   public void setUp()
+   {
+      pool = ("Concurrent".equals(cacheType)) ? new ConcurrentPool<Object>() : new BlockingPool<Object>();
+      pool.setMaxIdle(idle);
+      pool.setMaxLife(3600);
+      for(int i = 0; i < idle; i++) {
+         if(!pool.offer(pool.wrap(null, new Object()))) {
+            throw new IllegalStateException(cacheType + " cache refused idle item " + i);
+         }
+      }
+   }
+
+
+   @Benchmark
+   public Collection<?> purge()
+   {
+      return pool.purge(3600);
+   }
+
+}
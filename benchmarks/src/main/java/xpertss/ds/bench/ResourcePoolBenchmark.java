@@ -0,0 +1,89 @@
+package xpertss.ds.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import xpertss.ds.base.BlockingPool;
+import xpertss.ds.base.ConcurrentPool;
+import xpertss.ds.base.PooledResource;
+import xpertss.ds.base.ResourcePool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a poll immediately followed by an offer on the idle caches under
+ * contention. The cache holds more resources than there are threads so a
+ * poll never finds it empty and never waits.
+ *
+ * @author cfloersch
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourcePoolBenchmark {
+
+   @Param({ "Blocking", "Concurrent" })
+   public String cacheType;
+
+   private ResourcePool<Object> pool;
+
+   @Setup
+   public void setUp()
+   {
+      pool = ("Concurrent".equals(cacheType)) ? new ConcurrentPool<Object>() : new BlockingPool<Object>();
+      pool.setMaxIdle(256);
+      for(int i = 0; i < 256; i++) {
+         pool.offer(pool.wrap(null, new Object()));
+      }
+   }
+
+
+   @Benchmark
+   @Threads(1)
+   public Object threads01()
+   {
+      return cycle();
+   }
+
+   @Benchmark
+   @Threads(4)
+   public Object threads04()
+   {
+      return cycle();
+   }
+
+   @Benchmark
+   @Threads(16)
+   public Object threads16()
+   {
+      return cycle();
+   }
+
+   @Benchmark
+   @Threads(64)
+   public Object threads64()
+   {
+      return cycle();
+   }
+
+
+   private Object cycle()
+   {
+      PooledResource<Object> res = pool.poll();
+      if(res != null) pool.offer(res);
+      return res;
+   }
+
+}
@@ -0,0 +1,294 @@
+package xpertss.ds.bench;
+
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.CallableStatement;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.NClob;
+import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
+import java.sql.Statement;
+import java.sql.Struct;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
+
+/**
+ * A connection which performs no I/O. Statements it creates are equally inert
+ * so benchmarks measure only the pool and wrapper overhead.
+ *
+ * @author cfloersch
+ */
+public class StubConnection implements Connection {
+
+   private volatile boolean closed;
+   private boolean autoCommit = true;
+   private boolean readOnly;
+   private int isolation = TRANSACTION_SERIALIZABLE;
+   private int holdability;
+
+
+   public void abort(Executor p0) throws SQLException
+   {
+   }
+
+   public void clearWarnings() throws SQLException
+   {
+   }
+
+   public void close() throws SQLException
+   {
+      closed = true;
+   }
+
+   public void commit() throws SQLException
+   {
+   }
+
+   public Array createArrayOf(String p0, Object[] p1) throws SQLException
+   {
+      return null;
+   }
+
+   public Blob createBlob() throws SQLException
+   {
+      return null;
+   }
+
+   public Clob createClob() throws SQLException
+   {
+      return null;
+   }
+
+   public NClob createNClob() throws SQLException
+   {
+      return null;
+   }
+
+   public SQLXML createSQLXML() throws SQLException
+   {
+      return null;
+   }
+
+   public Statement createStatement() throws SQLException
+   {
+      return new StubStatement(this);
+   }
+
+   public Statement createStatement(int p0, int p1, int p2) throws SQLException
+   {
+      return new StubStatement(this);
+   }
+
+   public Statement createStatement(int p0, int p1) throws SQLException
+   {
+      return new StubStatement(this);
+   }
+
+   public Struct createStruct(String p0, Object[] p1) throws SQLException
+   {
+      return null;
+   }
+
+   public boolean getAutoCommit() throws SQLException
+   {
+      return autoCommit;
+   }
+
+   public String getCatalog() throws SQLException
+   {
+      return null;
+   }
+
+   public Properties getClientInfo() throws SQLException
+   {
+      return null;
+   }
+
+   public String getClientInfo(String p0) throws SQLException
+   {
+      return null;
+   }
+
+   public int getHoldability() throws SQLException
+   {
+      return holdability;
+   }
+
+   public DatabaseMetaData getMetaData() throws SQLException
+   {
+      return null;
+   }
+
+   public int getNetworkTimeout() throws SQLException
+   {
+      return 0;
+   }
+
+   public String getSchema() throws SQLException
+   {
+      return null;
+   }
+
+   public int getTransactionIsolation() throws SQLException
+   {
+      return isolation;
+   }
+
+   public Map<String, Class<?>> getTypeMap() throws SQLException
+   {
+      return null;
+   }
+
+   public SQLWarning getWarnings() throws SQLException
+   {
+      return null;
+   }
+
+   public boolean isClosed() throws SQLException
+   {
+      return closed;
+   }
+
+   public boolean isReadOnly() throws SQLException
+   {
+      return readOnly;
+   }
+
+   public boolean isValid(int p0) throws SQLException
+   {
+      return !closed;
+   }
+
+   public boolean isWrapperFor(Class<?> p0) throws SQLException
+   {
+      return p0.isInstance(this);
+   }
+
+   public String nativeSQL(String p0) throws SQLException
+   {
+      return null;
+   }
+
+   public CallableStatement prepareCall(String p0, int p1, int p2, int p3) throws SQLException
+   {
+      return null;
+   }
+
+   public CallableStatement prepareCall(String p0, int p1, int p2) throws SQLException
+   {
+      return null;
+   }
+
+   public CallableStatement prepareCall(String p0) throws SQLException
+   {
+      return null;
+   }
+
+   public PreparedStatement prepareStatement(String p0, int[] p1) throws SQLException
+   {
+      return new StubStatement(this);
+   }
+
+   public PreparedStatement prepareStatement(String p0, String[] p1) throws SQLException
+   {
+      return new StubStatement(this);
+   }
+
+   public PreparedStatement prepareStatement(String p0, int p1, int p2, int p3) throws SQLException
+   {
+      return new StubStatement(this);
+   }
+
+   public PreparedStatement prepareStatement(String p0, int p1, int p2) throws SQLException
+   {
+      return new StubStatement(this);
+   }
+
+   public PreparedStatement prepareStatement(String p0, int p1) throws SQLException
+   {
+      return new StubStatement(this);
+   }
+
+   public PreparedStatement prepareStatement(String p0) throws SQLException
+   {
+      return new StubStatement(this);
+   }
+
+   public void releaseSavepoint(Savepoint p0) throws SQLException
+   {
+   }
+
+   public void rollback() throws SQLException
+   {
+   }
+
+   public void rollback(Savepoint p0) throws SQLException
+   {
+   }
+
+   public void setAutoCommit(boolean p0) throws SQLException
+   {
+      this.autoCommit = p0;
+   }
+
+   public void setCatalog(String p0) throws SQLException
+   {
+   }
+
+   public void setClientInfo(String p0, String p1) throws SQLClientInfoException
+   {
+   }
+
+   public void setClientInfo(Properties p0) throws SQLClientInfoException
+   {
+   }
+
+   public void setHoldability(int p0) throws SQLException
+   {
+      this.holdability = p0;
+   }
+
+   public void setNetworkTimeout(Executor p0, int p1) throws SQLException
+   {
+   }
+
+   public void setReadOnly(boolean p0) throws SQLException
+   {
+      this.readOnly = p0;
+   }
+
+   public Savepoint setSavepoint() throws SQLException
+   {
+      return null;
+   }
+
+   public Savepoint setSavepoint(String p0) throws SQLException
+   {
+      return null;
+   }
+
+   public void setSchema(String p0) throws SQLException
+   {
+   }
+
+   public void setTransactionIsolation(int p0) throws SQLException
+   {
+      this.isolation = p0;
+   }
+
+   public void setTypeMap(Map<String, Class<?>> p0) throws SQLException
+   {
+   }
+
+   public <T> T unwrap(Class<T> p0) throws SQLException
+   {
+      return p0.cast(this);
+   }
+}
@@ -0,0 +1,62 @@
+package xpertss.ds.bench;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+/**
+ * A driver which hands out {@link StubConnection}s for any url starting with
+ * {@link #URL}. Connecting performs no I/O so the pool is the only thing a
+ * benchmark built on it measures.
+ *
+ * @author cfloersch
+ */
+public class StubDriver implements Driver {
+
+   public static final String URL = "jdbc:stub:";
+
+
+   public boolean acceptsURL(String url)
+      throws SQLException
+   {
+      return url != null && url.startsWith(URL);
+   }
+
+   public Connection connect(String url, Properties info)
+      throws SQLException
+   {
+      return acceptsURL(url) ? new StubConnection() : null;
+   }
+
+   public DriverPropertyInfo[] getPropertyInfo(String url, Properties info)
+      throws SQLException
+   {
+      return new DriverPropertyInfo[0];
+   }
+
+   public int getMajorVersion()
+   {
+      return 1;
+   }
+
+   public int getMinorVersion()
+   {
+      return 0;
+   }
+
+   public boolean jdbcCompliant()
+   {
+      return false;
+   }
+
+   public Logger getParentLogger()
+      throws SQLFeatureNotSupportedException
+   {
+      throw new SQLFeatureNotSupportedException();
+   }
+
+}
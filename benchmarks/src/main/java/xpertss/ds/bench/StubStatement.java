@@ -0,0 +1,474 @@
+package xpertss.ds.bench;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+
+/**
+ * A prepared statement which performs no I/O. It serves as the result of
+ * every statement factory method on {@link StubConnection}.
+ *
+ * @author cfloersch
+ */
+public class StubStatement implements PreparedStatement {
+
+   private final Connection conn;
+   private volatile boolean closed;
+
+   StubStatement(Connection conn)
+   {
+      this.conn = conn;
+   }
+
+
+   public void addBatch() throws SQLException
+   {
+   }
+
+   public void addBatch(String p0) throws SQLException
+   {
+   }
+
+   public void cancel() throws SQLException
+   {
+   }
+
+   public void clearBatch() throws SQLException
+   {
+   }
+
+   public void clearParameters() throws SQLException
+   {
+   }
+
+   public void clearWarnings() throws SQLException
+   {
+   }
+
+   public void closeOnCompletion() throws SQLException
+   {
+   }
+
+   public void close() throws SQLException
+   {
+      closed = true;
+   }
+
+   public int[] executeBatch() throws SQLException
+   {
+      return new int[0];
+   }
+
+   public ResultSet executeQuery() throws SQLException
+   {
+      return null;
+   }
+
+   public ResultSet executeQuery(String p0) throws SQLException
+   {
+      return null;
+   }
+
+   public int executeUpdate() throws SQLException
+   {
+      return 0;
+   }
+
+   public int executeUpdate(String p0, int[] p1) throws SQLException
+   {
+      return 0;
+   }
+
+   public int executeUpdate(String p0, String[] p1) throws SQLException
+   {
+      return 0;
+   }
+
+   public int executeUpdate(String p0, int p1) throws SQLException
+   {
+      return 0;
+   }
+
+   public int executeUpdate(String p0) throws SQLException
+   {
+      return 0;
+   }
+
+   public boolean execute() throws SQLException
+   {
+      return false;
+   }
+
+   public boolean execute(String p0, int[] p1) throws SQLException
+   {
+      return false;
+   }
+
+   public boolean execute(String p0, String[] p1) throws SQLException
+   {
+      return false;
+   }
+
+   public boolean execute(String p0, int p1) throws SQLException
+   {
+      return false;
+   }
+
+   public boolean execute(String p0) throws SQLException
+   {
+      return false;
+   }
+
+   public Connection getConnection() throws SQLException
+   {
+      return conn;
+   }
+
+   public int getFetchDirection() throws SQLException
+   {
+      return 0;
+   }
+
+   public int getFetchSize() throws SQLException
+   {
+      return 0;
+   }
+
+   public ResultSet getGeneratedKeys() throws SQLException
+   {
+      return null;
+   }
+
+   public int getMaxFieldSize() throws SQLException
+   {
+      return 0;
+   }
+
+   public int getMaxRows() throws SQLException
+   {
+      return 0;
+   }
+
+   public ResultSetMetaData getMetaData() throws SQLException
+   {
+      return null;
+   }
+
+   public boolean getMoreResults() throws SQLException
+   {
+      return false;
+   }
+
+   public boolean getMoreResults(int p0) throws SQLException
+   {
+      return false;
+   }
+
+   public ParameterMetaData getParameterMetaData() throws SQLException
+   {
+      return null;
+   }
+
+   public int getQueryTimeout() throws SQLException
+   {
+      return 0;
+   }
+
+   public int getResultSetConcurrency() throws SQLException
+   {
+      return 0;
+   }
+
+   public int getResultSetHoldability() throws SQLException
+   {
+      return 0;
+   }
+
+   public int getResultSetType() throws SQLException
+   {
+      return 0;
+   }
+
+   public ResultSet getResultSet() throws SQLException
+   {
+      return null;
+   }
+
+   public int getUpdateCount() throws SQLException
+   {
+      return -1;
+   }
+
+   public SQLWarning getWarnings() throws SQLException
+   {
+      return null;
+   }
+
+   public boolean isCloseOnCompletion() throws SQLException
+   {
+      return false;
+   }
+
+   public boolean isClosed() throws SQLException
+   {
+      return closed;
+   }
+
+   public boolean isPoolable() throws SQLException
+   {
+      return true;
+   }
+
+   public boolean isWrapperFor(Class<?> p0) throws SQLException
+   {
+      return p0.isInstance(this);
+   }
+
+   public void setArray(int p0, Array p1) throws SQLException
+   {
+   }
+
+   public void setAsciiStream(int p0, InputStream p1, int p2) throws SQLException
+   {
+   }
+
+   public void setAsciiStream(int p0, InputStream p1, long p2) throws SQLException
+   {
+   }
+
+   public void setAsciiStream(int p0, InputStream p1) throws SQLException
+   {
+   }
+
+   public void setBigDecimal(int p0, BigDecimal p1) throws SQLException
+   {
+   }
+
+   public void setBinaryStream(int p0, InputStream p1, int p2) throws SQLException
+   {
+   }
+
+   public void setBinaryStream(int p0, InputStream p1, long p2) throws SQLException
+   {
+   }
+
+   public void setBinaryStream(int p0, InputStream p1) throws SQLException
+   {
+   }
+
+   public void setBlob(int p0, InputStream p1, long p2) throws SQLException
+   {
+   }
+
+   public void setBlob(int p0, InputStream p1) throws SQLException
+   {
+   }
+
+   public void setBlob(int p0, Blob p1) throws SQLException
+   {
+   }
+
+   public void setBoolean(int p0, boolean p1) throws SQLException
+   {
+   }
+
+   public void setByte(int p0, byte p1) throws SQLException
+   {
+   }
+
+   public void setBytes(int p0, byte[] p1) throws SQLException
+   {
+   }
+
+   public void setCharacterStream(int p0, Reader p1, int p2) throws SQLException
+   {
+   }
+
+   public void setCharacterStream(int p0, Reader p1, long p2) throws SQLException
+   {
+   }
+
+   public void setCharacterStream(int p0, Reader p1) throws SQLException
+   {
+   }
+
+   public void setClob(int p0, Reader p1, long p2) throws SQLException
+   {
+   }
+
+   public void setClob(int p0, Reader p1) throws SQLException
+   {
+   }
+
+   public void setClob(int p0, Clob p1) throws SQLException
+   {
+   }
+
+   public void setCursorName(String p0) throws SQLException
+   {
+   }
+
+   public void setDate(int p0, Date p1, Calendar p2) throws SQLException
+   {
+   }
+
+   public void setDate(int p0, Date p1) throws SQLException
+   {
+   }
+
+   public void setDouble(int p0, double p1) throws SQLException
+   {
+   }
+
+   public void setEscapeProcessing(boolean p0) throws SQLException
+   {
+   }
+
+   public void setFetchDirection(int p0) throws SQLException
+   {
+   }
+
+   public void setFetchSize(int p0) throws SQLException
+   {
+   }
+
+   public void setFloat(int p0, float p1) throws SQLException
+   {
+   }
+
+   public void setInt(int p0, int p1) throws SQLException
+   {
+   }
+
+   public void setLong(int p0, long p1) throws SQLException
+   {
+   }
+
+   public void setMaxFieldSize(int p0) throws SQLException
+   {
+   }
+
+   public void setMaxRows(int p0) throws SQLException
+   {
+   }
+
+   public void setNCharacterStream(int p0, Reader p1, long p2) throws SQLException
+   {
+   }
+
+   public void setNCharacterStream(int p0, Reader p1) throws SQLException
+   {
+   }
+
+   public void setNClob(int p0, Reader p1, long p2) throws SQLException
+   {
+   }
+
+   public void setNClob(int p0, Reader p1) throws SQLException
+   {
+   }
+
+   public void setNClob(int p0, NClob p1) throws SQLException
+   {
+   }
+
+   public void setNString(int p0, String p1) throws SQLException
+   {
+   }
+
+   public void setNull(int p0, int p1, String p2) throws SQLException
+   {
+   }
+
+   public void setNull(int p0, int p1) throws SQLException
+   {
+   }
+
+   public void setObject(int p0, Object p1, int p2, int p3) throws SQLException
+   {
+   }
+
+   public void setObject(int p0, Object p1, int p2) throws SQLException
+   {
+   }
+
+   public void setObject(int p0, Object p1) throws SQLException
+   {
+   }
+
+   public void setPoolable(boolean p0) throws SQLException
+   {
+   }
+
+   public void setQueryTimeout(int p0) throws SQLException
+   {
+   }
+
+   public void setRef(int p0, Ref p1) throws SQLException
+   {
+   }
+
+   public void setRowId(int p0, RowId p1) throws SQLException
+   {
+   }
+
+   public void setSQLXML(int p0, SQLXML p1) throws SQLException
+   {
+   }
+
+   public void setShort(int p0, short p1) throws SQLException
+   {
+   }
+
+   public void setString(int p0, String p1) throws SQLException
+   {
+   }
+
+   public void setTime(int p0, Time p1, Calendar p2) throws SQLException
+   {
+   }
+
+   public void setTime(int p0, Time p1) throws SQLException
+   {
+   }
+
+   public void setTimestamp(int p0, Timestamp p1, Calendar p2) throws SQLException
+   {
+   }
+
+   public void setTimestamp(int p0, Timestamp p1) throws SQLException
+   {
+   }
+
+   public void setURL(int p0, java.net.URL p1) throws SQLException
+   {
+   }
+
+   public void setUnicodeStream(int p0, InputStream p1, int p2) throws SQLException
+   {
+   }
+
+   public <T> T unwrap(Class<T> p0) throws SQLException
+   {
+      return p0.cast(this);
+   }
+}
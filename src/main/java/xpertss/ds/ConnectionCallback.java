@@ -0,0 +1,27 @@
+package xpertss.ds;
+
+/**
+ * A callback which is notified when an asynchronous request for a pooled
+ * connection completes.
+ * <p>
+ * Callbacks are invoked on a system executor thread and should hand the
+ * connection off to the application's own threads rather than block.
+ *
+ * @author cfloersch
+ */
+public interface ConnectionCallback<T> {
+
+   /**
+    * Called with the borrowed connection. The callback takes ownership of
+    * the connection and is responsible for closing it.
+    */
+   public void completed(T connection);
+
+   /**
+    * Called if a connection could not be obtained, for example because the
+    * pool was exhausted for max-wait-time, the data source is unavailable
+    * or it was closed.
+    */
+   public void failed(DataSourceException error);
+
+}
@@ -52,6 +52,35 @@ public interface PoolingDataSource {
    }
 
    
+   /**
+    * A pool holds its idle connections in a cache. This enumerates the cache
+    * implementations a pool may be configured to use.
+    * 
+    * @author cfloersch
+    */
+   public enum CacheType {
+
+      /**
+       * A lock based cache which always issues the least recently used idle
+       * connection.
+       */
+      Blocking,
+
+      /**
+       * A lock free cache which prefers to issue a thread the connection it
+       * most recently returned.
+       */
+      Concurrent,
+
+      /**
+       * A lock based cache which passes returned connections directly to the
+       * longest waiting borrower when the pool is exhausted.
+       */
+      Handoff
+
+   }
+
+   
    
    
    
@@ -121,10 +150,105 @@ public interface PoolingDataSource {
     */
    public static final String MAX_WAIT_TIME  = "max-wait-time";
 
+   /**
+    * The cache implementation used to hold idle connections. Must be one of
+    * the defined cache types and defaults to {@code Blocking}. The lock free
+    * {@code Concurrent} cache scales better when many threads borrow from the
+    * pool at once.
+    */
+   public static final String CACHE_TYPE     = "cache-type";
+
+   /**
+    * The maximum number of prepared and callable statements a JDBC pooling
+    * data source will keep open per connection for reuse across borrows.
+    * Statements are evicted least recently used first. This integer defaults
+    * to zero which disables statement caching.
+    */
+   public static final String STATEMENT_CACHE_SIZE = "statement-cache-size";
+
+   /**
+    * When {@code true} a borrower that misses the cache hands the creation of
+    * a new connection to a background task and waits for whichever connection
+    * becomes available first, either one returned by another thread or the
+    * newly created one. This boolean defaults to {@code false} which means
+    * the borrowing thread creates the connection itself.
+    */
+   public static final String ASYNC_CREATE = "async-create";
+
+   /**
+    * The number of connections a pool creates at once while it warms up to
+    * {@code MIN_CONNECTIONS}, whether after a reset, a change to its limits
+    * or the end of an outage. This integer defaults to 4.
+    */
+   public static final String WARM_PARALLELISM = "warm-parallelism";
+
+   /**
+    * The fraction of {@code MIN_CONNECTIONS} which must exist before a
+    * reset, and so a change to the pool's limits, returns. The remaining
+    * connections are created in the background. This decimal between zero
+    * and one defaults to zero which means a reset never waits while one
+    * waits for every minimum connection. A pool's readiness reports when
+    * all of its minimum connections exist regardless.
+    */
+   public static final String WARM_FRACTION = "warm-fraction";
+
+   /**
+    * The number of seconds a pool waits for a connection to answer a test
+    * before it is considered bad. This integer defaults to 2 seconds.
+    */
+   public static final String VALIDATION_TIMEOUT = "validation-timeout";
+
+   /**
+    * The number of idle connections a pool tests at once during its duty
+    * cycle when its test scheme includes idle testing. This integer
+    * defaults to 4.
+    */
+   public static final String VALIDATION_PARALLELISM = "validation-parallelism";
+
+   /**
+    * The number of seconds a duty cycle may spend testing idle connections.
+    * Connections not reached within the budget are tested in the next duty
+    * cycle. This integer defaults to zero which means the duty cycle.
+    */
+   public static final String VALIDATION_BUDGET = "validation-budget";
+
+   /**
+    * The key of the group whose connection budget this pool shares with
+    * the other pools of its registry. This defaults to the name of the
+    * pool's origin which identifies the host it connects to. The group may
+    * not be changed once the pool has opened its first connection.
+    */
+   public static final String POOL_GROUP = "pool-group";
+
+   /**
+    * The number of seconds a connection may be borrowed before the pool
+    * reports it as a possible leak. Leaks are looked for each duty cycle,
+    * logged along with the stack of their borrower and counted. This
+    * integer defaults to zero which disables leak detection.
+    */
+   public static final String LEAK_THRESHOLD = "leak-threshold";
+
+   /**
+    * Record the stack of the borrowing thread on one in this many borrows.
+    * Leaks and connection listings show the recorded stack when there is
+    * one and otherwise the borrowing thread's current stack. This integer
+    * defaults to zero which never records a stack at borrow time.
+    */
+   public static final String LEAK_TRACE = "leak-trace";
+
+   /**
+    * The number of milliseconds after a connection last proved itself alive,
+    * by being created, passing a test or completing a statement, during
+    * which borrowing it skips the test on borrow. This integer defaults to
+    * zero which tests every borrow.
+    */
+   public static final String VALIDATION_WINDOW = "validation-window";
+
 
 
 
-   static final Set<String> VALID_PROPS = Sets.of(MIN_CONNECTIONS, MAX_CONNECTIONS, TEST_SCHEME, MAX_IDLE, MAX_IDLE_TIME, MAX_LIFE_TIME, MAX_WAIT_TIME, DUTY_CYCLE);
+   // factories set properties in this order, the cache type, warm up settings and group must precede the limits which fill the pool
+   static final Set<String> VALID_PROPS = Sets.of(CACHE_TYPE, WARM_PARALLELISM, WARM_FRACTION, POOL_GROUP, MIN_CONNECTIONS, MAX_CONNECTIONS, TEST_SCHEME, MAX_IDLE, MAX_IDLE_TIME, MAX_LIFE_TIME, MAX_WAIT_TIME, DUTY_CYCLE, STATEMENT_CACHE_SIZE, ASYNC_CREATE, VALIDATION_TIMEOUT, VALIDATION_PARALLELISM, VALIDATION_BUDGET, LEAK_THRESHOLD, LEAK_TRACE, VALIDATION_WINDOW);
 
 
    
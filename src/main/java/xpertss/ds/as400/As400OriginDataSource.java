@@ -5,9 +5,8 @@ import com.ibm.as400.access.SocketProperties;
 import xpertss.ds.As400DataSource;
 import xpertss.ds.DataSourceException;
 import xpertss.ds.base.BaseDataSource;
-import xpertss.ds.utils.NumberUtils;
+import xpertss.ds.base.CircuitBreaker;
 import xpertss.ds.utils.StringUtils;
-import xpertss.ds.utils.TimeProvider;
 
 import javax.naming.NamingException;
 import javax.naming.Reference;
@@ -32,11 +31,11 @@ public class As400OriginDataSource extends BaseDataSource<AS400>
 {
    
    private volatile boolean closed = false;
-   private volatile long lastFail = 0;          // not persisted across jndi context storage
+   private final CircuitBreaker breaker = new CircuitBreaker(getClock());   // not persisted across jndi context storage
    
    boolean pooled;
    
-   private long blackout = 30000;
+   private volatile Config config = new Config(this);
    
    
    // Use threads
@@ -55,18 +54,40 @@ public class As400OriginDataSource extends BaseDataSource<AS400>
 
    public boolean isAvailable()
    {
-      return (TimeProvider.get().milliTime() - lastFail > blackout);
+      return breaker.isAvailable();
    }
 
    
+   public String getBreakerState()
+   {
+      return breaker.getState().name();
+   }
+
+   public int getBreakerOpenCount()
+   {
+      return breaker.getOpenCount();
+   }
+
+   public int getBreakerProbeCount()
+   {
+      return breaker.getProbeCount();
+   }
+
+   public int getBreakerCloseCount()
+   {
+      return breaker.getCloseCount();
+   }
+
    public AS400 getConnection() throws DataSourceException
    {
       if(closed) throw new DataSourceException("datasource.closed");
-      if(!isAvailable()) throw new DataSourceException("datasource.unavailable");
+      if(!breaker.allowRequest()) throw new DataSourceException("datasource.unavailable");
       try {
-         return create(getProperty(USERNAME), getProperty(PASSWORD));
+         AS400 conn = create(getProperty(USERNAME), getProperty(PASSWORD));
+         breaker.recordSuccess();
+         return conn;
       } catch (DataSourceException dse) {
-         lastFail = TimeProvider.get().milliTime();
+         breaker.recordFailure(config.blackout);
          throw dse;
       }
    }
@@ -78,20 +99,10 @@ public class As400OriginDataSource extends BaseDataSource<AS400>
    }
 
    
-   public String setProperty(String key, String value)
+   @Override
+   protected void configure()
    {
-      String result = super.setProperty(key, value); 
-      if(BLACKOUT.equals(key)) {
-         blackout = NumberUtils.getLong(getProperty(BLACKOUT), 30) * 1000;
-      }
-      return result;
-   }
-   
-   public String clearProperty(String key)
-   {
-      String result = super.clearProperty(key);
-      if(BLACKOUT.equals(key)) blackout = 30000;
-      return result;
+      config = new Config(this);
    }
    
    
@@ -132,13 +143,14 @@ public class As400OriginDataSource extends BaseDataSource<AS400>
             new OriginAs400(getProperty(HOSTNAME), username, password);
 
 
+      Config config = this.config;
       SocketProperties props = new SocketProperties();
-      props.setLoginTimeout(getPositiveInt(CONNECT_TIMEOUT, 0) * 1000);
+      props.setLoginTimeout(config.connectTimeout);
 
       try {
          conn.setThreadUsed(false);
          conn.setGuiAvailable(false);
-         props.setSoTimeout(getPositiveInt(READ_TIMEOUT, 0) * 1000);
+         props.setSoTimeout(config.readTimeout);
       } catch(PropertyVetoException pve) { /* Ignore */ }
       conn.setSocketProperties(props);
 
@@ -152,6 +164,26 @@ public class As400OriginDataSource extends BaseDataSource<AS400>
 
       return conn;
    }
-   
+
+
+
+   /*
+    * The parsed connection settings, rebuilt whenever a property changes so
+    * availability checks and connection creation never parse strings.
+    */
+   private static final class Config {
+
+      private final long blackout;
+      private final int connectTimeout;
+      private final int readTimeout;
+
+      private Config(As400OriginDataSource source)
+      {
+         blackout = source.getLong(BLACKOUT, 30) * 1000;
+         connectTimeout = source.getPositiveInt(CONNECT_TIMEOUT, 0) * 1000;
+         readTimeout = source.getPositiveInt(READ_TIMEOUT, 0) * 1000;
+      }
+
+   }
    
 }
@@ -2,6 +2,7 @@ package xpertss.ds.as400;
 
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.naming.NamingException;
 import javax.naming.Reference;
@@ -35,6 +36,7 @@ public class As400PoolingDataSource extends BasePoolingDataSource<AS400>
    private final As400OriginDataSource origin;
 
    private volatile int unavailableCount;
+   private final AtomicBoolean outage = new AtomicBoolean();
 
    As400PoolingDataSource(As400OriginDataSource origin)
    {
@@ -65,10 +67,7 @@ public class As400PoolingDataSource extends BasePoolingDataSource<AS400>
    
    
    public AS400 getConnection() throws DataSourceException {
-      if(isAvailable()) {
-         PooledResource<AS400> res = getPooledResource();
-         return ((PooledAs400)res.getResource()).setResource(res);
-      }
+      if(isAvailable()) return issue(getPooledResource());
       throw new DataSourceException("datasource.unavailable");
    }
    
@@ -91,6 +90,26 @@ public class As400PoolingDataSource extends BasePoolingDataSource<AS400>
       return unavailableCount;
    }
 
+   public String getBreakerState()
+   {
+      return origin.getBreakerState();
+   }
+
+   public int getBreakerOpenCount()
+   {
+      return origin.getBreakerOpenCount();
+   }
+
+   public int getBreakerProbeCount()
+   {
+      return origin.getBreakerProbeCount();
+   }
+
+   public int getBreakerCloseCount()
+   {
+      return origin.getBreakerCloseCount();
+   }
+
    
    
    public String[] getProperties()
@@ -111,6 +130,12 @@ public class As400PoolingDataSource extends BasePoolingDataSource<AS400>
    
    
    
+   @Override
+   protected AS400 issue(PooledResource<AS400> res)
+   {
+      return ((PooledAs400)res.getResource()).setResource(res);
+   }
+
    @Override
    protected void closeResource(AS400 resource)
    {
@@ -121,7 +146,10 @@ public class As400PoolingDataSource extends BasePoolingDataSource<AS400>
    protected AS400 createResource() throws DataSourceException
    {
       try {
-         return origin.getConnection();
+         AS400 conn = origin.getConnection();
+         // the outage is over so warm the pool back up in the background
+         if(outage.get() && outage.compareAndSet(true, false)) fill();
+         return conn;
       } catch(DataSourceException e) {
          markUnavailable();
          throw e;
@@ -145,8 +173,11 @@ public class As400PoolingDataSource extends BasePoolingDataSource<AS400>
 
    private void markUnavailable()
    {
-      unavailableCount++;
-      drain();
+      // count and drain once per outage rather than once for each borrower that fails during it
+      if(outage.compareAndSet(false, true)) {
+         unavailableCount++;
+         drain();
+      }
    }
 
    
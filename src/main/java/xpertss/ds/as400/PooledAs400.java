@@ -54,9 +54,11 @@ public class PooledAs400 extends AS400 {
     */
    public void resetAllServices()
    {
+      PooledResource<AS400> res = this.res;
       if(res != null) {
+         // clear before releasing as another thread may borrow this object the moment it is released
+         this.res = null;
          res.close(!isConnected());
-         res = null;
       }
    }
    
@@ -1,28 +1,43 @@
 package xpertss.ds.base;
 
 import xpertss.ds.DataSource;
+import xpertss.ds.utils.Clock;
+import xpertss.ds.utils.Objects;
 
 import javax.naming.Reference;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A base implementation of the {@link xpertss.ds.DataSource} interface
  * which provides base property support.
+ * <p>
+ * Properties are read on every borrow but rarely written so they are held
+ * in a copy on write map. Reads never lock and writes take a lock rather
+ * than a monitor so neither pins a virtual thread to its carrier.
  * 
  * @author cfloersch
  */
 public abstract class BaseDataSource<T> implements DataSource<T> {
    
-   private Map<String,String> props = Collections.synchronizedMap(new LinkedHashMap<String,String>());
+   private final ReentrantLock writeLock = new ReentrantLock();
+   private volatile Map<String,String> props = Collections.emptyMap();
    
+   private final Clock clock;
    private Type type;
    
    protected BaseDataSource(Type type)
+   {
+      this(type, Clock.system());
+   }
+
+   protected BaseDataSource(Type type, Clock clock)
    {
       this.type = type;
+      this.clock = Objects.notNull(clock, "clock may not be null");
    }
    
    /**
@@ -81,7 +96,17 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
    public String setProperty(String key, String value)
    {
       checkKey(key);
-      return props.put(key, value);
+      final ReentrantLock lock = this.writeLock;
+      lock.lock();
+      try {
+         Map<String,String> copy = new LinkedHashMap<String,String>(props);
+         String result = copy.put(key, value);
+         props = copy;
+         configure();
+         return result;
+      } finally {
+         lock.unlock();
+      }
    }
    
    /**
@@ -96,13 +121,25 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
    public String clearProperty(String key)
    {
       checkKey(key);
-      return props.remove(key);
+      final ReentrantLock lock = this.writeLock;
+      lock.lock();
+      try {
+         if(!props.containsKey(key)) return null;
+         Map<String,String> copy = new LinkedHashMap<String,String>(props);
+         String result = copy.remove(key);
+         props = copy;
+         configure();
+         return result;
+      } finally {
+         lock.unlock();
+      }
    }
 
    
    /**
     * Return the properties defined for this {@code DataSource} object as
-    * a read-only set.
+    * a read-only set. The set is a snapshot which does not reflect later
+    * changes.
     * 
     * @return The property set
     */
@@ -147,6 +184,26 @@ public abstract class BaseDataSource<T> implements DataSource<T> {
 
 
 
+   /**
+    * Called whenever a property is set or cleared so subclasses may rebuild
+    * any pre-parsed view of their properties. It is called with the write
+    * lock held, after the change is visible, so successive rebuilds are
+    * published in the order the changes were made. Implementations must
+    * not block.
+    */
+   protected void configure()
+   {
+   }
+
+   /**
+    * Returns the clock this data source was constructed with. Use its
+    * millisecond time for timestamps and its nano time for latencies.
+    */
+   protected Clock getClock()
+   {
+      return clock;
+   }
+
    protected Reference createReference(Class clazz, Class factory)
    {
       return new Reference(clazz.getName(), factory.getName(), null);
@@ -34,6 +34,38 @@ public interface BaseDataSourceMBean {
     */
    public boolean isAvailable();
 
+   /**
+    * Returns the state of the circuit breaker guarding connection attempts
+    * to the backing source. One of Closed, Open or HalfOpen.
+    *
+    * @return The name of the circuit breaker's current state
+    */
+   public String getBreakerState();
+
+   /**
+    * Returns the number of times the circuit breaker has opened either
+    * because the source failed or because a half open probe failed.
+    *
+    * @return The number of times the circuit breaker has opened
+    */
+   public int getBreakerOpenCount();
+
+   /**
+    * Returns the number of probe connections the circuit breaker has let
+    * through while half open.
+    *
+    * @return The number of half open probes attempted
+    */
+   public int getBreakerProbeCount();
+
+   /**
+    * Returns the number of times the circuit breaker has closed again
+    * after a successful probe.
+    *
+    * @return The number of times the circuit breaker has closed
+    */
+   public int getBreakerCloseCount();
+
    
    /**
     * This will return an array of properties and their values as
@@ -1,24 +1,41 @@
 package xpertss.ds.base;
 
+import xpertss.ds.ConnectionCallback;
 import xpertss.ds.DataSource;
 import xpertss.ds.DataSourceException;
 import xpertss.ds.PoolingDataSource;
 import xpertss.ds.concurrent.Condition;
 import xpertss.ds.concurrent.ConditionFactory;
 import xpertss.ds.concurrent.Count;
+import xpertss.ds.concurrent.Histogram;
 import xpertss.ds.concurrent.Ratio;
 import xpertss.ds.concurrent.Stats;
-import xpertss.ds.utils.NumberUtils;
 import xpertss.ds.utils.Objects;
 import xpertss.ds.utils.SystemExecutor;
-import xpertss.ds.utils.TimeProvider;
-import xpertss.ds.utils.Timer;
+import xpertss.ds.utils.TimingWheel;
+import xpertss.ds.utils.Clock;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
@@ -40,13 +57,18 @@ import static java.util.concurrent.TimeUnit.SECONDS;
  * @author cfloersch
  */
 public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> implements PoolingDataSource {
+
+   // longest a borrower waits before checking whether a background create failed
+   private static final long CREATE_CHECK = 250;
+
+   private static final Logger log = Logger.getLogger(BasePoolingDataSource.class.getName());
    
    
-   private volatile long createTime = TimeProvider.get().milliTime();
-   private volatile long lastAccessTime =TimeProvider.get().milliTime();
-   private volatile long lastCleanupTime = TimeProvider.get().milliTime();
+   private volatile long createTime = getClock().millis();
+   private volatile long lastAccessTime = getClock().millis();
+   private volatile long lastCleanupTime = getClock().millis();
 
-   private BlockingPool<T> cache = new BlockingPool<T>();
+   private volatile ResourcePool<T> cache = new BlockingPool<T>();
 
    private Ratio hitRatio = new Ratio();
    private Count counter = new Count();
@@ -55,17 +77,42 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
    private Stats busyTime = new Stats();
    private Stats waitTime = new Stats();
 
+   private Histogram connectTimes = new Histogram();
+   private Histogram busyTimes = new Histogram();
+   private Histogram waitTimes = new Histogram();
+
    private final DataSource origin;
 
    
-   private ScheduledFuture<?> reaper;
+   private TimingWheel.Timeout reaper;
+   private volatile Warmup warmup;
+   private final AtomicInteger warming = new AtomicInteger();  // slots claimed by warm ups still connecting
+   private final AtomicBoolean validating = new AtomicBoolean();  // an idle validation has workers running
+
+   private volatile PoolConfig config = new PoolConfig(this);
+
+   private volatile PoolRegistry registry = PoolRegistry.system();
+   private volatile PoolRegistry.Member member;
+
+
+   // every connection opened and not yet closed, busy or idle
+   private final Set<PooledResource<T>> open =
+      Collections.newSetFromMap(new ConcurrentHashMap<PooledResource<T>,Boolean>());
+   private final AtomicInteger leaks = new AtomicInteger();
 
-   private TestScheme testScheme = TestScheme.Never;
+   private final LongAdder borrowTests = new LongAdder();
+   private final LongAdder borrowTestsSkipped = new LongAdder();
+   private int borrows;    // racy on purpose, it only spaces out stack samples
 
    
    protected BasePoolingDataSource(DataSource origin)
    {
-      super(Type.Pool);
+      this(origin, Clock.system());
+   }
+
+   protected BasePoolingDataSource(DataSource origin, Clock clock)
+   {
+      super(Type.Pool, clock);
       scheduleReaper(60);
       this.origin = Objects.notNull(origin, "origin may not be null");
    }
@@ -84,7 +131,9 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
    
    public String setProperty(String key, String value)
    {
-      if(VALID_PROPS.contains(key)) {
+      if(POOL_GROUP.equals(key)) {
+         return changeGroup(value);
+      } else if(VALID_PROPS.contains(key)) {
          String result = super.setProperty(key, value);
          if(!cache.isShutdown()) {
             if(MIN_CONNECTIONS.equals(key)) {
@@ -92,18 +141,16 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
             } else if(MAX_CONNECTIONS.equals(key)) {
                reset();
             } else if(MAX_IDLE.equals(key)) {
-               cache.setMaxIdle(NumberUtils.getInt(value, 0));
+               cache.setMaxIdle(config.maxIdle);
             } else if(MAX_LIFE_TIME.equals(key)) {
-               cache.setMaxLife(NumberUtils.getInt(value, 0));
+               cache.setMaxLife(config.maxLifeTime);
             } else if(DUTY_CYCLE.equals(key)) {
-               // measured in seconds
-               // (minimum of 5 seconds) Anything less and we spend too much time in reaping
-               scheduleReaper(Math.max(NumberUtils.getInt(value, 60), 5));
-            } else if(TEST_SCHEME.equals(key)) {
+               scheduleReaper(config.dutyCycle);
+            } else if(CACHE_TYPE.equals(key)) {
                try {
-                  testScheme = TestScheme.valueOf(getProperty(TEST_SCHEME));
-               } catch(Exception e) {
-                  testScheme = TestScheme.Never;
+                  setCacheType(CacheType.valueOf(getProperty(CACHE_TYPE)));
+               } catch(IllegalArgumentException e) {
+                  setCacheType(CacheType.Blocking);
                }
             }
          }
@@ -115,7 +162,9 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
    
    public String clearProperty(String key)
    {
-      if(VALID_PROPS.contains(key)) {
+      if(POOL_GROUP.equals(key)) {
+         return changeGroup(null);
+      } else if(VALID_PROPS.contains(key)) {
          String result = super.clearProperty(key);
          if(!cache.isShutdown()) {
             if(MIN_CONNECTIONS.equals(key)) {
@@ -128,8 +177,8 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
                cache.setMaxLife(0);
             } else if(DUTY_CYCLE.equals(key)) {
                scheduleReaper(60);
-            } else if(TEST_SCHEME.equals(key)) {
-               testScheme = TestScheme.Never;
+            } else if(CACHE_TYPE.equals(key)) {
+               setCacheType(CacheType.Blocking);
             }
          }
          return result;
@@ -162,7 +211,9 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
    {
       cache.shutdown();
       drain();
-      if(reaper != null) reaper.cancel(false);
+      if(reaper != null) reaper.cancel();
+      PoolRegistry.Member current = member;
+      if(current != null) current.leave();
    }
 
    
@@ -284,6 +335,50 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
       return waitTime.getMaximum();
    }
 
+   /**
+    * Returns the 50th percentile of the time in milliseconds that requests
+    * had to wait for a connection to be created or returned to the cache.
+    * 
+    * @return 50th percentile cache wait time in milliseconds
+    */
+   public long getP50CacheWait()
+   {
+      return waitTimes.getValueAtPercentile(50D);
+   }
+
+   /**
+    * Returns the 90th percentile of the time in milliseconds that requests
+    * had to wait for a connection to be created or returned to the cache.
+    * 
+    * @return 90th percentile cache wait time in milliseconds
+    */
+   public long getP90CacheWait()
+   {
+      return waitTimes.getValueAtPercentile(90D);
+   }
+
+   /**
+    * Returns the 99th percentile of the time in milliseconds that requests
+    * had to wait for a connection to be created or returned to the cache.
+    * 
+    * @return 99th percentile cache wait time in milliseconds
+    */
+   public long getP99CacheWait()
+   {
+      return waitTimes.getValueAtPercentile(99D);
+   }
+
+   /**
+    * Returns the 99.9th percentile of the time in milliseconds that requests
+    * had to wait for a connection to be created or returned to the cache.
+    * 
+    * @return 99.9th percentile cache wait time in milliseconds
+    */
+   public long getP999CacheWait()
+   {
+      return waitTimes.getValueAtPercentile(99.9D);
+   }
+
    
    /**
     * Returns the number of times that this pool has been marked as
@@ -315,6 +410,50 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
    {
       return connectTime.getMaximum();
    }
+
+   /**
+    * Returns the 50th percentile of the time in milliseconds it took to
+    * establish connections in this data source since it was created.
+    * 
+    * @return 50th percentile connect time in milliseconds
+    */
+   public long getP50ConnectTime()
+   {
+      return connectTimes.getValueAtPercentile(50D);
+   }
+
+   /**
+    * Returns the 90th percentile of the time in milliseconds it took to
+    * establish connections in this data source since it was created.
+    * 
+    * @return 90th percentile connect time in milliseconds
+    */
+   public long getP90ConnectTime()
+   {
+      return connectTimes.getValueAtPercentile(90D);
+   }
+
+   /**
+    * Returns the 99th percentile of the time in milliseconds it took to
+    * establish connections in this data source since it was created.
+    * 
+    * @return 99th percentile connect time in milliseconds
+    */
+   public long getP99ConnectTime()
+   {
+      return connectTimes.getValueAtPercentile(99D);
+   }
+
+   /**
+    * Returns the 99.9th percentile of the time in milliseconds it took to
+    * establish connections in this data source since it was created.
+    * 
+    * @return 99.9th percentile connect time in milliseconds
+    */
+   public long getP999ConnectTime()
+   {
+      return connectTimes.getValueAtPercentile(99.9D);
+   }
    
    
    /**
@@ -343,6 +482,50 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
       return busyTime.getMaximum();
    }
 
+   /**
+    * Returns the 50th percentile of the use time in milliseconds of all
+    * connections in this pool.
+    * 
+    * @return 50th percentile use time in milliseconds
+    */
+   public long getP50UseTime()
+   {
+      return busyTimes.getValueAtPercentile(50D);
+   }
+
+   /**
+    * Returns the 90th percentile of the use time in milliseconds of all
+    * connections in this pool.
+    * 
+    * @return 90th percentile use time in milliseconds
+    */
+   public long getP90UseTime()
+   {
+      return busyTimes.getValueAtPercentile(90D);
+   }
+
+   /**
+    * Returns the 99th percentile of the use time in milliseconds of all
+    * connections in this pool.
+    * 
+    * @return 99th percentile use time in milliseconds
+    */
+   public long getP99UseTime()
+   {
+      return busyTimes.getValueAtPercentile(99D);
+   }
+
+   /**
+    * Returns the 99.9th percentile of the use time in milliseconds of all
+    * connections in this pool.
+    * 
+    * @return 99.9th percentile use time in milliseconds
+    */
+   public long getP999UseTime()
+   {
+      return busyTimes.getValueAtPercentile(99.9D);
+   }
+
    
    /**
     * Returns the date on which this connection pool was created.
@@ -379,14 +562,127 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
    
    /**
     * Reset this pool, flushing all existing connections and refilling
-    * the connections to {@code MIN_CONNECTIONS}. Current connections
-    * that are busy at the time of this call will continue as normal but
-    * will be shutdown upon return to the pool.
+    * the connections to {@code MIN_CONNECTIONS} in the background. The
+    * call waits only until {@code WARM_FRACTION} of them exist, which by
+    * default is not at all. Current connections that are busy at the time
+    * of this call will continue as normal but will be shutdown upon return
+    * to the pool.
     */
    public void reset()
    {
       drain();
-      fill();
+      warm().awaitFraction();
+   }
+
+   /**
+    * Returns {@code true} if all of this pool's {@code MIN_CONNECTIONS}
+    * currently exist, busy or idle.
+    */
+   public boolean isWarm()
+   {
+      return counter.current() - warming.get() >= config.minCount();
+   }
+
+   /**
+    * Returns a future which completes once the most recent warm up has
+    * created all of this pool's {@code MIN_CONNECTIONS}. It completes with
+    * {@code true} if the pool became warm or with {@code false} if the warm
+    * up stopped short, because the backing source became unavailable or the
+    * pool was closed. A warm up is started if this pool has never been
+    * filled.
+    */
+   public Future<Boolean> getReadiness()
+   {
+      Warmup current = warmup;
+      return (current != null) ? current : fill();
+   }
+
+   /**
+    * Wait up to the given time for the most recent warm up to create all of
+    * this pool's {@code MIN_CONNECTIONS}, returning {@code true} if the pool
+    * became warm and {@code false} if the warm up stopped short or the time
+    * ran out.
+    */
+   public boolean awaitReady(long timeout, TimeUnit unit)
+      throws InterruptedException
+   {
+      try {
+         return getReadiness().get(timeout, unit);
+      } catch(ExecutionException e) {
+         return false;
+      } catch(TimeoutException e) {
+         return false;
+      }
+   }
+
+   /**
+    * Set the registry whose connection budgets this pool shares. This must
+    * be set before the pool opens its first connection, when it joins the
+    * registry, and defaults to the system registry.
+    *
+    * @throws IllegalStateException if the pool has already joined a registry
+    */
+   public synchronized void setRegistry(PoolRegistry registry)
+   {
+      if(member != null) throw new IllegalStateException("pool has already joined a registry");
+      this.registry = Objects.notNull(registry, "registry may not be null");
+   }
+
+   /**
+    * Returns the registry whose connection budgets this pool shares.
+    */
+   public PoolRegistry getRegistry()
+   {
+      return registry;
+   }
+
+   /**
+    * Returns the key of the registry group this pool belongs to, either
+    * its {@code POOL_GROUP} property or the name of its origin.
+    */
+   public String getGroup()
+   {
+      String group = getProperty(POOL_GROUP);
+      return (group != null) ? group : getName();
+   }
+
+   /**
+    * Returns the number of connections which have been reported as possible
+    * leaks because they were borrowed for longer than {@code LEAK_THRESHOLD}.
+    */
+   public int getLeakCount()
+   {
+      return leaks.get();
+   }
+
+   /**
+    * Returns the number of times a connection was tested as it was borrowed.
+    */
+   public long getBorrowTestCount()
+   {
+      return borrowTests.sum();
+   }
+
+   /**
+    * Returns the number of times testing a connection as it was borrowed was
+    * skipped because it had proven itself alive within the
+    * {@code VALIDATION_WINDOW}.
+    */
+   public long getBorrowTestSkipCount()
+   {
+      return borrowTestsSkipped.sum();
+   }
+
+   /**
+    * Describe every connection this pool has opened and not yet closed: its
+    * state, age, busy time, borrow count and, if it is busy, the thread which
+    * borrowed it and that thread's stack.
+    */
+   public String[] listConnections()
+   {
+      List<String> result = new ArrayList<String>(open.size());
+      for(PooledResource<T> res : open) result.add(res.describe());
+      return result.toArray(new String[result.size()]);
    }
    
    
@@ -396,15 +692,34 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
     * used to spin in an infinite loop. I have now modified it so that it will
     * only create at most two connections before throwing an exception. Not that
     * it matters as the pool would be completely unusable anyway.
+    *
+    * With async-create enabled a miss submits a Creator and then waits on the
+    * cache like any other borrower, taking whichever connection arrives first.
+    * Only the borrower which submitted a failed create reports the failure, the
+    * other waiters keep waiting for a connection to be returned or created.
+    * The max wait time covers every pass through the loop, not each wait.
     */
    protected PooledResource<T> getPooledResource()
       throws DataSourceException
    {
+      PoolConfig config = this.config;
+      Clock clock = getClock();
       int creates = 0;
-      lastAccessTime = TimeProvider.get().milliTime();
+      Creator creator = null;
+      long timeout = config.maxWaitTime;
+      long slept = 0;
+      long waited = 0;
+      boolean waiting = false;
+      lastAccessTime = clock.millis();
       PooledResource<T> res = null;
       while(!cache.isShutdown() && isAvailable() && res == null) {
-         res = cache.poll();
+         ResourcePool<T> current = cache;
+         try {
+            res = current.poll();
+         } catch(IllegalStateException ise) {
+            // cache was either closed or replaced, the loop condition sorts out which
+            continue;
+         }
          if(res == null) {
             // Nothing pulled from the cache thus we have a miss. Either create a new connection
             // or wait for one to be returned based on max-connections and current active count.
@@ -412,37 +727,77 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
             /* We pre-increment the counter as createResource can take awhile and we want
              * to make sure we don't create more connections than max under concurrency 
              */
-            if(counter.increment(ConditionFactory.lessThan(getIndefiniteInt(MAX_CONNECTIONS)))) {
-               Timer start = Timer.create();
+            boolean create = counter.increment(config.belowMax);
+            boolean denied = create && !claimBudget(true);
+            if(denied) create = false;
+            if(create && config.asyncCreate) {
+               // The creator owns the slot we just claimed and offers its connection to the cache
+               if(creator != null && creator.failure != null) throw creator.failure;
+               SystemExecutor.execute(creator = new Creator(current));
+               creates++;
+               create = false;
+            }
+            if(create) {
+               long start = clock.nanos();
+               T resource;
                try {
-                  res = cache.wrap(this, createResource());
+                  resource = createResource();
                   creates++;
                } catch(DataSourceException e) {
                   // since our connection failed we MUST decrement our counter freeing up the slot
-                  counter.decrement();
+                  freeSlot();
                   throw e;
                }
-               connectTime.record(start.getTime(MILLISECONDS));
+               long connect = clock.elapsed(start, MILLISECONDS);
+               connectTime.record(connect);
+               connectTimes.record(connect);
+               try {
+                  res = wrap(current, resource);
+               } catch(IllegalStateException ise) {
+                  closeResource(resource);
+                  freeSlot();
+                  continue;
+               }
             } else {
-               // We are at max-connections so we must wait for a connection to be returned.
+               // We are at max-connections or creating in the background so we must wait
+               // for a connection to be returned or created.
+               if(!waiting) {
+                  waited = clock.nanos();
+                  waiting = true;
+               }
+               // count the slices we timed out on in case the clock is not advancing
+               long remaining = timeout - Math.max(slept, clock.elapsed(waited, MILLISECONDS));
+               // A background create can fail, or the registry free a connection, before we
+               // start waiting and miss waking us
+               long wait = (config.asyncCreate || denied) ? Math.min(remaining, CREATE_CHECK) : remaining;
                try {
-                  Timer start = Timer.create();
-                  res = cache.poll(getIndefiniteLong(MAX_WAIT_TIME), TimeUnit.MILLISECONDS);
-                  waitTime.record(start.getTime(MILLISECONDS));
+                  res = current.poll(wait, MILLISECONDS);
                } catch(TimeoutException te) {
-                  throw new DataSourceException("pool.exhausted");
+                  if(creator != null && creator.failure != null) throw creator.failure;
+                  if(wait >= remaining) throw new DataSourceException("pool.exhausted");
+                  slept += wait;
+                  continue;
                } catch(IllegalStateException ise) {
-                  throw new DataSourceException("datasource.closed");
+                  // cache was either closed or replaced while we waited
+                  continue;
                } catch(InterruptedException ie) {
                   throw new DataSourceException("thread.interrupted");
                }
+               if(res == null) {
+                  // woken because a background create failed or the registry freed a connection
+                  if(creator != null && creator.failure != null) throw creator.failure;
+                  continue;
+               }
+               long elapsed = clock.elapsed(waited, MILLISECONDS);
+               waitTime.record(elapsed);
+               waitTimes.record(elapsed);
             }
          } else {
             // cache hit positive
             hitRatio.record(true);
          }
          // Constantly check shutdown due to concurrency
-         if(cache.isShutdown() || (testOnBorrow() && !testResource(res.resource))) {   
+         if(cache.isShutdown() || (config.testOnBorrow() && !testOnBorrow(res, config))) {   
             // close connection because we are either shutdown or the test failed
             close(res);
             res = null;
@@ -464,16 +819,45 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
       }
       
       // mark this connection as active for use time tracking
-      return res.activate();
+      return res.activate(sample(config));
    }
    
+   /**
+    * Borrow a connection without blocking the calling thread. The returned
+    * future completes when an idle connection is available, one is returned
+    * by another borrower or a new one is created. It fails if no connection
+    * becomes available within max-wait-time or the pool is closed or
+    * unavailable.
+    * <p>
+    * A pending borrow is queued in the pool and counts toward the wait queue
+    * size. No thread is held while it waits. If a callback is given it is
+    * notified when the future completes or fails. It is not notified if the
+    * future is cancelled.
+    *
+    * @param callback An optional callback to notify on completion
+    * @return A future representing the pending connection
+    */
+   public Future<T> getConnectionAsync(ConnectionCallback<T> callback)
+   {
+      AsyncBorrow borrow = new AsyncBorrow(callback);
+      borrow.start();
+      return borrow;
+   }
+
    protected void returnPooledResource(PooledResource<T> res, boolean error)
    {
+      res.deactivate();
       if(!cache.isShutdown() && !error) {
-         busyTime.record(res.getActiveTime(MILLISECONDS));
-         if(testOnReturn()) {
-            if(testResource(res.resource) && cache.offer(res)) return;
+         long busy = res.getActiveTime(MILLISECONDS);
+         busyTime.record(busy);
+         busyTimes.record(busy);
+         if(config.testOnReturn()) {
+            if(test(res) && cache.offer(res)) {
+               member().idle();
+               return;
+            }
          } else if(cache.offer(res)) {
+            member().idle();
             return;
          }
       }
@@ -482,6 +866,7 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
    
    
    
+   protected abstract T issue(PooledResource<T> res);
    protected abstract T createResource() throws DataSourceException;
    protected abstract boolean testResource(T resource); 
    protected abstract void closeResource(T resource); 
@@ -494,23 +879,27 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
       for(PooledResource<T> res : old) close(res);
    }
    
-   protected void fill()
+   /**
+    * Start bringing the pool up to its minimum connections in the background
+    * returning the readiness of the warm up. A warm up already under way for
+    * the same cache and minimum is joined rather than started again.
+    */
+   protected Future<Boolean> fill()
    {
-      int num_connections = Math.min(getInt(MIN_CONNECTIONS, 0), getIndefiniteInt(MAX_CONNECTIONS));
-      Condition lt = ConditionFactory.lessThan(num_connections);
-      while(!cache.isShutdown() && isAvailable() && counter.increment(lt)) {
-         try {
-            // Don't synchronize on connection creation which is an IO wait operation
-            PooledResource<T> res = cache.wrap(this, createResource());
-            if(!cache.offer(res)) { 
-               // only reason is its shutdown or maxIdle is reached
-               close(res);
-               return;
-            }
-         } catch (DataSourceException e) { 
-            counter.decrement();
-         }
+      return warm();
+   }
+
+   private synchronized Warmup warm()
+   {
+      PoolConfig config = this.config;
+      ResourcePool<T> target = cache;
+      int min = config.minCount();
+      Warmup current = warmup;
+      if(current == null || current.target != target || current.min != min || current.isDone()) {
+         warmup = current = new Warmup(target, min, config.warmCount());
+         current.start(config.warmParallelism);
       }
+      return current;
    }
    
    
@@ -519,26 +908,155 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
    private void close(PooledResource<T> res)
    {
       if(res != null) {
+         open.remove(res);
          closeResource(res.getResource());
-         counter.decrement();
+         freeSlot();
       }
    }
+
+   // test a resource, noting that it is alive if it passes
+   private boolean test(PooledResource<T> res)
+   {
+      if(!testResource(res.resource)) return false;
+      res.markAlive();
+      return true;
+   }
+
+   // test a resource being borrowed unless it proved itself alive within the validation window
+   private boolean testOnBorrow(PooledResource<T> res, PoolConfig config)
+   {
+      if(config.validationWindow > 0 && res.now() - res.getLastAliveTime() <= config.validationWindow) {
+         borrowTestsSkipped.increment();
+         return true;
+      }
+      borrowTests.increment();
+      return test(res);
+   }
+
+   private PooledResource<T> wrap(ResourcePool<T> target, T resource)
+   {
+      PooledResource<T> res = target.wrap(this, resource);
+      open.add(res);
+      return res;
+   }
+
+   // the stack of the borrowing thread on one in leak-trace borrows
+   private Throwable sample(PoolConfig config)
+   {
+      int rate = config.leakTrace;
+      if(rate <= 0 || (rate > 1 && ++borrows % rate != 0)) return null;
+      return new Throwable("borrowed by " + Thread.currentThread().getName());
+   }
+
+   /*
+    * Report each connection borrowed for longer than the leak threshold once
+    * per borrow, returning the number of new leaks found.
+    */
+   int detectLeaks()
+   {
+      int threshold = config.leakThreshold;
+      if(threshold <= 0) return 0;
+      int found = 0;
+      for(PooledResource<T> res : open) {
+         if(res.isBusy() && !res.leaked && res.getActiveTime(SECONDS) >= threshold) {
+            res.leaked = true;
+            found++;
+            leaks.incrementAndGet();
+            if(log.isLoggable(Level.WARNING)) {
+               log.log(Level.WARNING, "Possible connection leak in " + getName() + ": borrowed by " +
+                                       res.getBorrower() + " for " + res.getActiveTime(SECONDS) +
+                                       " seconds", res.getBorrowTrace());
+            }
+         }
+      }
+      return found;
+   }
+
+   /*
+    * Claim a connection from the registry for a slot already claimed in the
+    * counter, giving the slot back if the registry's budgets are spent.
+    * Borrowers may take idle capacity from cold pools, warm ups may not.
+    */
+   private boolean claimBudget(boolean borrow)
+   {
+      if(member().acquire(borrow)) return true;
+      counter.decrement();
+      return false;
+   }
+
+   private void freeSlot()
+   {
+      counter.decrement();
+      member().release();
+   }
+
+   private PoolRegistry.Member member()
+   {
+      PoolRegistry.Member current = member;
+      return (current != null) ? current : join();
+   }
+
+   private synchronized PoolRegistry.Member join()
+   {
+      if(member == null) member = registry.register(this, getGroup());
+      return member;
+   }
+
+   // the group is fixed once joined as the connections held are counted against it
+   private synchronized String changeGroup(String group)
+   {
+      if(member != null && !getGroup().equals((group != null) ? group : getName())) {
+         throw new IllegalStateException("pool has already joined its group");
+      }
+      return (group != null) ? super.setProperty(POOL_GROUP, group) : super.clearProperty(POOL_GROUP);
+   }
+
+   /*
+    * Close one idle connection to make room in the registry for another
+    * pool. Returns false if there was nothing idle to close.
+    */
+   boolean shed()
+   {
+      PooledResource<T> res;
+      try {
+         res = cache.poll();
+      } catch(IllegalStateException ise) {
+         return false;
+      }
+      close(res);
+      return res != null;
+   }
+
+   void wakeup()
+   {
+      cache.wakeup();
+   }
+
+   long getLastAccessTime()
+   {
+      return lastAccessTime;
+   }
    
    
    
-   private boolean testOnBorrow()
+   @Override
+   protected void configure()
    {
-      return (testScheme == TestScheme.Always || testScheme == TestScheme.Borrow);
+      config = new PoolConfig(this);
    }
-   
-   private boolean testOnIdle()
+
+   PoolConfig getConfig()
    {
-      return (testScheme == TestScheme.Always || testScheme == TestScheme.Idle);
+      return config;
    }
-   
-   private boolean testOnReturn()
+
+   /**
+    * Returns the number of seconds a test of a connection may take before
+    * the connection is considered bad.
+    */
+   protected int getValidationTimeout()
    {
-      return (testScheme == TestScheme.Always || testScheme == TestScheme.Return);
+      return config.validationTimeout;
    }
    
    
@@ -548,50 +1066,563 @@ public abstract class BasePoolingDataSource<T> extends BaseDataSource<T> impleme
    
    
 
+   /*
+    * Replace the cache with one of the given type. Idle connections in the old
+    * cache are closed and busy connections will be rejected when they are
+    * returned as the replacement starts out at a newer version.
+    */
+   private void setCacheType(CacheType type)
+   {
+      ResourcePool<T> current = replaceCache(type);
+      if(current != null) {
+         current.shutdown();
+         for(PooledResource<T> res : current.drain()) close(res);
+         warm().awaitFraction();
+      }
+   }
+
+   private synchronized ResourcePool<T> replaceCache(CacheType type)
+   {
+      ResourcePool<T> current = cache;
+      if(type == CacheType.Concurrent && current instanceof ConcurrentPool) return null;
+      if(current instanceof BlockingPool) {
+         boolean handoff = ((BlockingPool<T>) current).isHandoff();
+         if(type == CacheType.Blocking && !handoff) return null;
+         if(type == CacheType.Handoff && handoff) return null;
+      }
+
+      int version = current.getVersion() + 1;
+      ResourcePool<T> replacement = (type == CacheType.Concurrent) ?
+                                       new ConcurrentPool<T>(version) :
+                                       new BlockingPool<T>(version, type == CacheType.Handoff);
+      replacement.setMaxIdle(config.maxIdle);
+      replacement.setMaxLife(config.maxLifeTime);
+      cache = replacement;
+      return current;
+   }
+
    private void scheduleReaper(int seconds)
    {
-      if(reaper != null) reaper.cancel(false);
-      reaper = SystemExecutor.scheduleAtFixedRate(new Reaper(), seconds, seconds, SECONDS);
+      if(reaper != null) reaper.cancel();
+      reaper = TimingWheel.housekeeping().schedulePeriodic(new Reaper(), seconds, SECONDS);
    }
 
 
 
 
 
-   private class Reaper implements Runnable {
+   /*
+    * Creates a connection on behalf of a borrower which has already claimed a
+    * slot in the counter. The connection is offered to the cache where it goes
+    * to the first waiting borrower. If the create fails the waiters are woken
+    * so the borrower which submitted it may report the failure rather than
+    * wait out its timeout.
+    */
+   private class Creator implements Runnable {
+
+      private final ResourcePool<T> target;
+      private volatile DataSourceException failure;
+
+      private Creator(ResourcePool<T> target)
+      {
+         this.target = target;
+      }
 
       public void run()
       {
-         lastCleanupTime = TimeProvider.get().milliTime();
-         
-         int count = 0;
+         long start = getClock().nanos();
+         T resource;
+         try {
+            resource = createResource();
+         } catch(DataSourceException e) {
+            failed(e);
+            return;
+         } catch(RuntimeException e) {
+            failed(new DataSourceException("connect.failed", e));
+            return;
+         }
+         long connect = getClock().elapsed(start, MILLISECONDS);
+         connectTime.record(connect);
+         connectTimes.record(connect);
+         try {
+            PooledResource<T> res = wrap(target, resource);
+            if(target.offer(res)) {
+               member().idle();
+            } else {
+               close(res);
+            }
+         } catch(IllegalStateException ise) {
+            closeResource(resource);
+            freeSlot();
+         }
+      }
+
+      private void failed(DataSourceException e)
+      {
+         // since our connection failed we MUST decrement our counter freeing up the slot
+         freeSlot();
+         failure = e;
+         target.wakeup();
+      }
+
+   }
+
+
+   /*
+    * A borrow which waits in the cache's wait queue rather than on a thread.
+    * Whoever moves the state from WAITING owns the borrow: a delivery, a
+    * release, the timeout or a cancel. Deliveries and releases happen under
+    * the cache's lock so the follow up work is dispatched to the executor.
+    */
+   private class AsyncBorrow implements ResourceWaiter<T>, Future<T> {
+
+      private static final int WAITING = 0;
+      private static final int CLAIMED = 1;
+      private static final int DONE = 2;
+      private static final int CANCELLED = 3;
+
+      private final AtomicInteger state = new AtomicInteger(CLAIMED);
+      private final CountDownLatch done = new CountDownLatch(1);
+      private final ConnectionCallback<T> callback;
+
+      private volatile ResourcePool<T> queue;
+      private volatile ScheduledFuture<?> timer;
+      private volatile boolean expired;
+      private volatile T result;
+      private volatile DataSourceException failure;
+
+      private long waited;
+      private boolean waiting;
+      private int creates;
+      private Creator creator;
+
+      private AsyncBorrow(ConnectionCallback<T> callback)
+      {
+         this.callback = callback;
+      }
+
+      private void start()
+      {
+         lastAccessTime = getClock().millis();
+         long timeout = config.maxWaitTime;
+         if(timeout != Long.MAX_VALUE) {
+            timer = SystemExecutor.schedule(new Runnable() {
+               public void run() { expire(); }
+            }, timeout, MILLISECONDS);
+         }
+         attempt();
+      }
 
-         int maxIdleTime = getInt(MAX_IDLE_TIME, 0);
-         Collection<PooledResource<T>> purged = cache.purge(maxIdleTime);
-         for(PooledResource<T> res : purged) {
+      // Only called by the owner of a CLAIMED borrow
+      private void attempt()
+      {
+         for(;;) {
+            if(cache.isShutdown()) {
+               fail(new DataSourceException("datasource.closed"));
+            } else if(!isAvailable()) {
+               fail(new DataSourceException("datasource.unavailable"));
+            } else if(creator != null && creator.failure != null) {
+               fail(creator.failure);
+            } else if(expired) {
+               fail(new DataSourceException("pool.exhausted"));
+            } else {
+               ResourcePool<T> current = cache;
+               PooledResource<T> res;
+               try {
+                  res = current.poll();
+               } catch(IllegalStateException ise) {
+                  continue;
+               }
+               if(res != null) {
+                  hitRatio.record(true);
+                  if(!take(res)) continue;
+                  return;
+               }
+               hitRatio.record(false);
+               boolean denied = false;
+               if(counter.increment(config.belowMax)) {
+                  if(claimBudget(true)) {
+                     SystemExecutor.execute(creator = new Creator(current));
+                     creates++;
+                  } else {
+                     denied = true;
+                  }
+               }
+               if(!waiting) {
+                  waited = getClock().nanos();
+                  waiting = true;
+               }
+               queue = current;
+               state.set(WAITING);
+               try {
+                  current.enqueue(this);
+               } catch(IllegalStateException ise) {
+                  // cache was either closed or replaced, the next pass sorts out which
+                  if(state.compareAndSet(WAITING, CLAIMED)) continue;
+                  return;
+               }
+               // the timer may have fired before we were queued
+               if(expired && state.compareAndSet(WAITING, CLAIMED)) {
+                  current.cancel(this);
+                  fail(new DataSourceException("pool.exhausted"));
+               } else if(denied && !member().isStarved()) {
+                  // the registry freed a connection before we were queued
+                  current.wakeup();
+               }
+            }
+            return;
+         }
+      }
+
+      /*
+       * Complete the borrow with the given resource unless it fails the borrow
+       * checks. Returns false if the resource was discarded and the borrow
+       * should try again.
+       */
+      private boolean take(PooledResource<T> res)
+      {
+         if(cache.isShutdown() || (config.testOnBorrow() && !testOnBorrow(res, config))) {
             close(res);
-            count++;
+            if(creates > 2) {
+               fail(new DataSourceException("datasource.unavailable"));
+               return true;
+            }
+            return false;
          }
-         
-         if(testOnIdle()) {
-            Collection<PooledResource<T>> resources = cache.copy();
-            for(PooledResource<T> res : resources) {
-               if(cache.isShutdown()) break;
-               if(cache.remove(res)) {
+         if(waiting) {
+            long wait = getClock().elapsed(waited, MILLISECONDS);
+            waitTime.record(wait);
+            waitTimes.record(wait);
+         }
+         result = issue(res.activate(sample(config)));
+         finish(DONE);
+         if(callback != null) callback.completed(result);
+         return true;
+      }
+
+      private void fail(DataSourceException e)
+      {
+         failure = e;
+         finish(DONE);
+         if(callback != null) callback.failed(e);
+      }
+
+      private void finish(int outcome)
+      {
+         state.set(outcome);
+         ScheduledFuture<?> timer = this.timer;
+         if(timer != null) timer.cancel(false);
+         done.countDown();
+      }
+
+      private void expire()
+      {
+         expired = true;
+         if(state.compareAndSet(WAITING, CLAIMED)) {
+            queue.cancel(this);
+            fail(new DataSourceException("pool.exhausted"));
+         }
+      }
+
+
+
+      public boolean deliver(final PooledResource<T> res)
+      {
+         if(!state.compareAndSet(WAITING, CLAIMED)) return false;
+         SystemExecutor.execute(new Runnable() {
+            public void run() {
+               if(!take(res)) attempt();
+            }
+         });
+         return true;
+      }
+
+      public void release(boolean shutdown)
+      {
+         if(state.compareAndSet(WAITING, CLAIMED)) {
+            SystemExecutor.execute(new Runnable() {
+               public void run() { attempt(); }
+            });
+         }
+      }
+
+
+
+      public boolean cancel(boolean mayInterruptIfRunning)
+      {
+         if(!state.compareAndSet(WAITING, CANCELLED)) return false;
+         queue.cancel(this);
+         finish(CANCELLED);
+         return true;
+      }
+
+      public boolean isCancelled()
+      {
+         return state.get() == CANCELLED;
+      }
+
+      public boolean isDone()
+      {
+         return done.getCount() == 0;
+      }
+
+      public T get()
+         throws InterruptedException, ExecutionException
+      {
+         done.await();
+         return report();
+      }
+
+      public T get(long timeout, TimeUnit unit)
+         throws InterruptedException, ExecutionException, TimeoutException
+      {
+         if(!done.await(timeout, unit)) throw new TimeoutException();
+         return report();
+      }
+
+      private T report()
+         throws ExecutionException
+      {
+         if(state.get() == CANCELLED) throw new CancellationException();
+         if(failure != null) throw new ExecutionException(failure);
+         return result;
+      }
+
+   }
+
+
+   /*
+    * Brings the pool up to its minimum connections with up to warm-parallelism
+    * workers creating connections at once, each claiming its slot before it
+    * connects. Slots are claimed against the current minimum so the workers of
+    * a warm up which has been replaced respect the new limits. A worker stops
+    * at the first failure since the backing source is unavailable for its
+    * blackout, the reaper or the end of the outage starts the next warm up.
+    * The readiness completes once the warm count exists or every worker has
+    * stopped.
+    */
+   private class Warmup implements Runnable, Future<Boolean> {
+
+      private final CountDownLatch done = new CountDownLatch(1);
+      private final CountDownLatch reached = new CountDownLatch(1);   // WARM_FRACTION exists, releases a reset
+      private final AtomicInteger workers = new AtomicInteger();
+      private final ResourcePool<T> target;
+      private final int min;
+      private final int required;
+
+      private volatile boolean warm;
+
+      private Warmup(ResourcePool<T> target, int min, int required)
+      {
+         this.target = target;
+         this.min = min;
+         this.required = required;
+      }
+
+      private void start(int parallelism)
+      {
+         int count = Math.min(parallelism, min - counter.current());
+         if(count > 0) {
+            workers.set(count);
+            for(int i = 0; i < count; i++) SystemExecutor.execute(this);
+         }
+         if(count <= 0 || created() >= min) complete();
+         else if(created() >= required) reached.countDown();
+      }
+
+      public void run()
+      {
+         try {
+            while(!target.isShutdown() && isAvailable()) {
+               // pending before claiming so a claimed slot is never counted as a connection
+               warming.incrementAndGet();
+               try {
+                  if(!counter.increment(config.belowMin) || !claimBudget(false) || !create()) return;
+               } finally {
+                  warming.decrementAndGet();
+               }
+               if(created() >= required) reached.countDown();
+               if(created() >= min) complete();
+            }
+         } finally {
+            if(workers.decrementAndGet() == 0) complete();
+         }
+      }
+
+      private boolean create()
+      {
+         long start = getClock().nanos();
+         T resource;
+         try {
+            // Don't synchronize on connection creation which is an IO wait operation
+            resource = createResource();
+         } catch(DataSourceException e) {
+            freeSlot();
+            return false;
+         } catch(RuntimeException e) {
+            freeSlot();
+            return false;
+         }
+         long connect = getClock().elapsed(start, MILLISECONDS);
+         connectTime.record(connect);
+         connectTimes.record(connect);
+         try {
+            PooledResource<T> res = wrap(target, resource);
+            if(target.offer(res)) {
+               member().idle();
+               return true;
+            }
+            // only reason is its shutdown or maxIdle is reached
+            close(res);
+         } catch(IllegalStateException ise) {
+            closeResource(resource);
+            freeSlot();
+         }
+         return false;
+      }
+
+      // a reset waits for WARM_FRACTION of the minimum or for the warm up to stop short
+      private void awaitFraction()
+      {
+         try {
+            reached.await();
+         } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }
+      }
+
+      private void complete()
+      {
+         // warm is only ever set so a worker stopping late cannot undo it
+         if(created() >= min) warm = true;
+         reached.countDown();
+         done.countDown();
+      }
+
+      // slots claimed by workers still connecting don't count as connections yet
+      private int created()
+      {
+         return counter.current() - warming.get();
+      }
+
+
+
+      public boolean cancel(boolean mayInterruptIfRunning)
+      {
+         return false;
+      }
+
+      public boolean isCancelled()
+      {
+         return false;
+      }
+
+      public boolean isDone()
+      {
+         return done.getCount() == 0;
+      }
+
+      public Boolean get()
+         throws InterruptedException
+      {
+         done.await();
+         return warm;
+      }
+
+      public Boolean get(long timeout, TimeUnit unit)
+         throws InterruptedException, TimeoutException
+      {
+         if(!done.await(timeout, unit)) throw new TimeoutException();
+         return warm;
+      }
+
+   }
+
+
+   /*
+    * Tests the idle connections found by a duty cycle on up to
+    * validation-parallelism workers of the system executor. Each connection
+    * stays in the cache, and so remains borrowable, until a worker takes it
+    * out to test it. Workers stop taking connections once the budget is
+    * spent, leaving the rest for the next duty cycle, and the last one to
+    * finish refills the pool. Tests block on the network so they never run on
+    * the housekeeping workers, where a pool behind a dead link would stall the
+    * reapers of every other pool. A duty cycle which finds the previous
+    * validation still running leaves it to finish.
+    */
+   private class Validation implements Runnable {
+
+      private final Queue<PooledResource<T>> untested;
+      private final AtomicInteger workers = new AtomicInteger();
+      private final ResourcePool<T> target;
+      private final long deadline;
+
+      private Validation(ResourcePool<T> target, PoolConfig config)
+      {
+         this.target = target;
+         this.untested = new ConcurrentLinkedQueue<PooledResource<T>>(target.copy());
+         this.deadline = getClock().millis() + SECONDS.toMillis(config.validationBudget);
+      }
+
+      private void start(int parallelism)
+      {
+         int count = Math.min(Math.max(parallelism, 1), untested.size());
+         if(count > 0) {
+            workers.set(count);
+            for(int i = 0; i < count; i++) SystemExecutor.execute(this);
+         } else {
+            finish();
+         }
+      }
+
+      public void run()
+      {
+         try {
+            PooledResource<T> res;
+            while(!target.isShutdown() && getClock().millis() < deadline && (res = untested.poll()) != null) {
+               if(target.remove(res)) {
                   // item was still in cache and thus not checked out
-                  if(!testResource(res.resource) || !cache.offer(res)) {
+                  if(test(res) && target.offer(res)) {
+                     member().idle();
+                  } else {
                      // cache can reject a connection if the maxIdle has been changed
                      // or the connection has reached maxIdleLife while this was running
                      close(res);
-                     count++;
                   }
                }
             }
+         } finally {
+            if(workers.decrementAndGet() == 0) finish();
          }
-         
+      }
+
+      private void finish()
+      {
+         validating.set(false);
          fill();
       }
 
    }
 
+
+   private class Reaper implements Runnable {
+
+      public void run()
+      {
+         lastCleanupTime = getClock().millis();
+         detectLeaks();
+         
+         PoolConfig config = BasePoolingDataSource.this.config;
+         Collection<PooledResource<T>> purged = cache.purge(config.maxIdleTime);
+         for(PooledResource<T> res : purged) close(res);
+         
+         if(config.testOnIdle() && !cache.isShutdown()) {
+            if(validating.compareAndSet(false, true)) new Validation(cache, config).start(config.validationParallelism);
+         } else {
+            fill();
+         }
+      }
+
+   }
+
 }
@@ -94,6 +94,38 @@ public interface BasePoolingDataSourceMBean extends BaseDataSourceMBean {
     */
    public long getMaxCacheWait();
 
+   /**
+    * Returns the 50th percentile of the time in milliseconds that requests
+    * had to wait for a connection to be created or returned to the cache.
+    * 
+    * @return 50th percentile cache wait time in milliseconds
+    */
+   public long getP50CacheWait();
+
+   /**
+    * Returns the 90th percentile of the time in milliseconds that requests
+    * had to wait for a connection to be created or returned to the cache.
+    * 
+    * @return 90th percentile cache wait time in milliseconds
+    */
+   public long getP90CacheWait();
+
+   /**
+    * Returns the 99th percentile of the time in milliseconds that requests
+    * had to wait for a connection to be created or returned to the cache.
+    * 
+    * @return 99th percentile cache wait time in milliseconds
+    */
+   public long getP99CacheWait();
+
+   /**
+    * Returns the 99.9th percentile of the time in milliseconds that requests
+    * had to wait for a connection to be created or returned to the cache.
+    * 
+    * @return 99.9th percentile cache wait time in milliseconds
+    */
+   public long getP999CacheWait();
+
    
    
    /**
@@ -121,6 +153,38 @@ public interface BasePoolingDataSourceMBean extends BaseDataSourceMBean {
     * @return Maximum number of milliseconds for connect time
     */
    public long getMaxConnectTime();
+
+   /**
+    * Returns the 50th percentile of the time in milliseconds it took to
+    * establish connections in this data source since it was created.
+    * 
+    * @return 50th percentile connect time in milliseconds
+    */
+   public long getP50ConnectTime();
+
+   /**
+    * Returns the 90th percentile of the time in milliseconds it took to
+    * establish connections in this data source since it was created.
+    * 
+    * @return 90th percentile connect time in milliseconds
+    */
+   public long getP90ConnectTime();
+
+   /**
+    * Returns the 99th percentile of the time in milliseconds it took to
+    * establish connections in this data source since it was created.
+    * 
+    * @return 99th percentile connect time in milliseconds
+    */
+   public long getP99ConnectTime();
+
+   /**
+    * Returns the 99.9th percentile of the time in milliseconds it took to
+    * establish connections in this data source since it was created.
+    * 
+    * @return 99.9th percentile connect time in milliseconds
+    */
+   public long getP999ConnectTime();
    
 
    
@@ -143,6 +207,38 @@ public interface BasePoolingDataSourceMBean extends BaseDataSourceMBean {
     * @return The maximum use time in milliseconds
     */
    public long getMaxUseTime();
+
+   /**
+    * Returns the 50th percentile of the use time in milliseconds of all
+    * connections in this pool.
+    * 
+    * @return 50th percentile use time in milliseconds
+    */
+   public long getP50UseTime();
+
+   /**
+    * Returns the 90th percentile of the use time in milliseconds of all
+    * connections in this pool.
+    * 
+    * @return 90th percentile use time in milliseconds
+    */
+   public long getP90UseTime();
+
+   /**
+    * Returns the 99th percentile of the use time in milliseconds of all
+    * connections in this pool.
+    * 
+    * @return 99th percentile use time in milliseconds
+    */
+   public long getP99UseTime();
+
+   /**
+    * Returns the 99.9th percentile of the use time in milliseconds of all
+    * connections in this pool.
+    * 
+    * @return 99.9th percentile use time in milliseconds
+    */
+   public long getP999UseTime();
    
    
    
@@ -167,6 +263,44 @@ public interface BasePoolingDataSourceMBean extends BaseDataSourceMBean {
     */
    public Date getLastCleanupDate();
 
+   /**
+    * Returns {@code true} if all of the pool's {@code MIN_CONNECTIONS}
+    * currently exist.
+    */
+   public boolean isWarm();
+
+   /**
+    * Returns the key of the registry group whose connection budget the
+    * pool shares.
+    */
+   public String getGroup();
+
+   /**
+    * Returns the number of connections reported as possible leaks because
+    * they were borrowed for longer than {@code LEAK_THRESHOLD} seconds.
+    */
+   public int getLeakCount();
+
+   /**
+    * Returns the number of times the pool tested a connection as it was
+    * borrowed.
+    */
+   public long getBorrowTestCount();
+
+   /**
+    * Returns the number of borrows which skipped testing the connection
+    * because it had proven itself alive within {@code VALIDATION_WINDOW}
+    * milliseconds.
+    */
+   public long getBorrowTestSkipCount();
+
+   /**
+    * Lists every connection the pool has opened and not yet closed with its
+    * state (busy or idle), age, busy time, borrow count and, for busy
+    * connections, the borrowing thread and its stack.
+    */
+   public String[] listConnections();
+
    
    /**
     * Reset this pool, flushing all existing connections and refilling
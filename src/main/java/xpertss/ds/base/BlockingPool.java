@@ -1,26 +1,39 @@
 package xpertss.ds.base;
 
+import java.util.ArrayDeque;
 import java.util.Collection;
-import java.util.Iterator;
+import java.util.Collections;
 import java.util.LinkedHashSet;
-import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
 import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * A blocking pool is similar to a blocking priority queue with a few modifications made
  * to allow for the implementation of a highly concurrent connection pool.
  * <p>
- * About the only thing left to do is to make this sucker reject items that are already
- * pooled. Thus preventing the same connection object from being accidentally pooled
- * twice.
+ * Idle items are held in a list linked through the items themselves and ordered by
+ * their last use, least recently used at the head. Returned items are usually among
+ * the most recently used so finding their place is a short walk back from the tail.
+ * Items idle too long are purged from the head and any item can be removed without a
+ * search, so maintenance holds the lock for the work it does rather than the size
+ * of the pool. An item which is already pooled is rejected.
+ * <p>
+ * In handoff mode a thread which must wait for an item queues a slot of its own and
+ * parks. An offered item is placed directly into the slot of the longest waiting
+ * thread rather than the queue, so a woken waiter never has to retake the lock and
+ * race threads which arrived after it.
+ * <p>
+ * Waiters queued with {@link #enqueue(ResourceWaiter)} share the same queue in either
+ * mode and are handed items ahead of threads blocked in a poll when not in handoff
+ * mode.
  * 
  * @author cfloersch
  */
-public class BlockingPool<T> {
+public class BlockingPool<T> implements ResourcePool<T> {
 
    // Definitely better with fairness turned off
    // Need to find a faster means as this sucker accounts for a good amount of my time
@@ -28,17 +41,43 @@ public class BlockingPool<T> {
    private final ReentrantLock lock = new ReentrantLock(false);
    private final Condition notEmpty = lock.newCondition();
 
-   private final PriorityQueue<PooledResource<T>> q;
+   private PooledResource<T> head;     // least recently used
+   private PooledResource<T> tail;
+   private int count;
+   private long oldest = Long.MAX_VALUE;  // no later than the creation of any idle item
+   private final ArrayDeque<ResourceWaiter<T>> waiters = new ArrayDeque<ResourceWaiter<T>>();
+   private final boolean handoff;
 
    private int maxIdle = Integer.MAX_VALUE;
    private int maxLife = 0;
    private int version;
+   private int wakeups;
    
    private volatile boolean shutdown;
 
    public BlockingPool()
    {
-      q = new PriorityQueue<PooledResource<T>>();
+      this(0);
+   }
+
+   public BlockingPool(int version)
+   {
+      this(version, false);
+   }
+
+   public BlockingPool(int version, boolean handoff)
+   {
+      this.handoff = handoff;
+      this.version = version;
+   }
+
+   /**
+    * Returns true if this pool hands offered items directly to waiting
+    * threads.
+    */
+   public boolean isHandoff()
+   {
+      return handoff;
    }
 
    public void setMaxIdle(int maxIdle)
@@ -61,6 +100,11 @@ public class BlockingPool<T> {
       return maxLife;
    }
 
+   public int getVersion()
+   {
+      return version;
+   }
+
    /**
     * Helper method which will wrap a given connection in a PooledResource 
     * object. The PooledResource object includes meta data specific to the 
@@ -88,6 +132,9 @@ public class BlockingPool<T> {
     * will enqueue it at the end of the queue and return true. Otherwise, 
     * it will not enqueue and it will return false. It is expected that
     * items not accepted will be discarded appropriately by the caller.
+    * <p>
+    * An acceptable item is given to the longest queued waiter if there is
+    * one, regardless of max idle.
     */
    public boolean offer(PooledResource<T> o)
    {
@@ -95,8 +142,13 @@ public class BlockingPool<T> {
       final ReentrantLock lock = this.lock;
       lock.lock();
       try {
-         if(!shutdown && !o.shouldClose(version, maxLife) && maxIdle - q.size() > 0) {
-            q.offer(o);
+         if(shutdown || o.owner == this || o.shouldClose(version, maxLife)) return false;
+         ResourceWaiter<T> w;
+         while((w = waiters.poll()) != null) {
+            if(w.deliver(o)) return true;
+         }
+         if(maxIdle - count > 0) {
+            link(o);
             notEmpty.signal();
             return true;
          }
@@ -120,7 +172,7 @@ public class BlockingPool<T> {
       lock.lock();
       try {
          if(shutdown) throw new IllegalStateException();
-         return q.poll();
+         return unlink(head);
       } finally {
          lock.unlock();
       }
@@ -133,7 +185,8 @@ public class BlockingPool<T> {
     * is reached. It will throw an InterruptedException if the blocked 
     * thread was interrupted. It will throw an IllegalStateException if 
     * the blocking operation was caneled because the pool was shut down 
-    * or if a call is made to a shutdown pool.
+    * or if a call is made to a shutdown pool. It will return null if
+    * the wait was cut short by a call to wakeup.
     */
    public PooledResource<T> poll(long timeout, TimeUnit unit) 
       throws InterruptedException, TimeoutException
@@ -141,12 +194,20 @@ public class BlockingPool<T> {
       long nanos = unit.toNanos(timeout);
       final ReentrantLock lock = this.lock;
       lock.lockInterruptibly();
+      Waiter<T> w;
       try {
+         final int epoch = wakeups;
          for (;;) {
             if(shutdown) throw new IllegalStateException();
-            PooledResource<T> x = q.poll();
+            PooledResource<T> x = unlink(head);
             if (x != null) return x;
+            if (epoch != wakeups) return null;
             if (nanos <= 0) throw new TimeoutException();
+            if (handoff) {
+               w = new Waiter<T>(Thread.currentThread());
+               waiters.offer(w);
+               break;
+            }
             try {
                nanos = notEmpty.awaitNanos(nanos);
             } catch (InterruptedException ie) {
@@ -157,6 +218,46 @@ public class BlockingPool<T> {
       } finally {
          lock.unlock();
       }
+      return await(w, nanos);
+   }
+
+   /**
+    * Queue the given waiter to be handed the next available item without
+    * blocking the calling thread. If an item is idle it is delivered before
+    * this returns. This will throw an IllegalStateException if the pool has
+    * been shutdown.
+    */
+   public void enqueue(ResourceWaiter<T> waiter)
+   {
+      if(waiter == null) throw new NullPointerException();
+      final ReentrantLock lock = this.lock;
+      lock.lock();
+      try {
+         if(shutdown) throw new IllegalStateException();
+         PooledResource<T> x = head;
+         if(x == null) {
+            waiters.offer(waiter);
+         } else if(waiter.deliver(x)) {
+            unlink(x);
+         }
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Remove a waiter from the wait queue. Returns true if the waiter was
+    * still queued and has therefore not been and will not be notified.
+    */
+   public boolean cancel(ResourceWaiter<T> waiter)
+   {
+      final ReentrantLock lock = this.lock;
+      lock.lock();
+      try {
+         return waiters.remove(waiter);
+      } finally {
+         lock.unlock();
+      }
    }
 
    /**
@@ -167,7 +268,7 @@ public class BlockingPool<T> {
       final ReentrantLock lock = this.lock;
       lock.lock();
       try {
-         return q.size();
+         return count;
       } finally {
          lock.unlock();
       }
@@ -182,7 +283,7 @@ public class BlockingPool<T> {
       final ReentrantLock lock = this.lock;
       lock.lock();
       try {
-         return q.remove(o);
+         return unlink(o) != null;
       } finally {
          lock.unlock();
       }
@@ -197,7 +298,7 @@ public class BlockingPool<T> {
       final ReentrantLock lock = this.lock;
       lock.lock();
       try {
-         return q.contains(o);
+         return o.owner == this;
       } finally {
          lock.unlock();
       }
@@ -214,17 +315,17 @@ public class BlockingPool<T> {
     */
    public Collection<PooledResource<T>> drain()
    {
-      Set<PooledResource<T>> result = new LinkedHashSet<PooledResource<T>>();
+      Set<PooledResource<T>> result = null;
       final ReentrantLock lock = this.lock;
       lock.lock();
       version++;
       try {
          PooledResource<T> e;
-         while ( (e = q.poll()) != null) result.add(e);
+         while ( (e = unlink(head)) != null) result = add(result, e);
       } finally {
          lock.unlock();
       }
-      return result;
+      return result(result);
    }
 
    /**
@@ -237,21 +338,30 @@ public class BlockingPool<T> {
     */
    public Collection<PooledResource<T>> purge(int maxIdleTime)
    {
-      Set<PooledResource<T>> result = new LinkedHashSet<PooledResource<T>>();
+      Set<PooledResource<T>> result = null;
       final ReentrantLock lock = this.lock;
       lock.lock();
       try {
-         for(Iterator<PooledResource<T>> i = q.iterator(); i.hasNext(); ) {
-            PooledResource<T> e = i.next();
-            if(e.shouldClose(version, maxLife, maxIdleTime)) {
-               result.add(e);
-               i.remove();
+         if(head == null) return Collections.emptySet();
+         // the least recently used are at the head so idle expiry stops at the first survivor
+         while(head != null && head.shouldClose(version, 0, maxIdleTime)) result = add(result, unlink(head));
+         // creation order is not kept so the list is only walked once the oldest may have expired
+         if(head != null && maxLife != Integer.MAX_VALUE && maxLife > 0 && oldest + maxLife * 1000L <= head.now()) {
+            oldest = Long.MAX_VALUE;
+            for(PooledResource<T> e = head; e != null; ) {
+               PooledResource<T> next = e.next;
+               if(e.shouldClose(version, maxLife)) {
+                  result = add(result, unlink(e));
+               } else if(e.getCreateTime() < oldest) {
+                  oldest = e.getCreateTime();
+               }
+               e = next;
             }
          }
       } finally {
          lock.unlock();
       }
-      return result;
+      return result(result);
    }
 
    /**
@@ -263,15 +373,16 @@ public class BlockingPool<T> {
     */
    public Collection<PooledResource<T>> copy()
    {
-      Set<PooledResource<T>> result = new LinkedHashSet<PooledResource<T>>();
       final ReentrantLock lock = this.lock;
       lock.lock();
       try {
-         for(PooledResource<T> e : q) result.add(e);
+         if(head == null) return Collections.emptySet();
+         Set<PooledResource<T>> result = new LinkedHashSet<PooledResource<T>>(count * 2);
+         for(PooledResource<T> e = head; e != null; e = e.next) result.add(e);
+         return result;
       } finally {
          lock.unlock();
       }
-      return result;
    }
 
    /**
@@ -287,6 +398,24 @@ public class BlockingPool<T> {
       try {
          shutdown = true;
          notEmpty.signalAll(); 
+         release();
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Cause all threads currently blocked in a timed poll to return null
+    * without waiting for an item.
+    */
+   public void wakeup()
+   {
+      final ReentrantLock lock = this.lock;
+      lock.lock();
+      try {
+         wakeups++;
+         notEmpty.signalAll();
+         release();
       } finally {
          lock.unlock();
       }
@@ -312,7 +441,7 @@ public class BlockingPool<T> {
       final ReentrantLock lock = this.lock;
       lock.lock();
       try {
-         return lock.getWaitQueueLength(notEmpty);
+         return waiters.size() + lock.getWaitQueueLength(notEmpty);
       } finally {
          lock.unlock();
       }
@@ -332,10 +461,134 @@ public class BlockingPool<T> {
       final ReentrantLock lock = this.lock;
       lock.lock();
       try {
-         return maxIdle - q.size();
+         return maxIdle - count;
       } finally {
          lock.unlock();
       }
    }
    
+
+
+
+   /*
+    * Insert the item after the last one used no later than it. Must be
+    * called with the lock held.
+    */
+   private void link(PooledResource<T> e)
+   {
+      PooledResource<T> p = tail;
+      long last = e.getLastUsedTime();
+      while(p != null && p.getLastUsedTime() > last) p = p.prev;
+      PooledResource<T> n = (p == null) ? head : p.next;
+      e.owner = this;
+      e.prev = p;
+      e.next = n;
+      if(p == null) head = e; else p.next = e;
+      if(n == null) tail = e; else n.prev = e;
+      if(e.getCreateTime() < oldest) oldest = e.getCreateTime();
+      count++;
+   }
+
+   /*
+    * Remove the given item returning it, or null if it is not in this pool.
+    * Must be called with the lock held.
+    */
+   private PooledResource<T> unlink(PooledResource<T> e)
+   {
+      if(e == null || e.owner != this) return null;
+      PooledResource<T> p = e.prev, n = e.next;
+      if(p == null) head = n; else p.next = n;
+      if(n == null) tail = p; else n.prev = p;
+      e.owner = null;
+      e.prev = e.next = null;
+      if(--count == 0) oldest = Long.MAX_VALUE;
+      return e;
+   }
+
+   /*
+    * Park until an item is placed in our slot, the timeout expires, we are
+    * interrupted or the pool is shutdown or woken. Threads that give up must
+    * retake the lock to leave the queue as an item may be handed to them
+    * concurrently, in which case they keep it.
+    */
+   private PooledResource<T> await(Waiter<T> w, long nanos)
+      throws InterruptedException, TimeoutException
+   {
+      final long deadline = System.nanoTime() + nanos;
+      boolean interrupted = false;
+      while(w.item == null && !w.woken && !shutdown) {
+         if(Thread.interrupted()) {
+            interrupted = true;
+            break;
+         }
+         if(nanos <= 0) break;
+         LockSupport.parkNanos(this, nanos);
+         nanos = deadline - System.nanoTime();
+      }
+      if(w.item == null) {
+         final ReentrantLock lock = this.lock;
+         lock.lock();
+         try {
+            if(w.item == null) waiters.remove(w);
+         } finally {
+            lock.unlock();
+         }
+      }
+      PooledResource<T> x = w.item;
+      if(x != null) {
+         if(interrupted) Thread.currentThread().interrupt();
+         return x;
+      }
+      if(interrupted) throw new InterruptedException();
+      if(shutdown) throw new IllegalStateException();
+      if(w.woken) return null;
+      throw new TimeoutException();
+   }
+
+   // The result sets are only allocated once there is something to return
+   private static <T> Set<PooledResource<T>> add(Set<PooledResource<T>> result, PooledResource<T> e)
+   {
+      if(result == null) result = new LinkedHashSet<PooledResource<T>>();
+      result.add(e);
+      return result;
+   }
+
+   private static <T> Set<PooledResource<T>> result(Set<PooledResource<T>> result)
+   {
+      return (result == null) ? Collections.<PooledResource<T>>emptySet() : result;
+   }
+
+   // Must be called while holding the lock
+   private void release()
+   {
+      ResourceWaiter<T> w;
+      while((w = waiters.poll()) != null) w.release(shutdown);
+   }
+
+
+   private static class Waiter<T> implements ResourceWaiter<T> {
+
+      private final Thread thread;
+      private volatile PooledResource<T> item;
+      private volatile boolean woken;
+
+      private Waiter(Thread thread)
+      {
+         this.thread = thread;
+      }
+
+      public boolean deliver(PooledResource<T> res)
+      {
+         item = res;
+         LockSupport.unpark(thread);
+         return true;
+      }
+
+      public void release(boolean shutdown)
+      {
+         woken = true;
+         LockSupport.unpark(thread);
+      }
+   }
+
 }
@@ -0,0 +1,197 @@
+package xpertss.ds.base;
+
+import xpertss.ds.utils.Clock;
+import xpertss.ds.utils.Objects;
+
+import java.util.Random;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Guards the connection attempts an origin data source makes against its
+ * server.
+ * <p>
+ * The breaker starts out closed and allows every attempt. A failed attempt
+ * opens it for the blackout period during which attempts are refused
+ * without touching the server. Once the period passes the breaker is half
+ * open and allows exactly one probe attempt. A successful probe closes the
+ * breaker. A failed probe opens it again for twice the previous period, up
+ * to {@link #MAX_BACKOFF} times the blackout, with a random jitter so that
+ * clients recovering from the same outage do not all probe the server at
+ * the same moment.
+ * <p>
+ * A probe which never reports its outcome is given up on once the current
+ * period passes and another probe is allowed.
+ *
+ * @author cfloersch
+ */
+public class CircuitBreaker {
+
+   public enum State { Closed, Open, HalfOpen }
+
+   /**
+    * The maximum open period expressed as a multiple of the blackout.
+    */
+   public static final int MAX_BACKOFF = 32;
+
+
+   private final ReentrantLock lock = new ReentrantLock();
+   private final Random random = new Random();
+   private final Clock clock;
+
+   private volatile State state = State.Closed;
+   private volatile long reopen;                // when an open breaker allows a probe
+   private volatile long probeStart;
+   private volatile boolean probing;
+   private volatile long period;
+
+   private volatile int openCount;
+   private volatile int probeCount;
+   private volatile int closeCount;
+
+   public CircuitBreaker(Clock clock)
+   {
+      this.clock = Objects.notNull(clock, "clock may not be null");
+   }
+
+
+   /**
+    * Returns <code>true</code> if an attempt would currently be allowed.
+    * Unlike {@link #allowRequest()} this does not claim the half open probe.
+    */
+   public boolean isAvailable()
+   {
+      State state = this.state;
+      if(state == State.Closed) return true;
+      long now = clock.millis();
+      if(state == State.Open) return now > reopen;
+      return !probing || now - probeStart > period;
+   }
+
+   /**
+    * Returns <code>true</code> if the caller may attempt a connection. When
+    * the breaker is half open only the first caller is allowed and it must
+    * report the outcome through {@link #recordSuccess()} or
+    * {@link #recordFailure(long)}.
+    */
+   public boolean allowRequest()
+   {
+      if(state == State.Closed) return true;
+      long now = clock.millis();
+      if(state == State.Open && now <= reopen) return false;
+      lock.lock();
+      try {
+         if(state == State.Closed) return true;
+         if(state == State.Open) {
+            if(now <= reopen) return false;
+            state = State.HalfOpen;
+         } else if(probing && now - probeStart <= period) {
+            return false;
+         }
+         probing = true;
+         probeStart = now;
+         probeCount++;
+         return true;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Record a successful attempt, closing the breaker.
+    */
+   public void recordSuccess()
+   {
+      if(state == State.Closed) return;
+      lock.lock();
+      try {
+         if(state != State.Closed) {
+            state = State.Closed;
+            probing = false;
+            period = 0;
+            closeCount++;
+         }
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Record a failed attempt. A failure while closed opens the breaker for
+    * exactly the given blackout. A failed probe opens it for twice the
+    * previous period with jitter. Failures of attempts already under way
+    * when the breaker opened are ignored.
+    *
+    * @param blackout The base open period in milliseconds
+    */
+   public void recordFailure(long blackout)
+   {
+      lock.lock();
+      try {
+         // failures are stamped precisely so the coarse clock can only lengthen the period
+         long now = clock.preciseMillis();
+         if(state == State.Closed) {
+            period = blackout;
+            reopen = now + blackout;
+         } else if(state == State.HalfOpen) {
+            period = Math.min(period * 2, blackout * MAX_BACKOFF);
+            reopen = now + jitter(period);
+            probing = false;
+         } else {
+            return;
+         }
+         state = State.Open;
+         openCount++;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+
+
+   /**
+    * Returns the current state of the breaker. An open breaker whose blackout
+    * has passed reports half open even before a probe has been attempted.
+    *
+    * @return The current state of the breaker
+    */
+   public State getState()
+   {
+      State state = this.state;
+      if(state == State.Open && clock.millis() > reopen) return State.HalfOpen;
+      return state;
+   }
+
+   /**
+    * @return The number of times the breaker has opened
+    */
+   public int getOpenCount()
+   {
+      return openCount;
+   }
+
+   /**
+    * @return The number of probes the breaker has allowed while half open
+    */
+   public int getProbeCount()
+   {
+      return probeCount;
+   }
+
+   /**
+    * @return The number of times the breaker has closed after being open
+    */
+   public int getCloseCount()
+   {
+      return closeCount;
+   }
+
+
+
+   // equal jitter: half the period is fixed, the other half random
+   private long jitter(long period)
+   {
+      long half = period / 2;
+      return period - half + (long) (random.nextDouble() * (half + 1));
+   }
+
+}
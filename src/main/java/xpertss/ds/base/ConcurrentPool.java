@@ -0,0 +1,501 @@
+package xpertss.ds.base;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A concurrent pool is an idle store which borrows and returns resources
+ * without taking a lock. Idle resources are held in a series of slots which
+ * are claimed and released using compare and swap operations.
+ * <p>
+ * Each thread additionally remembers the last few resources it returned to
+ * the pool. When that thread next borrows it will attempt to reclaim those
+ * same resources first by their slot, which in the common case of a request
+ * thread borrowing and returning a connection over and over again means it
+ * will get back the connection it just released without scanning or
+ * contending with other threads.
+ * <p>
+ * Unlike the {@link BlockingPool} this pool makes no attempt to hand out the
+ * least recently used resource. Resources that a thread keeps reusing stay
+ * warm while those that are rarely borrowed age out through the max idle
+ * time. The lock is only used to park threads which must wait for a resource,
+ * to queue waiters and to grow the slot directory.
+ * <p>
+ * The per thread lists hold strong references. A resource closed by the
+ * pool may therefore remain reachable from a thread that returned it until
+ * that thread borrows from the pool again.
+ *
+ * @author cfloersch
+ */
+public class ConcurrentPool<T> implements ResourcePool<T> {
+
+   private static final int CHUNK_BITS = 5;
+   private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+   private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+   private static final int MAX_CHUNKS = 512;
+
+   private static final int LOCAL_SIZE = 4;
+
+
+   private final ReentrantLock lock = new ReentrantLock(false);
+   private final Condition notEmpty = lock.newCondition();
+
+   private final AtomicReferenceArray<AtomicReferenceArray<PooledResource<T>>> chunks =
+            new AtomicReferenceArray<AtomicReferenceArray<PooledResource<T>>>(MAX_CHUNKS);
+   private final AtomicInteger chunkCount = new AtomicInteger();
+
+   private final AtomicInteger count = new AtomicInteger();
+   private final AtomicInteger waiters = new AtomicInteger();
+   private final ArrayDeque<ResourceWaiter<T>> queued = new ArrayDeque<ResourceWaiter<T>>();
+
+   private final ThreadLocal<Object[]> locals = new ThreadLocal<Object[]>() {
+      protected Object[] initialValue() { return new Object[LOCAL_SIZE]; }
+   };
+
+   private volatile int maxIdle = Integer.MAX_VALUE;
+   private volatile int maxLife = 0;
+   private volatile int version;
+   private int wakeups;
+
+   private volatile boolean shutdown;
+
+   public ConcurrentPool()
+   {
+      this(0);
+   }
+
+   public ConcurrentPool(int version)
+   {
+      this.version = version;
+   }
+
+   public void setMaxIdle(int maxIdle)
+   {
+      this.maxIdle = (maxIdle <= 0) ? Integer.MAX_VALUE : maxIdle;
+   }
+
+   public int getMaxIdle()
+   {
+      return maxIdle;
+   }
+
+   public void setMaxLife(int maxLife)
+   {
+      this.maxLife = (maxLife <= 0) ? Integer.MAX_VALUE : maxLife;
+   }
+
+   public int getMaxLife()
+   {
+      return maxLife;
+   }
+
+   public int getVersion()
+   {
+      return version;
+   }
+
+
+   public PooledResource<T> wrap(BasePoolingDataSource<T> pool, T conn)
+   {
+      if(conn == null) throw new NullPointerException();
+      if(shutdown) throw new IllegalStateException();
+      return new PooledResource<T>(pool, version, conn);
+   }
+
+   public boolean offer(PooledResource<T> o)
+   {
+      if(o == null) throw new NullPointerException();
+      if(shutdown || o.shouldClose(version, maxLife)) return false;
+      for(;;) {
+         int c = count.get();
+         if(c >= maxIdle) return false;
+         if(count.compareAndSet(c, c + 1)) break;
+      }
+      if(!place(o)) {
+         count.decrementAndGet();
+         return false;
+      }
+      if((shutdown || o.shouldClose(version, maxLife)) && take(o)) {
+         // lost a race with shutdown or a drain, let the caller dispose of it
+         return false;
+      }
+      remember(o);
+      if(waiters.get() > 0) signal(o);
+      return true;
+   }
+
+   public PooledResource<T> poll()
+   {
+      if(shutdown) throw new IllegalStateException();
+      if(count.get() <= 0) return null;
+
+      Object[] local = locals.get();
+      for(int i = 0; i < LOCAL_SIZE; i++) {
+         @SuppressWarnings("unchecked")
+         PooledResource<T> res = (PooledResource<T>) local[i];
+         if(res != null) {
+            local[i] = null;
+            if(take(res)) return res;
+         }
+      }
+
+      int chunkLimit = chunkCount.get();
+      for(int c = 0; c < chunkLimit; c++) {
+         AtomicReferenceArray<PooledResource<T>> chunk = chunks.get(c);
+         if(chunk == null) continue;
+         for(int i = 0; i < CHUNK_SIZE; i++) {
+            PooledResource<T> res = chunk.get(i);
+            if(res != null && chunk.compareAndSet(i, res, null)) {
+               count.decrementAndGet();
+               return res;
+            }
+         }
+      }
+      return null;
+   }
+
+   public PooledResource<T> poll(long timeout, TimeUnit unit)
+      throws InterruptedException, TimeoutException
+   {
+      PooledResource<T> x = poll();
+      if(x != null) return x;
+
+      long nanos = unit.toNanos(timeout);
+      final ReentrantLock lock = this.lock;
+      lock.lockInterruptibly();
+      try {
+         waiters.incrementAndGet();
+         try {
+            final int epoch = wakeups;
+            for (;;) {
+               if(shutdown) throw new IllegalStateException();
+               x = poll();
+               if (x != null) return x;
+               if (epoch != wakeups) return null;
+               if (nanos <= 0) throw new TimeoutException();
+               try {
+                  nanos = notEmpty.awaitNanos(nanos);
+               } catch (InterruptedException ie) {
+                  notEmpty.signal(); // propagate to non-interrupted thread
+                  throw ie;
+               }
+            }
+         } finally {
+            waiters.decrementAndGet();
+         }
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   public void enqueue(ResourceWaiter<T> waiter)
+   {
+      if(waiter == null) throw new NullPointerException();
+      final ReentrantLock lock = this.lock;
+      lock.lock();
+      try {
+         if(shutdown) throw new IllegalStateException();
+         // count ourselves first so an offer that we miss below will signal us
+         waiters.incrementAndGet();
+         PooledResource<T> x = poll();
+         if(x == null) {
+            queued.offer(waiter);
+            return;
+         }
+         waiters.decrementAndGet();
+         if(!waiter.deliver(x) && !offer(x)) {
+            x.close(true);
+         }
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   public boolean cancel(ResourceWaiter<T> waiter)
+   {
+      final ReentrantLock lock = this.lock;
+      lock.lock();
+      try {
+         if(queued.remove(waiter)) {
+            waiters.decrementAndGet();
+            return true;
+         }
+         return false;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   public int size()
+   {
+      return count.get();
+   }
+
+   public boolean remove(PooledResource<T> o)
+   {
+      if(o == null) return false;
+      if(take(o)) return true;
+      int chunkLimit = chunkCount.get();
+      for(int c = 0; c < chunkLimit; c++) {
+         AtomicReferenceArray<PooledResource<T>> chunk = chunks.get(c);
+         if(chunk == null) continue;
+         for(int i = 0; i < CHUNK_SIZE; i++) {
+            PooledResource<T> res = chunk.get(i);
+            if(o.equals(res) && chunk.compareAndSet(i, res, null)) {
+               count.decrementAndGet();
+               return true;
+            }
+         }
+      }
+      return false;
+   }
+
+   public boolean contains(PooledResource<T> o)
+   {
+      if(o == null) return false;
+      int chunkLimit = chunkCount.get();
+      for(int c = 0; c < chunkLimit; c++) {
+         AtomicReferenceArray<PooledResource<T>> chunk = chunks.get(c);
+         if(chunk == null) continue;
+         for(int i = 0; i < CHUNK_SIZE; i++) {
+            if(o.equals(chunk.get(i))) return true;
+         }
+      }
+      return false;
+   }
+
+   public Collection<PooledResource<T>> drain()
+   {
+      final ReentrantLock lock = this.lock;
+      lock.lock();
+      try {
+         version++;
+      } finally {
+         lock.unlock();
+      }
+      List<PooledResource<T>> result = null;
+      int chunkLimit = chunkCount.get();
+      for(int c = 0; c < chunkLimit; c++) {
+         AtomicReferenceArray<PooledResource<T>> chunk = chunks.get(c);
+         if(chunk == null) continue;
+         for(int i = 0; i < CHUNK_SIZE; i++) {
+            PooledResource<T> res = chunk.getAndSet(i, null);
+            if(res != null) {
+               count.decrementAndGet();
+               result = add(result, res);
+            }
+         }
+      }
+      return result(result);
+   }
+
+   public Collection<PooledResource<T>> purge(int maxIdleTime)
+   {
+      List<PooledResource<T>> result = null;
+      int chunkLimit = chunkCount.get();
+      for(int c = 0; c < chunkLimit; c++) {
+         AtomicReferenceArray<PooledResource<T>> chunk = chunks.get(c);
+         if(chunk == null) continue;
+         for(int i = 0; i < CHUNK_SIZE; i++) {
+            PooledResource<T> res = chunk.get(i);
+            if(res != null && res.shouldClose(version, maxLife, maxIdleTime)) {
+               if(chunk.compareAndSet(i, res, null)) {
+                  count.decrementAndGet();
+                  result = add(result, res);
+               }
+            }
+         }
+      }
+      return result(result);
+   }
+
+   public Collection<PooledResource<T>> copy()
+   {
+      List<PooledResource<T>> result = null;
+      int chunkLimit = chunkCount.get();
+      for(int c = 0; c < chunkLimit; c++) {
+         AtomicReferenceArray<PooledResource<T>> chunk = chunks.get(c);
+         if(chunk == null) continue;
+         for(int i = 0; i < CHUNK_SIZE; i++) {
+            PooledResource<T> res = chunk.get(i);
+            if(res != null) result = add(result, res);
+         }
+      }
+      return result(result);
+   }
+
+   public void shutdown()
+   {
+      final ReentrantLock lock = this.lock;
+      lock.lock();
+      try {
+         shutdown = true;
+         notEmpty.signalAll();
+         release();
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   public void wakeup()
+   {
+      final ReentrantLock lock = this.lock;
+      lock.lock();
+      try {
+         wakeups++;
+         notEmpty.signalAll();
+         release();
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   public boolean isShutdown()
+   {
+      return shutdown;
+   }
+
+   public int getWaitQueueSize()
+   {
+      return waiters.get();
+   }
+
+   public int remainingCapacity()
+   {
+      return maxIdle - count.get();
+   }
+
+
+
+
+
+   /*
+    * Place the resource into an empty slot. We try the slot it last occupied
+    * first as it is most likely to still be empty when a thread returns the
+    * connection it just borrowed. Returns false if every slot is occupied
+    * and the directory may not grow any further.
+    */
+   private boolean place(PooledResource<T> o)
+   {
+      int hint = o.slot;
+      if(hint >= 0) {
+         AtomicReferenceArray<PooledResource<T>> chunk = chunks.get(hint >>> CHUNK_BITS);
+         if(chunk != null && chunk.compareAndSet(hint & CHUNK_MASK, null, o)) return true;
+      }
+      for(;;) {
+         int chunkLimit = chunkCount.get();
+         for(int c = 0; c < chunkLimit; c++) {
+            AtomicReferenceArray<PooledResource<T>> chunk = chunks.get(c);
+            if(chunk == null) continue;
+            for(int i = 0; i < CHUNK_SIZE; i++) {
+               if(chunk.get(i) == null && chunk.compareAndSet(i, null, o)) {
+                  o.slot = (c << CHUNK_BITS) | i;
+                  return true;
+               }
+            }
+         }
+         if(!grow(chunkLimit)) return false;
+      }
+   }
+
+   /*
+    * Claim the resource from the slot it currently occupies.
+    */
+   private boolean take(PooledResource<T> o)
+   {
+      int idx = o.slot;
+      if(idx >= 0) {
+         AtomicReferenceArray<PooledResource<T>> chunk = chunks.get(idx >>> CHUNK_BITS);
+         if(chunk != null && chunk.compareAndSet(idx & CHUNK_MASK, o, null)) {
+            count.decrementAndGet();
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private boolean grow(int expected)
+   {
+      final ReentrantLock lock = this.lock;
+      lock.lock();
+      try {
+         if(chunkCount.get() == expected) {
+            if(expected >= MAX_CHUNKS) return false;
+            chunks.set(expected, new AtomicReferenceArray<PooledResource<T>>(CHUNK_SIZE));
+            chunkCount.set(expected + 1);
+         }
+         return true;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   private void remember(PooledResource<T> o)
+   {
+      Object[] local = locals.get();
+      System.arraycopy(local, 0, local, 1, LOCAL_SIZE - 1);
+      local[0] = o;
+   }
+
+   /*
+    * Hand the offered resource to a queued waiter if there is one and it is
+    * still idle, otherwise wake a thread blocked in a poll.
+    */
+   private void signal(PooledResource<T> o)
+   {
+      final ReentrantLock lock = this.lock;
+      lock.lock();
+      try {
+         if(!queued.isEmpty() && take(o)) {
+            ResourceWaiter<T> w;
+            while((w = queued.poll()) != null) {
+               waiters.decrementAndGet();
+               if(w.deliver(o)) return;
+            }
+            // every waiter had given up so put it back
+            count.incrementAndGet();
+            if(!place(o)) {
+               count.decrementAndGet();
+               o.close(true);
+               return;
+            }
+         }
+         notEmpty.signal();
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   // The result lists are only allocated once there is something to return
+   private static <T> List<PooledResource<T>> add(List<PooledResource<T>> result, PooledResource<T> res)
+   {
+      if(result == null) result = new ArrayList<PooledResource<T>>();
+      result.add(res);
+      return result;
+   }
+
+   private static <T> List<PooledResource<T>> result(List<PooledResource<T>> result)
+   {
+      return (result == null) ? Collections.<PooledResource<T>>emptyList() : result;
+   }
+
+   // Must be called while holding the lock
+   private void release()
+   {
+      ResourceWaiter<T> w;
+      while((w = queued.poll()) != null) {
+         waiters.decrementAndGet();
+         w.release(shutdown);
+      }
+   }
+
+}
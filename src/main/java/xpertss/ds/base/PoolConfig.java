@@ -0,0 +1,120 @@
+package xpertss.ds.base;
+
+import xpertss.ds.PoolingDataSource;
+import xpertss.ds.PoolingDataSource.TestScheme;
+import xpertss.ds.concurrent.Condition;
+import xpertss.ds.concurrent.ConditionFactory;
+
+/**
+ * An immutable, pre-parsed view of a pooling data source's properties.
+ * <p>
+ * The pool builds a new instance whenever one of its properties changes and
+ * publishes it through a single volatile reference so the borrow, return
+ * and reaper paths read plain fields rather than parsing property strings.
+ * The defaults match those documented on {@link xpertss.ds.PoolingDataSource}.
+ *
+ * @author cfloersch
+ */
+final class PoolConfig {
+
+   final int minConnections;
+   final int maxConnections;
+   final Condition belowMax;
+   final Condition belowMin;
+   final long maxWaitTime;
+   final int maxIdleTime;
+   final int maxIdle;
+   final int maxLifeTime;
+   final int dutyCycle;
+   final TestScheme testScheme;
+   final boolean asyncCreate;
+   final int warmParallelism;
+   final double warmFraction;
+   final int validationTimeout;
+   final int validationParallelism;
+   final int validationBudget;
+   final int leakThreshold;
+   final int leakTrace;
+   final long validationWindow;
+
+   PoolConfig(BaseDataSource<?> source)
+   {
+      minConnections = source.getInt(PoolingDataSource.MIN_CONNECTIONS, 0);
+      maxConnections = source.getIndefiniteInt(PoolingDataSource.MAX_CONNECTIONS);
+      belowMax = ConditionFactory.lessThan(maxConnections);
+      belowMin = ConditionFactory.lessThan(Math.min(minConnections, maxConnections));
+      maxWaitTime = source.getIndefiniteLong(PoolingDataSource.MAX_WAIT_TIME);
+      maxIdleTime = source.getInt(PoolingDataSource.MAX_IDLE_TIME, 0);
+      maxIdle = source.getInt(PoolingDataSource.MAX_IDLE, 0);
+      maxLifeTime = source.getInt(PoolingDataSource.MAX_LIFE_TIME, 0);
+      // measured in seconds, anything under 5 and we spend too much time reaping
+      dutyCycle = Math.max(source.getInt(PoolingDataSource.DUTY_CYCLE, 60), 5);
+      testScheme = parseScheme(source.getProperty(PoolingDataSource.TEST_SCHEME));
+      asyncCreate = source.getBoolean(PoolingDataSource.ASYNC_CREATE, false);
+      warmParallelism = Math.max(source.getInt(PoolingDataSource.WARM_PARALLELISM, 4), 1);
+      warmFraction = parseFraction(source.getProperty(PoolingDataSource.WARM_FRACTION));
+      // a timeout of zero would let a test against a dead server wait forever
+      validationTimeout = Math.max(source.getInt(PoolingDataSource.VALIDATION_TIMEOUT, 2), 1);
+      validationParallelism = Math.max(source.getInt(PoolingDataSource.VALIDATION_PARALLELISM, 4), 1);
+      int budget = source.getInt(PoolingDataSource.VALIDATION_BUDGET, 0);
+      validationBudget = (budget > 0) ? budget : dutyCycle;
+      leakThreshold = Math.max(source.getInt(PoolingDataSource.LEAK_THRESHOLD, 0), 0);
+      leakTrace = Math.max(source.getInt(PoolingDataSource.LEAK_TRACE, 0), 0);
+      validationWindow = Math.max(source.getLong(PoolingDataSource.VALIDATION_WINDOW, 0), 0);
+   }
+
+
+   /**
+    * The number of connections a warm up aims for, the pool is ready once
+    * they exist.
+    */
+   int minCount()
+   {
+      return Math.min(minConnections, maxConnections);
+   }
+
+   /**
+    * The number of connections which must exist before a reset returns.
+    */
+   int warmCount()
+   {
+      return (int) Math.ceil(minCount() * warmFraction);
+   }
+
+   boolean testOnBorrow()
+   {
+      return (testScheme == TestScheme.Always || testScheme == TestScheme.Borrow);
+   }
+
+   boolean testOnIdle()
+   {
+      return (testScheme == TestScheme.Always || testScheme == TestScheme.Idle);
+   }
+
+   boolean testOnReturn()
+   {
+      return (testScheme == TestScheme.Always || testScheme == TestScheme.Return);
+   }
+
+
+
+   private static TestScheme parseScheme(String value)
+   {
+      try {
+         return TestScheme.valueOf(value);
+      } catch(Exception e) {
+         return TestScheme.Never;
+      }
+   }
+
+   private static double parseFraction(String value)
+   {
+      try {
+         double fraction = Double.parseDouble(value);
+         return (fraction >= 0 && fraction <= 1) ? fraction : 0;
+      } catch(Exception e) {
+         return 0;
+      }
+   }
+
+}
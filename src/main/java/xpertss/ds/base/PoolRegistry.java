@@ -0,0 +1,395 @@
+package xpertss.ds.base;
+
+import xpertss.ds.utils.NumberUtils;
+import xpertss.ds.utils.Objects;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool registry caps the number of connections a set of pooling data
+ * sources may hold between them.
+ * <p>
+ * Pools are grouped by key, which defaults to the name of their origin and
+ * therefore to the host they connect to, or may be set with the pool's
+ * {@code POOL_GROUP} property. The registry enforces a global limit across
+ * all of its pools and a limit per group, either of which may be zero for
+ * no limit. A pool claims a connection from both budgets before it opens
+ * one and gives it back when the connection closes, on top of its own
+ * {@code MAX_CONNECTIONS}.
+ * <p>
+ * A borrower which finds the budget spent takes the idle capacity of cold
+ * pools: the pool in its group, or in the registry if the global limit is
+ * the one spent, which holds idle connections and was borrowed from least
+ * recently closes its least recently used idle connection and the borrower
+ * takes its place. Warm ups never take capacity from other pools so a hot
+ * pool keeps what it has taken. Borrowers left waiting are woken when a
+ * connection anywhere in the registry closes or goes idle.
+ * <p>
+ * Pools join the registry when they open their first connection and leave
+ * it when they are closed. They use the system registry unless given
+ * another. The system registry takes its limits from the system properties
+ * <code>pool.global.limit</code> and <code>pool.group.limit</code>, both
+ * defaulting to zero, and may be changed while pools are in use.
+ *
+ * @author cfloersch
+ */
+public class PoolRegistry {
+
+   // attempts a borrower makes to take idle capacity before it waits
+   private static final int SHED_ATTEMPTS = 3;
+
+   private static class Holder {
+      private static final PoolRegistry INSTANCE =
+         new PoolRegistry(NumberUtils.getInt(System.getProperty("pool.global.limit"), 0),
+                          NumberUtils.getInt(System.getProperty("pool.group.limit"), 0));
+   }
+
+   /**
+    * Returns the registry pools use unless they are given another.
+    */
+   public static PoolRegistry system()
+   {
+      return Holder.INSTANCE;
+   }
+
+
+   private final ConcurrentMap<String,Group> groups = new ConcurrentHashMap<String,Group>();
+   private final Queue<Member> starved = new ConcurrentLinkedQueue<Member>();
+   private final Budget global;
+   private volatile int groupLimit;
+
+   /**
+    * Create a registry with the given global limit and default group limit.
+    * A limit less than or equal to zero implies no limit.
+    */
+   public PoolRegistry(int globalLimit, int groupLimit)
+   {
+      this.global = new Budget(globalLimit);
+      this.groupLimit = groupLimit;
+   }
+
+
+   /**
+    * Set the maximum number of connections all of this registry's pools
+    * may hold between them. A value less than or equal to zero implies no
+    * limit.
+    */
+   public void setGlobalLimit(int limit)
+   {
+      global.limit = limit;
+   }
+
+   /**
+    * Returns the maximum number of connections all of this registry's pools
+    * may hold between them.
+    */
+   public int getGlobalLimit()
+   {
+      return global.limit;
+   }
+
+   /**
+    * Set the maximum number of connections the pools of any group without a
+    * limit of its own may hold between them. A value less than or equal to
+    * zero implies no limit.
+    */
+   public void setGroupLimit(int limit)
+   {
+      groupLimit = limit;
+   }
+
+   /**
+    * Returns the maximum number of connections the pools of a group without
+    * a limit of its own may hold between them.
+    */
+   public int getGroupLimit()
+   {
+      return groupLimit;
+   }
+
+   /**
+    * Set the maximum number of connections the pools of the given group may
+    * hold between them, overriding the default group limit. A value less
+    * than or equal to zero implies no limit.
+    */
+   public void setGroupLimit(String group, int limit)
+   {
+      group(group).limit = limit;
+   }
+
+   /**
+    * Restore the default group limit for the given group.
+    */
+   public void clearGroupLimit(String group)
+   {
+      group(group).limit = Group.DEFAULT;
+   }
+
+   /**
+    * Returns the maximum number of connections the pools of the given group
+    * may hold between them.
+    */
+   public int getGroupLimit(String group)
+   {
+      Group current = groups.get(group);
+      return (current != null) ? current.limit() : groupLimit;
+   }
+
+
+
+   /**
+    * Returns the number of connections held by all of this registry's pools.
+    */
+   public int getConnectionCount()
+   {
+      return global.used.get();
+   }
+
+   /**
+    * Returns the number of connections held by the pools of the given group.
+    */
+   public int getConnectionCount(String group)
+   {
+      Group current = groups.get(group);
+      return (current != null) ? current.used.get() : 0;
+   }
+
+   /**
+    * Returns the number of open pools in the given group.
+    */
+   public int getPoolCount(String group)
+   {
+      Group current = groups.get(group);
+      return (current != null) ? current.members.size() : 0;
+   }
+
+   /**
+    * Returns the keys of the groups this registry has seen.
+    */
+   public Set<String> getGroups()
+   {
+      return Collections.unmodifiableSet(groups.keySet());
+   }
+
+
+
+
+   Member register(BasePoolingDataSource<?> pool, String group)
+   {
+      Member member = new Member(pool, group(group));
+      member.group.members.add(member);
+      return member;
+   }
+
+   private Group group(String key)
+   {
+      Objects.notNull(key, "group may not be null");
+      Group group = groups.get(key);
+      if(group == null) {
+         Group created = new Group();
+         group = groups.putIfAbsent(key, created);
+         if(group == null) group = created;
+      }
+      return group;
+   }
+
+   // returns the budget which refused the connection or null if it was granted
+   private Budget acquire(Group group)
+   {
+      if(!group.acquire(group.limit())) return group;
+      if(global.acquire(global.limit)) return null;
+      group.release();
+      return global;
+   }
+
+   private void release(Group group)
+   {
+      group.release();
+      global.release();
+      wake();
+   }
+
+   // wake a pool refused a connection so it may claim the freed one or shed an idle one
+   private void wake()
+   {
+      if(starved.isEmpty()) return;
+      Member member = starved.poll();
+      if(member != null) {
+         member.starved = false;
+         member.pool.wakeup();
+      }
+   }
+
+   // the open pool other than the given one holding idle connections which was borrowed from least recently
+   private BasePoolingDataSource<?> coldest(Collection<Group> candidates, Member requester)
+   {
+      BasePoolingDataSource<?> coldest = null;
+      long oldest = Long.MAX_VALUE;
+      for(Group group : candidates) {
+         for(Member member : group.donors) {
+            if(member == requester) continue;
+            if(member.pool.getIdleCount() == 0) {
+               member.spent();
+               continue;
+            }
+            long accessed = member.pool.getLastAccessTime();
+            if(accessed < oldest) {
+               coldest = member.pool;
+               oldest = accessed;
+            }
+         }
+      }
+      return coldest;
+   }
+
+
+
+
+   private static class Budget {
+
+      final AtomicInteger used = new AtomicInteger();
+      volatile int limit;
+
+      private Budget(int limit)
+      {
+         this.limit = limit;
+      }
+
+      boolean acquire(int limit)
+      {
+         for(;;) {
+            int current = used.get();
+            if(limit > 0 && current >= limit) return false;
+            if(used.compareAndSet(current, current + 1)) return true;
+         }
+      }
+
+      void release()
+      {
+         used.decrementAndGet();
+      }
+
+   }
+
+   private class Group extends Budget {
+
+      private static final int DEFAULT = Integer.MIN_VALUE;
+
+      private final Set<Member> members =
+         Collections.newSetFromMap(new ConcurrentHashMap<Member,Boolean>());
+
+      // members which have had a connection go idle, pruned once found without any
+      private final Set<Member> donors =
+         Collections.newSetFromMap(new ConcurrentHashMap<Member,Boolean>());
+
+      private Group()
+      {
+         super(DEFAULT);
+      }
+
+      int limit()
+      {
+         int current = limit;
+         return (current == DEFAULT) ? groupLimit : current;
+      }
+
+   }
+
+
+   /**
+    * A pool's membership in a registry. Connections are always given back
+    * to the membership which granted them, even once the pool has left.
+    */
+   final class Member {
+
+      private final BasePoolingDataSource<?> pool;
+      private final Group group;
+      private volatile boolean starved;
+      private volatile boolean donor;
+
+      private Member(BasePoolingDataSource<?> pool, Group group)
+      {
+         this.pool = pool;
+         this.group = group;
+      }
+
+      /**
+       * Claim a connection from the budgets. A borrower may close idle
+       * connections of cold pools to make room, a warm up may not. A pool
+       * refused a connection is woken when one closes.
+       */
+      boolean acquire(boolean borrow)
+      {
+         for(int attempt = 0; ; attempt++) {
+            Budget refused = PoolRegistry.this.acquire(group);
+            if(refused == null) return true;
+            if(!borrow || attempt == SHED_ATTEMPTS) break;
+            BasePoolingDataSource<?> cold = (refused == global) ?
+                                             coldest(groups.values(), this) :
+                                             coldest(Collections.singleton(group), this);
+            if(cold == null || !cold.shed()) break;
+         }
+         if(borrow && !starved) {
+            starved = true;
+            PoolRegistry.this.starved.offer(this);
+         }
+         return false;
+      }
+
+      /**
+       * Returns true if this pool was refused a connection and has not been
+       * woken since.
+       */
+      boolean isStarved()
+      {
+         return starved;
+      }
+
+      void release()
+      {
+         PoolRegistry.this.release(group);
+      }
+
+      /**
+       * Called when one of the pool's connections is returned or added idle
+       * so a starved pool may take it.
+       */
+      void idle()
+      {
+         if(!donor) {
+            donor = true;
+            group.donors.add(this);
+         }
+         wake();
+      }
+
+      // found without idle connections, check again once removed in case one went idle meanwhile
+      private void spent()
+      {
+         donor = false;
+         group.donors.remove(this);
+         if(pool.getIdleCount() > 0) {
+            donor = true;
+            group.donors.add(this);
+         }
+      }
+
+      void leave()
+      {
+         group.members.remove(this);
+         donor = false;
+         group.donors.remove(this);
+         starved = false;
+         PoolRegistry.this.starved.remove(this);
+      }
+
+   }
+
+}
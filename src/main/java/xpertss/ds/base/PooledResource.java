@@ -1,46 +1,134 @@
 package xpertss.ds.base;
 
 
-import xpertss.ds.utils.TimeProvider;
+import xpertss.ds.utils.Clock;
 
 import java.util.concurrent.TimeUnit;
-import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * Instances of this class wrap actual connection object while they are
  * being maintained by the pool. This class provides the pool with meta
  * data about the connection which is used in both connection lifecycle
  * management and pool meta data computation.
+ * <p>
+ * A resource also records who borrowed it, how often it has been borrowed
+ * and, when the pool samples the borrow, the stack of the borrowing thread
+ * so that connections held too long can be traced back to their borrower.
  * 
  * @author cfloersch
  */
 public class PooledResource<T> implements Comparable<PooledResource<T>> {
 
-   private long create = TimeProvider.get().milliTime();  // measure in nanos?
-   private long last = TimeProvider.get().milliTime();    // measure in nanos?
+   private final Clock clock;
+   private long create;
+   private long last;
+   private volatile long alive;     // last time the resource was proven to work, written by the borrower
    
    private BasePoolingDataSource<T> pool;
    private long activeTime;
    private int version;
+   private Object attachment;
+
+   // borrow tracking, the plain fields are published by the write to busy
+   private volatile boolean busy;
+   private Thread borrower;
+   private Throwable site;
+   private int borrows;
+   boolean leaked;   // reported as leaked during the current borrow
 
    T resource;
+   int slot = -1;    // last slot occupied within a ConcurrentPool
+
+   // links within the idle list of the BlockingPool holding this resource
+   Object owner;
+   PooledResource<T> prev;
+   PooledResource<T> next;
    
    protected PooledResource(BasePoolingDataSource<T> pool, int version, T resource)
    {
       this.pool = pool;
       this.version = version;
       this.resource = resource;
+      this.clock = (pool == null) ? Clock.system() : pool.getClock();
+      this.create = this.last = this.alive = clock.millis();
    }
    
    public PooledResource<T> activate()
    {
-      activeTime = TimeProvider.get().nanoTime();
+      return activate(null);
+   }
+
+   /**
+    * Mark this resource as borrowed by the calling thread, optionally
+    * recording the stack of the borrow.
+    */
+   PooledResource<T> activate(Throwable site)
+   {
+      activeTime = clock.nanos();
+      borrower = Thread.currentThread();
+      this.site = site;
+      borrows++;
+      leaked = false;
+      busy = true;
       return this;
    }
+
+   void deactivate()
+   {
+      busy = false;
+      borrower = null;
+      site = null;
+   }
+
+   /**
+    * Returns true if this resource is currently borrowed.
+    */
+   public boolean isBusy()
+   {
+      return busy;
+   }
+
+   /**
+    * Returns the number of times this resource has been borrowed.
+    */
+   public int getBorrowCount()
+   {
+      return borrows;
+   }
+
+   /**
+    * Returns the name of the thread currently borrowing this resource or
+    * {@code null} if it is idle.
+    */
+   String getBorrower()
+   {
+      Thread thread = borrower;
+      return (busy && thread != null) ? thread.getName() : null;
+   }
+
+   /**
+    * Returns the stack recorded when this resource was borrowed or, if the
+    * borrow was not sampled, the current stack of the borrowing thread.
+    * Returns {@code null} if this resource is idle.
+    */
+   Throwable getBorrowTrace()
+   {
+      if(!busy) return null;
+      Throwable trace = site;
+      if(trace == null) {
+         Thread thread = borrower;
+         if(thread == null) return null;
+         trace = new Throwable("current stack of " + thread.getName());
+         trace.setStackTrace(thread.getStackTrace());
+      }
+      return trace;
+   }
    
    public long getActiveTime(TimeUnit unit)
    {
-      return unit.convert(TimeProvider.get().nanoTime() - activeTime, NANOSECONDS);
+      return clock.elapsed(activeTime, unit);
    }
    
    public boolean equals(Object o) 
@@ -60,10 +148,30 @@ public class PooledResource<T> implements Comparable<PooledResource<T>> {
 
    public T getResource()
    {
-      last = TimeProvider.get().milliTime();  // update its last use time
+      last = clock.millis();  // update its last use time
       return resource;
    }
    
+   /**
+    * Attach an object to this resource which will live for as long as the
+    * resource itself. This allows a pooling data source to associate a
+    * single reusable handle with each resource rather than creating a new
+    * one each time the resource is borrowed.
+    */
+   public void attach(Object attachment)
+   {
+      this.attachment = attachment;
+   }
+
+   /**
+    * Returns the object attached to this resource or {@code null} if no
+    * object has been attached.
+    */
+   public Object attachment()
+   {
+      return attachment;
+   }
+   
    public ClassLoader getClassLoader()
    {
       return resource.getClass().getClassLoader();
@@ -78,16 +186,62 @@ public class PooledResource<T> implements Comparable<PooledResource<T>> {
    {
       return last;
    }
+
+   /**
+    * Record that the resource just completed an operation successfully,
+    * proving it alive. Borrowers within the pool's validation window of
+    * this time skip testing the resource.
+    */
+   public void markAlive()
+   {
+      alive = clock.millis();
+   }
+
+   /**
+    * Returns the last time the resource was created, passed a test or
+    * completed an operation successfully.
+    */
+   public long getLastAliveTime()
+   {
+      return alive;
+   }
    
    
+   long now()
+   {
+      return clock.millis();
+   }
+
+   /**
+    * Describe this resource's state, age, busy time, borrow count and the
+    * stack of its borrower for diagnostic listings.
+    */
+   String describe()
+   {
+      boolean busy = this.busy;
+      StringBuilder buf = new StringBuilder();
+      buf.append(Integer.toHexString(System.identityHashCode(resource)));
+      buf.append(busy ? " busy" : " idle");
+      buf.append(", age=").append(clock.millis() - create).append("ms");
+      if(busy) buf.append(", busy=").append(getActiveTime(MILLISECONDS)).append("ms");
+      buf.append(", borrows=").append(borrows);
+      Throwable trace = getBorrowTrace();
+      if(trace != null) {
+         String borrower = getBorrower();
+         if(borrower != null) buf.append(", borrower=").append(borrower);
+         for(StackTraceElement e : trace.getStackTrace()) buf.append("\n\tat ").append(e);
+      }
+      return buf.toString();
+   }
+   
    public boolean shouldClose(int version, int maxLife)
    {
-      return ((this.version != version) || (maxLife > 0 && (create + (maxLife * 1000) <= TimeProvider.get().milliTime())));
+      return ((this.version != version) || (maxLife > 0 && (create + (maxLife * 1000L) <= clock.millis())));
    }
    
    public boolean shouldClose(int version, int maxLife, int maxIdle)
    {
-      return shouldClose(version, maxLife) || (maxIdle > 0 && ((TimeProvider.get().milliTime() - last) > (maxIdle * 1000)));
+      return shouldClose(version, maxLife) || (maxIdle > 0 && ((clock.millis() - last) > (maxIdle * 1000L)));
    }
 
    
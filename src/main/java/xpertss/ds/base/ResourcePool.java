@@ -0,0 +1,194 @@
+package xpertss.ds.base;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A resource pool is the idle store behind a pooling data source. It holds
+ * the connections that are not currently checked out and hands them back
+ * out to borrowers, optionally blocking them until one is offered.
+ * <p>
+ * Implementations differ in how they trade ordering guarantees for
+ * concurrency. The {@link BlockingPool} always hands out the least recently
+ * used resource while the {@link ConcurrentPool} prefers to hand a thread
+ * back the resource it most recently returned without taking a lock.
+ *
+ * @author cfloersch
+ */
+public interface ResourcePool<T> {
+
+   /**
+    * Set the maximum number of idle items this pool will hold. A value less
+    * than or equal to zero implies no limit.
+    */
+   public void setMaxIdle(int maxIdle);
+
+   /**
+    * Returns the maximum number of idle items this pool will hold.
+    */
+   public int getMaxIdle();
+
+   /**
+    * Set the maximum number of seconds a resource may live before it is
+    * rejected by the pool. A value less than or equal to zero implies no
+    * limit.
+    */
+   public void setMaxLife(int maxLife);
+
+   /**
+    * Returns the maximum number of seconds a resource may live before it
+    * is rejected by the pool.
+    */
+   public int getMaxLife();
+
+   /**
+    * Returns the current version of this pool. The version is incremented
+    * each time the pool is drained and resources wrapped under a previous
+    * version are rejected when offered.
+    */
+   public int getVersion();
+
+   /**
+    * Helper method which will wrap a given connection in a PooledResource
+    * object. The PooledResource object includes meta data specific to the
+    * pool including the version of the pool in which the connection was
+    * wrapped. This will throw an {@code IllegalStateException} if the pool
+    * has been shutdown.
+    */
+   public PooledResource<T> wrap(BasePoolingDataSource<T> pool, T conn);
+
+   /**
+    * If the object is capable of being enqueued because its max life has
+    * not been reached, its version number matches the current version,
+    * and the pool does not already contain max idle connections then this
+    * will enqueue it and return true. Otherwise, it will not enqueue and
+    * it will return false. It is expected that items not accepted will be
+    * discarded appropriately by the caller.
+    */
+   public boolean offer(PooledResource<T> o);
+
+   /**
+    * This will return an idle item if and only if one exists. It will
+    * return null if it does not exist and will not block.
+    * <p>
+    * Calls to this method will throw an IllegalStateException if made
+    * after the pool is shutdown.
+    */
+   public PooledResource<T> poll();
+
+   /**
+    * This will attempt to return an idle item. If no item is available it
+    * will block for at most the specified timeout period. It will throw a
+    * TimeoutException when the timeout is reached. It will throw an
+    * InterruptedException if the blocked thread was interrupted. It will
+    * throw an IllegalStateException if the blocking operation was canceled
+    * because the pool was shut down or if a call is made to a shutdown pool.
+    * It will return null if the wait was cut short by a call to
+    * {@link #wakeup()}.
+    */
+   public PooledResource<T> poll(long timeout, TimeUnit unit)
+      throws InterruptedException, TimeoutException;
+
+   /**
+    * Queue the given waiter to be handed the next available item without
+    * blocking the calling thread. If an item is idle it is delivered before
+    * this returns. Queued waiters are included in the wait queue size. This
+    * will throw an IllegalStateException if the pool has been shutdown.
+    */
+   public void enqueue(ResourceWaiter<T> waiter);
+
+   /**
+    * Remove a waiter from the wait queue. Returns true if the waiter was
+    * still queued and has therefore not been and will not be notified.
+    */
+   public boolean cancel(ResourceWaiter<T> waiter);
+
+   /**
+    * Returns the number of elements in this pool.
+    */
+   public int size();
+
+   /**
+    * Removes the specified object from the pool. This will return true if
+    * the object was found and removed. False otherwise.
+    */
+   public boolean remove(PooledResource<T> o);
+
+   /**
+    * This will return true if the specified object is found in the pool.
+    * False if it is not found.
+    */
+   public boolean contains(PooledResource<T> o);
+
+   /**
+    * This will remove all items from this pool and return them as part of
+    * the returned collection. The version number will be incremented so
+    * items with a previous version number will not be accepted back into
+    * the pool.
+    * <p>
+    * It is expected that the caller would properly dispose of the returned
+    * items.
+    */
+   public Collection<PooledResource<T>> drain();
+
+   /**
+    * This will remove all items from the pool that have exceeded the maximum
+    * lifetime or the specified max idle time. Those items will be returned
+    * as part of the returned collection.
+    * <p>
+    * It is expected that the caller would properly dispose of the returned
+    * items.
+    */
+   public Collection<PooledResource<T>> purge(int maxIdleTime);
+
+   /**
+    * This will return a collection containing all of the items in the pool.
+    * The items themselves will be the same physical object as maintained by
+    * the pool. However, the collection object will be independent preventing
+    * concurrent modification exceptions from being thrown by an iterator of
+    * it while the pool remains usable.
+    */
+   public Collection<PooledResource<T>> copy();
+
+   /**
+    * Once shutdown, items offered to this pool will be rejected and all
+    * threads blocked waiting for a pool item will recieve an
+    * IllegalStateException indicating that the pool is no longer in a
+    * state where it con fulfill requests.
+    */
+   public void shutdown();
+
+   /**
+    * Returns true if the pool has been shutdown. Any call to offer after
+    * this method returns true is garunteed to be rejected. Calls to poll
+    * will throw IllegalStateExceptions.
+    */
+   public boolean isShutdown();
+
+   /**
+    * Cause all threads currently blocked in a timed poll to return null
+    * without waiting for an item and release all queued waiters. Borrowers
+    * use this to notice that a resource they were expecting will not
+    * arrive, for example because creating it in the background failed.
+    */
+   public void wakeup();
+
+   /**
+    * Returns the number of threads currently waiting for an element from
+    * this pool. Threads wait only until an element is available to provide
+    * them or their timeout is reached.
+    */
+   public int getWaitQueueSize();
+
+   /**
+    * Returns the remaining space available in this pool. The value is a
+    * function of the maxIdle setting and the current idle size. Due to
+    * the concurrent nature of this object the value returned may not be
+    * used to determine if it is safe to offer an element or not as new
+    * spaces may become available or be occupied concurrently with the
+    * call.
+    */
+   public int remainingCapacity();
+
+}
@@ -0,0 +1,28 @@
+package xpertss.ds.base;
+
+/**
+ * A resource waiter is a borrower queued on a {@link ResourcePool} which is
+ * notified rather than blocked when an item becomes available.
+ * <p>
+ * Both methods are called while the pool holds its lock and must therefore
+ * return quickly without blocking or calling back into the pool.
+ *
+ * @author cfloersch
+ */
+public interface ResourceWaiter<T> {
+
+   /**
+    * Hand the waiter an item. The waiter has been removed from the pool's
+    * wait queue before this is called. Returning {@code false} refuses the
+    * item, for example because the waiter has timed out or been cancelled,
+    * in which case the pool offers it to the next waiter or holds it idle.
+    */
+   public boolean deliver(PooledResource<T> res);
+
+   /**
+    * Called when the waiter is removed from the pool's wait queue without an
+    * item because the pool was shutdown or woken.
+    */
+   public void release(boolean shutdown);
+
+}
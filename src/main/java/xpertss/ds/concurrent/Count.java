@@ -1,87 +1,110 @@
 package xpertss.ds.concurrent;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
-
+/**
+ * A count tracks a current value along with the highest value it has ever
+ * reached and the total number of increments it has seen.
+ * <p>
+ * The current value is maintained with compare and swap so that conditional
+ * increments and decrements are evaluated against the exact value they
+ * modify. The total is striped and the peek is only written when a new high
+ * is reached so neither adds contention to the common case.
+ *
+ * @author cfloersch
+ */
 public class Count {
 
-   private int total;
-   private int peek;
-   private int current;
-   
+   private static final Condition ALWAYS = new Condition() {
+      public boolean evaluate(long current)
+      {
+         return true;
+      }
+   };
+
+   private final AtomicInteger current = new AtomicInteger();
+   private final AtomicInteger peek = new AtomicInteger();
+   private final LongAdder total = new LongAdder();
+
    public Count increment()
    {
-      increment(new Condition() {
-         public boolean evaluate(long current)
-         {
-            return true;
-         }
-      });
+      increment(ALWAYS);
       return this;
    }
-   
-   public synchronized boolean increment(Condition condition)
+
+   public boolean increment(Condition condition)
    {
-      if(condition.evaluate(current)) {
-         total++;
-         current++;
-         peek = Math.max(peek, current);
-         return true;
+      for(;;) {
+         int c = current.get();
+         if(!condition.evaluate(c)) return false;
+         if(current.compareAndSet(c, c + 1)) {
+            total.increment();
+            updatePeek(c + 1);
+            return true;
+         }
       }
-      return false;
    }
 
    public Count decrement()
    {
-      decrement(new Condition() {
-         public boolean evaluate(long current)
-         {
-            return true;
-         }
-      });
+      decrement(ALWAYS);
       return this;
    }
-   
-   public synchronized boolean decrement(Condition condition)
+
+   public boolean decrement(Condition condition)
    {
-      if(condition.evaluate(current)) {
-         current--;
-         return true;
+      for(;;) {
+         int c = current.get();
+         if(!condition.evaluate(c)) return false;
+         if(current.compareAndSet(c, c - 1)) return true;
       }
-      return false;
    }
-   
-   
 
-   public synchronized int current()
+
+
+   public int current()
    {
-      return current;
+      return current.get();
    }
-   
-   public synchronized int currentMinus(int value)
+
+   public int currentMinus(int value)
+   {
+      return current.get() - value;
+   }
+
+   public int currentPlus(int value)
    {
-      return current - value;
+      return current.get() + value;
    }
 
-   public synchronized int currentPlus(int value)
+
+
+   public int peek()
    {
-      return current + value;
+      return peek.get();
    }
 
-   
-   
-   public synchronized int peek()
+   public int total()
    {
-      return peek;
+      return (int) total.sum();
    }
 
-   public synchronized int total()
+
+   public void reset()
    {
-      return total;
+      current.set(0);
+      peek.set(0);
+      total.reset();
    }
-   
-   
-   public synchronized void reset()
+
+
+
+   private void updatePeek(int value)
    {
-      total = peek = current = 0;
+      int p;
+      while(value > (p = peek.get())) {
+         if(peek.compareAndSet(p, value)) return;
+      }
    }
 }
@@ -0,0 +1,145 @@
+package xpertss.ds.concurrent;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed size histogram of non-negative values with logarithmic buckets.
+ * <p>
+ * Values below sixteen are counted exactly. Larger values are counted in
+ * one of sixteen linear sub buckets within their power of two which bounds
+ * the error of any reported percentile to roughly six percent of the value.
+ * Values larger than 2^40 are counted in the last bucket.
+ * <p>
+ * The buckets are allocated when the first value is recorded, so a pool
+ * which is never used does not pay for them. From then on recording a value
+ * does not allocate and does not take a lock. The counts are walked when a
+ * percentile is read which means percentiles computed while values are being
+ * recorded are approximate.
+ *
+ * @author cfloersch
+ */
+public class Histogram {
+
+   private static final int SUB_BITS = 4;
+   private static final int SUB_COUNT = 1 << SUB_BITS;
+   private static final int SUB_MASK = SUB_COUNT - 1;
+   private static final int MAX_MSB = 40;
+
+   private static final int BUCKETS = SUB_COUNT + (MAX_MSB - SUB_BITS + 1) * SUB_COUNT;
+
+
+   private final AtomicLong max = new AtomicLong();
+   private volatile AtomicLongArray counts;
+
+
+   /**
+    * Record the given value. Negative values are recorded as zero.
+    */
+   public void record(long value)
+   {
+      if(value < 0) value = 0;
+      AtomicLongArray cs = counts;
+      if(cs == null) cs = inflate();
+      cs.getAndIncrement(index(value));
+      long m;
+      while(value > (m = max.get())) {
+         if(max.compareAndSet(m, value)) break;
+      }
+   }
+
+   /**
+    * Returns the number of values recorded.
+    */
+   public long getCount()
+   {
+      AtomicLongArray cs = counts;
+      if(cs == null) return 0;
+      long count = 0;
+      for(int i = 0; i < BUCKETS; i++) count += cs.get(i);
+      return count;
+   }
+
+   /**
+    * Returns the largest value recorded.
+    */
+   public long getMaximum()
+   {
+      return max.get();
+   }
+
+   /**
+    * Returns the value at or below which the given percentage of recorded
+    * values fall. The percentile is given as a value between 0 and 100.
+    * The value returned is the upper bound of the bucket the percentile
+    * falls in and never exceeds the largest value recorded. Zero is
+    * returned if no values have been recorded.
+    */
+   public long getValueAtPercentile(double percentile)
+   {
+      AtomicLongArray cs = counts;
+      if(cs == null) return 0;
+      long[] snapshot = new long[BUCKETS];
+      long total = 0;
+      for(int i = 0; i < BUCKETS; i++) total += (snapshot[i] = cs.get(i));
+      if(total == 0) return 0;
+
+      double p = Math.min(Math.max(percentile, 0D), 100D);
+      long target = Math.max(1L, (long) Math.ceil(p / 100D * total));
+      long seen = 0;
+      for(int i = 0; i < BUCKETS; i++) {
+         seen += snapshot[i];
+         if(seen >= target) return Math.min(upperBound(i), max.get());
+      }
+      return max.get();
+   }
+
+   public void reset()
+   {
+      AtomicLongArray cs = counts;
+      if(cs != null) {
+         for(int i = 0; i < BUCKETS; i++) cs.set(i, 0L);
+      }
+      max.set(0L);
+   }
+
+   public String toString()
+   {
+      StringBuilder buf = new StringBuilder();
+      buf.append("p50=").append(Long.toString(getValueAtPercentile(50D)));
+      buf.append(", p90=").append(Long.toString(getValueAtPercentile(90D)));
+      buf.append(", p99=").append(Long.toString(getValueAtPercentile(99D)));
+      buf.append(", p99.9=").append(Long.toString(getValueAtPercentile(99.9D)));
+      buf.append(", max=").append(Long.toString(getMaximum()));
+      return buf.toString();
+   }
+
+
+
+
+   private synchronized AtomicLongArray inflate()
+   {
+      if(counts == null) counts = new AtomicLongArray(BUCKETS);
+      return counts;
+   }
+
+   static int index(long value)
+   {
+      if(value < SUB_COUNT) return (int) value;
+      int msb = 63 - Long.numberOfLeadingZeros(value);
+      if(msb > MAX_MSB) return BUCKETS - 1;
+      int sub = (int) (value >>> (msb - SUB_BITS)) & SUB_MASK;
+      return SUB_COUNT + (msb - SUB_BITS) * SUB_COUNT + sub;
+   }
+
+   static long upperBound(int index)
+   {
+      if(index < SUB_COUNT) return index;
+      if(index == BUCKETS - 1) return Long.MAX_VALUE;
+      int msb = (index - SUB_COUNT) / SUB_COUNT + SUB_BITS;
+      int sub = (index - SUB_COUNT) & SUB_MASK;
+      long lower = ((long) (SUB_COUNT + sub)) << (msb - SUB_BITS);
+      return lower + (1L << (msb - SUB_BITS)) - 1;
+   }
+
+}
@@ -1,37 +1,46 @@
 package xpertss.ds.concurrent;
 
+import java.util.concurrent.atomic.LongAdder;
+
 /**
+ * A ratio of hits to total attempts. Both values are striped so recording
+ * does not contend across threads. The values are summed when read.
+ *
  * @author cfloersch
  */
 public class Ratio {
 
-   private int total;
-   private int hits;
-   
-   public synchronized void record(boolean hit)
+   private final LongAdder total = new LongAdder();
+   private final LongAdder hits = new LongAdder();
+
+   public void record(boolean hit)
    {
-      total++;
-      if(hit) hits++;
+      total.increment();
+      if(hit) hits.increment();
    }
-   
-   public synchronized int hits()
+
+   public int hits()
    {
-      return hits;
+      return (int) hits.sum();
    }
-   
-   public synchronized int total()
+
+   public int total()
    {
-      return total;
+      return (int) total.sum();
    }
-   
-   public synchronized int ratio()
+
+   public int ratio()
    {
-      return (total == 0) ? 0 : hits * 100 / total;
+      long h = hits.sum();
+      long t = total.sum();
+      // a hit may be recorded between the two reads
+      return (t == 0) ? 0 : (int) (Math.min(h, t) * 100 / t);
    }
-   
-   public synchronized void reset()
+
+   public void reset()
    {
-      total = hits = 0;
+      total.reset();
+      hits.reset();
    }
 
 }
@@ -1,53 +1,71 @@
 package xpertss.ds.concurrent;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Records the minimum, maximum, total and count of a series of values. The
+ * total and count are striped and the minimum and maximum are only written
+ * when a new extreme is seen, so recording does not contend across threads.
+ * The values are summed when read.
+ *
+ * @author cfloersch
+ */
 public class Stats {
 
-   private long min = Long.MAX_VALUE;
-   private long max;
-   private long total;
-   private int count;
+   private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+   private final AtomicLong max = new AtomicLong();
+   private final LongAdder total = new LongAdder();
+   private final LongAdder count = new LongAdder();
 
-   
-   public synchronized long getMinimum()
+
+   public long getMinimum()
    {
-      return min;
+      return min.get();
    }
-   
-   public synchronized long getAverage()
+
+   public long getAverage()
    {
-      return (count == 0) ? 0 : total / count;
+      long c = count.sum();
+      return (c == 0) ? 0 : total.sum() / c;
    }
-   
-   public synchronized long getMaximum()
+
+   public long getMaximum()
    {
-      return max;
+      return max.get();
    }
-   
-   public synchronized void record(long value)
+
+   public void record(long value)
    {
-      min = Math.min(min, value);
-      max = Math.max(max, value);
-      total += value;
-      count++;
+      long m;
+      while(value < (m = min.get())) {
+         if(min.compareAndSet(m, value)) break;
+      }
+      while(value > (m = max.get())) {
+         if(max.compareAndSet(m, value)) break;
+      }
+      total.add(value);
+      count.increment();
    }
-   
+
    public String toString()
    {
+      long t = total.sum();
+      long c = count.sum();
       StringBuilder buf = new StringBuilder();
-      synchronized(this) {
-         buf.append("min=").append(Long.toString(min));
-         buf.append(", avg=").append((count > 0) ? Long.toString(total/count) : Long.toString(0));
-         buf.append(", max=").append(Long.toString(max));
-         buf.append(", total=").append(Long.toString(total));
-         buf.append(", count=").append(Integer.toString(count));
-      }
+      buf.append("min=").append(Long.toString(min.get()));
+      buf.append(", avg=").append((c > 0) ? Long.toString(t/c) : Long.toString(0));
+      buf.append(", max=").append(Long.toString(max.get()));
+      buf.append(", total=").append(Long.toString(t));
+      buf.append(", count=").append(Long.toString(c));
       return buf.toString();
    }
-   
-   public synchronized void reset()
+
+   public void reset()
    {
-      total = min = max = 0;
-      count = 0;
+      total.reset();
+      count.reset();
+      min.set(Long.MAX_VALUE);
+      max.set(0);
    }
 }
@@ -3,11 +3,12 @@ package xpertss.ds.jdbc;
 import xpertss.ds.DataSourceException;
 import xpertss.ds.JdbcDataSource;
 import xpertss.ds.base.BaseOriginDataSource;
+import xpertss.ds.base.CircuitBreaker;
+import xpertss.ds.jdbc.spi.JdbcConnectionTester;
 import xpertss.ds.jdbc.spi.JdbcDriverService;
 import xpertss.ds.jdbc.spi.JdbcDriverSupport;
-import xpertss.ds.utils.NumberUtils;
+import xpertss.ds.utils.JdbcUtils;
 import xpertss.ds.utils.ServiceLoader;
-import xpertss.ds.utils.TimeProvider;
 
 import javax.naming.NamingException;
 import javax.naming.Reference;
@@ -40,12 +41,12 @@ public class JdbcOriginDataSource extends BaseOriginDataSource<Connection>
 
 
    private volatile boolean closed = false;
-   private volatile long lastFail = 0;          // not persisted across jndi context storage
+   private final CircuitBreaker breaker = new CircuitBreaker(getClock());   // not persisted across jndi context storage
 
-   private String name;
+   private volatile String name;
    private Driver driver;
-   private JdbcDriverSupport support;
-   private long blackout = 30000;
+   private volatile JdbcDriverSupport support;
+   private volatile Config config = new Config(this);
 
    JdbcOriginDataSource()
    {
@@ -53,12 +54,14 @@ public class JdbcOriginDataSource extends BaseOriginDataSource<Connection>
    }
 
 
-   public synchronized String getName()
+   public String getName()
    {
+      String name = this.name;
       if(name == null) {
+         JdbcDriverSupport support = this.support;
          String uri = getProperty(URL);
          if(uri != null && support != null) {
-            name = support.parseName(uri);
+            this.name = name = support.parseName(uri);
          }
          if(name == null) {
             if(support != null) {
@@ -74,23 +77,45 @@ public class JdbcOriginDataSource extends BaseOriginDataSource<Connection>
    
    public boolean isAvailable()
    {
-      return (TimeProvider.get().milliTime() - lastFail > blackout);
+      return breaker.isAvailable();
+   }
+
+   public String getBreakerState()
+   {
+      return breaker.getState().name();
+   }
+
+   public int getBreakerOpenCount()
+   {
+      return breaker.getOpenCount();
+   }
+
+   public int getBreakerProbeCount()
+   {
+      return breaker.getProbeCount();
+   }
+
+   public int getBreakerCloseCount()
+   {
+      return breaker.getCloseCount();
    }
 
    public Connection getConnection() throws DataSourceException
    {
       if(closed) throw new DataSourceException("datasource.closed");
-      if(!isAvailable()) throw new DataSourceException("datasource.unavailable");
+      if(!breaker.allowRequest()) throw new DataSourceException("datasource.unavailable");
       try {
-         return create(getProperty(USERNAME), getProperty(PASSWORD));
+         Connection conn = create(getProperty(USERNAME), getProperty(PASSWORD));
+         breaker.recordSuccess();
+         return conn;
       } catch (DataSourceException dse) {
-         lastFail = TimeProvider.get().milliTime();
+         breaker.recordFailure(config.blackout);
          throw dse;
       } catch (SQLException e) {
-         lastFail = TimeProvider.get().milliTime();
+         breaker.recordFailure(config.blackout);
          throw new DataSourceException("connect.failed", e);
       } catch (RuntimeException e) {
-         lastFail = TimeProvider.get().milliTime();
+         breaker.recordFailure(config.blackout);
          throw new DataSourceException("connect.failed", e);
       }
    }
@@ -109,8 +134,6 @@ public class JdbcOriginDataSource extends BaseOriginDataSource<Connection>
          }
       } else if(URL.equals(key)) {
          name = null;
-      } else if(BLACKOUT.equals(key)) {
-         blackout = NumberUtils.getLong(getProperty(BLACKOUT), 30) * 1000;
       }
       return result;
    }
@@ -124,8 +147,6 @@ public class JdbcOriginDataSource extends BaseOriginDataSource<Connection>
          name = null;
       } else if(URL.equals(key)) {
          name = null;
-      } else if(BLACKOUT.equals(key)) {
-         blackout = 30000;
       }
       return result;
    }
@@ -135,6 +156,31 @@ public class JdbcOriginDataSource extends BaseOriginDataSource<Connection>
    {
       closed = true;
    }
+
+
+   /**
+    * Test the given connection using the driver support's own test if it
+    * has one and isValid otherwise.
+    */
+   boolean testConnection(Connection conn, int timeout)
+   {
+      JdbcDriverSupport support = this.support;
+      if(support instanceof JdbcConnectionTester) {
+         try {
+            return ((JdbcConnectionTester) support).isValid(conn, timeout);
+         } catch(RuntimeException e) {
+            return false;
+         }
+      }
+      return JdbcUtils.isValid(conn, timeout);
+   }
+
+
+   @Override
+   protected void configure()
+   {
+      config = new Config(this);
+   }
    
    
 
@@ -170,12 +216,10 @@ public class JdbcOriginDataSource extends BaseOriginDataSource<Connection>
       throws SQLException, DataSourceException
    {
       Properties props = new Properties();
-
-      int connect_timeout = getPositiveInt(CONNECT_TIMEOUT, 0);
-      int read_timeout = getPositiveInt(READ_TIMEOUT, 0);
+      Config config = this.config;
 
       // Decided to let support runtime errors propagate
-      if(support != null) support.configureTimeouts(props, connect_timeout, read_timeout);
+      if(support != null) support.configureTimeouts(props, config.connectTimeout, config.readTimeout);
 
       // Set username/password after making call to service provider
       if(username != null) props.put("user", username);
@@ -187,11 +231,11 @@ public class JdbcOriginDataSource extends BaseOriginDataSource<Connection>
 
       if(conn == null) throw new DataSourceException("url.invalid");
 
-      conn.setAutoCommit(getBoolean(AUTO_COMMIT, true));  // specification default (true)
-      conn.setReadOnly(getBoolean(READ_ONLY, false));   // specification default (false)
+      conn.setAutoCommit(config.autoCommit);
+      conn.setReadOnly(config.readOnly);
       
-      conn.setTransactionIsolation(getIsolation().getValue());
-      conn.setHoldability(getHoldability().getValue());
+      conn.setTransactionIsolation(config.isolation.getValue());
+      conn.setHoldability(config.holdability.getValue());
       
       return conn;
    }
@@ -233,4 +277,33 @@ public class JdbcOriginDataSource extends BaseOriginDataSource<Connection>
       }
    }
 
+
+
+   /*
+    * The parsed connection settings, rebuilt whenever a property changes so
+    * availability checks and connection creation never parse strings.
+    */
+   private static final class Config {
+
+      private final long blackout;
+      private final int connectTimeout;
+      private final int readTimeout;
+      private final boolean autoCommit;
+      private final boolean readOnly;
+      private final Isolation isolation;
+      private final Holdability holdability;
+
+      private Config(JdbcOriginDataSource source)
+      {
+         blackout = source.getLong(BLACKOUT, 30) * 1000;
+         connectTimeout = source.getPositiveInt(CONNECT_TIMEOUT, 0);
+         readTimeout = source.getPositiveInt(READ_TIMEOUT, 0);
+         autoCommit = source.getBoolean(AUTO_COMMIT, true);   // specification default (true)
+         readOnly = source.getBoolean(READ_ONLY, false);      // specification default (false)
+         isolation = source.getIsolation();
+         holdability = source.getHoldability();
+      }
+
+   }
+
 }
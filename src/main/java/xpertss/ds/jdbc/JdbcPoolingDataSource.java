@@ -4,7 +4,10 @@ import xpertss.ds.DataSourceException;
 import xpertss.ds.JdbcDataSource;
 import xpertss.ds.PoolingDataSource;
 import xpertss.ds.base.BasePoolingDataSource;
+import xpertss.ds.base.PooledResource;
+import xpertss.ds.concurrent.Ratio;
 import xpertss.ds.utils.JdbcUtils;
+import xpertss.ds.utils.NumberUtils;
 import xpertss.ds.utils.Objects;
 import xpertss.ds.utils.StringUtils;
 
@@ -15,6 +18,7 @@ import javax.naming.StringRefAddr;
 import java.sql.Connection;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Implements a Pooling data source for JDBC connections.
@@ -28,7 +32,11 @@ public class JdbcPoolingDataSource extends BasePoolingDataSource<Connection>
    
 
    private volatile int unavailableCount;
+   private final AtomicBoolean outage = new AtomicBoolean();
    private final JdbcOriginDataSource origin;
+
+   private final Ratio statementRatio = new Ratio();
+   private volatile int statementCacheSize;
    
    JdbcPoolingDataSource(JdbcOriginDataSource origin)
    {
@@ -53,12 +61,59 @@ public class JdbcPoolingDataSource extends BasePoolingDataSource<Connection>
    {
       return unavailableCount;
    }
+
+   public String getBreakerState()
+   {
+      return origin.getBreakerState();
+   }
+
+   public int getBreakerOpenCount()
+   {
+      return origin.getBreakerOpenCount();
+   }
+
+   public int getBreakerProbeCount()
+   {
+      return origin.getBreakerProbeCount();
+   }
+
+   public int getBreakerCloseCount()
+   {
+      return origin.getBreakerCloseCount();
+   }
+   
+   public int getStatementCacheHits()
+   {
+      return statementRatio.hits();
+   }
+   
+   public int getStatementCacheMisses()
+   {
+      return statementRatio.total() - statementRatio.hits();
+   }
+   
+   
+   public String setProperty(String key, String value)
+   {
+      String result = super.setProperty(key, value);
+      if(STATEMENT_CACHE_SIZE.equals(key)) {
+         statementCacheSize = Math.max(NumberUtils.getInt(value, 0), 0);
+      }
+      return result;
+   }
+   
+   public String clearProperty(String key)
+   {
+      String result = super.clearProperty(key);
+      if(STATEMENT_CACHE_SIZE.equals(key)) statementCacheSize = 0;
+      return result;
+   }
    
    
    public Connection getConnection() 
       throws DataSourceException
    {
-      if(isAvailable()) return JdbcProxiedConnection.proxy(getPooledResource());
+      if(isAvailable()) return issue(getPooledResource());
       throw new DataSourceException("datasource.unavailable");
    }
    
@@ -110,6 +165,12 @@ public class JdbcPoolingDataSource extends BasePoolingDataSource<Connection>
    
    
    
+   @Override
+   protected Connection issue(PooledResource<Connection> res)
+   {
+      return JdbcProxiedConnection.proxy(res, statementCacheSize, statementRatio);
+   }
+
    @Override
    protected void closeResource(Connection resource)
    {
@@ -120,7 +181,10 @@ public class JdbcPoolingDataSource extends BasePoolingDataSource<Connection>
    protected Connection createResource() throws DataSourceException
    {
       try {
-         return origin.getConnection();
+         Connection conn = origin.getConnection();
+         // the outage is over so warm the pool back up in the background
+         if(outage.get() && outage.compareAndSet(true, false)) fill();
+         return conn;
       } catch(DataSourceException e) {
          markUnavailable();
          throw e;
@@ -131,16 +195,18 @@ public class JdbcPoolingDataSource extends BasePoolingDataSource<Connection>
    @Override
    protected boolean testResource(Connection resource)
    {
-      return JdbcUtils.isValid(resource, 2);
+      return origin.testConnection(resource, getValidationTimeout());
    }
 
 
 
    private void markUnavailable()
    {
-      // TODO Under concurrency this can increment for each failure rather than each blackout
-      unavailableCount++;
-      drain();
+      // count and drain once per outage rather than once for each borrower that fails during it
+      if(outage.compareAndSet(false, true)) {
+         unavailableCount++;
+         drain();
+      }
    }
 
 
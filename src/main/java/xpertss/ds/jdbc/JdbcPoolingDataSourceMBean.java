@@ -11,4 +11,23 @@ import xpertss.ds.base.BasePoolingDataSourceMBean;
  */
 public interface JdbcPoolingDataSourceMBean extends BasePoolingDataSourceMBean {
 
+   /**
+    * Returns the number of times a prepared or callable statement was
+    * served from a connection's statement cache since this pool was
+    * created. This is always zero unless {@code statement-cache-size}
+    * is set.
+    * 
+    * @return The number of statement cache hits
+    */
+   public int getStatementCacheHits();
+
+   /**
+    * Returns the number of times a cacheable prepared or callable
+    * statement had to be prepared by the driver because it was not
+    * found in the connection's statement cache.
+    * 
+    * @return The number of statement cache misses
+    */
+   public int getStatementCacheMisses();
+
 }
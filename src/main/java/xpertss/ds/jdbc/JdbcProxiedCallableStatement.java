@@ -1,42 +1,780 @@
 package xpertss.ds.jdbc;
 
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
 import java.sql.CallableStatement;
-import java.sql.Connection;
-import java.sql.PreparedStatement;
-
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.Ref;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
+import java.util.Map;
 
 /**
- * A proxy handler for handling callable statements. It ensures that
- * all of the returned object types that provide access to the under
- * lying connection pass back a proxied connection rather than the
- * raw connection.
+ * A wrapper for callable statements. It ensures that all of the returned
+ * object types that provide access to the under lying connection pass back
+ * the wrapped connection rather than the raw connection.
  * 
  * @author cfloersch
  */
-public class JdbcProxiedCallableStatement extends JdbcProxiedStatement {
+public class JdbcProxiedCallableStatement extends JdbcProxiedPreparedStatement implements CallableStatement {
+
+   private final CallableStatement cstmt;
+   
+   JdbcProxiedCallableStatement(JdbcProxiedConnection conn, int generation, JdbcStatementCache.Key key, CallableStatement stmt)
+   {
+      super(conn, generation, key, stmt);
+      this.cstmt = stmt;
+   }
+
+   // TODO May need to override the getArray method and return a wrapped
+   // Array which returns a wrapped Result Set
 
 
-   public static PreparedStatement proxy(Connection parent, CallableStatement stmt)
+   public void registerOutParameter(int parameterIndex, int sqlType)
+      throws SQLException
    {
-      JdbcProxiedCallableStatement proxy = new JdbcProxiedCallableStatement(parent, stmt);
-      ClassLoader cl = stmt.getClass().getClassLoader();
-      return (CallableStatement) Proxy.newProxyInstance(cl, new Class[] { CallableStatement.class }, proxy);
+      callable().registerOutParameter(parameterIndex, sqlType);
    }
-   
-   JdbcProxiedCallableStatement(Connection conn, CallableStatement stmt)
+
+   public void registerOutParameter(int parameterIndex, int sqlType, int scale)
+      throws SQLException
    {
-      super(conn, stmt);
+      callable().registerOutParameter(parameterIndex, sqlType, scale);
    }
-   
-   public Object invoke(Object proxy, Method method, Object[] args) 
-      throws Throwable
+
+   public boolean wasNull()
+      throws SQLException
    {
-      // TODO May need to override the getArray method and return a proxied
-      // Array which returns a Proxied Result Set
-      return super.invoke(proxy, method, args);
+      return callable().wasNull();
    }
-   
-   
+
+   public String getString(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getString(parameterIndex);
+   }
+
+   public boolean getBoolean(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getBoolean(parameterIndex);
+   }
+
+   public byte getByte(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getByte(parameterIndex);
+   }
+
+   public short getShort(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getShort(parameterIndex);
+   }
+
+   public int getInt(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getInt(parameterIndex);
+   }
+
+   public long getLong(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getLong(parameterIndex);
+   }
+
+   public float getFloat(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getFloat(parameterIndex);
+   }
+
+   public double getDouble(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getDouble(parameterIndex);
+   }
+
+   @Deprecated
+   public BigDecimal getBigDecimal(int parameterIndex, int scale)
+      throws SQLException
+   {
+      return callable().getBigDecimal(parameterIndex, scale);
+   }
+
+   public byte[] getBytes(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getBytes(parameterIndex);
+   }
+
+   public Date getDate(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getDate(parameterIndex);
+   }
+
+   public Time getTime(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getTime(parameterIndex);
+   }
+
+   public Timestamp getTimestamp(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getTimestamp(parameterIndex);
+   }
+
+   public Object getObject(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getObject(parameterIndex);
+   }
+
+   public BigDecimal getBigDecimal(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getBigDecimal(parameterIndex);
+   }
+
+   public Object getObject(int parameterIndex, Map<String,Class<?>> map)
+      throws SQLException
+   {
+      return callable().getObject(parameterIndex, map);
+   }
+
+   public Ref getRef(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getRef(parameterIndex);
+   }
+
+   public Blob getBlob(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getBlob(parameterIndex);
+   }
+
+   public Clob getClob(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getClob(parameterIndex);
+   }
+
+   public Array getArray(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getArray(parameterIndex);
+   }
+
+   public Date getDate(int parameterIndex, Calendar cal)
+      throws SQLException
+   {
+      return callable().getDate(parameterIndex, cal);
+   }
+
+   public Time getTime(int parameterIndex, Calendar cal)
+      throws SQLException
+   {
+      return callable().getTime(parameterIndex, cal);
+   }
+
+   public Timestamp getTimestamp(int parameterIndex, Calendar cal)
+      throws SQLException
+   {
+      return callable().getTimestamp(parameterIndex, cal);
+   }
+
+   public void registerOutParameter(int parameterIndex, int sqlType, String typeName)
+      throws SQLException
+   {
+      callable().registerOutParameter(parameterIndex, sqlType, typeName);
+   }
+
+   public void registerOutParameter(String parameterName, int sqlType)
+      throws SQLException
+   {
+      callable().registerOutParameter(parameterName, sqlType);
+   }
+
+   public void registerOutParameter(String parameterName, int sqlType, int scale)
+      throws SQLException
+   {
+      callable().registerOutParameter(parameterName, sqlType, scale);
+   }
+
+   public void registerOutParameter(String parameterName, int sqlType, String typeName)
+      throws SQLException
+   {
+      callable().registerOutParameter(parameterName, sqlType, typeName);
+   }
+
+   public java.net.URL getURL(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getURL(parameterIndex);
+   }
+
+   public void setURL(String parameterName, java.net.URL val)
+      throws SQLException
+   {
+      callable().setURL(parameterName, val);
+   }
+
+   public void setNull(String parameterName, int sqlType)
+      throws SQLException
+   {
+      callable().setNull(parameterName, sqlType);
+   }
+
+   public void setBoolean(String parameterName, boolean x)
+      throws SQLException
+   {
+      callable().setBoolean(parameterName, x);
+   }
+
+   public void setByte(String parameterName, byte x)
+      throws SQLException
+   {
+      callable().setByte(parameterName, x);
+   }
+
+   public void setShort(String parameterName, short x)
+      throws SQLException
+   {
+      callable().setShort(parameterName, x);
+   }
+
+   public void setInt(String parameterName, int x)
+      throws SQLException
+   {
+      callable().setInt(parameterName, x);
+   }
+
+   public void setLong(String parameterName, long x)
+      throws SQLException
+   {
+      callable().setLong(parameterName, x);
+   }
+
+   public void setFloat(String parameterName, float x)
+      throws SQLException
+   {
+      callable().setFloat(parameterName, x);
+   }
+
+   public void setDouble(String parameterName, double x)
+      throws SQLException
+   {
+      callable().setDouble(parameterName, x);
+   }
+
+   public void setBigDecimal(String parameterName, BigDecimal x)
+      throws SQLException
+   {
+      callable().setBigDecimal(parameterName, x);
+   }
+
+   public void setString(String parameterName, String x)
+      throws SQLException
+   {
+      callable().setString(parameterName, x);
+   }
+
+   public void setBytes(String parameterName, byte[] x)
+      throws SQLException
+   {
+      callable().setBytes(parameterName, x);
+   }
+
+   public void setDate(String parameterName, Date x)
+      throws SQLException
+   {
+      callable().setDate(parameterName, x);
+   }
+
+   public void setTime(String parameterName, Time x)
+      throws SQLException
+   {
+      callable().setTime(parameterName, x);
+   }
+
+   public void setTimestamp(String parameterName, Timestamp x)
+      throws SQLException
+   {
+      callable().setTimestamp(parameterName, x);
+   }
+
+   public void setAsciiStream(String parameterName, java.io.InputStream x, int length)
+      throws SQLException
+   {
+      callable().setAsciiStream(parameterName, x, length);
+   }
+
+   public void setBinaryStream(String parameterName, java.io.InputStream x, int length)
+      throws SQLException
+   {
+      callable().setBinaryStream(parameterName, x, length);
+   }
+
+   public void setObject(String parameterName, Object x, int targetSqlType, int scale)
+      throws SQLException
+   {
+      callable().setObject(parameterName, x, targetSqlType, scale);
+   }
+
+   public void setObject(String parameterName, Object x, int targetSqlType)
+      throws SQLException
+   {
+      callable().setObject(parameterName, x, targetSqlType);
+   }
+
+   public void setObject(String parameterName, Object x)
+      throws SQLException
+   {
+      callable().setObject(parameterName, x);
+   }
+
+   public void setCharacterStream(String parameterName, java.io.Reader reader, int length)
+      throws SQLException
+   {
+      callable().setCharacterStream(parameterName, reader, length);
+   }
+
+   public void setDate(String parameterName, Date x, Calendar cal)
+      throws SQLException
+   {
+      callable().setDate(parameterName, x, cal);
+   }
+
+   public void setTime(String parameterName, Time x, Calendar cal)
+      throws SQLException
+   {
+      callable().setTime(parameterName, x, cal);
+   }
+
+   public void setTimestamp(String parameterName, Timestamp x, Calendar cal)
+      throws SQLException
+   {
+      callable().setTimestamp(parameterName, x, cal);
+   }
+
+   public void setNull(String parameterName, int sqlType, String typeName)
+      throws SQLException
+   {
+      callable().setNull(parameterName, sqlType, typeName);
+   }
+
+   public String getString(String parameterName)
+      throws SQLException
+   {
+      return callable().getString(parameterName);
+   }
+
+   public boolean getBoolean(String parameterName)
+      throws SQLException
+   {
+      return callable().getBoolean(parameterName);
+   }
+
+   public byte getByte(String parameterName)
+      throws SQLException
+   {
+      return callable().getByte(parameterName);
+   }
+
+   public short getShort(String parameterName)
+      throws SQLException
+   {
+      return callable().getShort(parameterName);
+   }
+
+   public int getInt(String parameterName)
+      throws SQLException
+   {
+      return callable().getInt(parameterName);
+   }
+
+   public long getLong(String parameterName)
+      throws SQLException
+   {
+      return callable().getLong(parameterName);
+   }
+
+   public float getFloat(String parameterName)
+      throws SQLException
+   {
+      return callable().getFloat(parameterName);
+   }
+
+   public double getDouble(String parameterName)
+      throws SQLException
+   {
+      return callable().getDouble(parameterName);
+   }
+
+   public byte[] getBytes(String parameterName)
+      throws SQLException
+   {
+      return callable().getBytes(parameterName);
+   }
+
+   public Date getDate(String parameterName)
+      throws SQLException
+   {
+      return callable().getDate(parameterName);
+   }
+
+   public Time getTime(String parameterName)
+      throws SQLException
+   {
+      return callable().getTime(parameterName);
+   }
+
+   public Timestamp getTimestamp(String parameterName)
+      throws SQLException
+   {
+      return callable().getTimestamp(parameterName);
+   }
+
+   public Object getObject(String parameterName)
+      throws SQLException
+   {
+      return callable().getObject(parameterName);
+   }
+
+   public BigDecimal getBigDecimal(String parameterName)
+      throws SQLException
+   {
+      return callable().getBigDecimal(parameterName);
+   }
+
+   public Object getObject(String parameterName, Map<String,Class<?>> map)
+      throws SQLException
+   {
+      return callable().getObject(parameterName, map);
+   }
+
+   public Ref getRef(String parameterName)
+      throws SQLException
+   {
+      return callable().getRef(parameterName);
+   }
+
+   public Blob getBlob(String parameterName)
+      throws SQLException
+   {
+      return callable().getBlob(parameterName);
+   }
+
+   public Clob getClob(String parameterName)
+      throws SQLException
+   {
+      return callable().getClob(parameterName);
+   }
+
+   public Array getArray(String parameterName)
+      throws SQLException
+   {
+      return callable().getArray(parameterName);
+   }
+
+   public Date getDate(String parameterName, Calendar cal)
+      throws SQLException
+   {
+      return callable().getDate(parameterName, cal);
+   }
+
+   public Time getTime(String parameterName, Calendar cal)
+      throws SQLException
+   {
+      return callable().getTime(parameterName, cal);
+   }
+
+   public Timestamp getTimestamp(String parameterName, Calendar cal)
+      throws SQLException
+   {
+      return callable().getTimestamp(parameterName, cal);
+   }
+
+   public java.net.URL getURL(String parameterName)
+      throws SQLException
+   {
+      return callable().getURL(parameterName);
+   }
+
+   public RowId getRowId(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getRowId(parameterIndex);
+   }
+
+   public RowId getRowId(String parameterName)
+      throws SQLException
+   {
+      return callable().getRowId(parameterName);
+   }
+
+   public void setRowId(String parameterName, RowId x)
+      throws SQLException
+   {
+      callable().setRowId(parameterName, x);
+   }
+
+   public void setNString(String parameterName, String value)
+      throws SQLException
+   {
+      callable().setNString(parameterName, value);
+   }
+
+   public void setNCharacterStream(String parameterName, Reader value, long length)
+      throws SQLException
+   {
+      callable().setNCharacterStream(parameterName, value, length);
+   }
+
+   public void setNClob(String parameterName, NClob value)
+      throws SQLException
+   {
+      callable().setNClob(parameterName, value);
+   }
+
+   public void setClob(String parameterName, Reader reader, long length)
+      throws SQLException
+   {
+      callable().setClob(parameterName, reader, length);
+   }
+
+   public void setBlob(String parameterName, InputStream inputStream, long length)
+      throws SQLException
+   {
+      callable().setBlob(parameterName, inputStream, length);
+   }
+
+   public void setNClob(String parameterName, Reader reader, long length)
+      throws SQLException
+   {
+      callable().setNClob(parameterName, reader, length);
+   }
+
+   public NClob getNClob(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getNClob(parameterIndex);
+   }
+
+   public NClob getNClob(String parameterName)
+      throws SQLException
+   {
+      return callable().getNClob(parameterName);
+   }
+
+   public void setSQLXML(String parameterName, SQLXML xmlObject)
+      throws SQLException
+   {
+      callable().setSQLXML(parameterName, xmlObject);
+   }
+
+   public SQLXML getSQLXML(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getSQLXML(parameterIndex);
+   }
+
+   public SQLXML getSQLXML(String parameterName)
+      throws SQLException
+   {
+      return callable().getSQLXML(parameterName);
+   }
+
+   public String getNString(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getNString(parameterIndex);
+   }
+
+   public String getNString(String parameterName)
+      throws SQLException
+   {
+      return callable().getNString(parameterName);
+   }
+
+   public java.io.Reader getNCharacterStream(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getNCharacterStream(parameterIndex);
+   }
+
+   public java.io.Reader getNCharacterStream(String parameterName)
+      throws SQLException
+   {
+      return callable().getNCharacterStream(parameterName);
+   }
+
+   public java.io.Reader getCharacterStream(int parameterIndex)
+      throws SQLException
+   {
+      return callable().getCharacterStream(parameterIndex);
+   }
+
+   public java.io.Reader getCharacterStream(String parameterName)
+      throws SQLException
+   {
+      return callable().getCharacterStream(parameterName);
+   }
+
+   public void setBlob(String parameterName, Blob x)
+      throws SQLException
+   {
+      callable().setBlob(parameterName, x);
+   }
+
+   public void setClob(String parameterName, Clob x)
+      throws SQLException
+   {
+      callable().setClob(parameterName, x);
+   }
+
+   public void setAsciiStream(String parameterName, java.io.InputStream x, long length)
+      throws SQLException
+   {
+      callable().setAsciiStream(parameterName, x, length);
+   }
+
+   public void setBinaryStream(String parameterName, java.io.InputStream x, long length)
+      throws SQLException
+   {
+      callable().setBinaryStream(parameterName, x, length);
+   }
+
+   public void setCharacterStream(String parameterName, java.io.Reader reader, long length)
+      throws SQLException
+   {
+      callable().setCharacterStream(parameterName, reader, length);
+   }
+
+   public void setAsciiStream(String parameterName, java.io.InputStream x)
+      throws SQLException
+   {
+      callable().setAsciiStream(parameterName, x);
+   }
+
+   public void setBinaryStream(String parameterName, java.io.InputStream x)
+      throws SQLException
+   {
+      callable().setBinaryStream(parameterName, x);
+   }
+
+   public void setCharacterStream(String parameterName, java.io.Reader reader)
+      throws SQLException
+   {
+      callable().setCharacterStream(parameterName, reader);
+   }
+
+   public void setNCharacterStream(String parameterName, Reader value)
+      throws SQLException
+   {
+      callable().setNCharacterStream(parameterName, value);
+   }
+
+   public void setClob(String parameterName, Reader reader)
+      throws SQLException
+   {
+      callable().setClob(parameterName, reader);
+   }
+
+   public void setBlob(String parameterName, InputStream inputStream)
+      throws SQLException
+   {
+      callable().setBlob(parameterName, inputStream);
+   }
+
+   public void setNClob(String parameterName, Reader reader)
+      throws SQLException
+   {
+      callable().setNClob(parameterName, reader);
+   }
+
+   public <T> T getObject(int parameterIndex, Class<T> type)
+      throws SQLException
+   {
+      return callable().getObject(parameterIndex, type);
+   }
+
+   public <T> T getObject(String parameterName, Class<T> type)
+      throws SQLException
+   {
+      return callable().getObject(parameterName, type);
+   }
+
+   public void setObject(String parameterName, Object x, SQLType targetSqlType, int scaleOrLength)
+      throws SQLException
+   {
+      callable().setObject(parameterName, x, targetSqlType, scaleOrLength);
+   }
+
+   public void setObject(String parameterName, Object x, SQLType targetSqlType)
+      throws SQLException
+   {
+      callable().setObject(parameterName, x, targetSqlType);
+   }
+
+   public void registerOutParameter(int parameterIndex, SQLType sqlType)
+      throws SQLException
+   {
+      callable().registerOutParameter(parameterIndex, sqlType);
+   }
+
+   public void registerOutParameter(int parameterIndex, SQLType sqlType, int scale)
+      throws SQLException
+   {
+      callable().registerOutParameter(parameterIndex, sqlType, scale);
+   }
+
+   public void registerOutParameter(int parameterIndex, SQLType sqlType, String typeName)
+      throws SQLException
+   {
+      callable().registerOutParameter(parameterIndex, sqlType, typeName);
+   }
+
+   public void registerOutParameter(String parameterName, SQLType sqlType)
+      throws SQLException
+   {
+      callable().registerOutParameter(parameterName, sqlType);
+   }
+
+   public void registerOutParameter(String parameterName, SQLType sqlType, int scale)
+      throws SQLException
+   {
+      callable().registerOutParameter(parameterName, sqlType, scale);
+   }
+
+   public void registerOutParameter(String parameterName, SQLType sqlType, String typeName)
+      throws SQLException
+   {
+      callable().registerOutParameter(parameterName, sqlType, typeName);
+   }
+
+
+
+
+   private CallableStatement callable() throws SQLException
+   {
+      checkOpen();
+      return cstmt;
+   }
+
 }
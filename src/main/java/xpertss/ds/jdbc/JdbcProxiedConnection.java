@@ -1,44 +1,78 @@
 package xpertss.ds.jdbc;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.Blob;
 import java.sql.CallableStatement;
+import java.sql.Clob;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.NClob;
 import java.sql.PreparedStatement;
+import java.sql.SQLClientInfoException;
 import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.SQLXML;
+import java.sql.Savepoint;
 import java.sql.Statement;
+import java.sql.Struct;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executor;
 
 import xpertss.ds.base.PooledResource;
+import xpertss.ds.concurrent.Ratio;
 
 /**
- * Proxies the raw connection object ensuring that calls to the
- * close method return the raw connection to the pool rather than
- * closing it. Additionally, it keeps track of changes to the
- * connection's properties such as the auto commit mode, transaction
- * isolation level, etc and ensures that they are reset when returned
- * to the pool.
- *  
+ * Wraps the raw connection object ensuring that calls to the close
+ * method return the raw connection to the pool rather than closing
+ * it. Additionally, it keeps track of changes to the connection's
+ * properties such as the auto commit mode, transaction isolation
+ * level, etc and ensures that they are reset when returned to the
+ * pool.
+ * <p>
+ * Statements and meta data obtained from this connection are wrapped
+ * so that they hand back this connection rather than the raw one. All
+ * other calls are delegated directly to the raw connection once it has
+ * been verified that this connection has not been closed.
+ * <p>
+ * Each pooled resource owns a single instance of this class which is
+ * reused every time the resource is borrowed. A generation counter is
+ * incremented on each borrow and stamped into the statements and meta
+ * data handed out so that a statement left over from a previous borrow
+ * can no longer reach the connection. A reference to the connection
+ * itself retained by a previous borrower can not be told apart from the
+ * current borrower's and must never be used, or closed again, after it
+ * is closed.
+ * <p>
+ * When the pool enables statement caching, prepared and callable statements
+ * closed by the application, or left open when the connection is closed,
+ * are kept open in a cache owned by this handle and reused when the same
+ * statement is prepared again on a later borrow.
+ *
  * @author cfloersch
  */
-public class JdbcProxiedConnection implements InvocationHandler {
+public class JdbcProxiedConnection implements Connection {
 
-   
    public static Connection proxy(PooledResource<Connection> res)
    {
-      // Believe it or not newProxyInstance takes some serious time
-      // might be worth pooling proxies.
-      JdbcProxiedConnection proxy = new JdbcProxiedConnection(res);
-      return (Connection) Proxy.newProxyInstance(res.getClassLoader(), new Class[] { Connection.class }, proxy);
+      return proxy(res, 0, null);
+   }
+   
+   public static Connection proxy(PooledResource<Connection> res, int cacheSize, Ratio cacheRatio)
+   {
+      JdbcProxiedConnection conn = (JdbcProxiedConnection) res.attachment();
+      if(conn == null) res.attach(conn = new JdbcProxiedConnection(res));
+      return conn.activate(cacheSize, cacheRatio);
    }
    
    
-   private List<Statement> statements = new ArrayList<Statement>();
+   private final List<JdbcProxiedStatement> statements = new ArrayList<JdbcProxiedStatement>();
+   private final PooledResource<Connection> pooled;
    private PooledResource<Connection> res;
+   private JdbcStatementCache cache;
+   private int generation;
 
    
    private boolean autoCommit;
@@ -58,85 +92,453 @@ public class JdbcProxiedConnection implements InvocationHandler {
 
    private JdbcProxiedConnection(PooledResource<Connection> res)
    {
-      this.res = res;
-   }
-   
-   public Object invoke(Object proxy, Method method, Object[] args) 
-      throws Throwable
-   {
-      Object result = null;
-      try {
-         String methodName = method.getName();
-         if("isClosed".equals(methodName)) {
-            return (res == null || res.getResource().isClosed());
-         } else if("close".equals(methodName)) {
-            if(res != null) {
-               try {
-                  passivate();
-                  res.close(res.getResource().isClosed());
-               } catch(Exception e) {
-                  res.close(true);
-               } finally {
-                  res = null;
-               }
-            }
-         } else if("equals".equals(methodName)) {
-            result = args[0] == proxy;
-         } else if("toString".equals(methodName)) {
-            result = toString();
-         } else if("hashCode".equals(methodName)) {
-            result = System.identityHashCode(proxy);
-         } else if("clearWarnings".equals(methodName)) {
-            if(res != null) result = method.invoke(res.getResource(), args);
-         } else {
-            if(res == null) throw new SQLException("Connection closed");
-            if("getMetaData".equals(methodName)) {
-               DatabaseMetaData md = (DatabaseMetaData)method.invoke(res.getResource(), args);
-               return JdbcProxiedDatabaseMetaData.proxy((Connection)proxy, md);
-            } else if("createStatement".equals(methodName)) {
-               Statement stmt = (Statement) method.invoke(res.getResource(), args);
-               statements.add(stmt);
-               return JdbcProxiedStatement.proxy((Connection)proxy, stmt);
-            } else if("prepareStatement".equals(methodName)) {
-               PreparedStatement stmt = (PreparedStatement)method.invoke(res.getResource(), args);
-               statements.add(stmt);
-               return JdbcProxiedPreparedStatement.proxy((Connection)proxy, stmt);
-            } else if("prepareCall".equals(methodName)) {
-               CallableStatement stmt = (CallableStatement)method.invoke(res.getResource(), args);
-               statements.add(stmt);
-               return JdbcProxiedCallableStatement.proxy((Connection)proxy, stmt);
-            } else if("setCatalog".equals(methodName)) {
-               recordCatalog();
-               result = method.invoke(res.getResource(), args);
-            } else if("setAutoCommit".equals(methodName)) {
-               recordAutoCommit();
-               result = method.invoke(res.getResource(), args);
-            } else if("setHoldability".equals(methodName)) {
-               recordHoldability();
-               result = method.invoke(res.getResource(), args);
-            } else if("setReadOnly".equals(methodName)) {
-               recordReadOnly();
-               result = method.invoke(res.getResource(), args);
-            } else if("setTransactionIsolation".equals(methodName)) {
-               recordIsolation();
-               result = method.invoke(res.getResource(), args);
-            } else {
-               result = method.invoke(res.getResource(), args);
-            }
-            // TODO createArray returns an object that has the potential to expose the raw connection via getResultSet().getStatement().getConnection()
+      this.pooled = res;
+   }
+
+
+   public Statement createStatement()
+      throws SQLException
+   {
+      return track(new JdbcProxiedStatement(this, generation, null, connection().createStatement()));
+   }
+
+   public PreparedStatement prepareStatement(String sql)
+      throws SQLException
+   {
+      Connection conn = connection();
+      JdbcStatementCache.Key key = cacheKey(JdbcStatementCache.PREPARE, sql, -1, -1, -1, -1);
+      PreparedStatement stmt = (key == null) ? null : cache.take(key);
+      if(stmt == null) stmt = conn.prepareStatement(sql);
+      return track(new JdbcProxiedPreparedStatement(this, generation, key, stmt));
+   }
+
+   public CallableStatement prepareCall(String sql)
+      throws SQLException
+   {
+      Connection conn = connection();
+      JdbcStatementCache.Key key = cacheKey(JdbcStatementCache.CALL, sql, -1, -1, -1, -1);
+      CallableStatement stmt = (key == null) ? null : (CallableStatement) cache.take(key);
+      if(stmt == null) stmt = conn.prepareCall(sql);
+      return track(new JdbcProxiedCallableStatement(this, generation, key, stmt));
+   }
+
+   public String nativeSQL(String sql)
+      throws SQLException
+   {
+      return connection().nativeSQL(sql);
+   }
+
+   public void setAutoCommit(boolean autoCommit)
+      throws SQLException
+   {
+      Connection conn = connection();
+      recordAutoCommit();
+      conn.setAutoCommit(autoCommit);
+   }
+
+   public boolean getAutoCommit()
+      throws SQLException
+   {
+      return connection().getAutoCommit();
+   }
+
+   public void commit()
+      throws SQLException
+   {
+      connection().commit();
+   }
+
+   public void rollback()
+      throws SQLException
+   {
+      connection().rollback();
+   }
+
+   public void close()
+      throws SQLException
+   {
+      PooledResource<Connection> res = this.res;
+      if(res != null) {
+         boolean error;
+         try {
+            passivate();
+            error = res.getResource().isClosed();
+         } catch(Exception e) {
+            error = true;
          }
-      } catch (InvocationTargetException e) {
-         throw e.getTargetException();
-      } catch (Exception e) {
-         // This should only occur if we have runtime exceptions in our proxy code
-         throw new RuntimeException("unexpected implementation exception: " + e.getMessage(), e ) ;
+         // reset before releasing as another thread may borrow this handle the moment it is released
+         reset();
+         res.close(error);
       }
-      return result;
    }
 
+   public boolean isClosed()
+      throws SQLException
+   {
+      return (res == null || res.getResource().isClosed());
+   }
+
+   public DatabaseMetaData getMetaData()
+      throws SQLException
+   {
+      return JdbcProxiedDatabaseMetaData.proxy(this, generation, connection().getMetaData());
+   }
+
+   public void setReadOnly(boolean readOnly)
+      throws SQLException
+   {
+      Connection conn = connection();
+      recordReadOnly();
+      conn.setReadOnly(readOnly);
+   }
+
+   public boolean isReadOnly()
+      throws SQLException
+   {
+      return connection().isReadOnly();
+   }
+
+   public void setCatalog(String catalog)
+      throws SQLException
+   {
+      Connection conn = connection();
+      recordCatalog();
+      conn.setCatalog(catalog);
+   }
+
+   public String getCatalog()
+      throws SQLException
+   {
+      return connection().getCatalog();
+   }
+
+   public void setTransactionIsolation(int level)
+      throws SQLException
+   {
+      Connection conn = connection();
+      recordIsolation();
+      conn.setTransactionIsolation(level);
+   }
+
+   public int getTransactionIsolation()
+      throws SQLException
+   {
+      return connection().getTransactionIsolation();
+   }
+
+   public SQLWarning getWarnings()
+      throws SQLException
+   {
+      return connection().getWarnings();
+   }
+
+   public void clearWarnings()
+      throws SQLException
+   {
+      if(res != null) res.getResource().clearWarnings();
+   }
+
+   public Statement createStatement(int resultSetType, int resultSetConcurrency)
+      throws SQLException
+   {
+      return track(new JdbcProxiedStatement(this, generation, null, connection().createStatement(resultSetType, resultSetConcurrency)));
+   }
+
+   public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency)
+      throws SQLException
+   {
+      Connection conn = connection();
+      JdbcStatementCache.Key key = cacheKey(JdbcStatementCache.PREPARE, sql, resultSetType, resultSetConcurrency, -1, -1);
+      PreparedStatement stmt = (key == null) ? null : cache.take(key);
+      if(stmt == null) stmt = conn.prepareStatement(sql, resultSetType, resultSetConcurrency);
+      return track(new JdbcProxiedPreparedStatement(this, generation, key, stmt));
+   }
+
+   public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency)
+      throws SQLException
+   {
+      Connection conn = connection();
+      JdbcStatementCache.Key key = cacheKey(JdbcStatementCache.CALL, sql, resultSetType, resultSetConcurrency, -1, -1);
+      CallableStatement stmt = (key == null) ? null : (CallableStatement) cache.take(key);
+      if(stmt == null) stmt = conn.prepareCall(sql, resultSetType, resultSetConcurrency);
+      return track(new JdbcProxiedCallableStatement(this, generation, key, stmt));
+   }
+
+   public Map<String,Class<?>> getTypeMap()
+      throws SQLException
+   {
+      return connection().getTypeMap();
+   }
+
+   public void setTypeMap(Map<String,Class<?>> map)
+      throws SQLException
+   {
+      connection().setTypeMap(map);
+   }
+
+   public void setHoldability(int holdability)
+      throws SQLException
+   {
+      Connection conn = connection();
+      recordHoldability();
+      conn.setHoldability(holdability);
+   }
+
+   public int getHoldability()
+      throws SQLException
+   {
+      return connection().getHoldability();
+   }
+
+   public Savepoint setSavepoint()
+      throws SQLException
+   {
+      return connection().setSavepoint();
+   }
+
+   public Savepoint setSavepoint(String name)
+      throws SQLException
+   {
+      return connection().setSavepoint(name);
+   }
+
+   public void rollback(Savepoint savepoint)
+      throws SQLException
+   {
+      connection().rollback(savepoint);
+   }
+
+   public void releaseSavepoint(Savepoint savepoint)
+      throws SQLException
+   {
+      connection().releaseSavepoint(savepoint);
+   }
+
+   public Statement createStatement(int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+      throws SQLException
+   {
+      return track(new JdbcProxiedStatement(this, generation, null, connection().createStatement(resultSetType, resultSetConcurrency, resultSetHoldability)));
+   }
+
+   public PreparedStatement prepareStatement(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+      throws SQLException
+   {
+      Connection conn = connection();
+      JdbcStatementCache.Key key = cacheKey(JdbcStatementCache.PREPARE, sql, resultSetType, resultSetConcurrency, resultSetHoldability, -1);
+      PreparedStatement stmt = (key == null) ? null : cache.take(key);
+      if(stmt == null) stmt = conn.prepareStatement(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+      return track(new JdbcProxiedPreparedStatement(this, generation, key, stmt));
+   }
+
+   public CallableStatement prepareCall(String sql, int resultSetType, int resultSetConcurrency, int resultSetHoldability)
+      throws SQLException
+   {
+      Connection conn = connection();
+      JdbcStatementCache.Key key = cacheKey(JdbcStatementCache.CALL, sql, resultSetType, resultSetConcurrency, resultSetHoldability, -1);
+      CallableStatement stmt = (key == null) ? null : (CallableStatement) cache.take(key);
+      if(stmt == null) stmt = conn.prepareCall(sql, resultSetType, resultSetConcurrency, resultSetHoldability);
+      return track(new JdbcProxiedCallableStatement(this, generation, key, stmt));
+   }
+
+   public PreparedStatement prepareStatement(String sql, int autoGeneratedKeys)
+      throws SQLException
+   {
+      Connection conn = connection();
+      JdbcStatementCache.Key key = cacheKey(JdbcStatementCache.PREPARE, sql, -1, -1, -1, autoGeneratedKeys);
+      PreparedStatement stmt = (key == null) ? null : cache.take(key);
+      if(stmt == null) stmt = conn.prepareStatement(sql, autoGeneratedKeys);
+      return track(new JdbcProxiedPreparedStatement(this, generation, key, stmt));
+   }
+
+   public PreparedStatement prepareStatement(String sql, int[] columnIndexes)
+      throws SQLException
+   {
+      PreparedStatement stmt = connection().prepareStatement(sql, columnIndexes);
+      return track(new JdbcProxiedPreparedStatement(this, generation, null, stmt));
+   }
+
+   public PreparedStatement prepareStatement(String sql, String[] columnNames)
+      throws SQLException
+   {
+      PreparedStatement stmt = connection().prepareStatement(sql, columnNames);
+      return track(new JdbcProxiedPreparedStatement(this, generation, null, stmt));
+   }
+
+   public Clob createClob()
+      throws SQLException
+   {
+      return connection().createClob();
+   }
+
+   public Blob createBlob()
+      throws SQLException
+   {
+      return connection().createBlob();
+   }
+
+   public NClob createNClob()
+      throws SQLException
+   {
+      return connection().createNClob();
+   }
+
+   public SQLXML createSQLXML()
+      throws SQLException
+   {
+      return connection().createSQLXML();
+   }
+
+   public boolean isValid(int timeout)
+      throws SQLException
+   {
+      return connection().isValid(timeout);
+   }
+
+   public void setClientInfo(String name, String value)
+      throws SQLClientInfoException
+   {
+      if(res == null) throw new SQLClientInfoException("Connection closed", null);
+      res.getResource().setClientInfo(name, value);
+   }
+
+   public void setClientInfo(Properties properties)
+      throws SQLClientInfoException
+   {
+      if(res == null) throw new SQLClientInfoException("Connection closed", null);
+      res.getResource().setClientInfo(properties);
+   }
+
+   public String getClientInfo(String name)
+      throws SQLException
+   {
+      return connection().getClientInfo(name);
+   }
+
+   public Properties getClientInfo()
+      throws SQLException
+   {
+      return connection().getClientInfo();
+   }
+
+   public Array createArrayOf(String typeName, Object[] elements)
+      throws SQLException
+   {
+      return connection().createArrayOf(typeName, elements);
+   }
+
+   public Struct createStruct(String typeName, Object[] attributes)
+      throws SQLException
+   {
+      return connection().createStruct(typeName, attributes);
+   }
+
+   public void setSchema(String schema)
+      throws SQLException
+   {
+      connection().setSchema(schema);
+   }
+
+   public String getSchema()
+      throws SQLException
+   {
+      return connection().getSchema();
+   }
+
+   public void abort(Executor executor)
+      throws SQLException
+   {
+      connection().abort(executor);
+   }
+
+   public void setNetworkTimeout(Executor executor, int milliseconds)
+      throws SQLException
+   {
+      connection().setNetworkTimeout(executor, milliseconds);
+   }
+
+   public int getNetworkTimeout()
+      throws SQLException
+   {
+      return connection().getNetworkTimeout();
+   }
+
+   // TODO createArrayOf returns an object that has the potential to expose the raw connection via getResultSet().getStatement().getConnection()
+
+   public <T> T unwrap(Class<T> iface)
+      throws SQLException
+   {
+      return connection().unwrap(iface);
+   }
+
+   public boolean isWrapperFor(Class<?> iface)
+      throws SQLException
+   {
+      return connection().isWrapperFor(iface);
+   }
+
+
    
    
+   /**
+    * Returns this connection if it is still open and has not been closed
+    * and borrowed again since the given generation was handed out.
+    */
+   Connection handle(int generation) throws SQLException
+   {
+      if(res == null || this.generation != generation) throw new SQLException("Connection closed");
+      return this;
+   }
    
+   /**
+    * Called by a statement when it has executed successfully which proves
+    * the underlying connection alive.
+    */
+   void alive()
+   {
+      pooled.markAlive();
+   }
+   
+   /**
+    * Called by a statement when it is closed. Returns {@code true} if the
+    * statement was returned to the statement cache in which case it must
+    * not be closed.
+    */
+   boolean recycle(JdbcStatementCache.Key key, PreparedStatement stmt)
+   {
+      return cache != null && cache.offer(key, stmt);
+   }
+   
+   private JdbcProxiedConnection activate(int cacheSize, Ratio cacheRatio)
+   {
+      if(cacheSize > 0) {
+         if(cache == null) cache = new JdbcStatementCache(cacheSize, cacheRatio);
+         cache.resize(cacheSize);
+      } else if(cache != null) {
+         cache.clear();
+         cache = null;
+      }
+      generation++;
+      res = pooled;
+      return this;
+   }
+
+   private JdbcStatementCache.Key cacheKey(int kind, String sql, int type, int concurrency, int holdability, int autoKeys)
+   {
+      return (cache == null) ? null : new JdbcStatementCache.Key(kind, sql, type, concurrency, holdability, autoKeys);
+   }
+
+   private <S extends JdbcProxiedStatement> S track(S stmt)
+   {
+      statements.add(stmt);
+      return stmt;
+   }
+
+   private Connection connection() throws SQLException
+   {
+      if(res == null) throw new SQLException("Connection closed");
+      return res.getResource();
+   }
+
    private void recordCatalog() throws SQLException
    {
       if(!catalogStored) {
@@ -181,7 +583,7 @@ public class JdbcProxiedConnection implements InvocationHandler {
    private void passivate()
       throws SQLException
    {
-      for(Statement stmt : statements) stmt.close();
+      for(int i = 0; i < statements.size(); i++) statements.get(i).close();
       Connection conn = res.getResource();
       if(catalogStored) conn.setCatalog(catalog);
       if(isolationStored) conn.setTransactionIsolation(isolation);
@@ -190,5 +592,13 @@ public class JdbcProxiedConnection implements InvocationHandler {
       if(autoCommitStored) conn.setAutoCommit(autoCommit);
    }
    
+   private void reset()
+   {
+      statements.clear();
+      catalogStored = isolationStored = holdabilityStored = false;
+      readOnlyStored = autoCommitStored = false;
+      res = null;
+   }
+   
    
 }
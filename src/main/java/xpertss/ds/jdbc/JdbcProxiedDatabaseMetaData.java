@@ -1,74 +1,1099 @@
 package xpertss.ds.jdbc;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
-import java.util.HashSet;
+import java.sql.RowIdLifetime;
+import java.sql.SQLException;
 
 /**
- * A proxy handler for handling database metadata objects. It ensures 
- * that a proxied connection rather is returned from getConnection rather
- * than the raw connection.
+ * A wrapper for database metadata objects. It ensures that the wrapped
+ * connection rather than the raw connection is returned from getConnection.
  * 
  * @author cfloersch
  */
-public class JdbcProxiedDatabaseMetaData implements InvocationHandler {
-   
-   private final static HashSet<String> wrapped = new HashSet<String>();
-   static {
-      wrapped.add("getClientInfoProperties");
-      wrapped.add("getFunctionColumns");
-      wrapped.add("getFunctions");
-      wrapped.add("getSchemas");
-   }
-   
-   public static DatabaseMetaData proxy(Connection conn, DatabaseMetaData md)
+public class JdbcProxiedDatabaseMetaData implements DatabaseMetaData {
+
+   public static DatabaseMetaData proxy(JdbcProxiedConnection conn, int generation, DatabaseMetaData md)
    {
-      JdbcProxiedDatabaseMetaData proxy = new JdbcProxiedDatabaseMetaData(conn, md);
-      ClassLoader cl = md.getClass().getClassLoader();
-      return (DatabaseMetaData) Proxy.newProxyInstance(cl, new Class[] { DatabaseMetaData.class }, proxy);
+      return new JdbcProxiedDatabaseMetaData(conn, generation, md);
    }
    
-   private Connection conn;
-   private DatabaseMetaData md;
+   private final JdbcProxiedConnection conn;
+   private final int generation;
+   private final DatabaseMetaData md;
    
-   private JdbcProxiedDatabaseMetaData(Connection conn, DatabaseMetaData md)
+   private JdbcProxiedDatabaseMetaData(JdbcProxiedConnection conn, int generation, DatabaseMetaData md)
    {
       this.conn = conn;
+      this.generation = generation;
       this.md = md;
    }
 
-   public Object invoke(Object proxy, Method method, Object[] args) 
-      throws Throwable
-   {
-      Object result = null;
-      try {
-         String methodName = method.getName();
-         if("getConnection".equals(methodName)) {
-            return conn;   // Return our proxied connection that can't be closed
-         } else if("equals".equals(methodName)) {
-            result = args[0] == proxy;
-         } else if("toString".equals(methodName)) {
-            result = toString();
-         } else if("hashCode".equals(methodName)) {
-            result = System.identityHashCode(proxy);
-         } else if(wrapped.contains(methodName)) {
-            // NOTE Returns ResultSet where getStatement() returns null
-            return JdbcProxiedResultSet.proxy(null, (ResultSet)method.invoke(md, args));
-         } else {
-            result = method.invoke(md, args);
-         }
-      } catch (InvocationTargetException e) {
-         throw e.getTargetException();
-      } catch (Exception e) {
-         // This should only occur if we have runtime exceptions in our proxy code
-         throw new RuntimeException("unexpected implementation exception: " + e.getMessage(), e ) ;
-      }
-      return result;
+
+   public boolean allProceduresAreCallable()
+      throws SQLException
+   {
+      return md.allProceduresAreCallable();
+   }
+
+   public boolean allTablesAreSelectable()
+      throws SQLException
+   {
+      return md.allTablesAreSelectable();
+   }
+
+   public String getURL()
+      throws SQLException
+   {
+      return md.getURL();
+   }
+
+   public String getUserName()
+      throws SQLException
+   {
+      return md.getUserName();
+   }
+
+   public boolean isReadOnly()
+      throws SQLException
+   {
+      return md.isReadOnly();
+   }
+
+   public boolean nullsAreSortedHigh()
+      throws SQLException
+   {
+      return md.nullsAreSortedHigh();
+   }
+
+   public boolean nullsAreSortedLow()
+      throws SQLException
+   {
+      return md.nullsAreSortedLow();
+   }
+
+   public boolean nullsAreSortedAtStart()
+      throws SQLException
+   {
+      return md.nullsAreSortedAtStart();
+   }
+
+   public boolean nullsAreSortedAtEnd()
+      throws SQLException
+   {
+      return md.nullsAreSortedAtEnd();
+   }
+
+   public String getDatabaseProductName()
+      throws SQLException
+   {
+      return md.getDatabaseProductName();
+   }
+
+   public String getDatabaseProductVersion()
+      throws SQLException
+   {
+      return md.getDatabaseProductVersion();
+   }
+
+   public String getDriverName()
+      throws SQLException
+   {
+      return md.getDriverName();
+   }
+
+   public String getDriverVersion()
+      throws SQLException
+   {
+      return md.getDriverVersion();
+   }
+
+   public int getDriverMajorVersion()
+   {
+      return md.getDriverMajorVersion();
+   }
+
+   public int getDriverMinorVersion()
+   {
+      return md.getDriverMinorVersion();
+   }
+
+   public boolean usesLocalFiles()
+      throws SQLException
+   {
+      return md.usesLocalFiles();
+   }
+
+   public boolean usesLocalFilePerTable()
+      throws SQLException
+   {
+      return md.usesLocalFilePerTable();
+   }
+
+   public boolean supportsMixedCaseIdentifiers()
+      throws SQLException
+   {
+      return md.supportsMixedCaseIdentifiers();
+   }
+
+   public boolean storesUpperCaseIdentifiers()
+      throws SQLException
+   {
+      return md.storesUpperCaseIdentifiers();
+   }
+
+   public boolean storesLowerCaseIdentifiers()
+      throws SQLException
+   {
+      return md.storesLowerCaseIdentifiers();
+   }
+
+   public boolean storesMixedCaseIdentifiers()
+      throws SQLException
+   {
+      return md.storesMixedCaseIdentifiers();
+   }
+
+   public boolean supportsMixedCaseQuotedIdentifiers()
+      throws SQLException
+   {
+      return md.supportsMixedCaseQuotedIdentifiers();
+   }
+
+   public boolean storesUpperCaseQuotedIdentifiers()
+      throws SQLException
+   {
+      return md.storesUpperCaseQuotedIdentifiers();
+   }
+
+   public boolean storesLowerCaseQuotedIdentifiers()
+      throws SQLException
+   {
+      return md.storesLowerCaseQuotedIdentifiers();
+   }
+
+   public boolean storesMixedCaseQuotedIdentifiers()
+      throws SQLException
+   {
+      return md.storesMixedCaseQuotedIdentifiers();
+   }
+
+   public String getIdentifierQuoteString()
+      throws SQLException
+   {
+      return md.getIdentifierQuoteString();
+   }
+
+   public String getSQLKeywords()
+      throws SQLException
+   {
+      return md.getSQLKeywords();
+   }
+
+   public String getNumericFunctions()
+      throws SQLException
+   {
+      return md.getNumericFunctions();
+   }
+
+   public String getStringFunctions()
+      throws SQLException
+   {
+      return md.getStringFunctions();
+   }
+
+   public String getSystemFunctions()
+      throws SQLException
+   {
+      return md.getSystemFunctions();
+   }
+
+   public String getTimeDateFunctions()
+      throws SQLException
+   {
+      return md.getTimeDateFunctions();
+   }
+
+   public String getSearchStringEscape()
+      throws SQLException
+   {
+      return md.getSearchStringEscape();
+   }
+
+   public String getExtraNameCharacters()
+      throws SQLException
+   {
+      return md.getExtraNameCharacters();
+   }
+
+   public boolean supportsAlterTableWithAddColumn()
+      throws SQLException
+   {
+      return md.supportsAlterTableWithAddColumn();
+   }
+
+   public boolean supportsAlterTableWithDropColumn()
+      throws SQLException
+   {
+      return md.supportsAlterTableWithDropColumn();
+   }
+
+   public boolean supportsColumnAliasing()
+      throws SQLException
+   {
+      return md.supportsColumnAliasing();
+   }
+
+   public boolean nullPlusNonNullIsNull()
+      throws SQLException
+   {
+      return md.nullPlusNonNullIsNull();
+   }
+
+   public boolean supportsConvert()
+      throws SQLException
+   {
+      return md.supportsConvert();
+   }
+
+   public boolean supportsConvert(int fromType, int toType)
+      throws SQLException
+   {
+      return md.supportsConvert(fromType, toType);
+   }
+
+   public boolean supportsTableCorrelationNames()
+      throws SQLException
+   {
+      return md.supportsTableCorrelationNames();
+   }
+
+   public boolean supportsDifferentTableCorrelationNames()
+      throws SQLException
+   {
+      return md.supportsDifferentTableCorrelationNames();
+   }
+
+   public boolean supportsExpressionsInOrderBy()
+      throws SQLException
+   {
+      return md.supportsExpressionsInOrderBy();
+   }
+
+   public boolean supportsOrderByUnrelated()
+      throws SQLException
+   {
+      return md.supportsOrderByUnrelated();
+   }
+
+   public boolean supportsGroupBy()
+      throws SQLException
+   {
+      return md.supportsGroupBy();
+   }
+
+   public boolean supportsGroupByUnrelated()
+      throws SQLException
+   {
+      return md.supportsGroupByUnrelated();
+   }
+
+   public boolean supportsGroupByBeyondSelect()
+      throws SQLException
+   {
+      return md.supportsGroupByBeyondSelect();
+   }
+
+   public boolean supportsLikeEscapeClause()
+      throws SQLException
+   {
+      return md.supportsLikeEscapeClause();
+   }
+
+   public boolean supportsMultipleResultSets()
+      throws SQLException
+   {
+      return md.supportsMultipleResultSets();
+   }
+
+   public boolean supportsMultipleTransactions()
+      throws SQLException
+   {
+      return md.supportsMultipleTransactions();
+   }
+
+   public boolean supportsNonNullableColumns()
+      throws SQLException
+   {
+      return md.supportsNonNullableColumns();
+   }
+
+   public boolean supportsMinimumSQLGrammar()
+      throws SQLException
+   {
+      return md.supportsMinimumSQLGrammar();
+   }
+
+   public boolean supportsCoreSQLGrammar()
+      throws SQLException
+   {
+      return md.supportsCoreSQLGrammar();
+   }
+
+   public boolean supportsExtendedSQLGrammar()
+      throws SQLException
+   {
+      return md.supportsExtendedSQLGrammar();
+   }
+
+   public boolean supportsANSI92EntryLevelSQL()
+      throws SQLException
+   {
+      return md.supportsANSI92EntryLevelSQL();
+   }
+
+   public boolean supportsANSI92IntermediateSQL()
+      throws SQLException
+   {
+      return md.supportsANSI92IntermediateSQL();
+   }
+
+   public boolean supportsANSI92FullSQL()
+      throws SQLException
+   {
+      return md.supportsANSI92FullSQL();
+   }
+
+   public boolean supportsIntegrityEnhancementFacility()
+      throws SQLException
+   {
+      return md.supportsIntegrityEnhancementFacility();
+   }
+
+   public boolean supportsOuterJoins()
+      throws SQLException
+   {
+      return md.supportsOuterJoins();
+   }
+
+   public boolean supportsFullOuterJoins()
+      throws SQLException
+   {
+      return md.supportsFullOuterJoins();
+   }
+
+   public boolean supportsLimitedOuterJoins()
+      throws SQLException
+   {
+      return md.supportsLimitedOuterJoins();
+   }
+
+   public String getSchemaTerm()
+      throws SQLException
+   {
+      return md.getSchemaTerm();
+   }
+
+   public String getProcedureTerm()
+      throws SQLException
+   {
+      return md.getProcedureTerm();
+   }
+
+   public String getCatalogTerm()
+      throws SQLException
+   {
+      return md.getCatalogTerm();
    }
 
+   public boolean isCatalogAtStart()
+      throws SQLException
+   {
+      return md.isCatalogAtStart();
+   }
+
+   public String getCatalogSeparator()
+      throws SQLException
+   {
+      return md.getCatalogSeparator();
+   }
+
+   public boolean supportsSchemasInDataManipulation()
+      throws SQLException
+   {
+      return md.supportsSchemasInDataManipulation();
+   }
+
+   public boolean supportsSchemasInProcedureCalls()
+      throws SQLException
+   {
+      return md.supportsSchemasInProcedureCalls();
+   }
+
+   public boolean supportsSchemasInTableDefinitions()
+      throws SQLException
+   {
+      return md.supportsSchemasInTableDefinitions();
+   }
+
+   public boolean supportsSchemasInIndexDefinitions()
+      throws SQLException
+   {
+      return md.supportsSchemasInIndexDefinitions();
+   }
+
+   public boolean supportsSchemasInPrivilegeDefinitions()
+      throws SQLException
+   {
+      return md.supportsSchemasInPrivilegeDefinitions();
+   }
+
+   public boolean supportsCatalogsInDataManipulation()
+      throws SQLException
+   {
+      return md.supportsCatalogsInDataManipulation();
+   }
+
+   public boolean supportsCatalogsInProcedureCalls()
+      throws SQLException
+   {
+      return md.supportsCatalogsInProcedureCalls();
+   }
+
+   public boolean supportsCatalogsInTableDefinitions()
+      throws SQLException
+   {
+      return md.supportsCatalogsInTableDefinitions();
+   }
+
+   public boolean supportsCatalogsInIndexDefinitions()
+      throws SQLException
+   {
+      return md.supportsCatalogsInIndexDefinitions();
+   }
+
+   public boolean supportsCatalogsInPrivilegeDefinitions()
+      throws SQLException
+   {
+      return md.supportsCatalogsInPrivilegeDefinitions();
+   }
+
+   public boolean supportsPositionedDelete()
+      throws SQLException
+   {
+      return md.supportsPositionedDelete();
+   }
+
+   public boolean supportsPositionedUpdate()
+      throws SQLException
+   {
+      return md.supportsPositionedUpdate();
+   }
+
+   public boolean supportsSelectForUpdate()
+      throws SQLException
+   {
+      return md.supportsSelectForUpdate();
+   }
+
+   public boolean supportsStoredProcedures()
+      throws SQLException
+   {
+      return md.supportsStoredProcedures();
+   }
+
+   public boolean supportsSubqueriesInComparisons()
+      throws SQLException
+   {
+      return md.supportsSubqueriesInComparisons();
+   }
+
+   public boolean supportsSubqueriesInExists()
+      throws SQLException
+   {
+      return md.supportsSubqueriesInExists();
+   }
+
+   public boolean supportsSubqueriesInIns()
+      throws SQLException
+   {
+      return md.supportsSubqueriesInIns();
+   }
+
+   public boolean supportsSubqueriesInQuantifieds()
+      throws SQLException
+   {
+      return md.supportsSubqueriesInQuantifieds();
+   }
+
+   public boolean supportsCorrelatedSubqueries()
+      throws SQLException
+   {
+      return md.supportsCorrelatedSubqueries();
+   }
+
+   public boolean supportsUnion()
+      throws SQLException
+   {
+      return md.supportsUnion();
+   }
+
+   public boolean supportsUnionAll()
+      throws SQLException
+   {
+      return md.supportsUnionAll();
+   }
+
+   public boolean supportsOpenCursorsAcrossCommit()
+      throws SQLException
+   {
+      return md.supportsOpenCursorsAcrossCommit();
+   }
+
+   public boolean supportsOpenCursorsAcrossRollback()
+      throws SQLException
+   {
+      return md.supportsOpenCursorsAcrossRollback();
+   }
+
+   public boolean supportsOpenStatementsAcrossCommit()
+      throws SQLException
+   {
+      return md.supportsOpenStatementsAcrossCommit();
+   }
+
+   public boolean supportsOpenStatementsAcrossRollback()
+      throws SQLException
+   {
+      return md.supportsOpenStatementsAcrossRollback();
+   }
+
+   public int getMaxBinaryLiteralLength()
+      throws SQLException
+   {
+      return md.getMaxBinaryLiteralLength();
+   }
+
+   public int getMaxCharLiteralLength()
+      throws SQLException
+   {
+      return md.getMaxCharLiteralLength();
+   }
+
+   public int getMaxColumnNameLength()
+      throws SQLException
+   {
+      return md.getMaxColumnNameLength();
+   }
+
+   public int getMaxColumnsInGroupBy()
+      throws SQLException
+   {
+      return md.getMaxColumnsInGroupBy();
+   }
+
+   public int getMaxColumnsInIndex()
+      throws SQLException
+   {
+      return md.getMaxColumnsInIndex();
+   }
+
+   public int getMaxColumnsInOrderBy()
+      throws SQLException
+   {
+      return md.getMaxColumnsInOrderBy();
+   }
+
+   public int getMaxColumnsInSelect()
+      throws SQLException
+   {
+      return md.getMaxColumnsInSelect();
+   }
+
+   public int getMaxColumnsInTable()
+      throws SQLException
+   {
+      return md.getMaxColumnsInTable();
+   }
+
+   public int getMaxConnections()
+      throws SQLException
+   {
+      return md.getMaxConnections();
+   }
+
+   public int getMaxCursorNameLength()
+      throws SQLException
+   {
+      return md.getMaxCursorNameLength();
+   }
+
+   public int getMaxIndexLength()
+      throws SQLException
+   {
+      return md.getMaxIndexLength();
+   }
+
+   public int getMaxSchemaNameLength()
+      throws SQLException
+   {
+      return md.getMaxSchemaNameLength();
+   }
+
+   public int getMaxProcedureNameLength()
+      throws SQLException
+   {
+      return md.getMaxProcedureNameLength();
+   }
+
+   public int getMaxCatalogNameLength()
+      throws SQLException
+   {
+      return md.getMaxCatalogNameLength();
+   }
+
+   public int getMaxRowSize()
+      throws SQLException
+   {
+      return md.getMaxRowSize();
+   }
+
+   public boolean doesMaxRowSizeIncludeBlobs()
+      throws SQLException
+   {
+      return md.doesMaxRowSizeIncludeBlobs();
+   }
+
+   public int getMaxStatementLength()
+      throws SQLException
+   {
+      return md.getMaxStatementLength();
+   }
+
+   public int getMaxStatements()
+      throws SQLException
+   {
+      return md.getMaxStatements();
+   }
+
+   public int getMaxTableNameLength()
+      throws SQLException
+   {
+      return md.getMaxTableNameLength();
+   }
+
+   public int getMaxTablesInSelect()
+      throws SQLException
+   {
+      return md.getMaxTablesInSelect();
+   }
+
+   public int getMaxUserNameLength()
+      throws SQLException
+   {
+      return md.getMaxUserNameLength();
+   }
+
+   public int getDefaultTransactionIsolation()
+      throws SQLException
+   {
+      return md.getDefaultTransactionIsolation();
+   }
+
+   public boolean supportsTransactions()
+      throws SQLException
+   {
+      return md.supportsTransactions();
+   }
+
+   public boolean supportsTransactionIsolationLevel(int level)
+      throws SQLException
+   {
+      return md.supportsTransactionIsolationLevel(level);
+   }
+
+   public boolean supportsDataDefinitionAndDataManipulationTransactions()
+      throws SQLException
+   {
+      return md.supportsDataDefinitionAndDataManipulationTransactions();
+   }
+
+   public boolean supportsDataManipulationTransactionsOnly()
+      throws SQLException
+   {
+      return md.supportsDataManipulationTransactionsOnly();
+   }
+
+   public boolean dataDefinitionCausesTransactionCommit()
+      throws SQLException
+   {
+      return md.dataDefinitionCausesTransactionCommit();
+   }
+
+   public boolean dataDefinitionIgnoredInTransactions()
+      throws SQLException
+   {
+      return md.dataDefinitionIgnoredInTransactions();
+   }
+
+   public ResultSet getProcedures(String catalog, String schemaPattern, String procedureNamePattern)
+      throws SQLException
+   {
+      return md.getProcedures(catalog, schemaPattern, procedureNamePattern);
+   }
+
+   public ResultSet getProcedureColumns(String catalog, String schemaPattern, String procedureNamePattern, String columnNamePattern)
+      throws SQLException
+   {
+      return md.getProcedureColumns(catalog, schemaPattern, procedureNamePattern, columnNamePattern);
+   }
+
+   public ResultSet getTables(String catalog, String schemaPattern, String tableNamePattern, String[] types)
+      throws SQLException
+   {
+      return md.getTables(catalog, schemaPattern, tableNamePattern, types);
+   }
+
+   public ResultSet getSchemas()
+      throws SQLException
+   {
+      return JdbcProxiedResultSet.proxy(null, md.getSchemas());
+   }
+
+   public ResultSet getCatalogs()
+      throws SQLException
+   {
+      return md.getCatalogs();
+   }
+
+   public ResultSet getTableTypes()
+      throws SQLException
+   {
+      return md.getTableTypes();
+   }
+
+   public ResultSet getColumns(String catalog, String schemaPattern, String tableNamePattern, String columnNamePattern)
+      throws SQLException
+   {
+      return md.getColumns(catalog, schemaPattern, tableNamePattern, columnNamePattern);
+   }
+
+   public ResultSet getColumnPrivileges(String catalog, String schema, String table, String columnNamePattern)
+      throws SQLException
+   {
+      return md.getColumnPrivileges(catalog, schema, table, columnNamePattern);
+   }
+
+   public ResultSet getTablePrivileges(String catalog, String schemaPattern, String tableNamePattern)
+      throws SQLException
+   {
+      return md.getTablePrivileges(catalog, schemaPattern, tableNamePattern);
+   }
+
+   public ResultSet getBestRowIdentifier(String catalog, String schema, String table, int scope, boolean nullable)
+      throws SQLException
+   {
+      return md.getBestRowIdentifier(catalog, schema, table, scope, nullable);
+   }
+
+   public ResultSet getVersionColumns(String catalog, String schema, String table)
+      throws SQLException
+   {
+      return md.getVersionColumns(catalog, schema, table);
+   }
+
+   public ResultSet getPrimaryKeys(String catalog, String schema, String table)
+      throws SQLException
+   {
+      return md.getPrimaryKeys(catalog, schema, table);
+   }
+
+   public ResultSet getImportedKeys(String catalog, String schema, String table)
+      throws SQLException
+   {
+      return md.getImportedKeys(catalog, schema, table);
+   }
+
+   public ResultSet getExportedKeys(String catalog, String schema, String table)
+      throws SQLException
+   {
+      return md.getExportedKeys(catalog, schema, table);
+   }
+
+   public ResultSet getCrossReference(String parentCatalog, String parentSchema, String parentTable, String foreignCatalog, String foreignSchema, String foreignTable)
+      throws SQLException
+   {
+      return md.getCrossReference(parentCatalog, parentSchema, parentTable, foreignCatalog, foreignSchema, foreignTable);
+   }
+
+   public ResultSet getTypeInfo()
+      throws SQLException
+   {
+      return md.getTypeInfo();
+   }
+
+   public ResultSet getIndexInfo(String catalog, String schema, String table, boolean unique, boolean approximate)
+      throws SQLException
+   {
+      return md.getIndexInfo(catalog, schema, table, unique, approximate);
+   }
+
+   public boolean supportsResultSetType(int type)
+      throws SQLException
+   {
+      return md.supportsResultSetType(type);
+   }
+
+   public boolean supportsResultSetConcurrency(int type, int concurrency)
+      throws SQLException
+   {
+      return md.supportsResultSetConcurrency(type, concurrency);
+   }
+
+   public boolean ownUpdatesAreVisible(int type)
+      throws SQLException
+   {
+      return md.ownUpdatesAreVisible(type);
+   }
+
+   public boolean ownDeletesAreVisible(int type)
+      throws SQLException
+   {
+      return md.ownDeletesAreVisible(type);
+   }
+
+   public boolean ownInsertsAreVisible(int type)
+      throws SQLException
+   {
+      return md.ownInsertsAreVisible(type);
+   }
+
+   public boolean othersUpdatesAreVisible(int type)
+      throws SQLException
+   {
+      return md.othersUpdatesAreVisible(type);
+   }
+
+   public boolean othersDeletesAreVisible(int type)
+      throws SQLException
+   {
+      return md.othersDeletesAreVisible(type);
+   }
+
+   public boolean othersInsertsAreVisible(int type)
+      throws SQLException
+   {
+      return md.othersInsertsAreVisible(type);
+   }
+
+   public boolean updatesAreDetected(int type)
+      throws SQLException
+   {
+      return md.updatesAreDetected(type);
+   }
+
+   public boolean deletesAreDetected(int type)
+      throws SQLException
+   {
+      return md.deletesAreDetected(type);
+   }
+
+   public boolean insertsAreDetected(int type)
+      throws SQLException
+   {
+      return md.insertsAreDetected(type);
+   }
+
+   public boolean supportsBatchUpdates()
+      throws SQLException
+   {
+      return md.supportsBatchUpdates();
+   }
+
+   public ResultSet getUDTs(String catalog, String schemaPattern, String typeNamePattern, int[] types)
+      throws SQLException
+   {
+      return md.getUDTs(catalog, schemaPattern, typeNamePattern, types);
+   }
+
+   public Connection getConnection()
+      throws SQLException
+   {
+      return conn.handle(generation);   // Return our wrapped connection that can't be closed
+   }
+
+   public boolean supportsSavepoints()
+      throws SQLException
+   {
+      return md.supportsSavepoints();
+   }
+
+   public boolean supportsNamedParameters()
+      throws SQLException
+   {
+      return md.supportsNamedParameters();
+   }
+
+   public boolean supportsMultipleOpenResults()
+      throws SQLException
+   {
+      return md.supportsMultipleOpenResults();
+   }
+
+   public boolean supportsGetGeneratedKeys()
+      throws SQLException
+   {
+      return md.supportsGetGeneratedKeys();
+   }
+
+   public ResultSet getSuperTypes(String catalog, String schemaPattern, String typeNamePattern)
+      throws SQLException
+   {
+      return md.getSuperTypes(catalog, schemaPattern, typeNamePattern);
+   }
+
+   public ResultSet getSuperTables(String catalog, String schemaPattern, String tableNamePattern)
+      throws SQLException
+   {
+      return md.getSuperTables(catalog, schemaPattern, tableNamePattern);
+   }
+
+   public ResultSet getAttributes(String catalog, String schemaPattern, String typeNamePattern, String attributeNamePattern)
+      throws SQLException
+   {
+      return md.getAttributes(catalog, schemaPattern, typeNamePattern, attributeNamePattern);
+   }
+
+   public boolean supportsResultSetHoldability(int holdability)
+      throws SQLException
+   {
+      return md.supportsResultSetHoldability(holdability);
+   }
+
+   public int getResultSetHoldability()
+      throws SQLException
+   {
+      return md.getResultSetHoldability();
+   }
+
+   public int getDatabaseMajorVersion()
+      throws SQLException
+   {
+      return md.getDatabaseMajorVersion();
+   }
+
+   public int getDatabaseMinorVersion()
+      throws SQLException
+   {
+      return md.getDatabaseMinorVersion();
+   }
+
+   public int getJDBCMajorVersion()
+      throws SQLException
+   {
+      return md.getJDBCMajorVersion();
+   }
+
+   public int getJDBCMinorVersion()
+      throws SQLException
+   {
+      return md.getJDBCMinorVersion();
+   }
+
+   public int getSQLStateType()
+      throws SQLException
+   {
+      return md.getSQLStateType();
+   }
+
+   public boolean locatorsUpdateCopy()
+      throws SQLException
+   {
+      return md.locatorsUpdateCopy();
+   }
+
+   public boolean supportsStatementPooling()
+      throws SQLException
+   {
+      return md.supportsStatementPooling();
+   }
+
+   public RowIdLifetime getRowIdLifetime()
+      throws SQLException
+   {
+      return md.getRowIdLifetime();
+   }
+
+   public ResultSet getSchemas(String catalog, String schemaPattern)
+      throws SQLException
+   {
+      return JdbcProxiedResultSet.proxy(null, md.getSchemas(catalog, schemaPattern));
+   }
+
+   public boolean supportsStoredFunctionsUsingCallSyntax()
+      throws SQLException
+   {
+      return md.supportsStoredFunctionsUsingCallSyntax();
+   }
+
+   public boolean autoCommitFailureClosesAllResultSets()
+      throws SQLException
+   {
+      return md.autoCommitFailureClosesAllResultSets();
+   }
+
+   public ResultSet getClientInfoProperties()
+      throws SQLException
+   {
+      return JdbcProxiedResultSet.proxy(null, md.getClientInfoProperties());
+   }
+
+   public ResultSet getFunctions(String catalog, String schemaPattern, String functionNamePattern)
+      throws SQLException
+   {
+      return JdbcProxiedResultSet.proxy(null, md.getFunctions(catalog, schemaPattern, functionNamePattern));
+   }
+
+   public ResultSet getFunctionColumns(String catalog, String schemaPattern, String functionNamePattern, String columnNamePattern)
+      throws SQLException
+   {
+      return JdbcProxiedResultSet.proxy(null, md.getFunctionColumns(catalog, schemaPattern, functionNamePattern, columnNamePattern));
+   }
+
+   public ResultSet getPseudoColumns(String catalog, String schemaPattern, String tableNamePattern, String columnNamePattern)
+      throws SQLException
+   {
+      return md.getPseudoColumns(catalog, schemaPattern, tableNamePattern, columnNamePattern);
+   }
+
+   public boolean generatedKeyAlwaysReturned()
+      throws SQLException
+   {
+      return md.generatedKeyAlwaysReturned();
+   }
+
+   public long getMaxLogicalLobSize()
+      throws SQLException
+   {
+      return md.getMaxLogicalLobSize();
+   }
+
+   public boolean supportsRefCursors()
+      throws SQLException
+   {
+      return md.supportsRefCursors();
+   }
+
+   public <T> T unwrap(Class<T> iface)
+      throws SQLException
+   {
+      return md.unwrap(iface);
+   }
+
+   public boolean isWrapperFor(Class<?> iface)
+      throws SQLException
+   {
+      return md.isWrapperFor(iface);
+   }
 }
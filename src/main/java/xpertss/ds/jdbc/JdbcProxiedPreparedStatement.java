@@ -1,33 +1,401 @@
 package xpertss.ds.jdbc;
 
-import java.lang.reflect.Proxy;
-import java.sql.Connection;
+import java.io.InputStream;
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.sql.Array;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.Date;
+import java.sql.NClob;
+import java.sql.ParameterMetaData;
 import java.sql.PreparedStatement;
+import java.sql.Ref;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.RowId;
+import java.sql.SQLException;
+import java.sql.SQLType;
+import java.sql.SQLXML;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.util.Calendar;
 
 /**
- * A proxy handler for handling prepared statements. It ensures that
- * all of the returned object types that provide access to the under
- * lying connection pass back a proxied connection rather than the
- * raw connection.
+ * A wrapper for prepared statements. It ensures that all of the returned
+ * object types that provide access to the under lying connection pass back
+ * the wrapped connection rather than the raw connection.
  * 
  * @author cfloersch
  */
-public class JdbcProxiedPreparedStatement extends JdbcProxiedStatement {
+public class JdbcProxiedPreparedStatement extends JdbcProxiedStatement implements PreparedStatement {
 
-   public static PreparedStatement proxy(Connection parent, PreparedStatement stmt)
+   private final PreparedStatement pstmt;
+   
+   JdbcProxiedPreparedStatement(JdbcProxiedConnection conn, int generation, JdbcStatementCache.Key key, PreparedStatement stmt)
    {
-      JdbcProxiedPreparedStatement proxy = new JdbcProxiedPreparedStatement(parent, stmt);
-      ClassLoader cl = stmt.getClass().getClassLoader();
-      return (PreparedStatement) Proxy.newProxyInstance(cl, new Class[] { PreparedStatement.class }, proxy);
+      super(conn, generation, key, stmt);
+      this.pstmt = stmt;
    }
-   
-   
-   
-   JdbcProxiedPreparedStatement(Connection conn, PreparedStatement stmt)
+
+
+   public ResultSet executeQuery()
+      throws SQLException
    {
-      super(conn, stmt);
+      return JdbcProxiedResultSet.proxy(this, register(alive(prepared().executeQuery())));
+   }
+
+   public int executeUpdate()
+      throws SQLException
+   {
+      return alive(prepared().executeUpdate());
+   }
+
+   public void setNull(int parameterIndex, int sqlType)
+      throws SQLException
+   {
+      prepared().setNull(parameterIndex, sqlType);
+   }
+
+   public void setBoolean(int parameterIndex, boolean x)
+      throws SQLException
+   {
+      prepared().setBoolean(parameterIndex, x);
+   }
+
+   public void setByte(int parameterIndex, byte x)
+      throws SQLException
+   {
+      prepared().setByte(parameterIndex, x);
+   }
+
+   public void setShort(int parameterIndex, short x)
+      throws SQLException
+   {
+      prepared().setShort(parameterIndex, x);
+   }
+
+   public void setInt(int parameterIndex, int x)
+      throws SQLException
+   {
+      prepared().setInt(parameterIndex, x);
+   }
+
+   public void setLong(int parameterIndex, long x)
+      throws SQLException
+   {
+      prepared().setLong(parameterIndex, x);
+   }
+
+   public void setFloat(int parameterIndex, float x)
+      throws SQLException
+   {
+      prepared().setFloat(parameterIndex, x);
+   }
+
+   public void setDouble(int parameterIndex, double x)
+      throws SQLException
+   {
+      prepared().setDouble(parameterIndex, x);
+   }
+
+   public void setBigDecimal(int parameterIndex, BigDecimal x)
+      throws SQLException
+   {
+      prepared().setBigDecimal(parameterIndex, x);
+   }
+
+   public void setString(int parameterIndex, String x)
+      throws SQLException
+   {
+      prepared().setString(parameterIndex, x);
+   }
+
+   public void setBytes(int parameterIndex, byte[] x)
+      throws SQLException
+   {
+      prepared().setBytes(parameterIndex, x);
+   }
+
+   public void setDate(int parameterIndex, Date x)
+      throws SQLException
+   {
+      prepared().setDate(parameterIndex, x);
+   }
+
+   public void setTime(int parameterIndex, Time x)
+      throws SQLException
+   {
+      prepared().setTime(parameterIndex, x);
+   }
+
+   public void setTimestamp(int parameterIndex, Timestamp x)
+      throws SQLException
+   {
+      prepared().setTimestamp(parameterIndex, x);
+   }
+
+   public void setAsciiStream(int parameterIndex, java.io.InputStream x, int length)
+      throws SQLException
+   {
+      prepared().setAsciiStream(parameterIndex, x, length);
+   }
+
+   @Deprecated
+   public void setUnicodeStream(int parameterIndex, java.io.InputStream x, int length)
+      throws SQLException
+   {
+      prepared().setUnicodeStream(parameterIndex, x, length);
+   }
+
+   public void setBinaryStream(int parameterIndex, java.io.InputStream x, int length)
+      throws SQLException
+   {
+      prepared().setBinaryStream(parameterIndex, x, length);
+   }
+
+   public void clearParameters()
+      throws SQLException
+   {
+      prepared().clearParameters();
+   }
+
+   public void setObject(int parameterIndex, Object x, int targetSqlType)
+      throws SQLException
+   {
+      prepared().setObject(parameterIndex, x, targetSqlType);
+   }
+
+   public void setObject(int parameterIndex, Object x)
+      throws SQLException
+   {
+      prepared().setObject(parameterIndex, x);
+   }
+
+   public boolean execute()
+      throws SQLException
+   {
+      return alive(prepared().execute());
+   }
+
+   public void addBatch()
+      throws SQLException
+   {
+      prepared().addBatch();
+   }
+
+   public void setCharacterStream(int parameterIndex, java.io.Reader reader, int length)
+      throws SQLException
+   {
+      prepared().setCharacterStream(parameterIndex, reader, length);
+   }
+
+   public void setRef(int parameterIndex, Ref x)
+      throws SQLException
+   {
+      prepared().setRef(parameterIndex, x);
+   }
+
+   public void setBlob(int parameterIndex, Blob x)
+      throws SQLException
+   {
+      prepared().setBlob(parameterIndex, x);
+   }
+
+   public void setClob(int parameterIndex, Clob x)
+      throws SQLException
+   {
+      prepared().setClob(parameterIndex, x);
+   }
+
+   public void setArray(int parameterIndex, Array x)
+      throws SQLException
+   {
+      prepared().setArray(parameterIndex, x);
+   }
+
+   public ResultSetMetaData getMetaData()
+      throws SQLException
+   {
+      return prepared().getMetaData();
+   }
+
+   public void setDate(int parameterIndex, Date x, Calendar cal)
+      throws SQLException
+   {
+      prepared().setDate(parameterIndex, x, cal);
+   }
+
+   public void setTime(int parameterIndex, Time x, Calendar cal)
+      throws SQLException
+   {
+      prepared().setTime(parameterIndex, x, cal);
+   }
+
+   public void setTimestamp(int parameterIndex, Timestamp x, Calendar cal)
+      throws SQLException
+   {
+      prepared().setTimestamp(parameterIndex, x, cal);
+   }
+
+   public void setNull(int parameterIndex, int sqlType, String typeName)
+      throws SQLException
+   {
+      prepared().setNull(parameterIndex, sqlType, typeName);
+   }
+
+   public void setURL(int parameterIndex, java.net.URL x)
+      throws SQLException
+   {
+      prepared().setURL(parameterIndex, x);
+   }
+
+   public ParameterMetaData getParameterMetaData()
+      throws SQLException
+   {
+      return prepared().getParameterMetaData();
+   }
+
+   public void setRowId(int parameterIndex, RowId x)
+      throws SQLException
+   {
+      prepared().setRowId(parameterIndex, x);
+   }
+
+   public void setNString(int parameterIndex, String value)
+      throws SQLException
+   {
+      prepared().setNString(parameterIndex, value);
+   }
+
+   public void setNCharacterStream(int parameterIndex, Reader value, long length)
+      throws SQLException
+   {
+      prepared().setNCharacterStream(parameterIndex, value, length);
+   }
+
+   public void setNClob(int parameterIndex, NClob value)
+      throws SQLException
+   {
+      prepared().setNClob(parameterIndex, value);
+   }
+
+   public void setClob(int parameterIndex, Reader reader, long length)
+      throws SQLException
+   {
+      prepared().setClob(parameterIndex, reader, length);
+   }
+
+   public void setBlob(int parameterIndex, InputStream inputStream, long length)
+      throws SQLException
+   {
+      prepared().setBlob(parameterIndex, inputStream, length);
+   }
+
+   public void setNClob(int parameterIndex, Reader reader, long length)
+      throws SQLException
+   {
+      prepared().setNClob(parameterIndex, reader, length);
+   }
+
+   public void setSQLXML(int parameterIndex, SQLXML xmlObject)
+      throws SQLException
+   {
+      prepared().setSQLXML(parameterIndex, xmlObject);
+   }
+
+   public void setObject(int parameterIndex, Object x, int targetSqlType, int scaleOrLength)
+      throws SQLException
+   {
+      prepared().setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+   }
+
+   public void setAsciiStream(int parameterIndex, java.io.InputStream x, long length)
+      throws SQLException
+   {
+      prepared().setAsciiStream(parameterIndex, x, length);
+   }
+
+   public void setBinaryStream(int parameterIndex, java.io.InputStream x, long length)
+      throws SQLException
+   {
+      prepared().setBinaryStream(parameterIndex, x, length);
+   }
+
+   public void setCharacterStream(int parameterIndex, java.io.Reader reader, long length)
+      throws SQLException
+   {
+      prepared().setCharacterStream(parameterIndex, reader, length);
+   }
+
+   public void setAsciiStream(int parameterIndex, java.io.InputStream x)
+      throws SQLException
+   {
+      prepared().setAsciiStream(parameterIndex, x);
+   }
+
+   public void setBinaryStream(int parameterIndex, java.io.InputStream x)
+      throws SQLException
+   {
+      prepared().setBinaryStream(parameterIndex, x);
+   }
+
+   public void setCharacterStream(int parameterIndex, java.io.Reader reader)
+      throws SQLException
+   {
+      prepared().setCharacterStream(parameterIndex, reader);
+   }
+
+   public void setNCharacterStream(int parameterIndex, Reader value)
+      throws SQLException
+   {
+      prepared().setNCharacterStream(parameterIndex, value);
+   }
+
+   public void setClob(int parameterIndex, Reader reader)
+      throws SQLException
+   {
+      prepared().setClob(parameterIndex, reader);
+   }
+
+   public void setBlob(int parameterIndex, InputStream inputStream)
+      throws SQLException
+   {
+      prepared().setBlob(parameterIndex, inputStream);
+   }
+
+   public void setNClob(int parameterIndex, Reader reader)
+      throws SQLException
+   {
+      prepared().setNClob(parameterIndex, reader);
+   }
+
+   public void setObject(int parameterIndex, Object x, SQLType targetSqlType, int scaleOrLength)
+      throws SQLException
+   {
+      prepared().setObject(parameterIndex, x, targetSqlType, scaleOrLength);
+   }
+
+   public void setObject(int parameterIndex, Object x, SQLType targetSqlType)
+      throws SQLException
+   {
+      prepared().setObject(parameterIndex, x, targetSqlType);
+   }
+
+   public long executeLargeUpdate()
+      throws SQLException
+   {
+      return alive(prepared().executeLargeUpdate());
+   }
+
+
+
+
+   private PreparedStatement prepared() throws SQLException
+   {
+      checkOpen();
+      return pstmt;
    }
 
-   
-   // Nothing to override different from Statement anyway
 }
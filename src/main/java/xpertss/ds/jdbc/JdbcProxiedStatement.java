@@ -1,75 +1,439 @@
 package xpertss.ds.jdbc;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.lang.reflect.Proxy;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
 import java.sql.Statement;
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import xpertss.ds.utils.JdbcUtils;
 
 /**
- * A proxy handler for handling statements. It ensures that all of 
- * the returned object types that provide access to the under lying 
- * connection pass back a proxied connection rather than the raw 
- * connection.
+ * A wrapper for statements. It ensures that all of the returned object
+ * types that provide access to the under lying connection pass back the
+ * wrapped connection rather than the raw connection. All other calls are
+ * delegated directly to the raw statement once it has been verified that
+ * this wrapper has not been closed.
+ * <p>
+ * Statements that were prepared with a cache key are handed back to the
+ * connection's statement cache rather than closed. Result sets obtained
+ * from such a statement are closed when it is. A statement whose limits,
+ * timeout, fetch options, escape processing, poolable flag or cursor name
+ * were changed is closed rather than cached so that the next borrower is
+ * handed a statement in the state it was prepared with.
  * 
  * @author cfloersch
  */
-public class JdbcProxiedStatement implements InvocationHandler {
+public class JdbcProxiedStatement implements Statement {
 
-   private static final HashSet<String> wrapped = new HashSet<String>();
-   static {
-      wrapped.add("executeQuery");
-      wrapped.add("getGeneratedKeys");
-      wrapped.add("getResultSet");
-   }
+   private final JdbcProxiedConnection conn;
+   private final int generation;
+   private final JdbcStatementCache.Key key;
+   private final Statement stmt;
    
-   public static Statement proxy(Connection parent, Statement stmt)
-   {
-      JdbcProxiedStatement proxy = new JdbcProxiedStatement(parent, stmt);
-      ClassLoader cl = stmt.getClass().getClassLoader();
-      return (Statement) Proxy.newProxyInstance(cl, new Class[] { Statement.class }, proxy);
-   }
- 
+   private List<ResultSet> results;
+   private boolean modified;
+   private boolean closed;
    
-   private Connection conn;
-   private Statement stmt;
-   
-   JdbcProxiedStatement(Connection conn, Statement stmt)
+   JdbcProxiedStatement(JdbcProxiedConnection conn, int generation, JdbcStatementCache.Key key, Statement stmt)
    {
       this.conn = conn;
+      this.generation = generation;
+      this.key = key;
       this.stmt = stmt;
    }
-   
-   public Object invoke(Object proxy, Method method, Object[] args) 
-      throws Throwable
-   {
-      Object result = null;
-      try {
-         String methodName = method.getName();
-         if("getConnection".equals(methodName)) {
-            return conn;
-         } else if("equals".equals(methodName)) {
-            result = args[0] == proxy;
-         } else if("toString".equals(methodName)) {
-            result = toString();
-         } else if("hashCode".equals(methodName)) {
-            result = System.identityHashCode(proxy);
-         } else if(wrapped.contains(methodName)) {
-            ResultSet rs = (ResultSet) method.invoke(stmt, args);
-            return JdbcProxiedResultSet.proxy((Statement)proxy, rs);
-         } else {
-            result = method.invoke(stmt, args);
+
+
+   public ResultSet executeQuery(String sql)
+      throws SQLException
+   {
+      return JdbcProxiedResultSet.proxy(this, register(alive(statement().executeQuery(sql))));
+   }
+
+   public int executeUpdate(String sql)
+      throws SQLException
+   {
+      return alive(statement().executeUpdate(sql));
+   }
+
+   public void close()
+      throws SQLException
+   {
+      if(!closed) {
+         closed = true;
+         if(results != null) {
+            for(int i = 0; i < results.size(); i++) JdbcUtils.close(results.get(i));
+            results.clear();
          }
-      } catch (InvocationTargetException e) {
-         throw e.getTargetException();
-      } catch (Exception e) {
-         // This should only occur if we have runtime exceptions in our proxy code
-         throw new RuntimeException("unexpected implementation exception: " + e.getMessage(), e ) ;
+         if(key == null || modified || !conn.recycle(key, (PreparedStatement) stmt)) stmt.close();
       }
+   }
+
+   public int getMaxFieldSize()
+      throws SQLException
+   {
+      return statement().getMaxFieldSize();
+   }
+
+   public void setMaxFieldSize(int max)
+      throws SQLException
+   {
+      statement().setMaxFieldSize(max);
+      modified = true;
+   }
+
+   public int getMaxRows()
+      throws SQLException
+   {
+      return statement().getMaxRows();
+   }
+
+   public void setMaxRows(int max)
+      throws SQLException
+   {
+      statement().setMaxRows(max);
+      modified = true;
+   }
+
+   public void setEscapeProcessing(boolean enable)
+      throws SQLException
+   {
+      statement().setEscapeProcessing(enable);
+      modified = true;
+   }
+
+   public int getQueryTimeout()
+      throws SQLException
+   {
+      return statement().getQueryTimeout();
+   }
+
+   public void setQueryTimeout(int seconds)
+      throws SQLException
+   {
+      statement().setQueryTimeout(seconds);
+      modified = true;
+   }
+
+   public void cancel()
+      throws SQLException
+   {
+      statement().cancel();
+   }
+
+   public SQLWarning getWarnings()
+      throws SQLException
+   {
+      return statement().getWarnings();
+   }
+
+   public void clearWarnings()
+      throws SQLException
+   {
+      statement().clearWarnings();
+   }
+
+   public void setCursorName(String name)
+      throws SQLException
+   {
+      statement().setCursorName(name);
+      modified = true;
+   }
+
+   public boolean execute(String sql)
+      throws SQLException
+   {
+      return alive(statement().execute(sql));
+   }
+
+   public ResultSet getResultSet()
+      throws SQLException
+   {
+      return JdbcProxiedResultSet.proxy(this, register(statement().getResultSet()));
+   }
+
+   public int getUpdateCount()
+      throws SQLException
+   {
+      return statement().getUpdateCount();
+   }
+
+   public boolean getMoreResults()
+      throws SQLException
+   {
+      return statement().getMoreResults();
+   }
+
+   public void setFetchDirection(int direction)
+      throws SQLException
+   {
+      statement().setFetchDirection(direction);
+      modified = true;
+   }
+
+   public int getFetchDirection()
+      throws SQLException
+   {
+      return statement().getFetchDirection();
+   }
+
+   public void setFetchSize(int rows)
+      throws SQLException
+   {
+      statement().setFetchSize(rows);
+      modified = true;
+   }
+
+   public int getFetchSize()
+      throws SQLException
+   {
+      return statement().getFetchSize();
+   }
+
+   public int getResultSetConcurrency()
+      throws SQLException
+   {
+      return statement().getResultSetConcurrency();
+   }
+
+   public int getResultSetType()
+      throws SQLException
+   {
+      return statement().getResultSetType();
+   }
+
+   public void addBatch(String sql)
+      throws SQLException
+   {
+      statement().addBatch(sql);
+   }
+
+   public void clearBatch()
+      throws SQLException
+   {
+      statement().clearBatch();
+   }
+
+   public int[] executeBatch()
+      throws SQLException
+   {
+      return alive(statement().executeBatch());
+   }
+
+   public Connection getConnection()
+      throws SQLException
+   {
+      return conn.handle(generation);
+   }
+
+   public boolean getMoreResults(int current)
+      throws SQLException
+   {
+      return statement().getMoreResults(current);
+   }
+
+   public ResultSet getGeneratedKeys()
+      throws SQLException
+   {
+      return JdbcProxiedResultSet.proxy(this, register(statement().getGeneratedKeys()));
+   }
+
+   public int executeUpdate(String sql, int autoGeneratedKeys)
+      throws SQLException
+   {
+      return alive(statement().executeUpdate(sql, autoGeneratedKeys));
+   }
+
+   public int executeUpdate(String sql, int[] columnIndexes)
+      throws SQLException
+   {
+      return alive(statement().executeUpdate(sql, columnIndexes));
+   }
+
+   public int executeUpdate(String sql, String[] columnNames)
+      throws SQLException
+   {
+      return alive(statement().executeUpdate(sql, columnNames));
+   }
+
+   public boolean execute(String sql, int autoGeneratedKeys)
+      throws SQLException
+   {
+      return alive(statement().execute(sql, autoGeneratedKeys));
+   }
+
+   public boolean execute(String sql, int[] columnIndexes)
+      throws SQLException
+   {
+      return alive(statement().execute(sql, columnIndexes));
+   }
+
+   public boolean execute(String sql, String[] columnNames)
+      throws SQLException
+   {
+      return alive(statement().execute(sql, columnNames));
+   }
+
+   public int getResultSetHoldability()
+      throws SQLException
+   {
+      return statement().getResultSetHoldability();
+   }
+
+   public boolean isClosed()
+      throws SQLException
+   {
+      return closed || stmt.isClosed();
+   }
+
+   public void setPoolable(boolean poolable)
+      throws SQLException
+   {
+      statement().setPoolable(poolable);
+      modified = true;
+   }
+
+   public boolean isPoolable()
+      throws SQLException
+   {
+      return statement().isPoolable();
+   }
+
+   public void closeOnCompletion()
+      throws SQLException
+   {
+      statement().closeOnCompletion();
+      modified = true;
+   }
+
+   public boolean isCloseOnCompletion()
+      throws SQLException
+   {
+      return statement().isCloseOnCompletion();
+   }
+
+   public long getLargeUpdateCount()
+      throws SQLException
+   {
+      return statement().getLargeUpdateCount();
+   }
+
+   public void setLargeMaxRows(long max)
+      throws SQLException
+   {
+      statement().setLargeMaxRows(max);
+      modified = true;
+   }
+
+   public long getLargeMaxRows()
+      throws SQLException
+   {
+      return statement().getLargeMaxRows();
+   }
+
+   public long[] executeLargeBatch()
+      throws SQLException
+   {
+      return alive(statement().executeLargeBatch());
+   }
+
+   public long executeLargeUpdate(String sql)
+      throws SQLException
+   {
+      return alive(statement().executeLargeUpdate(sql));
+   }
+
+   public long executeLargeUpdate(String sql, int autoGeneratedKeys)
+      throws SQLException
+   {
+      return alive(statement().executeLargeUpdate(sql, autoGeneratedKeys));
+   }
+
+   public long executeLargeUpdate(String sql, int[] columnIndexes)
+      throws SQLException
+   {
+      return alive(statement().executeLargeUpdate(sql, columnIndexes));
+   }
+
+   public long executeLargeUpdate(String sql, String[] columnNames)
+      throws SQLException
+   {
+      return alive(statement().executeLargeUpdate(sql, columnNames));
+   }
+
+   public <T> T unwrap(Class<T> iface)
+      throws SQLException
+   {
+      return statement().unwrap(iface);
+   }
+
+   public boolean isWrapperFor(Class<?> iface)
+      throws SQLException
+   {
+      return statement().isWrapperFor(iface);
+   }
+
+
+
+
+   void checkOpen() throws SQLException
+   {
+      if(closed) throw new SQLException("Statement closed");
+   }
+
+   // record a successful execute with the connection, one overload per result type to avoid boxing
+   ResultSet alive(ResultSet rs)
+   {
+      conn.alive();
+      return rs;
+   }
+
+   int alive(int count)
+   {
+      conn.alive();
+      return count;
+   }
+
+   long alive(long count)
+   {
+      conn.alive();
+      return count;
+   }
+
+   boolean alive(boolean result)
+   {
+      conn.alive();
       return result;
    }
-   
+
+   int[] alive(int[] counts)
+   {
+      conn.alive();
+      return counts;
+   }
+
+   long[] alive(long[] counts)
+   {
+      conn.alive();
+      return counts;
+   }
+
+   ResultSet register(ResultSet rs)
+   {
+      if(key != null && rs != null) {
+         if(results == null) results = new ArrayList<ResultSet>();
+         results.add(rs);
+      }
+      return rs;
+   }
+
+   private Statement statement() throws SQLException
+   {
+      checkOpen();
+      return stmt;
+   }
+
 }
@@ -0,0 +1,182 @@
+package xpertss.ds.jdbc;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import xpertss.ds.concurrent.Ratio;
+import xpertss.ds.utils.JdbcUtils;
+
+/**
+ * A least recently used cache of prepared and callable statements belonging
+ * to a single physical connection.
+ * <p>
+ * A statement is removed from the cache while it is in use and offered back
+ * when its wrapper is closed, so a statement is never handed to two callers
+ * at once. When the cache is full the least recently returned statement is
+ * closed to make room.
+ * <p>
+ * Instances are owned by a single connection handle and are only ever used
+ * by the thread which has that connection borrowed. They are therefore not
+ * thread safe.
+ *
+ * @author cfloersch
+ */
+class JdbcStatementCache {
+
+   static final int PREPARE = 0;
+   static final int CALL = 1;
+
+   private final Cache statements = new Cache();
+   private final Ratio ratio;
+   private int max;
+
+   JdbcStatementCache(int max, Ratio ratio)
+   {
+      this.max = max;
+      this.ratio = ratio;
+   }
+
+
+   /**
+    * Remove and return the open statement cached under the given key or
+    * {@code null} if there is none.
+    */
+   PreparedStatement take(Key key)
+   {
+      PreparedStatement stmt = statements.remove(key);
+      if(stmt != null && isClosed(stmt)) stmt = null;
+      if(ratio != null) ratio.record(stmt != null);
+      return stmt;
+   }
+
+   /**
+    * Offer a statement back to the cache. The statement's parameters, batch
+    * and warnings are cleared before it is cached. This returns {@code false} if the
+    * statement could not be cached in which case the caller should close
+    * it.
+    */
+   boolean offer(Key key, PreparedStatement stmt)
+   {
+      try {
+         if(stmt.isClosed()) return false;
+         stmt.clearParameters();
+         stmt.clearBatch();
+         stmt.clearWarnings();
+      } catch(SQLException e) {
+         return false;
+      }
+      PreparedStatement prior = statements.put(key, stmt);
+      if(prior != null && prior != stmt) JdbcUtils.close(prior);
+      return true;
+   }
+
+   /**
+    * Change the maximum number of statements this cache will hold closing
+    * the least recently used statements if it currently holds more.
+    */
+   void resize(int max)
+   {
+      if(this.max != max) {
+         this.max = max;
+         Iterator<PreparedStatement> it = statements.values().iterator();
+         while(statements.size() > max && it.hasNext()) {
+            JdbcUtils.close(it.next());
+            it.remove();
+         }
+      }
+   }
+
+   /**
+    * Close and remove all of the cached statements.
+    */
+   void clear()
+   {
+      for(PreparedStatement stmt : statements.values()) JdbcUtils.close(stmt);
+      statements.clear();
+   }
+
+   int size()
+   {
+      return statements.size();
+   }
+
+
+
+   private static boolean isClosed(PreparedStatement stmt)
+   {
+      try {
+         return stmt.isClosed();
+      } catch(SQLException e) {
+         return true;
+      }
+   }
+
+
+   private class Cache extends LinkedHashMap<Key,PreparedStatement> {
+
+      private Cache()
+      {
+         super(16, 0.75F, true);
+      }
+
+      protected boolean removeEldestEntry(Map.Entry<Key,PreparedStatement> eldest)
+      {
+         if(size() > max) {
+            JdbcUtils.close(eldest.getValue());
+            return true;
+         }
+         return false;
+      }
+   }
+
+
+   /**
+    * Identifies a cached statement by its sql, the method used to prepare it,
+    * and the result set type, concurrency, holdability and auto generated
+    * keys mode it was prepared with. Unspecified options are recorded as -1.
+    */
+   static final class Key {
+
+      private final int kind;
+      private final String sql;
+      private final int type;
+      private final int concurrency;
+      private final int holdability;
+      private final int autoKeys;
+
+      Key(int kind, String sql, int type, int concurrency, int holdability, int autoKeys)
+      {
+         this.kind = kind;
+         this.sql = sql;
+         this.type = type;
+         this.concurrency = concurrency;
+         this.holdability = holdability;
+         this.autoKeys = autoKeys;
+      }
+
+      public boolean equals(Object o)
+      {
+         if(o instanceof Key) {
+            Key k = (Key) o;
+            return k.kind == kind && k.type == type && k.concurrency == concurrency
+                     && k.holdability == holdability && k.autoKeys == autoKeys
+                     && k.sql.equals(sql);
+         }
+         return false;
+      }
+
+      public int hashCode()
+      {
+         int h = sql.hashCode();
+         h = 31 * h + kind;
+         h = 31 * h + type;
+         h = 31 * h + concurrency;
+         h = 31 * h + holdability;
+         return 31 * h + autoKeys;
+      }
+   }
+
+}
@@ -6,13 +6,16 @@
  */
 package xpertss.ds.jdbc.drivers;
 
+import xpertss.ds.jdbc.spi.JdbcConnectionTester;
 import xpertss.ds.jdbc.spi.JdbcDriverService;
 import xpertss.ds.jdbc.spi.JdbcDriverSupport;
+import xpertss.ds.utils.JdbcUtils;
 
 import java.net.URI;
+import java.sql.Connection;
 import java.util.Properties;
 
-public class DB2DriverService extends BaseDriverSupport implements JdbcDriverService, JdbcDriverSupport {
+public class DB2DriverService extends BaseDriverSupport implements JdbcDriverService, JdbcDriverSupport, JdbcConnectionTester {
 
 
    public DB2DriverService()
@@ -58,4 +61,11 @@ public class DB2DriverService extends BaseDriverSupport implements JdbcDriverSer
       if(connect_timeout >= 0) props.setProperty("loginTimeout", Integer.toString(connect_timeout));
       if(read_timeout >= 0) props.setProperty("blockingReadConnectionTimeout", Integer.toString(read_timeout));
    }
+
+
+   // preparing alone is not enough as jcc defers prepares until execution by default
+   public boolean isValid(Connection conn, int timeout)
+   {
+      return JdbcUtils.ping(conn, "SELECT 1 FROM SYSIBM.SYSDUMMY1", timeout);
+   }
 }
@@ -6,12 +6,15 @@
  */
 package xpertss.ds.jdbc.drivers;
 
+import xpertss.ds.jdbc.spi.JdbcConnectionTester;
 import xpertss.ds.jdbc.spi.JdbcDriverService;
 import xpertss.ds.jdbc.spi.JdbcDriverSupport;
+import xpertss.ds.utils.JdbcUtils;
 
+import java.sql.Connection;
 import java.util.Properties;
 
-public class DerbyDriverService extends BaseDriverSupport implements JdbcDriverService, JdbcDriverSupport {
+public class DerbyDriverService extends BaseDriverSupport implements JdbcDriverService, JdbcDriverSupport, JdbcConnectionTester {
 
    public DerbyDriverService()
    {
@@ -31,6 +34,11 @@ public class DerbyDriverService extends BaseDriverSupport implements JdbcDriverS
       // derby doesn't support a login/connect timeout at present
    }
 
+   public boolean isValid(Connection conn, int timeout)
+   {
+      return JdbcUtils.ping(conn, "VALUES 1", timeout);
+   }
+
    public JdbcDriverSupport createSupport(String driverClassName)
    {
       return ("org.apache.derby.jdbc.ClientDriver".equals(driverClassName)) ? this : null;
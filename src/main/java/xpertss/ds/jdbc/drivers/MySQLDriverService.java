@@ -6,12 +6,15 @@
  */
 package xpertss.ds.jdbc.drivers;
 
+import xpertss.ds.jdbc.spi.JdbcConnectionTester;
 import xpertss.ds.jdbc.spi.JdbcDriverService;
 import xpertss.ds.jdbc.spi.JdbcDriverSupport;
+import xpertss.ds.utils.JdbcUtils;
 
+import java.sql.Connection;
 import java.util.Properties;
 
-public class MySQLDriverService extends BaseDriverSupport implements JdbcDriverService, JdbcDriverSupport {
+public class MySQLDriverService extends BaseDriverSupport implements JdbcDriverService, JdbcDriverSupport, JdbcConnectionTester {
 
    public MySQLDriverService()
    {
@@ -32,6 +35,14 @@ public class MySQLDriverService extends BaseDriverSupport implements JdbcDriverS
    }
 
 
+   // Connector/J answers a query starting with the ping marker with a
+   // COM_PING rather than sending it to the server, but only from executeQuery
+   public boolean isValid(Connection conn, int timeout)
+   {
+      return JdbcUtils.pingQuery(conn, "/* ping */ SELECT 1", timeout);
+   }
+
+
 
    public JdbcDriverSupport createSupport(String driverClassName)
    {
@@ -6,9 +6,13 @@
  */
 package xpertss.ds.jdbc.drivers;
 
+import xpertss.ds.jdbc.spi.JdbcConnectionTester;
 import xpertss.ds.jdbc.spi.JdbcDriverService;
 import xpertss.ds.jdbc.spi.JdbcDriverSupport;
+import xpertss.ds.utils.JdbcUtils;
 
+import java.lang.reflect.Method;
+import java.sql.Connection;
 import java.util.Properties;
 
 /**
@@ -22,7 +26,12 @@ import java.util.Properties;
  *
  * jdbc:oracle:thin:@(DESCRIPTION=(ADDRESS=(PROTOCOL=TCPS)(HOST=myhost)(PORT=3360))(CONNECT_DATA=(SERVICE_NAME=serviceName)))
  */
-public class OracleDriverService implements JdbcDriverService, JdbcDriverSupport {
+public class OracleDriverService implements JdbcDriverService, JdbcDriverSupport, JdbcConnectionTester {
+
+   // OracleConnection.DATABASE_OK
+   private static final int DATABASE_OK = 0;
+
+   private volatile Method ping;
 
    public JdbcDriverSupport createSupport(String driverClassName)
    {
@@ -59,9 +68,43 @@ public class OracleDriverService implements JdbcDriverService, JdbcDriverSupport
    }
 
 
+   /**
+    * Uses OracleConnection.pingDatabase, which makes a round trip without
+    * parsing any sql, when the driver provides it and selects from dual
+    * otherwise. The driver is not a compile time dependency so the method
+    * is found reflectively.
+    */
+   public boolean isValid(Connection conn, int timeout)
+   {
+      Method ping = pingMethod(conn);
+      if(ping != null) {
+         try {
+            return ((Number) ping.invoke(conn, timeout)).intValue() == DATABASE_OK;
+         } catch(Exception e) {
+            return false;
+         }
+      }
+      return JdbcUtils.ping(conn, "SELECT 1 FROM DUAL", timeout);
+   }
+
 
 
 
+
+   private Method pingMethod(Connection conn)
+   {
+      Method ping = this.ping;
+      if(ping == null) {
+         try {
+            Class<?> oracle = Class.forName("oracle.jdbc.OracleConnection", false, conn.getClass().getClassLoader());
+            this.ping = ping = oracle.getMethod("pingDatabase", int.class);
+         } catch(Exception e) {
+            return null;
+         }
+      }
+      return ping.getDeclaringClass().isInstance(conn) ? ping : null;
+   }
+
    private String parseTnsHost(String uri)
    {
       int start = uri.indexOf("HOST=") + 5;
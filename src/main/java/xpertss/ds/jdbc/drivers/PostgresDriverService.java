@@ -6,12 +6,15 @@
  */
 package xpertss.ds.jdbc.drivers;
 
+import xpertss.ds.jdbc.spi.JdbcConnectionTester;
 import xpertss.ds.jdbc.spi.JdbcDriverService;
 import xpertss.ds.jdbc.spi.JdbcDriverSupport;
+import xpertss.ds.utils.JdbcUtils;
 
+import java.sql.Connection;
 import java.util.Properties;
 
-public class PostgresDriverService extends BaseDriverSupport implements JdbcDriverService, JdbcDriverSupport {
+public class PostgresDriverService extends BaseDriverSupport implements JdbcDriverService, JdbcDriverSupport, JdbcConnectionTester {
 
    public PostgresDriverService()
    {
@@ -33,6 +36,13 @@ public class PostgresDriverService extends BaseDriverSupport implements JdbcDriv
    }
 
 
+   // an empty query is answered with EmptyQueryResponse without touching the planner
+   public boolean isValid(Connection conn, int timeout)
+   {
+      return JdbcUtils.ping(conn, "", timeout);
+   }
+
+
 
 
    public JdbcDriverSupport createSupport(String driverClassName)
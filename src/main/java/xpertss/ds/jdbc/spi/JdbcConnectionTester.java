@@ -0,0 +1,26 @@
+package xpertss.ds.jdbc.spi;
+
+import java.sql.Connection;
+
+/**
+ * An optional extension to {@link JdbcDriverSupport} which tests a pooled
+ * connection using the cheapest means the driver offers.
+ * <p>
+ * JDBC pools whose driver support implements this interface use it to test
+ * their connections in preference to the driver's isValid implementation,
+ * which on many drivers issues a full query or does not touch the network
+ * at all.
+ *
+ * @author cfloersch
+ */
+public interface JdbcConnectionTester {
+
+   /**
+    * Returns true if the given connection answered a round trip to the
+    * database within the given number of seconds. A timeout of zero implies
+    * no timeout. Implementations should return false rather than throw an
+    * exception if the connection fails the test.
+    */
+   public boolean isValid(Connection conn, int timeout);
+
+}
@@ -0,0 +1,106 @@
+package xpertss.ds.utils;
+
+import java.util.concurrent.TimeUnit;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A clock which is handed to a data source once at construction rather than
+ * looked up on every call.
+ * <p>
+ * The millisecond time is coarse and intended for timestamps such as last
+ * use and blackout periods where a few milliseconds do not matter. The nano
+ * time is precise and intended only for measuring latencies.
+ * <p>
+ * The system clock reads its millisecond time from a field refreshed by a
+ * background ticker. It defers to {@link TimeProvider} once a time provider
+ * has been stubbed so time based tests continue to work.
+ *
+ * @author cfloersch
+ */
+public abstract class Clock {
+
+   /**
+    * The interval in milliseconds at which the system clock's millisecond
+    * time is refreshed.
+    */
+   public static final long TICK = 10;
+
+   /**
+    * @return The current time in milliseconds, possibly up to a tick stale.
+    */
+   public abstract long millis();
+
+   /**
+    * Returns the exact current time in milliseconds. This is more expensive
+    * than {@link #millis()} and intended for rarely recorded events that are
+    * later compared against the coarse time. By default this returns the
+    * coarse time.
+    */
+   public long preciseMillis()
+   {
+      return millis();
+   }
+
+   /**
+    * @return The current value of the nanosecond timer.
+    */
+   public abstract long nanos();
+
+   /**
+    * Returns the time elapsed in the given unit since the given start time
+    * obtained from {@link #nanos()}.
+    */
+   public long elapsed(long start, TimeUnit unit)
+   {
+      return unit.convert(nanos() - start, NANOSECONDS);
+   }
+
+
+   /**
+    * Returns the shared system clock.
+    */
+   public static Clock system()
+   {
+      return SystemClock.INSTANCE;
+   }
+
+
+
+   private static class SystemClock extends Clock implements Runnable {
+
+      private static final SystemClock INSTANCE = new SystemClock();
+
+      private volatile long now = System.currentTimeMillis();
+
+      private SystemClock()
+      {
+         SystemExecutor.scheduleAtFixedRate(this, TICK, TICK, MILLISECONDS);
+      }
+
+      @Override
+      public long millis()
+      {
+         return (TimeProvider.isStubbed()) ? TimeProvider.get().milliTime() : now;
+      }
+
+      @Override
+      public long preciseMillis()
+      {
+         return (TimeProvider.isStubbed()) ? TimeProvider.get().milliTime() : System.currentTimeMillis();
+      }
+
+      @Override
+      public long nanos()
+      {
+         return (TimeProvider.isStubbed()) ? TimeProvider.get().nanoTime() : System.nanoTime();
+      }
+
+      public void run()
+      {
+         now = System.currentTimeMillis();
+      }
+   }
+
+}
@@ -163,4 +163,41 @@ public class JdbcUtils {
       } catch(Exception e) { return false; }
    }
 
+   /**
+    * Executes the given sql on the connection waiting at most timeout
+    * seconds and catches all exceptions. If an exception is thrown then
+    * false is returned.
+    */
+   public static boolean ping(Connection conn, String sql, int timeout)
+   {
+      return ping(conn, sql, timeout, false);
+   }
+
+   /**
+    * Executes the given query on the connection using executeQuery, for
+    * drivers which only recognize special queries there, waiting at most
+    * timeout seconds and catches all exceptions. If an exception is thrown
+    * then false is returned.
+    */
+   public static boolean pingQuery(Connection conn, String sql, int timeout)
+   {
+      return ping(conn, sql, timeout, true);
+   }
+
+   private static boolean ping(Connection conn, String sql, int timeout, boolean query)
+   {
+      Statement stmt = null;
+      try {
+         stmt = conn.createStatement();
+         stmt.setQueryTimeout(timeout);
+         if(query) close(stmt.executeQuery(sql));
+         else stmt.execute(sql);
+         return true;
+      } catch(Exception e) {
+         return false;
+      } finally {
+         close(stmt);
+      }
+   }
+
 }
@@ -15,6 +15,9 @@ public abstract class TimeProvider {
    private static final InheritableThreadLocal<TimeProvider> cache = new InheritableThreadLocal<TimeProvider>();
    private static final TimeProvider system = new SystemTime();
 
+   // set once any thread stubs a provider so production code skips the thread local
+   private static volatile boolean stubbed;
+
 
    /**
     * @return The current time in milliseconds.
@@ -37,6 +40,7 @@ public abstract class TimeProvider {
     */
    public static void stub(TimeProvider stub)
    {
+      if(stub != null) stubbed = true;
       cache.set(stub);
    }
 
@@ -53,11 +57,22 @@ public abstract class TimeProvider {
     */
    public static TimeProvider get()
    {
+      if(!stubbed) return system;
       TimeProvider stub = cache.get();
       return (stub == null) ? system : stub;
    }
 
 
+   /**
+    * Returns true if a time provider has ever been stubbed. Once true this
+    * remains true as any thread may still hold a stub.
+    */
+   static boolean isStubbed()
+   {
+      return stubbed;
+   }
+
+
    private static class SystemTime extends TimeProvider {
 
       @Override
@@ -15,7 +15,7 @@ public class Timer {
 
    private Timer()
    {
-      start = TimeProvider.get().nanoTime();
+      start = Clock.system().nanos();
    }
 
 
@@ -26,12 +26,12 @@ public class Timer {
 
    public long getTime(TimeUnit unit)
    {
-      return unit.convert(TimeProvider.get().nanoTime() - start, NANOSECONDS);
+      return unit.convert(Clock.system().nanos() - start, NANOSECONDS);
    }
 
    public void reset()
    {
-      start = TimeProvider.get().nanoTime();
+      start = Clock.system().nanos();
    }
 
 }
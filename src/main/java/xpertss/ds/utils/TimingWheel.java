@@ -0,0 +1,304 @@
+package xpertss.ds.utils;
+
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * A hashed timing wheel for the periodic housekeeping of many pools.
+ * <p>
+ * Tasks are hashed into a ring of buckets by their deadline and a single
+ * ticker thread visits one bucket per tick, handing the tasks which are due
+ * to a pool of worker threads. Scheduling and cancelling cost the same no
+ * matter how many tasks are outstanding, at the price of running tasks up
+ * to one tick late. Tasks due beyond one turn of the wheel wait out the
+ * remaining rounds in their bucket.
+ * <p>
+ * Periodic tasks start at a random phase within their period so pools
+ * created together do not run their housekeeping together, and each run is
+ * scheduled only once the previous one has finished so a slow task can not
+ * pile up behind itself.
+ * <p>
+ * The ticker and worker threads are daemon threads created on first use and
+ * the workers exit when idle. The shared instance used for pool housekeeping
+ * has as many workers as the system property
+ * <code>housekeeping.thread.count</code>, defaulting to 4, and ticks every
+ * <code>housekeeping.tick</code> milliseconds, defaulting to 100.
+ *
+ * @author cfloersch
+ */
+public class TimingWheel {
+
+   private static class Holder {
+      private static final TimingWheel INSTANCE =
+         new TimingWheel(NumberUtils.getInt(System.getProperty("housekeeping.tick"), 100), 512,
+                         NumberUtils.getInt(System.getProperty("housekeeping.thread.count"), 4), "housekeeping");
+   }
+
+   /**
+    * Returns the timing wheel shared by all pools for their housekeeping.
+    */
+   public static TimingWheel housekeeping()
+   {
+      return Holder.INSTANCE;
+   }
+
+
+   private final Queue<Timeout> pending = new ConcurrentLinkedQueue<Timeout>();
+   private final AtomicBoolean started = new AtomicBoolean();
+   private final Random random = new Random();
+   private final ThreadPoolExecutor workers;
+   private final Timeout[] wheel;          // bucket heads, only touched by the ticker
+   private final long tick;
+   private final int mask;
+   private final String name;
+
+   private final long startTime = System.nanoTime();
+   private long ticks;                     // only touched by the ticker
+
+   /**
+    * Create a timing wheel.
+    *
+    * @param tick The tick duration in milliseconds
+    * @param buckets The number of buckets, rounded up to a power of two
+    * @param threads The maximum number of worker threads running tasks
+    * @param name The prefix for the names of the wheel's threads
+    */
+   public TimingWheel(long tick, int buckets, int threads, String name)
+   {
+      if(tick <= 0) throw new IllegalArgumentException("tick must be positive");
+      if(buckets <= 0 || buckets > (1 << 30)) throw new IllegalArgumentException("invalid bucket count");
+      this.tick = MILLISECONDS.toNanos(tick);
+      int size = 1;
+      while(size < buckets) size <<= 1;
+      this.wheel = new Timeout[size];
+      this.mask = size - 1;
+      this.name = Objects.notNull(name, "name may not be null");
+      this.workers = new ThreadPoolExecutor(Math.max(threads, 1), Math.max(threads, 1), 60, SECONDS,
+                                             new LinkedBlockingQueue<Runnable>(), new DaemonThreadFactory(name));
+      this.workers.allowCoreThreadTimeOut(true);
+   }
+
+
+
+   /**
+    * Run the given task once after the given delay.
+    */
+   public Timeout schedule(Runnable task, long delay, TimeUnit unit)
+   {
+      return submit(new Timeout(Objects.notNull(task, "task may not be null"), 0), unit.toNanos(delay));
+   }
+
+   /**
+    * Run the given task every period, the first run falling at a random
+    * point within the first period and each later run one period after the
+    * previous run finished.
+    */
+   public Timeout schedulePeriodic(Runnable task, long period, TimeUnit unit)
+   {
+      long nanos = unit.toNanos(period);
+      if(nanos <= 0) throw new IllegalArgumentException("period must be positive");
+      long phase;
+      synchronized(random) {
+         phase = (long) (random.nextDouble() * nanos);
+      }
+      return submit(new Timeout(Objects.notNull(task, "task may not be null"), nanos), phase);
+   }
+
+   /**
+    * Run the given task on one of this wheel's worker threads.
+    */
+   public void execute(Runnable task)
+   {
+      workers.execute(task);
+   }
+
+   /**
+    * Returns an executor which runs tasks on this wheel's worker threads.
+    */
+   public Executor getExecutor()
+   {
+      return workers;
+   }
+
+
+
+   private Timeout submit(Timeout timeout, long delay)
+   {
+      start();
+      timeout.deadline = System.nanoTime() - startTime + Math.max(delay, 0);
+      pending.offer(timeout);
+      return timeout;
+   }
+
+   private void start()
+   {
+      if(started.compareAndSet(false, true)) {
+         new DaemonThreadFactory(name + "-ticker").newThread(new Ticker()).start();
+      }
+   }
+
+
+
+
+   /**
+    * A task scheduled on a timing wheel. Cancelling a periodic task stops
+    * any further runs.
+    */
+   public final class Timeout {
+
+      private static final int WAITING = 0;
+      private static final int RUNNING = 1;
+      private static final int CANCELLED = 2;
+
+      private final AtomicInteger state = new AtomicInteger(WAITING);
+      private final Runnable task;
+      private final long period;
+
+      private long deadline;           // nanos since the wheel started
+      private long rounds;
+      private Timeout prev;            // links within a bucket, only touched by the ticker
+      private Timeout next;
+      private int bucket = -1;
+
+      private Timeout(Runnable task, long period)
+      {
+         this.task = task;
+         this.period = period;
+      }
+
+      /**
+       * Prevent any further runs of the task. Returns false if it had already
+       * been cancelled or was a one shot task which has already run.
+       */
+      public boolean cancel()
+      {
+         for(;;) {
+            int current = state.get();
+            if(current == CANCELLED) return false;
+            if(current == RUNNING && period == 0) return false;
+            if(state.compareAndSet(current, CANCELLED)) return true;
+         }
+      }
+
+      public boolean isCancelled()
+      {
+         return state.get() == CANCELLED;
+      }
+
+      private void expire()
+      {
+         if(!state.compareAndSet(WAITING, RUNNING)) return;
+         try {
+            workers.execute(new Runnable() {
+               public void run() {
+                  try {
+                     task.run();
+                  } finally {
+                     reschedule();
+                  }
+               }
+            });
+         } catch(RuntimeException e) {
+            reschedule();
+         }
+      }
+
+      private void reschedule()
+      {
+         if(period > 0 && state.compareAndSet(RUNNING, WAITING)) submit(this, period);
+      }
+
+   }
+
+
+
+   private class Ticker implements Runnable {
+
+      public void run()
+      {
+         for(;;) {
+            long now = awaitTick();
+            transfer();
+            expire(now);
+            ticks++;
+         }
+      }
+
+      // sleep until the end of the current tick returning the time since the wheel started
+      private long awaitTick()
+      {
+         long target = tick * (ticks + 1);
+         for(;;) {
+            long now = System.nanoTime() - startTime;
+            long remaining = target - now;
+            if(remaining <= 0) return now;
+            try {
+               NANOSECONDS.sleep(remaining);
+            } catch(InterruptedException e) {
+               // the ticker only stops with the jvm
+            }
+         }
+      }
+
+      private void transfer()
+      {
+         Timeout timeout;
+         while((timeout = pending.poll()) != null) {
+            if(timeout.isCancelled()) continue;
+            long due = timeout.deadline / tick;
+            timeout.rounds = Math.max(due - ticks, 0) / wheel.length;
+            link(timeout, (int) (Math.max(due, ticks) & mask));
+         }
+      }
+
+      private void expire(long now)
+      {
+         int index = (int) (ticks & mask);
+         Timeout timeout = wheel[index];
+         while(timeout != null) {
+            Timeout next = timeout.next;
+            if(timeout.isCancelled()) {
+               unlink(timeout);
+            } else if(timeout.rounds <= 0 && timeout.deadline <= now) {
+               unlink(timeout);
+               timeout.expire();
+            } else if(timeout.rounds > 0) {
+               timeout.rounds--;
+            }
+            timeout = next;
+         }
+      }
+
+      private void link(Timeout timeout, int index)
+      {
+         Timeout head = wheel[index];
+         timeout.bucket = index;
+         timeout.prev = null;
+         timeout.next = head;
+         if(head != null) head.prev = timeout;
+         wheel[index] = timeout;
+      }
+
+      private void unlink(Timeout timeout)
+      {
+         if(timeout.prev == null) wheel[timeout.bucket] = timeout.next;
+         else timeout.prev.next = timeout.next;
+         if(timeout.next != null) timeout.next.prev = timeout.prev;
+         timeout.prev = timeout.next = null;
+         timeout.bucket = -1;
+      }
+
+   }
+
+}
@@ -85,6 +85,7 @@ public class As400PoolingDataSourceTest {
       As400OriginDataSource origin = createOriginDataSource();
       As400PoolingDataSource ds = new As400PoolingDataSource(origin);
       try {
+         ds.setProperty(PoolingDataSource.WARM_FRACTION, "1");
          ds.setProperty(PoolingDataSource.MIN_CONNECTIONS, "2");
 
          verify(origin, times(2)).getConnection();
@@ -230,6 +231,7 @@ public class As400PoolingDataSourceTest {
       As400PoolingDataSource ds = new As400PoolingDataSource(origin);
       try {
          ds.setProperty(PoolingDataSource.MAX_IDLE, "1");
+         ds.setProperty(PoolingDataSource.WARM_FRACTION, "1");
          ds.setProperty(PoolingDataSource.MIN_CONNECTIONS, "2");
 
          assertEquals("Expected different value for property max-idle", "1", ds.getProperty(PoolingDataSource.MAX_IDLE));
@@ -255,6 +257,7 @@ public class As400PoolingDataSourceTest {
       As400PoolingDataSource ds = new As400PoolingDataSource(origin);
       try {
          ds.setProperty(PoolingDataSource.MAX_CONNECTIONS, "1");
+         ds.setProperty(PoolingDataSource.WARM_FRACTION, "1");
          ds.setProperty(PoolingDataSource.MIN_CONNECTIONS, "2");
 
          assertEquals("Active count is wrong", 1, ds.getActiveCount());
@@ -276,6 +279,7 @@ public class As400PoolingDataSourceTest {
       As400OriginDataSource origin = createOriginDataSource();
       As400PoolingDataSource ds = new As400PoolingDataSource(origin);
       try {
+         ds.setProperty(PoolingDataSource.WARM_FRACTION, "1");
          ds.setProperty(PoolingDataSource.MIN_CONNECTIONS, "2");
          ds.setProperty(PoolingDataSource.MAX_CONNECTIONS, "1");
 
@@ -551,6 +555,7 @@ public class As400PoolingDataSourceTest {
       As400PoolingDataSource ds = new As400PoolingDataSource(origin);
       try {
          ds.setProperty(PoolingDataSource.MAX_IDLE, "1");
+         ds.setProperty(PoolingDataSource.WARM_FRACTION, "1");
          ds.setProperty(PoolingDataSource.MIN_CONNECTIONS, "1");
 
          assertEquals("Cache hit ratio is wrong", 0, ds.getCacheHitRatio());
@@ -0,0 +1,856 @@
+package xpertss.ds.base;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import javax.naming.NamingException;
+import javax.naming.Reference;
+
+import junit.framework.TestCase;
+import xpertss.ds.ConnectionCallback;
+import xpertss.ds.DataSource;
+import xpertss.ds.DataSourceException;
+import xpertss.ds.PoolingDataSource;
+import xpertss.ds.utils.ThreadUtils;
+import xpertss.ds.utils.TimeProvider;
+
+import static org.mockito.Mockito.mock;
+
+
+public class BasePoolingDataSourceTest extends TestCase {
+
+   public void testAsyncCreate() throws Exception {
+      StubPool pool = new StubPool();
+      pool.setProperty(PoolingDataSource.ASYNC_CREATE, "true");
+
+      PooledResource<String> res = pool.getPooledResource();
+      assertNotNull(res);
+      assertFalse("Connection should have been created in the background",
+                  Thread.currentThread().getName().equals(pool.creator.get()));
+      assertEquals(1, pool.getActiveCount());
+      assertEquals(1, pool.getBusyCount());
+      assertEquals(0, pool.getIdleCount());
+
+      pool.returnPooledResource(res, false);
+      assertEquals(1, pool.getActiveCount());
+      assertEquals(1, pool.getIdleCount());
+      pool.close();
+   }
+
+   public void testAsyncCreateHandsOffReturnedConnection() throws Exception {
+      final StubPool pool = new StubPool();
+      pool.setProperty(PoolingDataSource.ASYNC_CREATE, "true");
+      PooledResource<String> first = pool.getPooledResource();
+
+      pool.block = new CountDownLatch(1);
+      final AtomicReference<PooledResource<String>> borrowed = new AtomicReference<PooledResource<String>>();
+      final CountDownLatch done = new CountDownLatch(1);
+      new Thread() {
+         public void run() {
+            try {
+               borrowed.set(pool.getPooledResource());
+            } catch(DataSourceException e) {
+               /* Test fails below */
+            } finally {
+               done.countDown();
+            }
+         }
+      }.start();
+
+      ThreadUtils.sleep(200);
+      assertEquals("Borrower should be waiting on the cache", 1, pool.getWaitQueueSize());
+      pool.returnPooledResource(first, false);
+      assertTrue("Borrower should not wait for the create", done.await(2, TimeUnit.SECONDS));
+      assertSame(first.getResource(), borrowed.get().getResource());
+
+      pool.block.countDown();
+      ThreadUtils.sleep(200);
+      assertEquals(2, pool.getActiveCount());
+      assertEquals("Created connection should be idle", 1, pool.getIdleCount());
+      pool.close();
+   }
+
+   public void testAsyncCreateFailure() throws Exception {
+      StubPool pool = new StubPool();
+      pool.setProperty(PoolingDataSource.ASYNC_CREATE, "true");
+      pool.fail = true;
+      long start = System.currentTimeMillis();
+      try {
+         pool.getPooledResource();
+         fail();
+      } catch(DataSourceException e) {
+         assertEquals("connect.failed", e.getMessage());
+      }
+      assertTrue("Failure should not wait out the max wait time", System.currentTimeMillis() - start < 2000);
+      assertEquals(0, pool.getActiveCount());
+      pool.close();
+   }
+
+   public void testAsyncCreateFailureOnlyFailsItsBorrower() throws Exception {
+      final StubPool pool = new StubPool();
+      pool.setProperty(PoolingDataSource.ASYNC_CREATE, "true");
+      pool.setProperty(PoolingDataSource.MAX_CONNECTIONS, "2");
+      pool.setProperty(PoolingDataSource.MAX_WAIT_TIME, "5000");
+      PooledResource<String> first = pool.getPooledResource();
+
+      pool.block = new CountDownLatch(1);
+      pool.failNext.set(1);
+      final List<PooledResource<String>> borrowed = new CopyOnWriteArrayList<PooledResource<String>>();
+      final List<DataSourceException> errors = new CopyOnWriteArrayList<DataSourceException>();
+      final CountDownLatch done = new CountDownLatch(3);
+      for(int i = 0; i < 3; i++) {
+         new Thread() {
+            public void run() {
+               try {
+                  borrowed.add(pool.getPooledResource());
+               } catch(DataSourceException e) {
+                  errors.add(e);
+               } finally {
+                  done.countDown();
+               }
+            }
+         }.start();
+      }
+
+      ThreadUtils.sleep(200);
+      assertEquals(1, pool.creating.get());
+      pool.block.countDown();
+      ThreadUtils.sleep(200);
+      assertEquals("Only the borrower whose create failed should fail", 1, errors.size());
+      assertEquals("connect.failed", errors.get(0).getMessage());
+
+      pool.returnPooledResource(first, false);
+      assertTrue("Waiters should receive connections", done.await(2, TimeUnit.SECONDS));
+      assertEquals(1, errors.size());
+      assertEquals(2, borrowed.size());
+      pool.close();
+   }
+
+   public void testAsyncCreateMaxWait() throws Exception {
+      StubPool pool = new StubPool();
+      pool.setProperty(PoolingDataSource.ASYNC_CREATE, "true");
+      pool.setProperty(PoolingDataSource.MAX_WAIT_TIME, "300");
+      pool.block = new CountDownLatch(1);
+      try {
+         pool.getPooledResource();
+         fail();
+      } catch(DataSourceException e) {
+         assertEquals("pool.exhausted", e.getMessage());
+      } finally {
+         pool.block.countDown();
+      }
+      pool.close();
+   }
+
+   public void testHandoffCacheType() throws Exception {
+      final StubPool pool = new StubPool();
+      pool.setProperty(PoolingDataSource.CACHE_TYPE, "Handoff");
+      pool.setProperty(PoolingDataSource.MAX_CONNECTIONS, "1");
+      PooledResource<String> first = pool.getPooledResource();
+
+      final AtomicReference<PooledResource<String>> borrowed = new AtomicReference<PooledResource<String>>();
+      final CountDownLatch done = new CountDownLatch(1);
+      new Thread() {
+         public void run() {
+            try {
+               borrowed.set(pool.getPooledResource());
+            } catch(DataSourceException e) {
+               /* Test fails below */
+            } finally {
+               done.countDown();
+            }
+         }
+      }.start();
+
+      ThreadUtils.sleep(200);
+      assertEquals(1, pool.getWaitQueueSize());
+      pool.returnPooledResource(first, false);
+      assertTrue(done.await(2, TimeUnit.SECONDS));
+      assertSame(first.getResource(), borrowed.get().getResource());
+      assertEquals(1, pool.getActiveCount());
+      assertEquals(0, pool.getIdleCount());
+      pool.close();
+   }
+
+   public void testAsyncBorrow() throws Exception {
+      StubPool pool = new StubPool();
+      RecordingCallback callback = new RecordingCallback();
+      Future<String> future = pool.getConnectionAsync(callback);
+      String conn = future.get(2, TimeUnit.SECONDS);
+      assertNotNull(conn);
+      assertTrue(callback.done.await(2, TimeUnit.SECONDS));
+      assertEquals(conn, callback.connection);
+      assertFalse("Connection should have been created in the background",
+                  Thread.currentThread().getName().equals(pool.creator.get()));
+      assertEquals(1, pool.getBusyCount());
+      pool.close();
+   }
+
+   public void testAsyncBorrowWaitsForReturn() throws Exception {
+      for(String type : new String[] { "Blocking", "Concurrent", "Handoff" }) {
+         StubPool pool = new StubPool();
+         pool.setProperty(PoolingDataSource.CACHE_TYPE, type);
+         pool.setProperty(PoolingDataSource.MAX_CONNECTIONS, "1");
+         PooledResource<String> first = pool.getPooledResource();
+
+         RecordingCallback callback = new RecordingCallback();
+         Future<String> future = pool.getConnectionAsync(callback);
+         ThreadUtils.sleep(100);
+         assertFalse(type, future.isDone());
+         assertEquals(type, 1, pool.getWaitQueueSize());
+
+         pool.returnPooledResource(first, false);
+         assertEquals(type, first.getResource(), future.get(2, TimeUnit.SECONDS));
+         assertTrue(type, callback.done.await(2, TimeUnit.SECONDS));
+         assertEquals(type, 0, pool.getWaitQueueSize());
+         assertEquals(type, 1, pool.getBusyCount());
+         pool.close();
+      }
+   }
+
+   public void testAsyncBorrowTimeout() throws Exception {
+      StubPool pool = new StubPool();
+      pool.setProperty(PoolingDataSource.MAX_CONNECTIONS, "1");
+      pool.setProperty(PoolingDataSource.MAX_WAIT_TIME, "200");
+      PooledResource<String> first = pool.getPooledResource();
+
+      RecordingCallback callback = new RecordingCallback();
+      Future<String> future = pool.getConnectionAsync(callback);
+      try {
+         future.get(2, TimeUnit.SECONDS);
+         fail();
+      } catch(ExecutionException e) {
+         assertEquals("pool.exhausted", e.getCause().getMessage());
+      }
+      assertTrue(callback.done.await(2, TimeUnit.SECONDS));
+      assertEquals("pool.exhausted", callback.error.getMessage());
+      assertEquals(0, pool.getWaitQueueSize());
+
+      pool.returnPooledResource(first, false);
+      assertEquals("Returned connection should be idle", 1, pool.getIdleCount());
+      pool.close();
+   }
+
+   public void testAsyncBorrowCancel() throws Exception {
+      StubPool pool = new StubPool();
+      pool.setProperty(PoolingDataSource.MAX_CONNECTIONS, "1");
+      PooledResource<String> first = pool.getPooledResource();
+
+      RecordingCallback callback = new RecordingCallback();
+      Future<String> future = pool.getConnectionAsync(callback);
+      ThreadUtils.sleep(100);
+      assertTrue(future.cancel(false));
+      assertTrue(future.isCancelled());
+      assertTrue(future.isDone());
+      assertEquals(0, pool.getWaitQueueSize());
+
+      pool.returnPooledResource(first, false);
+      assertEquals("Returned connection should be idle", 1, pool.getIdleCount());
+      assertEquals("Cancelled borrow should not be notified", 1, callback.done.getCount());
+      pool.close();
+   }
+
+   public void testAsyncBorrowClosed() throws Exception {
+      StubPool pool = new StubPool();
+      pool.setProperty(PoolingDataSource.MAX_CONNECTIONS, "1");
+      pool.getPooledResource();
+      Future<String> future = pool.getConnectionAsync(null);
+      ThreadUtils.sleep(100);
+      pool.close();
+      try {
+         future.get(2, TimeUnit.SECONDS);
+         fail();
+      } catch(ExecutionException e) {
+         assertEquals("datasource.closed", e.getCause().getMessage());
+      }
+   }
+
+   public void testSyncCreate() throws Exception {
+      StubPool pool = new StubPool();
+      PooledResource<String> res = pool.getPooledResource();
+      assertEquals(Thread.currentThread().getName(), pool.creator.get());
+      pool.returnPooledResource(res, false);
+      pool.close();
+   }
+
+   public void testWarmupInParallel() throws Exception {
+      StubPool pool = new StubPool();
+      pool.block = new CountDownLatch(1);
+      pool.setProperty(PoolingDataSource.WARM_FRACTION, "0");
+      pool.setProperty(PoolingDataSource.WARM_PARALLELISM, "3");
+      pool.setProperty(PoolingDataSource.MIN_CONNECTIONS, "8");
+      assertFalse("Reset should not wait when the warm fraction is zero", pool.getReadiness().isDone());
+
+      ThreadUtils.sleep(200);
+      assertEquals("Warm up should create connections in parallel", 3, pool.creating.get());
+      pool.setProperty(PoolingDataSource.WARM_FRACTION, "0.5");
+      assertFalse("Connections still being created should not count", pool.isWarm());
+
+      pool.block.countDown();
+      for(int i = 0; i < 40 && pool.getIdleCount() < 8; i++) ThreadUtils.sleep(50);
+      assertTrue(pool.isWarm());
+      assertEquals(8, pool.getActiveCount());
+      assertEquals(8, pool.getIdleCount());
+      pool.close();
+   }
+
+   public void testResetWaitsForWarmFraction() throws Exception {
+      StubPool pool = new StubPool();
+      pool.block = new CountDownLatch(1);
+      pool.blockAfter = 2;
+      pool.setProperty(PoolingDataSource.WARM_FRACTION, "0.5");
+      pool.setProperty(PoolingDataSource.WARM_PARALLELISM, "1");
+      pool.setProperty(PoolingDataSource.MIN_CONNECTIONS, "4");
+      assertEquals(2, pool.getIdleCount());
+      assertFalse("Readiness waits for every minimum connection", pool.isWarm());
+      assertFalse(pool.getReadiness().isDone());
+
+      pool.block.countDown();
+      assertTrue(pool.awaitReady(2, TimeUnit.SECONDS));
+      assertEquals("Remaining connections should be created in the background", 4, pool.getIdleCount());
+      pool.close();
+   }
+
+   public void testResetDoesNotWaitByDefault() throws Exception {
+      StubPool pool = new StubPool();
+      pool.block = new CountDownLatch(1);
+      pool.setProperty(PoolingDataSource.MIN_CONNECTIONS, "4");
+      assertEquals(0, pool.getIdleCount());
+      assertFalse(pool.isWarm());
+      assertFalse(pool.awaitReady(100, TimeUnit.MILLISECONDS));
+
+      pool.block.countDown();
+      assertTrue(pool.awaitReady(2, TimeUnit.SECONDS));
+      assertTrue(pool.isWarm());
+      assertEquals(4, pool.getIdleCount());
+      pool.close();
+   }
+
+   public void testWarmupStopsOnFailure() throws Exception {
+      StubPool pool = new StubPool();
+      pool.fail = true;
+      pool.setProperty(PoolingDataSource.MIN_CONNECTIONS, "2");
+      assertFalse(pool.getReadiness().get(2, TimeUnit.SECONDS));
+      assertFalse(pool.isWarm());
+      assertEquals(0, pool.getActiveCount());
+
+      pool.fail = false;
+      pool.reset();
+      assertTrue(pool.awaitReady(2, TimeUnit.SECONDS));
+      assertEquals(2, pool.getActiveCount());
+      pool.close();
+   }
+
+   public void testIdleValidationInParallel() throws Exception {
+      StubPool pool = new StubPool();
+      pool.setProperty(PoolingDataSource.WARM_FRACTION, "1");
+      pool.setProperty(PoolingDataSource.MIN_CONNECTIONS, "6");
+      pool.setProperty(PoolingDataSource.TEST_SCHEME, "Idle");
+      pool.setProperty(PoolingDataSource.VALIDATION_PARALLELISM, "3");
+      pool.testing = new CountDownLatch(1);
+      pool.setProperty(PoolingDataSource.DUTY_CYCLE, "5");
+
+      for(int i = 0; i < 160 && pool.testers.get() < 3; i++) ThreadUtils.sleep(50);
+      assertEquals("Idle connections should be tested in parallel", 3, pool.testers.get());
+      assertEquals("Untested connections should remain borrowable", 3, pool.getIdleCount());
+      PooledResource<String> res = pool.getPooledResource();
+      assertEquals(6, pool.getActiveCount());
+      pool.returnPooledResource(res, false);
+
+      pool.testing.countDown();
+      for(int i = 0; i < 40 && pool.getIdleCount() < 6; i++) ThreadUtils.sleep(50);
+      assertEquals(6, pool.getIdleCount());
+      pool.close();
+   }
+
+   public void testStuckValidationDoesNotDelayOtherReapers() throws Exception {
+      StubPool stuck = new StubPool();
+      StubPool other = new StubPool();
+      stuck.setProperty(PoolingDataSource.WARM_FRACTION, "1");
+      stuck.setProperty(PoolingDataSource.MIN_CONNECTIONS, "8");
+      stuck.setProperty(PoolingDataSource.TEST_SCHEME, "Idle");
+      stuck.setProperty(PoolingDataSource.VALIDATION_PARALLELISM, "8");
+      stuck.testing = new CountDownLatch(1);
+      try {
+         // more hung tests than the housekeeping wheel has workers
+         stuck.setProperty(PoolingDataSource.DUTY_CYCLE, "5");
+         for(int i = 0; i < 160 && stuck.testers.get() < 8; i++) ThreadUtils.sleep(50);
+         assertEquals(8, stuck.testers.get());
+
+         other.setProperty(PoolingDataSource.DUTY_CYCLE, "5");
+         long before = other.getLastCleanupDate().getTime();
+         for(int i = 0; i < 160 && other.getLastCleanupDate().getTime() == before; i++) ThreadUtils.sleep(50);
+         assertTrue("Reaper of another pool was stalled", other.getLastCleanupDate().getTime() > before);
+      } finally {
+         stuck.testing.countDown();
+         stuck.close();
+         other.close();
+      }
+   }
+
+   public void testRegistryGroupLimit() throws Exception {
+      PoolRegistry registry = new PoolRegistry(0, 2);
+      StubPool hot = new StubPool();
+      StubPool cold = new StubPool();
+      hot.setRegistry(registry);
+      cold.setRegistry(registry);
+      hot.setProperty(PoolingDataSource.MAX_WAIT_TIME, "200");
+
+      PooledResource<String> first = cold.getPooledResource();
+      PooledResource<String> second = cold.getPooledResource();
+      assertEquals(2, registry.getConnectionCount("stub"));
+      assertEquals("Pools join on their first connection", 1, registry.getPoolCount("stub"));
+      try {
+         hot.getPooledResource();
+         fail("Group budget is spent and nothing is idle");
+      } catch(DataSourceException e) {
+         assertEquals("pool.exhausted", e.getMessage());
+      }
+
+      cold.returnPooledResource(first, false);
+      assertEquals(1, cold.getIdleCount());
+      assertNotNull("Idle capacity of the cold pool should be taken", hot.getPooledResource());
+      assertEquals(0, cold.getIdleCount());
+      assertEquals(1, cold.getActiveCount());
+      assertEquals(1, hot.getActiveCount());
+      assertEquals(2, registry.getConnectionCount("stub"));
+      assertEquals(2, registry.getPoolCount("stub"));
+
+      cold.returnPooledResource(second, false);
+      cold.close();
+      assertEquals(1, registry.getConnectionCount("stub"));
+      assertEquals(1, registry.getPoolCount("stub"));
+      hot.close();
+   }
+
+   public void testRegistryGlobalLimit() throws Exception {
+      PoolRegistry registry = new PoolRegistry(1, 0);
+      StubPool one = new StubPool();
+      StubPool two = new StubPool();
+      one.setRegistry(registry);
+      two.setRegistry(registry);
+      one.setProperty(PoolingDataSource.POOL_GROUP, "one");
+      two.setProperty(PoolingDataSource.POOL_GROUP, "two");
+
+      one.returnPooledResource(one.getPooledResource(), false);
+      assertEquals(1, registry.getConnectionCount("one"));
+      assertNotNull(two.getPooledResource());
+      assertEquals("Idle connection in the other group should be closed", 0, one.getActiveCount());
+      assertEquals(0, registry.getConnectionCount("one"));
+      assertEquals(1, registry.getConnectionCount("two"));
+      assertEquals(1, registry.getConnectionCount());
+      one.close();
+      two.close();
+   }
+
+   public void testRegistryWarmupDoesNotShed() throws Exception {
+      PoolRegistry registry = new PoolRegistry(0, 2);
+      StubPool hot = new StubPool();
+      StubPool warming = new StubPool();
+      hot.setRegistry(registry);
+      warming.setRegistry(registry);
+      PooledResource<String> first = hot.getPooledResource();
+      hot.returnPooledResource(hot.getPooledResource(), false);
+      hot.returnPooledResource(first, false);
+      hot.getPooledResource();
+      assertEquals(2, hot.getActiveCount());
+
+      warming.setProperty(PoolingDataSource.MIN_CONNECTIONS, "2");
+      assertFalse(warming.getReadiness().get(2, TimeUnit.SECONDS));
+      assertEquals(0, warming.getActiveCount());
+      assertEquals("Warm up must not take idle capacity", 2, hot.getActiveCount());
+      hot.close();
+      warming.close();
+   }
+
+   public void testRegistryShedsWarmedPool() throws Exception {
+      PoolRegistry registry = new PoolRegistry(0, 2);
+      StubPool cold = new StubPool();
+      StubPool hot = new StubPool();
+      cold.setRegistry(registry);
+      hot.setRegistry(registry);
+      hot.setProperty(PoolingDataSource.MAX_WAIT_TIME, "200");
+      cold.setProperty(PoolingDataSource.WARM_FRACTION, "1");
+      cold.setProperty(PoolingDataSource.MIN_CONNECTIONS, "2");
+      assertEquals(2, cold.getIdleCount());
+
+      // connections added idle by a warm up may be taken like returned ones
+      assertNotNull(hot.getPooledResource());
+      assertNotNull(hot.getPooledResource());
+      assertEquals(0, cold.getIdleCount());
+      assertEquals(2, registry.getConnectionCount("stub"));
+      try {
+         hot.getPooledResource();
+         fail("Group budget is spent and nothing is idle");
+      } catch(DataSourceException e) {
+         assertEquals("pool.exhausted", e.getMessage());
+      }
+      hot.close();
+      cold.close();
+   }
+
+   public void testRegistryWakesAsyncBorrower() throws Exception {
+      PoolRegistry registry = new PoolRegistry(0, 1);
+      StubPool cold = new StubPool();
+      StubPool hot = new StubPool();
+      cold.setRegistry(registry);
+      hot.setRegistry(registry);
+      hot.setProperty(PoolingDataSource.MAX_WAIT_TIME, "5000");
+      PooledResource<String> held = cold.getPooledResource();
+
+      Future<String> future = hot.getConnectionAsync(null);
+      ThreadUtils.sleep(100);
+      assertFalse(future.isDone());
+
+      cold.returnPooledResource(held, false);
+      assertNotNull(future.get(2, TimeUnit.SECONDS));
+      assertEquals(0, cold.getActiveCount());
+      assertEquals(1, registry.getConnectionCount("stub"));
+      cold.close();
+      hot.close();
+   }
+
+   public void testRegistryJoinedOnce() throws Exception {
+      StubPool pool = new StubPool();
+      assertSame(PoolRegistry.system(), pool.getRegistry());
+      assertEquals("stub", pool.getGroup());
+      pool.setRegistry(new PoolRegistry(0, 0));
+      pool.getPooledResource();
+      try {
+         pool.setRegistry(new PoolRegistry(0, 0));
+         fail("Registry may not change once joined");
+      } catch(IllegalStateException e) {
+         // expected
+      }
+      pool.close();
+   }
+
+   public void testGroupFixedOnceJoined() throws Exception {
+      PoolRegistry registry = new PoolRegistry(0, 0);
+      StubPool pool = new StubPool();
+      pool.setRegistry(registry);
+      pool.setProperty(PoolingDataSource.POOL_GROUP, "first");
+      pool.setProperty(PoolingDataSource.POOL_GROUP, "second");
+      pool.getPooledResource();
+      assertEquals(1, registry.getPoolCount("second"));
+      pool.setProperty(PoolingDataSource.POOL_GROUP, "second");
+      try {
+         pool.setProperty(PoolingDataSource.POOL_GROUP, "third");
+         fail("Group may not change once joined");
+      } catch(IllegalStateException e) {
+         // expected
+      }
+      try {
+         pool.clearProperty(PoolingDataSource.POOL_GROUP);
+         fail("Group may not change once joined");
+      } catch(IllegalStateException e) {
+         // expected
+      }
+      assertEquals("second", pool.getGroup());
+      assertEquals(1, registry.getConnectionCount("second"));
+      assertEquals(0, registry.getPoolCount("first"));
+      pool.close();
+   }
+
+   public void testLeakDetection() throws Exception {
+      TimeProvider.clear();
+      final List<LogRecord> records = new CopyOnWriteArrayList<LogRecord>();
+      Handler handler = new Handler() {
+         public void publish(LogRecord record) { records.add(record); }
+         public void flush() { }
+         public void close() { }
+      };
+      Logger logger = Logger.getLogger(BasePoolingDataSource.class.getName());
+      logger.addHandler(handler);
+      StubPool pool = new StubPool();
+      try {
+         pool.setProperty(PoolingDataSource.LEAK_THRESHOLD, "1");
+         PooledResource<String> leaked = pool.getPooledResource();
+         PooledResource<String> returned = pool.getPooledResource();
+         pool.returnPooledResource(returned, false);
+         assertEquals("Nothing held long enough yet", 0, pool.detectLeaks());
+
+         ThreadUtils.sleep(1100);
+         assertEquals(1, pool.detectLeaks());
+         assertEquals("A leak is reported once per borrow", 0, pool.detectLeaks());
+         assertEquals(1, pool.getLeakCount());
+         assertEquals(1, records.size());
+         LogRecord record = records.get(0);
+         assertTrue(record.getMessage(), record.getMessage().contains(Thread.currentThread().getName()));
+         assertNotNull("Leak should carry the borrower's stack", record.getThrown());
+
+         pool.returnPooledResource(leaked, false);
+         assertEquals(0, pool.detectLeaks());
+         assertEquals(1, pool.getLeakCount());
+      } finally {
+         logger.removeHandler(handler);
+         pool.close();
+      }
+   }
+
+   public void testListConnections() throws Exception {
+      StubPool pool = new StubPool();
+      pool.setProperty(PoolingDataSource.LEAK_TRACE, "1");
+      PooledResource<String> busy = pool.getPooledResource();
+      PooledResource<String> idle = pool.getPooledResource();
+      pool.returnPooledResource(idle, false);
+      assertTrue(busy.isBusy());
+      assertFalse(idle.isBusy());
+      assertEquals(1, idle.getBorrowCount());
+
+      String[] listing = pool.listConnections();
+      assertEquals(2, listing.length);
+      String busyLine = listing[0].contains(" busy") ? listing[0] : listing[1];
+      String idleLine = listing[0].contains(" busy") ? listing[1] : listing[0];
+      assertTrue(idleLine, idleLine.contains(" idle"));
+      assertFalse("Idle connections have no borrower", idleLine.contains("\tat "));
+      assertTrue(busyLine, busyLine.contains("borrows=1"));
+      assertTrue(busyLine, busyLine.contains("borrower=" + Thread.currentThread().getName()));
+      assertTrue("Sampled borrow site should be listed", busyLine.contains("testListConnections"));
+
+      pool.returnPooledResource(busy, false);
+      pool.close();
+      assertEquals("Closed connections are not listed", 0, pool.listConnections().length);
+   }
+
+   public void testValidationWindow() throws Exception {
+      TimeProvider.clear();
+      StubPool pool = new StubPool();
+      pool.setProperty(PoolingDataSource.TEST_SCHEME, "Borrow");
+      pool.setProperty(PoolingDataSource.VALIDATION_WINDOW, "300");
+
+      PooledResource<String> res = pool.getPooledResource();
+      assertEquals("Fresh connection is alive", 1, pool.getBorrowTestSkipCount());
+      pool.returnPooledResource(res, false);
+      res = pool.getPooledResource();
+      assertEquals(2, pool.getBorrowTestSkipCount());
+      assertEquals(0, pool.getBorrowTestCount());
+      pool.returnPooledResource(res, false);
+
+      ThreadUtils.sleep(400);
+      res = pool.getPooledResource();
+      assertEquals("Window has passed", 1, pool.getBorrowTestCount());
+      pool.returnPooledResource(res, false);
+      res = pool.getPooledResource();
+      assertEquals("Passing a test proves the connection alive", 3, pool.getBorrowTestSkipCount());
+      pool.returnPooledResource(res, false);
+
+      ThreadUtils.sleep(400);
+      res = pool.getPooledResource();
+      res.markAlive();
+      pool.returnPooledResource(res, false);
+      ThreadUtils.sleep(100);
+      pool.returnPooledResource(pool.getPooledResource(), false);
+      assertEquals(2, pool.getBorrowTestCount());
+      assertEquals("Successful use proves the connection alive", 4, pool.getBorrowTestSkipCount());
+      pool.close();
+   }
+
+   public void testBorrowTestedWithoutWindow() throws Exception {
+      StubPool pool = new StubPool();
+      pool.setProperty(PoolingDataSource.TEST_SCHEME, "Borrow");
+      pool.returnPooledResource(pool.getPooledResource(), false);
+      pool.returnPooledResource(pool.getPooledResource(), false);
+      assertEquals(2, pool.getBorrowTestCount());
+      assertEquals(0, pool.getBorrowTestSkipCount());
+      pool.close();
+   }
+
+   public void testConfigSnapshot() throws Exception {
+      StubPool pool = new StubPool();
+      PoolConfig defaults = pool.getConfig();
+      assertEquals(0, defaults.minConnections);
+      assertEquals(Integer.MAX_VALUE, defaults.maxConnections);
+      assertEquals(Long.MAX_VALUE, defaults.maxWaitTime);
+      assertEquals(60, defaults.dutyCycle);
+      assertEquals(PoolingDataSource.TestScheme.Never, defaults.testScheme);
+      assertEquals(4, defaults.warmParallelism);
+      assertEquals(0.0, defaults.warmFraction);
+      assertEquals(2, defaults.validationTimeout);
+      assertEquals(4, defaults.validationParallelism);
+      assertEquals(60, defaults.validationBudget);
+      assertEquals(0, defaults.leakThreshold);
+      assertEquals(0, defaults.leakTrace);
+      assertEquals(0, defaults.validationWindow);
+      assertFalse(defaults.asyncCreate);
+
+      pool.setProperty(PoolingDataSource.MAX_CONNECTIONS, "5");
+      pool.setProperty(PoolingDataSource.MAX_WAIT_TIME, "250");
+      pool.setProperty(PoolingDataSource.DUTY_CYCLE, "1");
+      pool.setProperty(PoolingDataSource.TEST_SCHEME, "Borrow");
+      pool.setProperty(PoolingDataSource.ASYNC_CREATE, "true");
+      PoolConfig config = pool.getConfig();
+      assertNotSame(defaults, config);
+      assertEquals(5, config.maxConnections);
+      assertEquals(250, config.maxWaitTime);
+      assertEquals(5, config.dutyCycle);
+      assertTrue(config.testOnBorrow());
+      assertFalse(config.testOnReturn());
+      assertTrue(config.asyncCreate);
+      assertEquals("Snapshots must not change", Integer.MAX_VALUE, defaults.maxConnections);
+
+      pool.setProperty(PoolingDataSource.TEST_SCHEME, "Bogus");
+      pool.clearProperty(PoolingDataSource.MAX_CONNECTIONS);
+      config = pool.getConfig();
+      assertEquals(PoolingDataSource.TestScheme.Never, config.testScheme);
+      assertEquals(Integer.MAX_VALUE, config.maxConnections);
+      assertEquals(250, config.maxWaitTime);
+      pool.close();
+   }
+
+   public void testBorrowAndReturnDoNotAllocate() throws Exception {
+      ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      if(!(threads instanceof com.sun.management.ThreadMXBean)) return;
+      com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+      if(!bean.isThreadAllocatedMemorySupported()) return;
+      bean.setThreadAllocatedMemoryEnabled(true);
+      TimeProvider.clear();   // a stubbed clock allocates on every call
+
+      for(PoolingDataSource.CacheType type : PoolingDataSource.CacheType.values()) {
+         StubPool pool = new StubPool();
+         pool.setProperty(PoolingDataSource.CACHE_TYPE, type.name());
+         pool.setProperty(PoolingDataSource.MAX_CONNECTIONS, "1");
+         pool.setProperty(PoolingDataSource.TEST_SCHEME, "Always");
+         cycle(pool, 50000);   // warm up and let the JIT settle
+
+         long id = Thread.currentThread().getId();
+         long before = bean.getThreadAllocatedBytes(id);
+         cycle(pool, 100000);
+         long allocated = bean.getThreadAllocatedBytes(id) - before;
+         // allow for one off allocations by the measurement and the runtime, a
+         // single object per cycle would account for well over a megabyte
+         assertTrue(type + " cache allocated " + allocated + " bytes", allocated < 16 * 1024);
+         assertEquals(1, pool.getActiveCount());
+         pool.close();
+      }
+   }
+
+   private static void cycle(StubPool pool, int count) throws DataSourceException {
+      for(int i = 0; i < count; i++) {
+         PooledResource<String> res = pool.getPooledResource();
+         pool.issue(res);
+         res.close(false);
+      }
+   }
+
+
+
+
+   private static class RecordingCallback implements ConnectionCallback<String> {
+
+      private final CountDownLatch done = new CountDownLatch(1);
+      private volatile String connection;
+      private volatile DataSourceException error;
+
+      public void completed(String connection)
+      {
+         this.connection = connection;
+         done.countDown();
+      }
+
+      public void failed(DataSourceException error)
+      {
+         this.error = error;
+         done.countDown();
+      }
+   }
+
+   // shared with the tests which only compile on newer runtimes
+   static class StubPool extends BasePoolingDataSource<String> {
+
+      private final AtomicInteger count = new AtomicInteger();
+      private final AtomicReference<String> creator = new AtomicReference<String>();
+      private final AtomicInteger creating = new AtomicInteger();
+      private volatile CountDownLatch block;
+      private volatile int blockAfter;
+      private final AtomicInteger testers = new AtomicInteger();
+      private volatile CountDownLatch testing;
+      private volatile boolean fail;
+      private final AtomicInteger failNext = new AtomicInteger();
+
+      StubPool()
+      {
+         super(mock(DataSource.class));
+      }
+
+      public String getName()
+      {
+         return "stub";
+      }
+
+      public String getConnection() throws DataSourceException
+      {
+         return issue(getPooledResource());
+      }
+
+      protected String issue(PooledResource<String> res)
+      {
+         return res.getResource();
+      }
+
+      public boolean isAvailable()
+      {
+         return true;
+      }
+
+      public int getUnavailableCount()
+      {
+         return 0;
+      }
+
+      public Reference getReference() throws NamingException
+      {
+         return null;
+      }
+
+      protected String createResource() throws DataSourceException
+      {
+         creator.set(Thread.currentThread().getName());
+         creating.incrementAndGet();
+         try {
+            CountDownLatch latch = block;
+            if(latch != null && count.get() >= blockAfter) {
+               try {
+                  latch.await();
+               } catch(InterruptedException e) {
+                  throw new DataSourceException("thread.interrupted");
+               }
+            }
+         } finally {
+            creating.decrementAndGet();
+         }
+         if(fail || failNext.getAndDecrement() > 0) throw new DataSourceException("connect.failed");
+         return "connection " + count.incrementAndGet();
+      }
+
+      protected boolean testResource(String resource)
+      {
+         testers.incrementAndGet();
+         try {
+            CountDownLatch latch = testing;
+            if(latch != null) latch.await();
+         } catch(InterruptedException e) {
+            return false;
+         } finally {
+            testers.decrementAndGet();
+         }
+         return true;
+      }
+
+      protected void closeResource(String resource)
+      {
+      }
+   }
+
+}
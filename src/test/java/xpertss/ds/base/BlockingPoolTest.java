@@ -6,6 +6,7 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
 import xpertss.ds.utils.ThreadUtils;
+import xpertss.ds.utils.TimeProvider;
 
 
 import junit.framework.TestCase;
@@ -13,6 +14,10 @@ import junit.framework.TestCase;
 
 public class BlockingPoolTest extends TestCase {
 
+   protected void setUp() throws Exception
+   {
+      TimeProvider.clear();
+   }
    
 
 
@@ -182,6 +187,54 @@ public class BlockingPoolTest extends TestCase {
       assertEquals("Expected one item in the pool", 1, pool.size());
    }
    
+   public void testPurgeKeepsRecentlyUsed() throws Exception {
+      BlockingPool<String> pool = new BlockingPool<String>();
+      PooledResource<String> old = pool.wrap(null, "old");
+      assertTrue("Failed to offer resource", pool.offer(old));
+      ThreadUtils.sleep(1100);  // wait slightly longer than our 1 second idle time
+      assertTrue("Failed to offer resource", pool.offer(pool.wrap(null, "new")));
+
+      Collection<PooledResource<String>> purged = pool.purge(1);
+      assertEquals("Expected one item purged", 1, purged.size());
+      assertSame("Expected the idle item purged", old, purged.iterator().next());
+      assertEquals("Expected one item in the pool", 1, pool.size());
+   }
+
+   public void testPurgeMaxLife() throws Exception {
+      BlockingPool<String> pool = new BlockingPool<String>();
+      pool.setMaxLife(1); // 1 second
+      assertTrue("Failed to offer resource", pool.offer(pool.wrap(null, "message")));
+      assertEquals("Expected nothing purged", 0, pool.purge(0).size());
+      ThreadUtils.sleep(1100);
+      assertEquals("Expected expired item purged", 1, pool.purge(0).size());
+      assertEquals("Expected no items in the pool", 0, pool.size());
+   }
+
+   public void testRemoveKeepsOrder() throws Exception {
+      BlockingPool<String> pool = new BlockingPool<String>();
+      PooledResource<String> one = pool.wrap(null, "message 1");
+      PooledResource<String> two = pool.wrap(null, "message 2");
+      PooledResource<String> three = pool.wrap(null, "message 3");
+      assertTrue("Failed to offer resource", pool.offer(one));
+      assertTrue("Failed to offer resource", pool.offer(two));
+      assertTrue("Failed to offer resource", pool.offer(three));
+
+      assertTrue("Failed to remove resource", pool.remove(two));
+      assertFalse("Removed resource should no longer be pooled", pool.contains(two));
+      assertFalse("Resource should only be removed once", pool.remove(two));
+      assertSame(one, pool.poll());
+      assertSame(three, pool.poll());
+      assertNull("Pool should be empty", pool.poll());
+   }
+
+   public void testRejectsPooledResource() throws Exception {
+      BlockingPool<String> pool = new BlockingPool<String>();
+      PooledResource<String> res = pool.wrap(null, "message");
+      assertTrue("Failed to offer resource", pool.offer(res));
+      assertFalse("Pool should reject a resource it already holds", pool.offer(res));
+      assertEquals("Expected one item in the pool", 1, pool.size());
+   }
+
    public void testRemainingCapacity() throws Exception {
       BlockingPool<String> pool = new BlockingPool<String>();
       pool.setMaxIdle(10);
@@ -245,6 +298,23 @@ public class BlockingPoolTest extends TestCase {
    }
 
    
+   public void testWakeup() throws Exception {
+      final BlockingPool<String> pool = new BlockingPool<String>();
+      new Thread() {
+         public void run() {
+            ThreadUtils.sleep(200);
+            pool.wakeup();
+         }
+      }.start();
+      long start = System.currentTimeMillis();
+      assertNull("Woken poll should return null", pool.poll(5, TimeUnit.SECONDS));
+      assertTrue("Poll should have been woken early", System.currentTimeMillis() - start < 4000);
+      try {
+         pool.poll(10, TimeUnit.MILLISECONDS);
+         throw new Exception("An earlier wakeup should not cut short later polls");
+      } catch(TimeoutException e) { /* Test passes */ }
+   }
+
    public void testPoolOrdering() throws Exception {
       String messageOne = "message 1";
       String messageTwo = "message 2";
@@ -280,6 +350,177 @@ public class BlockingPoolTest extends TestCase {
    
    
    
+   public void testEnqueue() throws Exception {
+      BlockingPool<String> pool = new BlockingPool<String>();
+      RecordingWaiter first = new RecordingWaiter(true);
+      RecordingWaiter second = new RecordingWaiter(true);
+      pool.enqueue(first);
+      pool.enqueue(second);
+      assertEquals("Queued waiters should count as waiting", 2, pool.getWaitQueueSize());
+      assertTrue("Failed to offer resource", pool.offer(pool.wrap(null, "message 1")));
+      assertEquals("First waiter should get the resource", "message 1", first.item.getResource());
+      assertEquals("Resource should not be idle", 0, pool.size());
+      assertTrue("Second waiter should still be queued", pool.cancel(second));
+      assertFalse("Delivered waiter is no longer queued", pool.cancel(first));
+      assertEquals(0, pool.getWaitQueueSize());
+      assertTrue("Failed to offer resource", pool.offer(pool.wrap(null, "message 2")));
+      assertNull("Cancelled waiter should not get a resource", second.item);
+      assertEquals(1, pool.size());
+
+      RecordingWaiter third = new RecordingWaiter(true);
+      pool.enqueue(third);
+      assertEquals("Idle resource should be delivered immediately", "message 2", third.item.getResource());
+      assertEquals(0, pool.size());
+   }
+
+   public void testEnqueueRefusedAndReleased() throws Exception {
+      BlockingPool<String> pool = new BlockingPool<String>();
+      RecordingWaiter refusing = new RecordingWaiter(false);
+      RecordingWaiter woken = new RecordingWaiter(true);
+      pool.enqueue(refusing);
+      pool.enqueue(woken);
+      assertTrue("Failed to offer resource", pool.offer(pool.wrap(null, "message")));
+      assertEquals("Refused resource should go to the next waiter", "message", woken.item.getResource());
+
+      RecordingWaiter released = new RecordingWaiter(true);
+      pool.enqueue(released);
+      pool.wakeup();
+      assertEquals(Boolean.FALSE, released.shutdown);
+      RecordingWaiter closed = new RecordingWaiter(true);
+      pool.enqueue(closed);
+      pool.shutdown();
+      assertEquals(Boolean.TRUE, closed.shutdown);
+      assertEquals(0, pool.getWaitQueueSize());
+      try {
+         pool.enqueue(new RecordingWaiter(true));
+         throw new Exception("Calling enqueue should result in illegal state exception when closed");
+      } catch(IllegalStateException e) { /* Test passes */ }
+   }
+
+   public void testHandoffOrdering() throws Exception {
+      final BlockingPool<String> pool = new BlockingPool<String>(0, true);
+      final String[] received = new String[3];
+      CountDownLatch latch = new CountDownLatch(received.length);
+      for(int i = 0; i < received.length; i++) {
+         new HandoffThread(pool, latch, received, i).start();
+         ThreadUtils.sleep(100);   // queue the waiters in a known order
+      }
+      assertEquals("There should be three threads waiting for a resource", 3, pool.getWaitQueueSize());
+      for(int i = 0; i < received.length; i++) {
+         assertTrue("Handoff was rejected", pool.offer(pool.wrap(null, "message " + i)));
+         assertNull("Resource should have been handed off rather than queued", pool.poll());
+      }
+      latch.await(5, TimeUnit.SECONDS);
+      for(int i = 0; i < received.length; i++) {
+         assertEquals("Waiters should be served in arrival order", "message " + i, received[i]);
+      }
+      assertEquals("There should not be any threads waiting for a resource", 0, pool.getWaitQueueSize());
+      assertTrue("Pool should queue resources with no waiters", pool.offer(pool.wrap(null, "message")));
+      assertEquals(1, pool.size());
+   }
+
+   public void testHandoffTimeout() throws Exception {
+      BlockingPool<String> pool = new BlockingPool<String>(0, true);
+      CountDownLatch latch = new CountDownLatch(2);
+      SimpleThreadTest[] threads = new SimpleThreadTest[(int)latch.getCount()];
+      for(int i = 0; i < threads.length; i++) {
+         threads[i] = new SimpleThreadTest(pool, latch, 1);
+         threads[i].start();
+      }
+      ThreadUtils.sleep(500);
+      assertEquals("There should be two threads waiting for a resource", 2, pool.getWaitQueueSize());
+      latch.await();
+      assertEquals("There should not be any threads waiting for a resource", 0, pool.getWaitQueueSize());
+      for(int i = 0; i < threads.length; i++) {
+         assertEquals("Thread did not timeout as expected", ErrorType.Timeout, threads[i].getErrorType());
+      }
+      assertTrue("Timed out waiters should not receive resources", pool.offer(pool.wrap(null, "message")));
+      assertEquals(1, pool.size());
+   }
+
+   public void testHandoffInterruptAndShutdown() throws Exception {
+      BlockingPool<String> pool = new BlockingPool<String>(0, true);
+      CountDownLatch latch = new CountDownLatch(2);
+      SimpleThreadTest interrupted = new SimpleThreadTest(pool, latch, 5);
+      SimpleThreadTest shutdown = new SimpleThreadTest(pool, latch, 5);
+      interrupted.start();
+      shutdown.start();
+      ThreadUtils.sleep(200);
+      interrupted.interrupt();
+      ThreadUtils.sleep(200);
+      assertEquals("There should be one thread waiting for a resource", 1, pool.getWaitQueueSize());
+      pool.shutdown();
+      assertTrue("Waiters should have been released", latch.await(2, TimeUnit.SECONDS));
+      assertEquals(ErrorType.Interrupted, interrupted.getErrorType());
+      assertEquals(ErrorType.IllegalState, shutdown.getErrorType());
+   }
+
+   public void testHandoffWakeup() throws Exception {
+      final BlockingPool<String> pool = new BlockingPool<String>(0, true);
+      new Thread() {
+         public void run() {
+            ThreadUtils.sleep(200);
+            pool.wakeup();
+         }
+      }.start();
+      assertNull("Woken poll should return null", pool.poll(5, TimeUnit.SECONDS));
+      assertEquals(0, pool.getWaitQueueSize());
+   }
+
+
+
+
+   private class HandoffThread extends Thread {
+
+      private BlockingPool<String> pool;
+      private CountDownLatch latch;
+      private String[] received;
+      private int index;
+
+      public HandoffThread(BlockingPool<String> pool, CountDownLatch latch, String[] received, int index)
+      {
+         this.pool = pool;
+         this.latch = latch;
+         this.received = received;
+         this.index = index;
+      }
+
+      public void run()
+      {
+         try {
+            received[index] = pool.poll(5, TimeUnit.SECONDS).getResource();
+         } catch(Exception e) {
+            /* Test fails on the missing resource */
+         } finally {
+            latch.countDown();
+         }
+      }
+
+   }
+
+   private static class RecordingWaiter implements ResourceWaiter<String> {
+
+      private final boolean accept;
+      private PooledResource<String> item;
+      private Boolean shutdown;
+
+      private RecordingWaiter(boolean accept)
+      {
+         this.accept = accept;
+      }
+
+      public boolean deliver(PooledResource<String> res)
+      {
+         if(accept) item = res;
+         return accept;
+      }
+
+      public void release(boolean shutdown)
+      {
+         this.shutdown = shutdown;
+      }
+   }
+
    private class SimpleThreadTest extends Thread {
       
       private BlockingPool<String> pool;
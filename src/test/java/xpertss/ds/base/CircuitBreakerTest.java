@@ -0,0 +1,133 @@
+package xpertss.ds.base;
+
+import junit.framework.TestCase;
+import xpertss.ds.base.CircuitBreaker.State;
+import xpertss.ds.utils.Clock;
+
+public class CircuitBreakerTest extends TestCase {
+
+   private ManualClock clock;
+   private CircuitBreaker breaker;
+
+   protected void setUp() throws Exception
+   {
+      clock = new ManualClock();
+      breaker = new CircuitBreaker(clock);
+   }
+
+
+   public void testClosedAllowsAll() throws Exception {
+      assertEquals(State.Closed, breaker.getState());
+      assertTrue(breaker.isAvailable());
+      assertTrue(breaker.allowRequest());
+      assertTrue(breaker.allowRequest());
+      breaker.recordSuccess();
+      assertEquals(0, breaker.getCloseCount());
+   }
+
+   public void testFailureOpensForBlackout() throws Exception {
+      breaker.recordFailure(1000);
+      assertEquals(State.Open, breaker.getState());
+      assertEquals(1, breaker.getOpenCount());
+      clock.now = 1000;
+      assertFalse(breaker.isAvailable());
+      assertFalse(breaker.allowRequest());
+      clock.now = 1001;
+      assertTrue(breaker.isAvailable());
+   }
+
+   public void testStateHalfOpenOnceBlackoutPasses() throws Exception {
+      breaker.recordFailure(1000);
+      clock.now = 1000;
+      assertEquals(State.Open, breaker.getState());
+      clock.now = 1001;
+      assertEquals("Blackout passed without a probe", State.HalfOpen, breaker.getState());
+      assertEquals(0, breaker.getProbeCount());
+   }
+
+   public void testStragglerFailuresIgnored() throws Exception {
+      breaker.recordFailure(1000);
+      breaker.recordFailure(1000);
+      breaker.recordFailure(1000);
+      assertEquals(1, breaker.getOpenCount());
+   }
+
+   public void testSingleProbe() throws Exception {
+      breaker.recordFailure(1000);
+      clock.now = 1001;
+      assertTrue(breaker.allowRequest());
+      assertEquals(State.HalfOpen, breaker.getState());
+      assertFalse("Only one probe may be in flight", breaker.allowRequest());
+      assertFalse(breaker.isAvailable());
+      assertEquals(1, breaker.getProbeCount());
+
+      breaker.recordSuccess();
+      assertEquals(State.Closed, breaker.getState());
+      assertEquals(1, breaker.getCloseCount());
+      assertTrue(breaker.allowRequest());
+   }
+
+   public void testFailedProbeBacksOff() throws Exception {
+      breaker.recordFailure(1000);
+      long period = 1000;
+      for(int i = 0; i < 10; i++) {
+         clock.now = clock.now + period * 2 + 1;
+         long start = clock.now;
+         assertTrue(breaker.allowRequest());
+         breaker.recordFailure(1000);
+         assertEquals(State.Open, breaker.getState());
+         period = Math.min(period * 2, 1000 * CircuitBreaker.MAX_BACKOFF);
+         // equal jitter keeps the open period within half and all of the backoff
+         clock.now = start + period / 2;
+         assertFalse(breaker.allowRequest());
+         clock.now = start + period + 1;
+         assertTrue(breaker.isAvailable());
+      }
+      assertEquals(11, breaker.getOpenCount());
+      assertEquals(10, breaker.getProbeCount());
+   }
+
+   public void testSuccessResetsBackoff() throws Exception {
+      breaker.recordFailure(1000);
+      clock.now = 1001;
+      assertTrue(breaker.allowRequest());
+      breaker.recordFailure(1000);
+      clock.now = 5000;
+      assertTrue(breaker.allowRequest());
+      breaker.recordSuccess();
+
+      breaker.recordFailure(1000);
+      clock.now = 6000;
+      assertFalse(breaker.isAvailable());
+      clock.now = 6001;
+      assertTrue("Blackout should be back to its base period", breaker.isAvailable());
+   }
+
+   public void testAbandonedProbe() throws Exception {
+      breaker.recordFailure(1000);
+      clock.now = 1001;
+      assertTrue(breaker.allowRequest());
+      clock.now = 2001;
+      assertFalse(breaker.allowRequest());
+      clock.now = 2002;
+      assertTrue("An unreported probe should be given up on", breaker.allowRequest());
+      assertEquals(2, breaker.getProbeCount());
+   }
+
+
+   private static class ManualClock extends Clock {
+
+      private long now;
+
+      public long millis()
+      {
+         return now;
+      }
+
+      public long nanos()
+      {
+         return now * 1000000L;
+      }
+   }
+
+}
@@ -0,0 +1,418 @@
+package xpertss.ds.base;
+
+import java.util.Collection;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import xpertss.ds.utils.ThreadUtils;
+
+
+import junit.framework.TestCase;
+
+
+public class ConcurrentPoolTest extends TestCase {
+
+   
+
+
+
+
+
+
+   private enum ErrorType {
+      Timeout, IllegalState, Interrupted, None
+   }
+
+   public void testSize() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertEquals("Expected two items in pool", 2, pool.size());
+   }
+
+   public void testWrap() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      PooledResource<String> res = pool.wrap(null, "message");
+      assertNotNull("Wrap should have returned resource", res);
+      assertEquals("Pool should still be empty", 0, pool.size());
+      assertTrue("Pool should have accepted wraped resource", pool.offer(res));
+      assertEquals("Pool should contain recently added resource", 1, pool.size());
+      assertEquals("Pool should have drained one resource", 1, pool.drain().size());
+      assertEquals("Pool should now be empty", 0, pool.size());
+      assertFalse("Pool should reject previously wrapped resource", pool.offer(res));
+      assertEquals("Pool should still be empty", 0, pool.size());
+      assertTrue("Pool should accept newly wrapped resource", pool.offer(pool.wrap(null, "message")));
+      assertEquals("Pool should contain recently added resource", 1, pool.size());
+   }
+
+   public void testSimpleBlockingTimeout() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      CountDownLatch latch = new CountDownLatch(2);
+      SimpleThreadTest[] threads = new SimpleThreadTest[(int)latch.getCount()];
+      for(int i = 0; i < threads.length; i++) {
+         threads[i] = new SimpleThreadTest(pool, latch, 1);
+         threads[i].start();
+      }
+      ThreadUtils.sleep(500);
+      assertEquals("There should be two threads waiting for a resource", 2, pool.getWaitQueueSize());
+      latch.await();
+      assertEquals("There should not be any threads waiting for a resource", 0, pool.getWaitQueueSize());
+      for(int i = 0; i < threads.length; i++) {
+         assertTrue(threads[i].getErrorType() == ErrorType.Timeout);
+      }
+   }
+   
+   public void testSimpleBlockingInterrupt() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      CountDownLatch latch = new CountDownLatch(2);
+      SimpleThreadTest[] threads = new SimpleThreadTest[(int)latch.getCount()];
+      for(int i = 0; i < threads.length; i++) {
+         threads[i] = new SimpleThreadTest(pool, latch, 2);
+         threads[i].start();
+      }
+      ThreadUtils.sleep(500);
+      assertEquals("There should be two threads waiting for a resource", 2, pool.getWaitQueueSize());
+      for(int i = 0; i < threads.length; i++) {
+         threads[i].interrupt();
+      }      
+      latch.await();
+      assertEquals("There should not be any threads waiting for a resource", 0, pool.getWaitQueueSize());
+      for(int i = 0; i < threads.length; i++) {
+         assertTrue(threads[i].getErrorType() == ErrorType.Interrupted);
+      }
+   }
+
+   public void testSimpleBlockingShutdown() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      CountDownLatch latch = new CountDownLatch(2);
+      SimpleThreadTest[] threads = new SimpleThreadTest[(int)latch.getCount()];
+      for(int i = 0; i < threads.length; i++) {
+         threads[i] = new SimpleThreadTest(pool, latch, 10);
+         threads[i].start();
+      }
+      ThreadUtils.sleep(500);
+      assertEquals("There should be two threads waiting for a resource", 2, pool.getWaitQueueSize());
+      pool.shutdown();
+      latch.await();
+      assertEquals("There should not be any threads waiting for a resource", 0, pool.getWaitQueueSize());
+      for(int i = 0; i < threads.length; i++) {
+         assertTrue(threads[i].getErrorType() == ErrorType.IllegalState);
+      }
+   }
+
+   public void testSimpleBlockingSuccess() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      CountDownLatch latch = new CountDownLatch(2);
+      SimpleThreadTest[] threads = new SimpleThreadTest[(int)latch.getCount()];
+      for(int i = 0; i < threads.length; i++) {
+         threads[i] = new SimpleThreadTest(pool, latch, 10);
+         threads[i].start();
+      }
+      ThreadUtils.sleep(500);
+      assertEquals("There should be two threads waiting for a resource", 2, pool.getWaitQueueSize());
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      
+      ThreadUtils.sleep(500);
+      assertEquals("There should not be any threads waiting for a resource", 1, pool.getWaitQueueSize());
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      
+      latch.await();
+      assertEquals("There should not be any threads waiting for a resource", 0, pool.getWaitQueueSize());
+      for(int i = 0; i < threads.length; i++) {
+         assertTrue(threads[i].getErrorType() == ErrorType.None);
+      }
+   }
+
+   public void testSimpleNonBlockingSuccess() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      
+      CountDownLatch latch = new CountDownLatch(2);
+      SimpleThreadTest[] threads = new SimpleThreadTest[(int)latch.getCount()];
+      for(int i = 0; i < threads.length; i++) {
+         threads[i] = new SimpleThreadTest(pool, latch, 10);
+         threads[i].start();
+      }
+
+      latch.await(5, TimeUnit.MILLISECONDS);
+      assertEquals("There should not be any threads waiting for a resource", 0, pool.getWaitQueueSize());
+      for(int i = 0; i < threads.length; i++) {
+         assertTrue(threads[i].getErrorType() == ErrorType.None);
+      }
+   }
+
+   public void testDrain() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertEquals("Expected two items in pool", 2, pool.size());
+      
+      assertEquals("Expected two items drained", 2, pool.drain().size());
+      assertFalse("Should not have accepted old object", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 1, "message")));
+      assertEquals("Expected one item in the pool", 1, pool.size());
+   }
+
+   public void testCopyContainsAndRemove() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertEquals("Expected two items in pool", 2, pool.size());
+      Collection<PooledResource<String>> copy = pool.copy();
+      assertEquals("Expected two items in copy", 2, copy.size());
+      for(PooledResource<String> res : copy) {
+         assertTrue("Failed to find copied object in pool", pool.contains(res));
+         assertTrue("Failed to remove copied object from pool", pool.remove(res));
+      }
+      assertEquals("Expected no items in the pool", 0, pool.size());
+   }
+   
+   public void testPurge() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertEquals("Expected two items in pool", 2, pool.size());
+      
+      ThreadUtils.sleep(1100);  // wait slightly longer than our 1 second idle time
+      
+      assertEquals("Expected two items purged", 2, pool.purge(1).size());
+      assertTrue("Should still acept version 0 items", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertEquals("Expected one item in the pool", 1, pool.size());
+   }
+   
+   public void testRemainingCapacity() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      pool.setMaxIdle(10);
+      assertEquals("Remaining capacity did not return expected result", 10, pool.remainingCapacity());
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertEquals("Expected two items in pool", 2, pool.size());
+      assertEquals("Remaining capacity did not return expected result", 8, pool.remainingCapacity());
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertEquals("Remaining capacity did not return expected result", 6, pool.remainingCapacity());
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertEquals("Remaining capacity did not return expected result", 4, pool.remainingCapacity());
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertEquals("Remaining capacity did not return expected result", 2, pool.remainingCapacity());
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertEquals("Remaining capacity did not return expected result", 0, pool.remainingCapacity());
+      assertFalse("Failed to reject resource offering", pool.offer(new PooledResource<String>(null, 0, "message")));
+      assertNotNull("Pool returned null element", pool.poll());
+      assertEquals("Remaining capacity did not return expected result", 1, pool.remainingCapacity());
+   }
+   
+   public void testNonBlockingEmptyPool() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      long start = System.nanoTime();
+      assertNull("Pool should have been empty", pool.poll());
+      long time = System.nanoTime() - start;
+      assertEquals("Poll should not have blocked", 0, TimeUnit.MILLISECONDS.convert(time, TimeUnit.NANOSECONDS));
+   }
+   
+   public void testMaxLifeTime() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      pool.setMaxLife(1); // 1 second
+      assertTrue("Failed to offer resource", pool.offer(new PooledResource<String>(null, 0, "message")));
+      PooledResource<String> res = pool.poll();
+      assertNotNull("Pool should have returned a resource", res);
+      ThreadUtils.sleep(1100);
+      assertFalse("Pool should have rejected resource", pool.offer(res));
+   }
+   
+   public void testShutdown() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      pool.shutdown();
+      assertTrue("Pool should have indicated it was shutdown", pool.isShutdown());
+      assertFalse("Pool should not accept resources when shutdown", pool.offer(new PooledResource<String>(null, 0, "message")));
+      try {
+         pool.wrap(null, "message");
+         throw new Exception("Calling wrap should result in illegal state exception when closed");
+      } catch(IllegalStateException e) { /* Test passes */ }
+      try {
+         pool.poll();
+         throw new Exception("Calling poll should result in illegal state exception when closed");
+      } catch(IllegalStateException e) { /* Test passes */ }
+      try {
+         pool.poll(5, TimeUnit.SECONDS);
+         throw new Exception("Calling poll(TimeUnit) should result in illegal state exception when closed");
+      } catch(IllegalStateException e) { /* Test passes */ }
+   }
+
+   
+   public void testWakeup() throws Exception {
+      final ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      new Thread() {
+         public void run() {
+            ThreadUtils.sleep(200);
+            pool.wakeup();
+         }
+      }.start();
+      long start = System.currentTimeMillis();
+      assertNull("Woken poll should return null", pool.poll(5, TimeUnit.SECONDS));
+      assertTrue("Poll should have been woken early", System.currentTimeMillis() - start < 4000);
+      try {
+         pool.poll(10, TimeUnit.MILLISECONDS);
+         throw new Exception("An earlier wakeup should not cut short later polls");
+      } catch(TimeoutException e) { /* Test passes */ }
+   }
+
+   public void testEnqueue() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      RecordingWaiter first = new RecordingWaiter(true);
+      RecordingWaiter second = new RecordingWaiter(true);
+      pool.enqueue(first);
+      pool.enqueue(second);
+      assertEquals("Queued waiters should count as waiting", 2, pool.getWaitQueueSize());
+      assertTrue("Failed to offer resource", pool.offer(pool.wrap(null, "message 1")));
+      assertEquals("First waiter should get the resource", "message 1", first.item.getResource());
+      assertEquals("Resource should not be idle", 0, pool.size());
+      assertTrue("Second waiter should still be queued", pool.cancel(second));
+      assertFalse("Delivered waiter is no longer queued", pool.cancel(first));
+      assertEquals(0, pool.getWaitQueueSize());
+      assertTrue("Failed to offer resource", pool.offer(pool.wrap(null, "message 2")));
+      assertNull("Cancelled waiter should not get a resource", second.item);
+      assertEquals(1, pool.size());
+
+      RecordingWaiter third = new RecordingWaiter(true);
+      pool.enqueue(third);
+      assertEquals("Idle resource should be delivered immediately", "message 2", third.item.getResource());
+      assertEquals(0, pool.size());
+   }
+
+   public void testEnqueueRefusedAndReleased() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      RecordingWaiter refusing = new RecordingWaiter(false);
+      RecordingWaiter woken = new RecordingWaiter(true);
+      pool.enqueue(refusing);
+      pool.enqueue(woken);
+      assertTrue("Failed to offer resource", pool.offer(pool.wrap(null, "message")));
+      assertEquals("Refused resource should go to the next waiter", "message", woken.item.getResource());
+
+      RecordingWaiter released = new RecordingWaiter(true);
+      pool.enqueue(released);
+      pool.wakeup();
+      assertEquals(Boolean.FALSE, released.shutdown);
+      RecordingWaiter closed = new RecordingWaiter(true);
+      pool.enqueue(closed);
+      pool.shutdown();
+      assertEquals(Boolean.TRUE, closed.shutdown);
+      assertEquals(0, pool.getWaitQueueSize());
+      try {
+         pool.enqueue(new RecordingWaiter(true));
+         throw new Exception("Calling enqueue should result in illegal state exception when closed");
+      } catch(IllegalStateException e) { /* Test passes */ }
+   }
+
+   public void testThreadAffinity() throws Exception {
+      final ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      for(int i = 0; i < 10; i++) {
+         assertTrue("Message was rejected", pool.offer(pool.wrap(null, "message " + i)));
+      }
+      PooledResource<String> mine = pool.poll();
+      assertNotNull("Pool failed to return item", mine);
+      assertTrue("Reoffer was rejected", pool.offer(mine));
+      for(int i = 0; i < 5; i++) {
+         PooledResource<String> res = pool.poll();
+         assertSame("Should give us back the resource we just returned", mine, res);
+         assertTrue("Reoffer was rejected", pool.offer(res));
+      }
+
+      final PooledResource<?>[] other = new PooledResource<?>[1];
+      Thread thread = new Thread() {
+         public void run() {
+            other[0] = pool.poll();
+         }
+      };
+      thread.start();
+      ThreadUtils.join(thread, 1000);
+      assertNotNull("Other thread failed to get item", other[0]);
+      assertEquals("Expected all items to be accounted for", 9, pool.size());
+   }
+
+   public void testGrowth() throws Exception {
+      ConcurrentPool<String> pool = new ConcurrentPool<String>();
+      for(int i = 0; i < 100; i++) {
+         assertTrue("Message was rejected", pool.offer(pool.wrap(null, "message " + i)));
+      }
+      assertEquals("Expected one hundred items in pool", 100, pool.size());
+      assertEquals("Expected one hundred items in copy", 100, pool.copy().size());
+      for(int i = 0; i < 100; i++) {
+         assertNotNull("Pool failed to return item", pool.poll());
+      }
+      assertNull("Pool should have been empty", pool.poll());
+      assertEquals("Expected no items in the pool", 0, pool.size());
+   }
+   
+   
+   
+   
+   
+   
+   private static class RecordingWaiter implements ResourceWaiter<String> {
+
+      private final boolean accept;
+      private PooledResource<String> item;
+      private Boolean shutdown;
+
+      private RecordingWaiter(boolean accept)
+      {
+         this.accept = accept;
+      }
+
+      public boolean deliver(PooledResource<String> res)
+      {
+         if(accept) item = res;
+         return accept;
+      }
+
+      public void release(boolean shutdown)
+      {
+         this.shutdown = shutdown;
+      }
+   }
+
+   private class SimpleThreadTest extends Thread {
+      
+      private ConcurrentPool<String> pool;
+      private CountDownLatch latch;
+      private int seconds;
+      
+      private ErrorType type;
+      
+      public SimpleThreadTest(ConcurrentPool<String> pool, CountDownLatch latch, int seconds)
+      {
+         this.pool = pool;
+         this.latch = latch;
+         this.seconds = seconds;
+      }
+      
+      public void run()
+      {
+         try {
+            pool.poll(seconds, TimeUnit.SECONDS);
+            type = ErrorType.None;
+         } catch(TimeoutException e) {
+            type = ErrorType.Timeout;
+         } catch (IllegalStateException e) {
+            type = ErrorType.IllegalState;
+         } catch (InterruptedException e) {
+            type = ErrorType.Interrupted;
+         } finally {
+            latch.countDown();
+         }
+      }
+      
+      public ErrorType getErrorType()
+      {
+         return type;
+      }
+      
+   }
+   
+}
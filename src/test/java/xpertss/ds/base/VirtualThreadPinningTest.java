@@ -0,0 +1,86 @@
+package xpertss.ds.base;
+
+import java.io.File;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import junit.framework.TestCase;
+import xpertss.ds.PoolingDataSource;
+
+/**
+ * Virtual threads need Java 21 so this test is only compiled and run by the
+ * jdk21 profile, which activates itself on such a runtime.
+ */
+public class VirtualThreadPinningTest extends TestCase {
+
+   /*
+    * Ten thousand virtual threads contend for twenty connections. Any monitor
+    * held while a virtual thread parks in the borrow, wait or return path
+    * shows up as a pinned event.
+    */
+   public void testVirtualThreadsDoNotPin() throws Exception {
+      final BasePoolingDataSourceTest.StubPool pool = new BasePoolingDataSourceTest.StubPool();
+      pool.setProperty(PoolingDataSource.MAX_CONNECTIONS, "20");
+      final AtomicInteger failures = new AtomicInteger();
+      final CountDownLatch done = new CountDownLatch(10000);
+
+      Recording recording = new Recording();
+      try {
+         recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO);
+         recording.start();
+         ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+         try {
+            for(int i = 0; i < 10000; i++) {
+               executor.execute(new Runnable() {
+                  public void run() {
+                     try {
+                        PooledResource<String> res = pool.getPooledResource();
+                        Thread.sleep(1);
+                        pool.returnPooledResource(res, false);
+                     } catch(Exception e) {
+                        failures.incrementAndGet();
+                     } finally {
+                        done.countDown();
+                     }
+                  }
+               });
+            }
+            assertTrue("Borrowers did not finish", done.await(60, TimeUnit.SECONDS));
+         } finally {
+            executor.shutdown();
+            recording.stop();
+         }
+         assertEquals("Virtual threads were pinned", 0, pinned(recording));
+      } finally {
+         recording.close();
+      }
+      assertEquals(0, failures.get());
+      assertTrue("Pool exceeded max connections", pool.getPeekCount() <= 20);
+      assertEquals(0, pool.getBusyCount());
+      pool.close();
+   }
+
+   private static int pinned(Recording recording) throws Exception
+   {
+      File file = File.createTempFile("pinned", ".jfr");
+      try {
+         recording.dump(file.toPath());
+         int pinned = 0;
+         for(RecordedEvent event : RecordingFile.readAllEvents(file.toPath())) {
+            if("jdk.VirtualThreadPinned".equals(event.getEventType().getName())) pinned++;
+         }
+         return pinned;
+      } finally {
+         file.delete();
+      }
+   }
+
+}
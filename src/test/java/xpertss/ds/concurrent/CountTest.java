@@ -0,0 +1,116 @@
+package xpertss.ds.concurrent;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+
+public class CountTest extends TestCase {
+
+   public void testIncrementDecrement() throws Exception {
+      Count count = new Count();
+      count.increment().increment().increment();
+      assertEquals(3, count.current());
+      count.decrement().decrement();
+      assertEquals(1, count.current());
+      assertEquals(3, count.peek());
+      assertEquals(3, count.total());
+      assertEquals(0, count.currentMinus(1));
+      assertEquals(2, count.currentPlus(1));
+      count.reset();
+      assertEquals(0, count.current());
+      assertEquals(0, count.peek());
+      assertEquals(0, count.total());
+   }
+
+   public void testConditionalIncrement() throws Exception {
+      Count count = new Count();
+      Condition lt = ConditionFactory.lessThan(2);
+      assertTrue(count.increment(lt));
+      assertTrue(count.increment(lt));
+      assertFalse(count.increment(lt));
+      assertEquals(2, count.current());
+      assertEquals(2, count.total());
+      assertFalse(count.decrement(ConditionFactory.greaterThan(2)));
+      assertTrue(count.decrement(ConditionFactory.greaterThan(0)));
+      assertEquals(1, count.current());
+   }
+
+   public void testBoundedIncrementUnderContention() throws Exception {
+      final int bound = 5;
+      final Count count = new Count();
+      final Condition lt = ConditionFactory.lessThan(bound);
+      final AtomicInteger violations = new AtomicInteger();
+      final CountDownLatch latch = new CountDownLatch(8);
+      for(int i = 0; i < 8; i++) {
+         new Thread() {
+            public void run() {
+               try {
+                  for(int j = 0; j < 20000; j++) {
+                     if(count.increment(lt)) {
+                        if(count.current() > bound) violations.incrementAndGet();
+                        count.decrement();
+                     }
+                  }
+               } finally {
+                  latch.countDown();
+               }
+            }
+         }.start();
+      }
+      latch.await();
+      assertEquals("Bound was exceeded", 0, violations.get());
+      assertEquals(0, count.current());
+      assertTrue("Peek exceeded bound", count.peek() <= bound);
+   }
+
+   public void testRatio() throws Exception {
+      Ratio ratio = new Ratio();
+      assertEquals(0, ratio.ratio());
+      ratio.record(true);
+      ratio.record(true);
+      ratio.record(true);
+      ratio.record(false);
+      assertEquals(3, ratio.hits());
+      assertEquals(4, ratio.total());
+      assertEquals(75, ratio.ratio());
+      ratio.reset();
+      assertEquals(0, ratio.total());
+   }
+
+   public void testStats() throws Exception {
+      Stats stats = new Stats();
+      assertEquals(0, stats.getAverage());
+      stats.record(10);
+      stats.record(20);
+      stats.record(30);
+      assertEquals(10, stats.getMinimum());
+      assertEquals(20, stats.getAverage());
+      assertEquals(30, stats.getMaximum());
+      stats.reset();
+      stats.record(40);
+      assertEquals(40, stats.getMinimum());
+      assertEquals(40, stats.getMaximum());
+   }
+
+   public void testConcurrentRecord() throws Exception {
+      final Ratio ratio = new Ratio();
+      final CountDownLatch latch = new CountDownLatch(8);
+      for(int i = 0; i < 8; i++) {
+         new Thread() {
+            public void run() {
+               try {
+                  for(int j = 0; j < 10000; j++) ratio.record(j % 2 == 0);
+               } finally {
+                  latch.countDown();
+               }
+            }
+         }.start();
+      }
+      latch.await();
+      assertEquals(80000, ratio.total());
+      assertEquals(40000, ratio.hits());
+   }
+
+}
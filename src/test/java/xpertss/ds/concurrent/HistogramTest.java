@@ -0,0 +1,74 @@
+package xpertss.ds.concurrent;
+
+import junit.framework.TestCase;
+
+
+public class HistogramTest extends TestCase {
+
+   public void testEmpty() throws Exception {
+      Histogram histogram = new Histogram();
+      assertEquals(0, histogram.getCount());
+      assertEquals(0, histogram.getValueAtPercentile(50D));
+      assertEquals(0, histogram.getMaximum());
+      histogram.reset();
+      assertEquals("p50=0, p90=0, p99=0, p99.9=0, max=0", histogram.toString());
+      histogram.record(3);
+      assertEquals(1, histogram.getCount());
+      assertEquals(3, histogram.getValueAtPercentile(50D));
+   }
+
+   public void testSmallValuesAreExact() throws Exception {
+      Histogram histogram = new Histogram();
+      for(int i = 1; i <= 10; i++) histogram.record(i);
+      assertEquals(10, histogram.getCount());
+      assertEquals(5, histogram.getValueAtPercentile(50D));
+      assertEquals(9, histogram.getValueAtPercentile(90D));
+      assertEquals(10, histogram.getValueAtPercentile(100D));
+      assertEquals(10, histogram.getMaximum());
+   }
+
+   public void testPercentileError() throws Exception {
+      Histogram histogram = new Histogram();
+      for(int i = 1; i <= 100000; i++) histogram.record(i);
+      assertWithin(50000, histogram.getValueAtPercentile(50D));
+      assertWithin(90000, histogram.getValueAtPercentile(90D));
+      assertWithin(99000, histogram.getValueAtPercentile(99D));
+      assertWithin(99900, histogram.getValueAtPercentile(99.9D));
+      assertEquals(100000, histogram.getValueAtPercentile(100D));
+   }
+
+   public void testTail() throws Exception {
+      Histogram histogram = new Histogram();
+      for(int i = 0; i < 990; i++) histogram.record(2);
+      for(int i = 0; i < 10; i++) histogram.record(5000);
+      assertEquals(2, histogram.getValueAtPercentile(50D));
+      assertEquals(2, histogram.getValueAtPercentile(99D));
+      assertWithin(5000, histogram.getValueAtPercentile(99.9D));
+      assertEquals(5000, histogram.getMaximum());
+   }
+
+   public void testBuckets() throws Exception {
+      for(long v = 0; v < 1000000; v += 7) {
+         int idx = Histogram.index(v);
+         assertTrue(v <= Histogram.upperBound(idx));
+         if(idx > 0) assertTrue(v > Histogram.upperBound(idx - 1));
+      }
+      assertEquals(Histogram.index(Long.MAX_VALUE), Histogram.index(1L << 50));
+   }
+
+   public void testReset() throws Exception {
+      Histogram histogram = new Histogram();
+      histogram.record(100);
+      histogram.reset();
+      assertEquals(0, histogram.getCount());
+      assertEquals(0, histogram.getMaximum());
+   }
+
+
+   private static void assertWithin(long expected, long actual)
+   {
+      assertTrue("expected " + expected + " but was " + actual,
+                  Math.abs(actual - expected) <= expected / 16 + 1);
+   }
+
+}
@@ -9,6 +9,7 @@ import org.junit.Before;
 import org.junit.Test;
 import xpertss.ds.JdbcDataSource;
 import xpertss.ds.PoolingDataSource;
+import xpertss.ds.base.PoolRegistry;
 
 import javax.management.ObjectName;
 import javax.naming.Context;
@@ -162,6 +163,53 @@ public class JdbcDataSourceFactoryTest {
       assertTrue(result instanceof JdbcPoolingDataSource);
    }
 
+   @Test
+   public void testCacheTypeAppliedBeforeFill() throws Exception
+   {
+      // a cache type applied after the limits would drain the first fill and connect all over again
+      String url = "jdbc:simulated:factory-cache-type";
+      SimulatedDriver.reset();
+      Reference ref = new Reference(JdbcDataSource.class.getName());
+      ref.add(new StringRefAddr(JdbcDataSource.DRIVER, SimulatedDriver.class.getName()));
+      ref.add(new StringRefAddr(JdbcDataSource.URL, url));
+      ref.add(new StringRefAddr(PoolingDataSource.MIN_CONNECTIONS, "2"));
+      ref.add(new StringRefAddr(PoolingDataSource.WARM_FRACTION, "1"));
+      ref.add(new StringRefAddr(PoolingDataSource.CACHE_TYPE, PoolingDataSource.CacheType.Concurrent.toString()));
+      JdbcPoolingDataSource result = (JdbcPoolingDataSource) objectUnderTest.getObjectInstance(ref, name, context, env);
+      try {
+         assertEquals(2, result.getIdleCount());
+         assertEquals(2, SimulatedDriver.simulation(url).getConnects());
+      } finally {
+         result.close();
+         SimulatedDriver.reset();
+      }
+   }
+
+   @Test
+   public void testGroupAppliedBeforeFill() throws Exception
+   {
+      // a group applied after the limits would leave the pool counted against its origin's group
+      String url = "jdbc:simulated:factory-group";
+      SimulatedDriver.reset();
+      Reference ref = new Reference(JdbcDataSource.class.getName());
+      ref.add(new StringRefAddr(JdbcDataSource.DRIVER, SimulatedDriver.class.getName()));
+      ref.add(new StringRefAddr(JdbcDataSource.URL, url));
+      ref.add(new StringRefAddr(PoolingDataSource.MIN_CONNECTIONS, "2"));
+      ref.add(new StringRefAddr(PoolingDataSource.WARM_FRACTION, "1"));
+      ref.add(new StringRefAddr(PoolingDataSource.POOL_GROUP, "factory-group"));
+      JdbcPoolingDataSource result = (JdbcPoolingDataSource) objectUnderTest.getObjectInstance(ref, name, context, env);
+      try {
+         assertEquals(2, result.getIdleCount());
+         assertEquals("factory-group", result.getGroup());
+         assertEquals(1, PoolRegistry.system().getPoolCount("factory-group"));
+         assertEquals(2, PoolRegistry.system().getConnectionCount("factory-group"));
+         assertEquals(0, PoolRegistry.system().getPoolCount(result.getName()));
+      } finally {
+         result.close();
+         SimulatedDriver.reset();
+      }
+   }
+
 
    @Test
    public void testReturnsJavaxSqlDataSource() throws Exception
@@ -245,6 +245,7 @@ public class JdbcPoolComparativeTest { // extends TestCase {
       ds.setProperty(JdbcDataSource.DRIVER, "org.apache.derby.jdbc.ClientDriver");
       ds.setProperty(JdbcDataSource.URL, "jdbc:derby://localhost:1527/myDB;create=true;user=me;password=mine");
       JdbcPoolingDataSource pool = new JdbcPoolingDataSource(ds);
+      pool.setProperty(PoolingDataSource.WARM_FRACTION, "1");
       pool.setProperty(PoolingDataSource.MIN_CONNECTIONS, Integer.toString(prestart));
       pool.setProperty(PoolingDataSource.MAX_CONNECTIONS, Integer.toString(prestart));
       pool.setProperty(PoolingDataSource.TEST_SCHEME, scheme.toString());
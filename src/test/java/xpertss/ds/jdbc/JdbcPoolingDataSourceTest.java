@@ -15,7 +15,8 @@ import xpertss.ds.utils.TimeProvider;
 
 import javax.naming.Reference;
 import javax.naming.StringRefAddr;
-import java.lang.reflect.Proxy;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.net.InetAddress;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -223,6 +224,7 @@ public class JdbcPoolingDataSourceTest {
       JdbcOriginDataSource origin = createOriginDataSource(5);
       JdbcPoolingDataSource ds = new JdbcPoolingDataSource(origin);
       try {
+         ds.setProperty(PoolingDataSource.WARM_FRACTION, "1");
          ds.setProperty(PoolingDataSource.MIN_CONNECTIONS, "2");
 
          assertEquals("Expected different value for property min-connections", "2", ds.getProperty(PoolingDataSource.MIN_CONNECTIONS));
@@ -412,6 +414,7 @@ public class JdbcPoolingDataSourceTest {
       JdbcPoolingDataSource ds = new JdbcPoolingDataSource(origin);
       try {
          ds.setProperty(PoolingDataSource.MAX_IDLE, "1");
+         ds.setProperty(PoolingDataSource.WARM_FRACTION, "1");
          ds.setProperty(PoolingDataSource.MIN_CONNECTIONS, "2");
          
          assertEquals("Expected different value for property max-idle", "1", 
@@ -438,6 +441,7 @@ public class JdbcPoolingDataSourceTest {
       JdbcPoolingDataSource ds = new JdbcPoolingDataSource(origin);
       try {
          ds.getName();
+         ds.setProperty(PoolingDataSource.WARM_FRACTION, "1");
          ds.setProperty(PoolingDataSource.MIN_CONNECTIONS, "2");
 
          assertEquals("Active count is wrong", 2, ds.getActiveCount());
@@ -490,6 +494,7 @@ public class JdbcPoolingDataSourceTest {
       JdbcPoolingDataSource ds = new JdbcPoolingDataSource(origin);
       try {
          ds.setProperty(PoolingDataSource.MAX_CONNECTIONS, "1");
+         ds.setProperty(PoolingDataSource.WARM_FRACTION, "1");
          ds.setProperty(PoolingDataSource.MIN_CONNECTIONS, "2");
       
          assertEquals("Active count is wrong", 1, ds.getActiveCount());
@@ -509,6 +514,7 @@ public class JdbcPoolingDataSourceTest {
       JdbcOriginDataSource origin = createOriginDataSource(5);
       JdbcPoolingDataSource ds = new JdbcPoolingDataSource(origin);
       try {
+         ds.setProperty(PoolingDataSource.WARM_FRACTION, "1");
          ds.setProperty(PoolingDataSource.MIN_CONNECTIONS, "2");
          ds.setProperty(PoolingDataSource.MAX_CONNECTIONS, "1");
       
@@ -529,6 +535,7 @@ public class JdbcPoolingDataSourceTest {
       JdbcOriginDataSource origin = createOriginDataSource(5);
       JdbcPoolingDataSource ds = new JdbcPoolingDataSource(origin);
       try {
+         ds.setProperty(PoolingDataSource.WARM_FRACTION, "1");
          ds.setProperty(PoolingDataSource.MIN_CONNECTIONS, "2");
       
          assertEquals("Active count is wrong", 2, ds.getActiveCount());
@@ -586,12 +593,12 @@ public class JdbcPoolingDataSourceTest {
          Connection conn = null;
          try {
             conn = ds.getConnection();
-            assertTrue("Connection not wrapped", Proxy.isProxyClass(conn.getClass()));
+            assertTrue("Connection not wrapped", conn instanceof JdbcProxiedConnection);
             Statement stmt = null;
             try {
                stmt = conn.createStatement();
-               assertTrue("Statement not wrapped", Proxy.isProxyClass(stmt.getClass()));
-               assertTrue("Statement's connection not wrapped", Proxy.isProxyClass(stmt.getConnection().getClass()));
+               assertTrue("Statement not wrapped", stmt instanceof JdbcProxiedStatement);
+               assertTrue("Statement's connection not wrapped", stmt.getConnection() instanceof JdbcProxiedConnection);
                assertTrue("Statement's conenction identity failure", conn == stmt.getConnection());
             } finally {
                JdbcUtils.close(stmt);
@@ -600,25 +607,25 @@ public class JdbcPoolingDataSourceTest {
             PreparedStatement pstmt = null;
             try {
                pstmt = conn.prepareStatement("select * from restaurants where city = ?");
-               assertTrue("PreparedStatement not wrapped", Proxy.isProxyClass(pstmt.getClass()));
+               assertTrue("PreparedStatement not wrapped", pstmt instanceof JdbcProxiedPreparedStatement);
                pstmt.setString(1, "notgonnafindit");
                ResultSet rs = pstmt.executeQuery();
                try {
                   assertFalse("ResultSet should not have had any results", rs.next());
-                  assertTrue("ResultSet not wrapped", Proxy.isProxyClass(rs.getClass()));
-                  assertTrue("ResultSet's statement not wrapped", Proxy.isProxyClass(rs.getStatement().getClass()));
+                  assertTrue("ResultSet not wrapped", rs instanceof JdbcProxiedResultSet);
+                  assertTrue("ResultSet's statement not wrapped", rs.getStatement() instanceof JdbcProxiedPreparedStatement);
                   assertTrue("ResultSet's statement identity failure", rs.getStatement() == pstmt);
                } finally {
                   JdbcUtils.close(rs);
                }
-               assertTrue("PreparedStatement's connection not wrapped", Proxy.isProxyClass(pstmt.getConnection().getClass()));
+               assertTrue("PreparedStatement's connection not wrapped", pstmt.getConnection() instanceof JdbcProxiedConnection);
                assertTrue("PreparedStatement's connection identity failure", conn == pstmt.getConnection());
             } finally {
                JdbcUtils.close(pstmt);
             }
             
             DatabaseMetaData dmd = conn.getMetaData();
-            assertTrue("MetaData's connection not wrapped", Proxy.isProxyClass(dmd.getConnection().getClass()));
+            assertTrue("MetaData's connection not wrapped", dmd.getConnection() instanceof JdbcProxiedConnection);
             assertTrue("MetaData's conenction identity failure", conn == dmd.getConnection());
             
             assertEquals("Active count is wrong", 1, ds.getActiveCount());
@@ -955,6 +962,7 @@ public class JdbcPoolingDataSourceTest {
       JdbcPoolingDataSource ds = new JdbcPoolingDataSource(origin);
       try {
          ds.setProperty(PoolingDataSource.MAX_IDLE, "1");
+         ds.setProperty(PoolingDataSource.WARM_FRACTION, "1");
          ds.setProperty(PoolingDataSource.MIN_CONNECTIONS, "1");
          
          assertEquals("Cache hit ratio is wrong", 0, ds.getCacheHitRatio());
@@ -1043,10 +1051,44 @@ public class JdbcPoolingDataSourceTest {
       }
    }
 
+   @Test
+   public void testBorrowAndCloseDoNotAllocate() throws Exception
+   {
+      ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+      if(!(threads instanceof com.sun.management.ThreadMXBean)) return;
+      com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threads;
+      if(!bean.isThreadAllocatedMemorySupported()) return;
+      bean.setThreadAllocatedMemoryEnabled(true);
+
+      for(PoolingDataSource.CacheType type : PoolingDataSource.CacheType.values()) {
+         JdbcOriginDataSource origin = new JdbcOriginDataSource();
+         origin.setProperty(JdbcDataSource.DRIVER, SimulatedDriver.class.getName());
+         origin.setProperty(JdbcDataSource.URL, "jdbc:simulated:allocation");
+         JdbcPoolingDataSource ds = new JdbcPoolingDataSource(origin);
+         try {
+            ds.setProperty(PoolingDataSource.CACHE_TYPE, type.name());
+            ds.setProperty(PoolingDataSource.MAX_CONNECTIONS, "1");
+            ds.setProperty(PoolingDataSource.TEST_SCHEME, "Never");
+            cycle(ds, 50000);   // warm up and let the JIT settle
+
+            long id = Thread.currentThread().getId();
+            long before = bean.getThreadAllocatedBytes(id);
+            cycle(ds, 100000);
+            long allocated = bean.getThreadAllocatedBytes(id) - before;
+            // a single object per cycle would account for well over a megabyte
+            assertTrue(type + " cache allocated " + allocated + " bytes", allocated < 16 * 1024);
+            assertEquals(1, ds.getActiveCount());
+         } finally {
+            ds.close();
+            SimulatedDriver.reset();
+         }
+      }
+   }
 
-
-
-
+   private static void cycle(JdbcPoolingDataSource ds, int count) throws Exception
+   {
+      for(int i = 0; i < count; i++) ds.getConnection().close();
+   }
 
 
 
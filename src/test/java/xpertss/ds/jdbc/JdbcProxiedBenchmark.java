@@ -0,0 +1,130 @@
+package xpertss.ds.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Types;
+
+import javax.sql.rowset.CachedRowSet;
+import javax.sql.rowset.RowSetMetaDataImpl;
+import javax.sql.rowset.RowSetProvider;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Compares the per call overhead of the delegating result set wrapper with
+ * the reflective proxy it replaced by reading every column of a cached row
+ * set through each of them. The raw result set is measured as a baseline.
+ * <p>
+ * Run via main as the timings are too noisy to assert on in the build.
+ *
+ * @author cfloersch
+ */
+public class JdbcProxiedBenchmark {
+
+   private static final int ROWS = 1000;
+   private static final int COLUMNS = 8;
+   private static final int PASSES = 2000;
+
+   public static void main(String[] args) throws Exception
+   {
+      JdbcProxiedBenchmark benchmark = new JdbcProxiedBenchmark();
+      for(int i = 0; i < 3; i++) {
+         benchmark.testRaw();
+         benchmark.testReflectiveProxy();
+         benchmark.testDelegatingWrapper();
+      }
+   }
+
+
+   public void testRaw() throws Exception {
+      ResultSet rs = createResultSet();
+      report("raw", rs);
+   }
+
+   public void testReflectiveProxy() throws Exception {
+      ResultSet raw = createResultSet();
+      ResultSet rs = (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(),
+                                    new Class[] { ResultSet.class }, new ReflectiveResultSet(null, raw));
+      report("reflective", rs);
+   }
+
+   public void testDelegatingWrapper() throws Exception {
+      ResultSet rs = JdbcProxiedResultSet.proxy(null, createResultSet());
+      report("wrapper", rs);
+   }
+
+
+
+   private static void report(String name, ResultSet rs) throws Exception
+   {
+      long expected = (long) PASSES * ROWS * COLUMNS;
+      long start = System.nanoTime();
+      long sum = 0;
+      for(int p = 0; p < PASSES; p++) {
+         rs.beforeFirst();
+         while(rs.next()) {
+            for(int c = 1; c <= COLUMNS; c++) sum += rs.getLong(c);
+         }
+      }
+      long time = System.nanoTime() - start;
+      assertEquals(expected, sum);
+      System.out.println(String.format("%-12s %6.1f ns/call", name, (double) time / expected));
+   }
+
+   private static ResultSet createResultSet() throws Exception
+   {
+      RowSetMetaDataImpl meta = new RowSetMetaDataImpl();
+      meta.setColumnCount(COLUMNS);
+      for(int c = 1; c <= COLUMNS; c++) {
+         meta.setColumnName(c, "C" + c);
+         meta.setColumnType(c, Types.BIGINT);
+      }
+      CachedRowSet rs = RowSetProvider.newFactory().createCachedRowSet();
+      rs.setMetaData(meta);
+      for(int r = 0; r < ROWS; r++) {
+         rs.moveToInsertRow();
+         for(int c = 1; c <= COLUMNS; c++) rs.updateLong(c, 1L);
+         rs.insertRow();
+         rs.moveToCurrentRow();
+      }
+      return rs;
+   }
+
+
+   // The reflective dispatch the delegating wrappers replaced
+   private static class ReflectiveResultSet implements InvocationHandler {
+
+      private Statement stmt;
+      private ResultSet rs;
+
+      private ReflectiveResultSet(Statement stmt, ResultSet rs)
+      {
+         this.stmt = stmt;
+         this.rs = rs;
+      }
+
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+      {
+         try {
+            String methodName = method.getName();
+            if("getStatement".equals(methodName)) {
+               return stmt;
+            } else if("equals".equals(methodName)) {
+               return args[0] == proxy;
+            } else if("toString".equals(methodName)) {
+               return toString();
+            } else if("hashCode".equals(methodName)) {
+               return System.identityHashCode(proxy);
+            }
+            return method.invoke(rs, args);
+         } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+         }
+      }
+   }
+
+}
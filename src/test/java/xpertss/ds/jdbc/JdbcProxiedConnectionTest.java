@@ -2,19 +2,25 @@ package xpertss.ds.jdbc;
 
 import junit.framework.TestCase;
 import xpertss.ds.base.PooledResource;
+import xpertss.ds.concurrent.Ratio;
 
-import java.lang.reflect.Proxy;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Savepoint;
 import java.sql.Statement;
 
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
 import static org.mockito.Matchers.anyBoolean;
 import static org.mockito.Matchers.anyInt;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -44,8 +50,7 @@ public class JdbcProxiedConnectionTest extends TestCase {
 
 
    public void testIsProxy() {
-      assertTrue(Proxy.isProxyClass(objectUnderTest.getClass()));
-      assertEquals(JdbcProxiedConnection.class, Proxy.getInvocationHandler(objectUnderTest).getClass());
+      assertEquals(JdbcProxiedConnection.class, objectUnderTest.getClass());
    }
 
    public void testEqualsDoesNotPassThrough() {
@@ -105,7 +110,7 @@ public class JdbcProxiedConnectionTest extends TestCase {
       when(rawConn.getMetaData()).thenReturn(mock);
 
       DatabaseMetaData meta = objectUnderTest.getMetaData();
-      assertTrue(Proxy.isProxyClass(meta.getClass()));
+      assertTrue(meta instanceof JdbcProxiedDatabaseMetaData);
       assertNotSame(mock, meta);
       assertNotSame(rawConn, meta.getConnection());
    }
@@ -135,7 +140,7 @@ public class JdbcProxiedConnectionTest extends TestCase {
       Statement stmt;
 
       stmt = objectUnderTest.createStatement();
-      assertTrue(Proxy.isProxyClass(stmt.getClass()));
+      assertTrue(stmt instanceof JdbcProxiedStatement);
       assertNotSame(mockStmt, stmt);
       verify(rawConn).createStatement();
 
@@ -143,7 +148,7 @@ public class JdbcProxiedConnectionTest extends TestCase {
 
       when(rawConn.createStatement(anyInt(), anyInt())).thenReturn(mockStmt);
       stmt = objectUnderTest.createStatement(0, 0);
-      assertTrue(Proxy.isProxyClass(stmt.getClass()));
+      assertTrue(stmt instanceof JdbcProxiedStatement);
       assertNotSame(mockStmt, stmt);
       verify(rawConn).createStatement(eq(0), eq(0));
 
@@ -151,7 +156,7 @@ public class JdbcProxiedConnectionTest extends TestCase {
 
       when(rawConn.createStatement(anyInt(), anyInt(), anyInt())).thenReturn(mockStmt);
       stmt = objectUnderTest.createStatement(0, 0, 0);
-      assertTrue(Proxy.isProxyClass(stmt.getClass()));
+      assertTrue(stmt instanceof JdbcProxiedStatement);
       assertNotSame(mockStmt, stmt);
       verify(rawConn).createStatement(eq(0), eq(0), eq(0));
 
@@ -233,4 +238,208 @@ public class JdbcProxiedConnectionTest extends TestCase {
       assertTrue(objectUnderTest.isClosed());
    }
 
+
+   public void testHandleReusedAcrossBorrows() throws SQLException {
+      ArgumentCaptor<Object> handle = ArgumentCaptor.forClass(Object.class);
+      verify(mockRes).attach(handle.capture());
+      assertSame(objectUnderTest, handle.getValue());
+
+      when(rawConn.isClosed()).thenReturn(false);
+      objectUnderTest.close();
+      when(mockRes.attachment()).thenReturn(handle.getValue());
+      assertSame(objectUnderTest, JdbcProxiedConnection.proxy(mockRes));
+      assertFalse(objectUnderTest.isClosed());
+   }
+
+   public void testHandleReborrowedDuringClose() throws SQLException {
+      ArgumentCaptor<Object> handle = ArgumentCaptor.forClass(Object.class);
+      verify(mockRes).attach(handle.capture());
+      when(mockRes.attachment()).thenReturn(handle.getValue());
+      when(rawConn.isClosed()).thenReturn(false);
+      // another thread borrows the resource the moment it is released
+      doAnswer(new Answer<Object>() {
+         public Object answer(InvocationOnMock invocation) {
+            JdbcProxiedConnection.proxy(mockRes);
+            return null;
+         }
+      }).doNothing().when(mockRes).close(false);
+
+      objectUnderTest.close();
+      assertFalse("Handle should belong to the new borrower", objectUnderTest.isClosed());
+      verify(mockRes, times(1)).close(eq(false));
+   }
+
+   public void testStaleStatementCannotReachConnection() throws SQLException {
+      Statement mockStmt = mock(Statement.class);
+      when(rawConn.createStatement()).thenReturn(mockStmt);
+      when(rawConn.isClosed()).thenReturn(false);
+      when(mockRes.attachment()).thenReturn(objectUnderTest);
+
+      Statement stale = objectUnderTest.createStatement();
+      objectUnderTest.close();
+      verify(mockStmt).close();
+
+      Connection current = JdbcProxiedConnection.proxy(mockRes);
+      assertSame(objectUnderTest, current);
+      try {
+         stale.getConnection();
+         fail("Stale statement should not expose the reborrowed connection");
+      } catch(SQLException e) { /* Test passes */ }
+
+      Statement fresh = current.createStatement();
+      assertSame(current, fresh.getConnection());
+   }
+
+   public void testStaleMetaDataCannotReachConnection() throws SQLException {
+      DatabaseMetaData mock = mock(DatabaseMetaData.class);
+      when(rawConn.getMetaData()).thenReturn(mock);
+      when(rawConn.isClosed()).thenReturn(false);
+      DatabaseMetaData meta = objectUnderTest.getMetaData();
+      assertSame(objectUnderTest, meta.getConnection());
+      objectUnderTest.close();
+      try {
+         meta.getConnection();
+         fail("Meta data should not expose a closed connection");
+      } catch(SQLException e) { /* Test passes */ }
+   }
+
+
+   public void testStatementCacheReusesStatements() throws SQLException {
+      Ratio ratio = new Ratio();
+      PreparedStatement mockStmt = mock(PreparedStatement.class);
+      when(rawConn.prepareStatement("select 1")).thenReturn(mockStmt);
+      when(rawConn.isClosed()).thenReturn(false);
+
+      Connection conn = JdbcProxiedConnection.proxy(mockRes, 2, ratio);
+      when(mockRes.attachment()).thenReturn(conn);
+
+      PreparedStatement stmt = conn.prepareStatement("select 1");
+      stmt.close();
+      verify(mockStmt, never()).close();
+      verify(mockStmt).clearParameters();
+      try {
+         stmt.execute();
+         fail("Closed statement should not be usable");
+      } catch(SQLException e) { /* Test passes */ }
+
+      PreparedStatement again = conn.prepareStatement("select 1");
+      assertNotSame(stmt, again);
+      verify(rawConn, times(1)).prepareStatement("select 1");
+      again.execute();
+      verify(mockStmt).execute();
+
+      // left open when the connection is closed it is returned to the cache
+      conn.close();
+      verify(mockStmt, never()).close();
+
+      conn = JdbcProxiedConnection.proxy(mockRes, 2, ratio);
+      conn.prepareStatement("select 1");
+      verify(rawConn, times(1)).prepareStatement("select 1");
+      assertEquals(2, ratio.hits());
+      assertEquals(3, ratio.total());
+   }
+
+   public void testStatementCacheKeyedByOptions() throws SQLException {
+      PreparedStatement plain = mock(PreparedStatement.class);
+      PreparedStatement scroll = mock(PreparedStatement.class);
+      when(rawConn.prepareStatement("select 1")).thenReturn(plain);
+      when(rawConn.prepareStatement("select 1", 1004, 1007)).thenReturn(scroll);
+
+      Connection conn = JdbcProxiedConnection.proxy(mockRes, 2, null);
+      conn.prepareStatement("select 1").close();
+      conn.prepareStatement("select 1", 1004, 1007).close();
+      conn.prepareStatement("select 1", 1004, 1007).close();
+      verify(rawConn, times(1)).prepareStatement("select 1", 1004, 1007);
+      verify(rawConn, times(1)).prepareStatement("select 1");
+   }
+
+   public void testStatementCacheEvictsLeastRecentlyUsed() throws SQLException {
+      PreparedStatement one = mock(PreparedStatement.class);
+      PreparedStatement two = mock(PreparedStatement.class);
+      PreparedStatement three = mock(PreparedStatement.class);
+      when(rawConn.prepareStatement("one")).thenReturn(one);
+      when(rawConn.prepareStatement("two")).thenReturn(two);
+      when(rawConn.prepareStatement("three")).thenReturn(three);
+
+      Connection conn = JdbcProxiedConnection.proxy(mockRes, 2, null);
+      conn.prepareStatement("one").close();
+      conn.prepareStatement("two").close();
+      conn.prepareStatement("one").close();
+      conn.prepareStatement("three").close();
+
+      verify(two).close();
+      verify(one, never()).close();
+      verify(three, never()).close();
+   }
+
+   public void testStatementCacheClearsBatch() throws SQLException {
+      PreparedStatement mockStmt = mock(PreparedStatement.class);
+      when(rawConn.prepareStatement("insert")).thenReturn(mockStmt);
+
+      Connection conn = JdbcProxiedConnection.proxy(mockRes, 2, null);
+      PreparedStatement stmt = conn.prepareStatement("insert");
+      stmt.setInt(1, 5);
+      stmt.addBatch();
+      stmt.close();
+      verify(mockStmt).clearBatch();
+      verify(mockStmt, never()).close();
+   }
+
+   public void testStatementCacheRefusesModifiedStatement() throws SQLException {
+      PreparedStatement first = mock(PreparedStatement.class);
+      PreparedStatement second = mock(PreparedStatement.class);
+      when(rawConn.prepareStatement("select 1")).thenReturn(first, second);
+      when(rawConn.isClosed()).thenReturn(false);
+
+      Connection conn = JdbcProxiedConnection.proxy(mockRes, 2, null);
+      when(mockRes.attachment()).thenReturn(conn);
+
+      PreparedStatement stmt = conn.prepareStatement("select 1");
+      stmt.setMaxRows(10);
+      stmt.close();
+      verify(first).close();
+      conn.close();
+
+      conn = JdbcProxiedConnection.proxy(mockRes, 2, null);
+      stmt = conn.prepareStatement("select 1");
+      verify(rawConn, times(2)).prepareStatement("select 1");
+      stmt.execute();
+      verify(second).execute();
+      verify(second, never()).setMaxRows(anyInt());
+   }
+
+   public void testStatementsClosedWithoutCache() throws SQLException {
+      PreparedStatement mockStmt = mock(PreparedStatement.class);
+      when(rawConn.prepareStatement("select 1")).thenReturn(mockStmt);
+      PreparedStatement stmt = objectUnderTest.prepareStatement("select 1");
+      stmt.close();
+      verify(mockStmt).close();
+      assertTrue(stmt.isClosed());
+   }
+
+   public void testSuccessfulExecuteMarksAlive() throws SQLException {
+      Statement mockStmt = mock(Statement.class);
+      PreparedStatement mockPrepared = mock(PreparedStatement.class);
+      when(rawConn.createStatement()).thenReturn(mockStmt);
+      when(rawConn.prepareStatement(anyString())).thenReturn(mockPrepared);
+      when(mockStmt.executeUpdate("bad")).thenThrow(new SQLException("syntax"));
+
+      Statement stmt = objectUnderTest.createStatement();
+      try {
+         stmt.executeUpdate("bad");
+         fail();
+      } catch(SQLException e) {
+         // expected
+      }
+      verify(mockRes, never()).markAlive();
+
+      stmt.execute("good");
+      verify(mockRes, times(1)).markAlive();
+      stmt.executeBatch();
+      verify(mockRes, times(2)).markAlive();
+
+      objectUnderTest.prepareStatement("select 1").executeQuery();
+      verify(mockRes, times(3)).markAlive();
+   }
+
 }
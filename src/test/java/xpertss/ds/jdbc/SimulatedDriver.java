@@ -0,0 +1,462 @@
+package xpertss.ds.jdbc;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.SocketTimeoutException;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * A stand in for a slow or flaky database which performs no I/O. It accepts
+ * urls of the form {@code jdbc:simulated:<name>[;<setting>=<value>]*} where
+ * any setting may also be given, or overridden, in the connect properties:
+ * <pre>
+ *   seed                  seeds the random choices below
+ *   connect-latency       time taken to connect
+ *   execute-latency       time taken by each statement execution
+ *   connect-failure-rate  fraction of connect attempts that fail (0.0)
+ *   connect-failures      connect attempts that fail, e.g. 3,10-20 (counted from 1)
+ *   connect-hang-rate     fraction of connect attempts that hang until the connect timeout
+ *   hang-rate             fraction of executions that hang until the socket timeout
+ *   valid-failure-rate    fraction of isValid calls that report false
+ *   connect-timeout       milliseconds before a hung connect fails (0 waits forever)
+ *   socket-timeout        milliseconds before a hung execution fails (0 waits until closed)
+ * </pre>
+ * Latencies are given in milliseconds as {@code constant:<ms>},
+ * {@code uniform:<min>,<max>}, {@code exponential:<mean>} or
+ * {@code bimodal:<short>,<long>,<fraction of long>}.
+ * <p>
+ * Connections to the same url share one simulation which counts the connect
+ * attempts and draws from one random sequence. With a seed and a single
+ * thread the outcome of every call is repeatable. A timed out hang fails
+ * with a {@link SQLRecoverableException} caused by a
+ * {@link SocketTimeoutException} as a real driver's socket timeout would.
+ * <p>
+ * The pool's connect-timeout and read-timeout are passed to the driver as
+ * the connect-timeout and socket-timeout settings.
+ *
+ * @author cfloersch
+ */
+public class SimulatedDriver implements Driver {
+
+   public static final String PREFIX = "jdbc:simulated:";
+
+   private static final ConcurrentMap<String, Simulation> simulations = new ConcurrentHashMap<String, Simulation>();
+
+
+   /**
+    * Returns the simulation backing connections to the given url, creating
+    * it if no connection has yet been attempted.
+    */
+   public static Simulation simulation(String url)
+   {
+      Simulation sim = simulations.get(url);
+      if(sim == null) {
+         Simulation created = new Simulation(settings(url, null));
+         sim = simulations.putIfAbsent(url, created);
+         if(sim == null) sim = created;
+      }
+      return sim;
+   }
+
+   /**
+    * Discard all simulations so counts and random sequences start over.
+    */
+   public static void reset()
+   {
+      simulations.clear();
+   }
+
+
+
+   public boolean acceptsURL(String url)
+      throws SQLException
+   {
+      return url != null && url.startsWith(PREFIX);
+   }
+
+   public Connection connect(String url, Properties info)
+      throws SQLException
+   {
+      if(!acceptsURL(url)) return null;
+      return simulation(url).connect(settings(url, info));
+   }
+
+   public DriverPropertyInfo[] getPropertyInfo(String url, Properties info)
+      throws SQLException
+   {
+      return new DriverPropertyInfo[0];
+   }
+
+   public int getMajorVersion()
+   {
+      return 1;
+   }
+
+   public int getMinorVersion()
+   {
+      return 0;
+   }
+
+   public boolean jdbcCompliant()
+   {
+      return false;
+   }
+
+   public Logger getParentLogger()
+      throws SQLFeatureNotSupportedException
+   {
+      throw new SQLFeatureNotSupportedException();
+   }
+
+
+
+   private static Map<String, String> settings(String url, Properties info)
+   {
+      Map<String, String> settings = new HashMap<String, String>();
+      String[] parts = url.substring(PREFIX.length()).split(";");
+      for(int i = 1; i < parts.length; i++) {
+         int idx = parts[i].indexOf('=');
+         if(idx > 0) settings.put(parts[i].substring(0, idx).trim(), parts[i].substring(idx + 1).trim());
+      }
+      if(info != null) {
+         for(String key : info.stringPropertyNames()) settings.put(key, info.getProperty(key));
+      }
+      return settings;
+   }
+
+   private static double rate(Map<String, String> settings, String key)
+   {
+      String value = settings.get(key);
+      return (value == null) ? 0 : Double.parseDouble(value);
+   }
+
+   private static long millis(Map<String, String> settings, String key)
+   {
+      String value = settings.get(key);
+      return (value == null) ? 0 : Long.parseLong(value);
+   }
+
+   private static boolean scheduled(String ranges, int attempt)
+   {
+      if(ranges == null) return false;
+      for(String range : ranges.split(",")) {
+         int idx = range.indexOf('-');
+         int from = Integer.parseInt(range.substring(0, (idx < 0) ? range.length() : idx).trim());
+         int to = (idx < 0) ? from : Integer.parseInt(range.substring(idx + 1).trim());
+         if(attempt >= from && attempt <= to) return true;
+      }
+      return false;
+   }
+
+   private static Object defaultValue(Class<?> type)
+   {
+      if(type == boolean.class) return Boolean.FALSE;
+      if(type == int.class) return 0;
+      if(type == long.class) return 0L;
+      if(type == short.class) return (short) 0;
+      if(type == byte.class) return (byte) 0;
+      if(type == float.class) return 0F;
+      if(type == double.class) return 0D;
+      return null;
+   }
+
+   // Object methods are answered by the handler itself
+   private static Object objectMethod(Object proxy, Method method, Object[] args)
+   {
+      String name = method.getName();
+      if("equals".equals(name)) return proxy == args[0];
+      if("hashCode".equals(name)) return System.identityHashCode(proxy);
+      return proxy.getClass().getInterfaces()[0].getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+   }
+
+
+
+
+   /**
+    * The shared state of all connections to one url.
+    */
+   public static class Simulation {
+
+      private final AtomicInteger attempts = new AtomicInteger();
+      private final AtomicInteger connects = new AtomicInteger();
+      private final AtomicInteger failures = new AtomicInteger();
+      private final AtomicInteger executions = new AtomicInteger();
+      private final AtomicInteger hangs = new AtomicInteger();
+      private final Random random;
+
+      private Simulation(Map<String, String> settings)
+      {
+         String seed = settings.get("seed");
+         random = (seed == null) ? new Random() : new Random(Long.parseLong(seed));
+      }
+
+      /**
+       * @return The number of connect attempts made
+       */
+      public int getAttempts()
+      {
+         return attempts.get();
+      }
+
+      /**
+       * @return The number of connections successfully made
+       */
+      public int getConnects()
+      {
+         return connects.get();
+      }
+
+      /**
+       * @return The number of connect attempts that failed or timed out
+       */
+      public int getFailures()
+      {
+         return failures.get();
+      }
+
+      /**
+       * @return The number of statement executions attempted
+       */
+      public int getExecutions()
+      {
+         return executions.get();
+      }
+
+      /**
+       * @return The number of connects and executions that hung
+       */
+      public int getHangs()
+      {
+         return hangs.get();
+      }
+
+
+      private Connection connect(Map<String, String> settings)
+         throws SQLException
+      {
+         int attempt = attempts.incrementAndGet();
+         boolean fail = scheduled(settings.get("connect-failures"), attempt) ||
+                           chance(rate(settings, "connect-failure-rate"));
+         boolean hang = chance(rate(settings, "connect-hang-rate"));
+         long latency = latency(settings.get("connect-latency"));
+         try {
+            if(hang) {
+               hangs.incrementAndGet();
+               await(new CountDownLatch(1), millis(settings, "connect-timeout"), "connect timed out");
+            }
+            sleep(latency);
+            if(fail) throw new SQLNonTransientConnectionException("simulated connect failure " + attempt);
+         } catch(SQLException e) {
+            failures.incrementAndGet();
+            throw e;
+         }
+         connects.incrementAndGet();
+         return (Connection) Proxy.newProxyInstance(SimulatedDriver.class.getClassLoader(),
+                                 new Class[] { Connection.class }, new SimulatedConnection(this, settings));
+      }
+
+      private boolean chance(double rate)
+      {
+         return rate > 0 && random.nextDouble() < rate;
+      }
+
+      private long latency(String spec)
+      {
+         if(spec == null) return 0;
+         int idx = spec.indexOf(':');
+         String type = spec.substring(0, idx);
+         String[] args = spec.substring(idx + 1).split(",");
+         double ms;
+         if("constant".equals(type)) {
+            ms = Double.parseDouble(args[0]);
+         } else if("uniform".equals(type)) {
+            double min = Double.parseDouble(args[0]);
+            ms = min + random.nextDouble() * (Double.parseDouble(args[1]) - min);
+         } else if("exponential".equals(type)) {
+            ms = -Math.log(1 - random.nextDouble()) * Double.parseDouble(args[0]);
+         } else if("bimodal".equals(type)) {
+            ms = Double.parseDouble((random.nextDouble() < Double.parseDouble(args[2])) ? args[1] : args[0]);
+         } else {
+            throw new IllegalArgumentException("invalid latency: " + spec);
+         }
+         return (long) (ms * TimeUnit.MILLISECONDS.toNanos(1));
+      }
+
+      private static void sleep(long nanos) throws SQLException
+      {
+         if(nanos <= 0) return;
+         try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+         } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted", e);
+         }
+      }
+
+      private static void await(CountDownLatch closed, long timeout, String message) throws SQLException
+      {
+         try {
+            if(timeout <= 0) {
+               closed.await();
+            } else if(!closed.await(timeout, TimeUnit.MILLISECONDS)) {
+               throw new SQLRecoverableException(message, new SocketTimeoutException(message));
+            }
+         } catch(InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted", e);
+         }
+         throw new SQLRecoverableException("connection closed");
+      }
+   }
+
+
+   private static class SimulatedConnection implements InvocationHandler {
+
+      private final Map<String, Object> values = new ConcurrentHashMap<String, Object>();
+      private final CountDownLatch closed = new CountDownLatch(1);
+      private final Simulation sim;
+      private final Map<String, String> settings;
+
+      private SimulatedConnection(Simulation sim, Map<String, String> settings)
+      {
+         this.sim = sim;
+         this.settings = settings;
+         values.put("AutoCommit", Boolean.TRUE);
+         values.put("TransactionIsolation", Connection.TRANSACTION_SERIALIZABLE);
+         values.put("Holdability", ResultSet.HOLD_CURSORS_OVER_COMMIT);
+      }
+
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+      {
+         if(method.getDeclaringClass() == Object.class) return objectMethod(proxy, method, args);
+         String name = method.getName();
+         if("close".equals(name) || "abort".equals(name)) {
+            closed.countDown();
+            return null;
+         } else if("isClosed".equals(name)) {
+            return isClosed();
+         } else if("isValid".equals(name)) {
+            return !isClosed() && !sim.chance(rate(settings, "valid-failure-rate"));
+         } else if("unwrap".equals(name)) {
+            return ((Class<?>) args[0]).cast(proxy);
+         } else if("isWrapperFor".equals(name)) {
+            return ((Class<?>) args[0]).isInstance(proxy);
+         }
+         if(isClosed()) throw new SQLNonTransientConnectionException("connection closed");
+         if("createStatement".equals(name)) {
+            return statement(proxy, Statement.class);
+         } else if("prepareStatement".equals(name)) {
+            return statement(proxy, PreparedStatement.class);
+         } else if("prepareCall".equals(name)) {
+            return statement(proxy, CallableStatement.class);
+         } else if(name.startsWith("set") && args != null && args.length == 1 && args[0] != null) {
+            values.put(name.substring(3), args[0]);
+            return null;
+         } else if(name.startsWith("get") && args == null && values.containsKey(name.substring(3))) {
+            return values.get(name.substring(3));
+         } else if(name.startsWith("is") && args == null && values.containsKey(name.substring(2))) {
+            return values.get(name.substring(2));
+         }
+         return defaultValue(method.getReturnType());
+      }
+
+      private boolean isClosed()
+      {
+         return closed.getCount() == 0;
+      }
+
+      private Object statement(Object conn, Class<?> type)
+      {
+         return Proxy.newProxyInstance(SimulatedDriver.class.getClassLoader(), new Class[] { type },
+                                          new SimulatedStatement(this, (Connection) conn));
+      }
+
+      private void execute() throws SQLException
+      {
+         sim.executions.incrementAndGet();
+         if(sim.chance(rate(settings, "hang-rate"))) {
+            sim.hangs.incrementAndGet();
+            Simulation.await(closed, millis(settings, "socket-timeout"), "Read timed out");
+         }
+         Simulation.sleep(sim.latency(settings.get("execute-latency")));
+      }
+   }
+
+
+   private static class SimulatedStatement implements InvocationHandler {
+
+      private final SimulatedConnection owner;
+      private final Connection conn;
+      private volatile boolean closed;
+
+      private SimulatedStatement(SimulatedConnection owner, Connection conn)
+      {
+         this.owner = owner;
+         this.conn = conn;
+      }
+
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+      {
+         if(method.getDeclaringClass() == Object.class) return objectMethod(proxy, method, args);
+         String name = method.getName();
+         if("close".equals(name)) {
+            closed = true;
+            return null;
+         } else if("isClosed".equals(name)) {
+            return closed;
+         } else if("getConnection".equals(name)) {
+            return conn;
+         }
+         if(closed || owner.isClosed()) throw new SQLException("statement closed");
+         if(name.startsWith("execute")) {
+            owner.execute();
+            if("executeQuery".equals(name)) return resultSet(proxy);
+            if(method.getReturnType() == int[].class) return new int[0];
+            if(method.getReturnType() == long[].class) return new long[0];
+            return defaultValue(method.getReturnType());
+         } else if("getResultSet".equals(name)) {
+            return resultSet(proxy);
+         } else if("getUpdateCount".equals(name)) {
+            return -1;
+         } else if("getLargeUpdateCount".equals(name)) {
+            return -1L;
+         }
+         return defaultValue(method.getReturnType());
+      }
+
+      private static Object resultSet(final Object stmt)
+      {
+         return Proxy.newProxyInstance(SimulatedDriver.class.getClassLoader(), new Class[] { ResultSet.class },
+            new InvocationHandler() {
+               public Object invoke(Object proxy, Method method, Object[] args)
+               {
+                  if(method.getDeclaringClass() == Object.class) return objectMethod(proxy, method, args);
+                  if("getStatement".equals(method.getName())) return stmt;
+                  return defaultValue(method.getReturnType());
+               }
+            });
+      }
+   }
+
+}
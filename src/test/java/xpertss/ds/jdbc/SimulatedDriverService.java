@@ -0,0 +1,43 @@
+package xpertss.ds.jdbc;
+
+import xpertss.ds.jdbc.spi.JdbcDriverService;
+import xpertss.ds.jdbc.spi.JdbcDriverSupport;
+
+import java.util.Properties;
+
+/**
+ * Passes the pool's connect and read timeouts to the {@link SimulatedDriver}
+ * so they bound its simulated hangs as they would a real driver's.
+ *
+ * @author cfloersch
+ */
+public class SimulatedDriverService implements JdbcDriverService, JdbcDriverSupport {
+
+   public String vendorName()
+   {
+      return "Simulated";
+   }
+
+   public String parseName(String uri)
+   {
+      if(uri != null && uri.startsWith(SimulatedDriver.PREFIX)) {
+         String name = uri.substring(SimulatedDriver.PREFIX.length());
+         int idx = name.indexOf(';');
+         return vendorName() + " - " + ((idx < 0) ? name : name.substring(0, idx));
+      }
+      return null;
+   }
+
+   public void configureTimeouts(Properties props, int connect_timeout, int read_timeout)
+   {
+      if(props == null) return;
+      if(connect_timeout >= 0) props.setProperty("connect-timeout", Integer.toString(connect_timeout * 1000));
+      if(read_timeout >= 0) props.setProperty("socket-timeout", Integer.toString(read_timeout * 1000));
+   }
+
+   public JdbcDriverSupport createSupport(String driverClassName)
+   {
+      return (SimulatedDriver.class.getName().equals(driverClassName)) ? this : null;
+   }
+
+}
@@ -0,0 +1,155 @@
+package xpertss.ds.jdbc;
+
+import junit.framework.TestCase;
+import xpertss.ds.DataSourceException;
+import xpertss.ds.JdbcDataSource;
+
+import java.net.SocketTimeoutException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+public class SimulatedDriverTest extends TestCase {
+
+   private SimulatedDriver driver;
+
+   protected void setUp() throws Exception
+   {
+      SimulatedDriver.reset();
+      driver = new SimulatedDriver();
+   }
+
+   protected void tearDown() throws Exception
+   {
+      SimulatedDriver.reset();
+   }
+
+
+   public void testAcceptsOnlySimulatedUrls() throws Exception {
+      assertTrue(driver.acceptsURL("jdbc:simulated:test"));
+      assertFalse(driver.acceptsURL("jdbc:derby:test"));
+      assertNull(driver.connect("jdbc:derby:test", new Properties()));
+   }
+
+   public void testScheduledConnectFailures() throws Exception {
+      String url = "jdbc:simulated:scheduled;connect-failures=2-3,5";
+      boolean[] expected = { true, false, false, true, false, true };
+      for(int i = 0; i < expected.length; i++) {
+         assertEquals("attempt " + (i + 1), expected[i], connects(url, new Properties()));
+      }
+      assertEquals(6, SimulatedDriver.simulation(url).getAttempts());
+      assertEquals(3, SimulatedDriver.simulation(url).getFailures());
+   }
+
+   public void testSeededFailuresRepeatable() throws Exception {
+      List<Boolean> first = outcomes("jdbc:simulated:first;seed=42;connect-failure-rate=0.5");
+      List<Boolean> second = outcomes("jdbc:simulated:second;seed=42;connect-failure-rate=0.5");
+      assertEquals(first, second);
+      assertTrue("Some connects should fail", first.contains(false));
+      assertTrue("Some connects should succeed", first.contains(true));
+   }
+
+   public void testPropertiesOverrideUrl() throws Exception {
+      Properties props = new Properties();
+      props.setProperty("connect-failures", "1");
+      assertFalse(connects("jdbc:simulated:override;connect-failures=2", props));
+   }
+
+   public void testConnectLatency() throws Exception {
+      long start = System.nanoTime();
+      driver.connect("jdbc:simulated:slow;connect-latency=constant:50", new Properties()).close();
+      assertTrue("Connect should take the configured latency", (System.nanoTime() - start) / 1000000 >= 50);
+   }
+
+   public void testExecuteHangsUntilSocketTimeout() throws Exception {
+      Connection conn = driver.connect("jdbc:simulated:hang;hang-rate=1;socket-timeout=100", new Properties());
+      Statement stmt = conn.createStatement();
+      long start = System.nanoTime();
+      try {
+         stmt.execute("SELECT 1");
+         fail("Execution should have timed out");
+      } catch(SQLRecoverableException e) {
+         assertTrue(e.getCause() instanceof SocketTimeoutException);
+      }
+      assertTrue("Execution should hang for the socket timeout", (System.nanoTime() - start) / 1000000 >= 100);
+      assertEquals(1, SimulatedDriver.simulation("jdbc:simulated:hang;hang-rate=1;socket-timeout=100").getHangs());
+      conn.close();
+   }
+
+   public void testIsValidFailures() throws Exception {
+      Connection conn = driver.connect("jdbc:simulated:invalid;valid-failure-rate=1", new Properties());
+      assertFalse(conn.isValid(1));
+      assertFalse(conn.isClosed());
+      conn.close();
+      assertTrue(conn.isClosed());
+      try {
+         conn.createStatement();
+         fail("Closed connection should not create statements");
+      } catch(SQLException e) { /* expected */ }
+   }
+
+   public void testConnectionRemembersSettings() throws Exception {
+      Connection conn = driver.connect("jdbc:simulated:settings", new Properties());
+      assertTrue(conn.getAutoCommit());
+      conn.setAutoCommit(false);
+      conn.setReadOnly(true);
+      assertFalse(conn.getAutoCommit());
+      assertTrue(conn.isReadOnly());
+      conn.close();
+   }
+
+   public void testReadTimeoutFromOrigin() throws Exception {
+      JdbcOriginDataSource ds = new JdbcOriginDataSource();
+      ds.setProperty(JdbcDataSource.DRIVER, SimulatedDriver.class.getName());
+      ds.setProperty(JdbcDataSource.URL, "jdbc:simulated:origin;hang-rate=1");
+      ds.setProperty(JdbcDataSource.READ_TIMEOUT, "1");
+      assertEquals("Simulated - origin", ds.getName());
+      Connection conn = ds.getConnection();
+      try {
+         conn.createStatement().executeQuery("SELECT 1");
+         fail("Execution should have timed out");
+      } catch(SQLRecoverableException e) {
+         assertTrue(e.getCause() instanceof SocketTimeoutException);
+      } finally {
+         conn.close();
+      }
+   }
+
+   public void testOriginBlackoutOnConnectFailure() throws Exception {
+      JdbcOriginDataSource ds = new JdbcOriginDataSource();
+      ds.setProperty(JdbcDataSource.DRIVER, SimulatedDriver.class.getName());
+      ds.setProperty(JdbcDataSource.URL, "jdbc:simulated:blackout;connect-failures=1");
+      try {
+         ds.getConnection();
+         fail("First connect should fail");
+      } catch(DataSourceException e) {
+         assertEquals("connect.failed", e.getMessage());
+      }
+      assertFalse(ds.isAvailable());
+      assertEquals(1, SimulatedDriver.simulation("jdbc:simulated:blackout;connect-failures=1").getAttempts());
+   }
+
+
+
+   private List<Boolean> outcomes(String url) throws SQLException
+   {
+      List<Boolean> results = new ArrayList<Boolean>();
+      for(int i = 0; i < 32; i++) results.add(connects(url, new Properties()));
+      return results;
+   }
+
+   private boolean connects(String url, Properties props) throws SQLException
+   {
+      try {
+         driver.connect(url, props).close();
+         return true;
+      } catch(SQLException e) {
+         return false;
+      }
+   }
+
+}
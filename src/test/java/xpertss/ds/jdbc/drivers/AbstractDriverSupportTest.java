@@ -1,10 +1,17 @@
 package xpertss.ds.jdbc.drivers;
 
 import junit.framework.TestCase;
+import xpertss.ds.jdbc.spi.JdbcConnectionTester;
 import xpertss.ds.jdbc.spi.JdbcDriverSupport;
 
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.Properties;
 
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 /**
  * Copyright Xpert Software 2012
  * User: cfloersch
@@ -72,4 +79,15 @@ public abstract class AbstractDriverSupportTest extends TestCase {
       assertTrue(props.isEmpty());
    }
 
+
+   // Runs the driver's connection test against a mock connection returning the statement it used
+   protected Statement ping() throws SQLException
+   {
+      Connection conn = mock(Connection.class);
+      Statement stmt = mock(Statement.class);
+      when(conn.createStatement()).thenReturn(stmt);
+      assertTrue(((JdbcConnectionTester) objectUnderTest).isValid(conn, 2));
+      return stmt;
+   }
+
 }
@@ -3,6 +3,8 @@ package xpertss.ds.jdbc.drivers;
 
 import java.util.Properties;
 
+import static org.mockito.Mockito.verify;
+
 /**
  * Copyright Xpert Software 2012
  * User: cfloersch
@@ -42,6 +44,9 @@ public class DB2DriverServiceTest extends AbstractDriverSupportTest {
       assertEquals("2", props.getProperty("blockingReadConnectionTimeout"));
    }
 
-
+   public void testIsValidPing() throws Exception
+   {
+      verify(ping()).execute("SELECT 1 FROM SYSIBM.SYSDUMMY1");
+   }
 
 }
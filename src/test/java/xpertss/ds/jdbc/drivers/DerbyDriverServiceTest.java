@@ -1,5 +1,7 @@
 package xpertss.ds.jdbc.drivers;
 
+import static org.mockito.Mockito.verify;
+
 /**
  * Created with IntelliJ IDEA.
  * User: cfloersch
@@ -28,5 +30,9 @@ public class DerbyDriverServiceTest extends AbstractDriverSupportTest {
       assertFalse(name.contains("jdbc"));
    }
 
+   public void testIsValidPing() throws Exception
+   {
+      verify(ping()).execute("VALUES 1");
+   }
 
 }
@@ -2,6 +2,8 @@ package xpertss.ds.jdbc.drivers;
 
 import java.util.Properties;
 
+import static org.mockito.Mockito.verify;
+
 /**
  * Created with IntelliJ IDEA.
  * User: cfloersch
@@ -41,4 +43,9 @@ public class MySQLDriverServiceTest extends AbstractDriverSupportTest {
       assertEquals("2000", props.getProperty("socketTimeout"));
    }
 
+   public void testIsValidPing() throws Exception
+   {
+      verify(ping()).executeQuery("/* ping */ SELECT 1");
+   }
+
 }
@@ -2,6 +2,8 @@ package xpertss.ds.jdbc.drivers;
 
 import java.util.Properties;
 
+import static org.mockito.Mockito.verify;
+
 /**
  * User: cfloersch
  * Date: 10/1/12
@@ -67,4 +69,9 @@ public class OracleDriverServiceTest extends AbstractDriverSupportTest {
       assertNull(objectUnderTest.parseName("jdbc:oracle:thin:cfloe/pass@//"));
    }
 
+   public void testIsValidWithoutOracleConnection() throws Exception
+   {
+      verify(ping()).execute("SELECT 1 FROM DUAL");
+   }
+
 }
@@ -2,6 +2,8 @@ package xpertss.ds.jdbc.drivers;
 
 import java.util.Properties;
 
+import static org.mockito.Mockito.verify;
+
 /**
  * Created with IntelliJ IDEA.
  * User: cfloersch
@@ -41,5 +43,9 @@ public class PostgresDriverServiceTest extends AbstractDriverSupportTest {
       assertEquals("2", props.getProperty("socketTimeout"));
    }
 
+   public void testIsValidPing() throws Exception
+   {
+      verify(ping()).execute("");
+   }
 
 }
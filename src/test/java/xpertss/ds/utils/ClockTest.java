@@ -0,0 +1,55 @@
+package xpertss.ds.utils;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.TimeUnit;
+
+public class ClockTest extends TestCase {
+
+   protected void setUp() throws Exception
+   {
+      TimeProvider.clear();
+   }
+
+   protected void tearDown() throws Exception
+   {
+      TimeProvider.clear();
+   }
+
+   public void testSystemMillisTick() throws Exception {
+      Clock clock = Clock.system();
+      long first = clock.millis();
+      assertTrue("Clock too far from system time", Math.abs(System.currentTimeMillis() - first) < 500);
+      ThreadUtils.sleep(100);
+      assertTrue("Clock should have ticked", clock.millis() - first >= 100 - Clock.TICK * 2);
+   }
+
+   public void testSystemNanos() throws Exception {
+      Clock clock = Clock.system();
+      long start = clock.nanos();
+      ThreadUtils.sleep(20);
+      assertTrue("Nano clock should be precise", clock.elapsed(start, TimeUnit.MILLISECONDS) >= 20);
+   }
+
+   public void testSystemDefersToStub() throws Exception {
+      TimeProvider.stub(new TimeProvider() {
+         public long milliTime() { return 42; }
+         public long nanoTime() { return 7; }
+      });
+      Clock clock = Clock.system();
+      assertEquals(42, clock.millis());
+      assertEquals(7, clock.nanos());
+      TimeProvider.clear();
+      assertTrue("Clock should no longer be stubbed", clock.millis() > 42);
+   }
+
+   public void testElapsed() throws Exception {
+      Clock clock = new Clock() {
+         public long millis() { return 0; }
+         public long nanos() { return 5000000L; }
+      };
+      assertEquals(4, clock.elapsed(1000000L, TimeUnit.MILLISECONDS));
+      assertEquals(4000, clock.elapsed(1000000L, TimeUnit.MICROSECONDS));
+   }
+
+}
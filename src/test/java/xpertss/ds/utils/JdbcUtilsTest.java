@@ -0,0 +1,64 @@
+package xpertss.ds.utils;
+
+import junit.framework.TestCase;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class JdbcUtilsTest extends TestCase {
+
+   private Connection conn;
+   private Statement stmt;
+
+   protected void setUp() throws Exception
+   {
+      conn = mock(Connection.class);
+      stmt = mock(Statement.class);
+      when(conn.createStatement()).thenReturn(stmt);
+   }
+
+
+   public void testPing() throws Exception {
+      assertTrue(JdbcUtils.ping(conn, "VALUES 1", 3));
+      verify(stmt).setQueryTimeout(3);
+      verify(stmt).execute("VALUES 1");
+      verify(stmt, never()).executeQuery(anyString());
+      verify(stmt).close();
+   }
+
+   public void testPingFails() throws Exception {
+      when(stmt.execute(anyString())).thenThrow(new SQLException("connection reset"));
+      assertFalse(JdbcUtils.ping(conn, "VALUES 1", 3));
+      verify(stmt).close();
+   }
+
+   public void testPingCreateFails() throws Exception {
+      when(conn.createStatement()).thenThrow(new SQLException("connection closed"));
+      assertFalse(JdbcUtils.ping(conn, "VALUES 1", 3));
+   }
+
+   public void testPingQuery() throws Exception {
+      ResultSet rs = mock(ResultSet.class);
+      when(stmt.executeQuery(anyString())).thenReturn(rs);
+      assertTrue(JdbcUtils.pingQuery(conn, "SELECT 1", 3));
+      verify(stmt).setQueryTimeout(3);
+      verify(stmt).executeQuery("SELECT 1");
+      verify(rs).close();
+      verify(stmt).close();
+   }
+
+   public void testPingQueryFails() throws Exception {
+      when(stmt.executeQuery(anyString())).thenThrow(new SQLException("communications link failure"));
+      assertFalse(JdbcUtils.pingQuery(conn, "SELECT 1", 3));
+      verify(stmt).close();
+   }
+
+}
@@ -0,0 +1,125 @@
+package xpertss.ds.utils;
+
+import junit.framework.TestCase;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+public class TimingWheelTest extends TestCase {
+
+   private TimingWheel wheel;
+
+   protected void setUp() throws Exception
+   {
+      wheel = new TimingWheel(10, 8, 2, "test");
+   }
+
+   public void testScheduleRunsOnceAfterDelay() throws Exception {
+      final CountDownLatch ran = new CountDownLatch(1);
+      final AtomicInteger runs = new AtomicInteger();
+      long start = System.nanoTime();
+      wheel.schedule(new Runnable() {
+         public void run() { runs.incrementAndGet(); ran.countDown(); }
+      }, 100, MILLISECONDS);
+      assertTrue("Task never ran", ran.await(2, SECONDS));
+      assertTrue("Task ran early", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+      ThreadUtils.sleep(200);
+      assertEquals(1, runs.get());
+   }
+
+   public void testScheduleBeyondOneTurn() throws Exception {
+      // eight buckets of 10ms make a turn of 80ms so this waits out rounds
+      final CountDownLatch ran = new CountDownLatch(1);
+      long start = System.nanoTime();
+      wheel.schedule(new Runnable() {
+         public void run() { ran.countDown(); }
+      }, 250, MILLISECONDS);
+      assertTrue("Task never ran", ran.await(2, SECONDS));
+      assertTrue("Task ran early", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 250);
+   }
+
+   public void testCancelBeforeRun() throws Exception {
+      final AtomicInteger runs = new AtomicInteger();
+      TimingWheel.Timeout timeout = wheel.schedule(new Runnable() {
+         public void run() { runs.incrementAndGet(); }
+      }, 100, MILLISECONDS);
+      assertTrue(timeout.cancel());
+      assertTrue(timeout.isCancelled());
+      assertFalse(timeout.cancel());
+      ThreadUtils.sleep(300);
+      assertEquals(0, runs.get());
+   }
+
+   public void testPeriodicRunsUntilCancelled() throws Exception {
+      final CountDownLatch ran = new CountDownLatch(3);
+      final AtomicInteger runs = new AtomicInteger();
+      TimingWheel.Timeout timeout = wheel.schedulePeriodic(new Runnable() {
+         public void run() { runs.incrementAndGet(); ran.countDown(); }
+      }, 50, MILLISECONDS);
+      assertTrue("Task did not repeat", ran.await(2, SECONDS));
+      assertTrue(timeout.cancel());
+      ThreadUtils.sleep(100);    // let a run already handed to a worker finish
+      int count = runs.get();
+      ThreadUtils.sleep(300);
+      assertEquals("Task ran after cancel", count, runs.get());
+   }
+
+   public void testPeriodicSurvivesFailure() throws Exception {
+      final CountDownLatch ran = new CountDownLatch(2);
+      TimingWheel.Timeout timeout = wheel.schedulePeriodic(new Runnable() {
+         public void run() { ran.countDown(); throw new IllegalStateException(); }
+      }, 50, MILLISECONDS);
+      try {
+         assertTrue("Task did not repeat after failing", ran.await(2, SECONDS));
+      } finally {
+         timeout.cancel();
+      }
+   }
+
+   public void testPeriodicPhaseWithinPeriod() throws Exception {
+      final CountDownLatch ran = new CountDownLatch(1);
+      long start = System.nanoTime();
+      TimingWheel.Timeout timeout = wheel.schedulePeriodic(new Runnable() {
+         public void run() { ran.countDown(); }
+      }, 500, MILLISECONDS);
+      try {
+         assertTrue("Task never ran", ran.await(2, SECONDS));
+         // first run falls within the first period, allowing a few ticks of slack
+         assertTrue("First run not within period", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 500 + 100);
+      } finally {
+         timeout.cancel();
+      }
+   }
+
+   public void testPeriodicPhasesSpread() throws Exception {
+      final int tasks = 20;
+      final long[] first = new long[tasks];
+      final CountDownLatch ran = new CountDownLatch(tasks);
+      TimingWheel.Timeout[] timeouts = new TimingWheel.Timeout[tasks];
+      final long start = System.nanoTime();
+      for(int i = 0; i < tasks; i++) {
+         final int index = i;
+         timeouts[i] = wheel.schedulePeriodic(new Runnable() {
+            public void run() {
+               if(first[index] == 0) {
+                  first[index] = System.nanoTime() - start;
+                  ran.countDown();
+               }
+            }
+         }, 1, SECONDS);
+      }
+      try {
+         assertTrue("Tasks never ran", ran.await(3, SECONDS));
+         long min = Long.MAX_VALUE, max = 0;
+         for(long t : first) { min = Math.min(min, t); max = Math.max(max, t); }
+         assertTrue("Periodic tasks were not spread out", MILLISECONDS.convert(max - min, TimeUnit.NANOSECONDS) > 100);
+      } finally {
+         for(TimingWheel.Timeout timeout : timeouts) timeout.cancel();
+      }
+   }
+
+}